@@ -72,6 +72,10 @@ public class HttpConnector extends ApplicationConnector {
 	 */
 	@Override
 	public void close(Processor pProcessor) {
+		if (connectionManager != null) {
+			connectionManager.close();
+		}
+
 		if (LOG.isInfoEnabled()) {
 			LOG.info(Messages.CONNECTOR_STOPPED);
 		}
@@ -19,8 +19,12 @@ package com.cordys.coe.ac.httpconnector;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.cordys.coe.ac.httpconnector.config.ConnectionManager;
+import com.cordys.coe.ac.httpconnector.config.DefaultXSLTStore;
+import com.cordys.coe.ac.httpconnector.config.EExecutionMode;
 import com.cordys.coe.ac.httpconnector.config.IMethodConfiguration;
 import com.cordys.coe.ac.httpconnector.config.IServerConnection;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
@@ -132,7 +136,6 @@ public class HttpTransaction implements ApplicationTransaction {
 	@Override
 	public boolean process(BodyBlock bbRequest, BodyBlock bbResponse) {
 		boolean bReturn = true;
-		int reqNode = 0;
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Incoming SOAP request: "
@@ -151,6 +154,75 @@ public class HttpTransaction implements ApplicationTransaction {
 						methodInfo.getConnectionId());
 			}
 
+			Executor executor = serverConnection.getExecutor();
+
+			if (bbRequest.isAsync() && (executor != null)
+					&& (serverConnection.getExecutionMode() == EExecutionMode.ASYNC)) {
+				// The worker sends the response, so the processor thread is
+				// free while the HTTP request is in progress. The worker has
+				// no SOAP transaction, so it gets the organization from here.
+				try {
+					executor.execute(new AsyncRequest(bbRequest, bbResponse,
+							methodInfo, serverConnection, DefaultXSLTStore
+									.getRequestOrganization()));
+				} catch (RejectedExecutionException e) {
+					throw new ConnectorException(e,
+							ConnectorExceptionMessages.ASYNC_QUEUE_OF_CONNECTION_0_IS_FULL,
+							serverConnection.getId());
+				}
+
+				return false;
+			}
+
+			executeRequest(bbRequest, bbResponse, methodInfo, serverConnection);
+		} catch (HandlerException he) {
+			// Either the request/response handler threw an exception, so we
+			// need to make a proper
+			// soap fault.
+			he.setPreferredLocale(ServerLocalizableException.PreferredLocale.SOAP_LOCALE);
+			he.toSOAPFault(bbResponse);
+
+		} catch (Throwable tException) {
+			createSOAPFault(tException, bbResponse);
+
+			if (bbRequest.isAsync()) {
+				bbRequest.continueTransaction();
+				bReturn = false;
+			}
+		}
+
+		if (LOG.isDebugEnabled() && (bReturn == true)) {
+			LOG.debug("Outgoing SOAP request:\n"
+					+ Node.writeToString(bbResponse.getXMLNode(), false));
+		}
+
+		return bReturn;
+	}
+
+	/**
+	 * Sends the HTTP request and puts the converted response into the response
+	 * body block.
+	 * 
+	 * @param bbRequest
+	 *            The request body block.
+	 * @param bbResponse
+	 *            The response body block.
+	 * @param methodInfo
+	 *            The method configuration.
+	 * @param serverConnection
+	 *            The connection to send the request to.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the request failed.
+	 * @throws HandlerException
+	 *             In case the request or response could not be converted.
+	 */
+	private void executeRequest(BodyBlock bbRequest, BodyBlock bbResponse,
+			IMethodConfiguration methodInfo, IServerConnection serverConnection)
+			throws ConnectorException, HandlerException {
+		int reqNode = 0;
+
+		try {
 			// Get the data XML node and unlink it, so that the XSLT can work
 			// properly.
 			reqNode = Node.unlink(bbRequest.getXMLNode());
@@ -200,68 +272,132 @@ public class HttpTransaction implements ApplicationTransaction {
 				LOG.debug("Sending SOAP response: "
 						+ Node.writeToString(responseEnvelope, true));
 			}
-		} catch (HandlerException he) {
-			// Either the request/response handler threw an exception, so we
-			// need to make a proper
-			// soap fault.
-			he.setPreferredLocale(ServerLocalizableException.PreferredLocale.SOAP_LOCALE);
-			he.toSOAPFault(bbResponse);
-
-		} catch (Throwable tException) {
-			String sMessage = tException.getLocalizedMessage();
-			LOG.error(tException, Messages.TRANSACTION_ERROR, sMessage);
-
-			ServerLocalizableException sle = null;
-
-			// What we'll do here is see which exception in the causes is a
-			// ServerLocalizableException. That message we will use to send as
-			// the main message to
-			// the end user. If no SLE could be found the current exception is
-			// wrapped into a new
-			// SLE exception.
-			int iMaxHop = 30;
-			int iCurrentHop = 0;
-			Throwable tCurrent = tException;
-
-			while ((tCurrent != null) && (iCurrentHop < iMaxHop)) {
-				if (tCurrent instanceof ServerLocalizableException) {
-					sle = (ServerLocalizableException) tCurrent;
-				}
-				tCurrent = tCurrent.getCause();
-
-				// The whole hop-thing is to make sure that if there are cyclic
-				// references in the
-				// exception causes the code won't go into an endless loop.
-				iCurrentHop++;
-			}
-
-			if (sle == null) {
-				// No SLE could be found, so wrap the current exception.
-				sle = new ConnectorException(tException,
-						ConnectorExceptionMessages.ERROR_EXECUTING_REQUEST_0,
-						ExceptionUtil.getSimpleErrorTrace(tException, true));
-			}
-
-			// Create the proper SOAP fault.
-			sle.setPreferredLocale(ServerLocalizableException.PreferredLocale.SOAP_LOCALE);
-			sle.toSOAPFault(bbResponse);
-
-			if (bbRequest.isAsync()) {
-				bbRequest.continueTransaction();
-				bReturn = false;
-			}
 		} finally {
 			if (reqNode != 0) {
 				Node.delete(reqNode);
 				reqNode = 0;
 			}
 		}
+	}
 
-		if (LOG.isDebugEnabled() && (bReturn == true)) {
-			LOG.debug("Outgoing SOAP request:\n"
-					+ Node.writeToString(bbResponse.getXMLNode(), false));
+	/**
+	 * Puts a SOAP fault for the given exception into the response.
+	 * 
+	 * @param tException
+	 *            The exception that occurred.
+	 * @param bbResponse
+	 *            The response body block.
+	 */
+	private void createSOAPFault(Throwable tException, BodyBlock bbResponse) {
+		String sMessage = tException.getLocalizedMessage();
+		LOG.error(tException, Messages.TRANSACTION_ERROR, sMessage);
+
+		ServerLocalizableException sle = null;
+
+		// What we'll do here is see which exception in the causes is a
+		// ServerLocalizableException. That message we will use to send as
+		// the main message to
+		// the end user. If no SLE could be found the current exception is
+		// wrapped into a new
+		// SLE exception.
+		int iMaxHop = 30;
+		int iCurrentHop = 0;
+		Throwable tCurrent = tException;
+
+		while ((tCurrent != null) && (iCurrentHop < iMaxHop)) {
+			if (tCurrent instanceof ServerLocalizableException) {
+				sle = (ServerLocalizableException) tCurrent;
+			}
+			tCurrent = tCurrent.getCause();
+
+			// The whole hop-thing is to make sure that if there are cyclic
+			// references in the
+			// exception causes the code won't go into an endless loop.
+			iCurrentHop++;
 		}
 
-		return bReturn;
+		if (sle == null) {
+			// No SLE could be found, so wrap the current exception.
+			sle = new ConnectorException(tException,
+					ConnectorExceptionMessages.ERROR_EXECUTING_REQUEST_0,
+					ExceptionUtil.getSimpleErrorTrace(tException, true));
+		}
+
+		// Create the proper SOAP fault.
+		sle.setPreferredLocale(ServerLocalizableException.PreferredLocale.SOAP_LOCALE);
+		sle.toSOAPFault(bbResponse);
+	}
+
+	/**
+	 * Executes a request in a worker thread of the connection and sends the
+	 * response when the request has finished.
+	 */
+	private class AsyncRequest implements Runnable {
+		/**
+		 * Holds the request body block.
+		 */
+		private final BodyBlock m_request;
+		/**
+		 * Holds the response body block.
+		 */
+		private final BodyBlock m_response;
+		/**
+		 * Holds the method configuration.
+		 */
+		private final IMethodConfiguration m_methodInfo;
+		/**
+		 * Holds the connection to send the request to.
+		 */
+		private final IServerConnection m_serverConnection;
+		/**
+		 * Holds the organization of the request.
+		 */
+		private final String m_organizationDN;
+
+		/**
+		 * Creates a new AsyncRequest object.
+		 * 
+		 * @param request
+		 *            The request body block.
+		 * @param response
+		 *            The response body block.
+		 * @param methodInfo
+		 *            The method configuration.
+		 * @param serverConnection
+		 *            The connection to send the request to.
+		 * @param organizationDN
+		 *            The organization of the request, read on the SOAP
+		 *            processor thread.
+		 */
+		AsyncRequest(BodyBlock request, BodyBlock response,
+				IMethodConfiguration methodInfo,
+				IServerConnection serverConnection, String organizationDN) {
+			m_request = request;
+			m_response = response;
+			m_methodInfo = methodInfo;
+			m_serverConnection = serverConnection;
+			m_organizationDN = organizationDN;
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			DefaultXSLTStore.setRequestOrganization(m_organizationDN);
+
+			try {
+				executeRequest(m_request, m_response, m_methodInfo,
+						m_serverConnection);
+			} catch (HandlerException he) {
+				he.setPreferredLocale(ServerLocalizableException.PreferredLocale.SOAP_LOCALE);
+				he.toSOAPFault(m_response);
+			} catch (Throwable tException) {
+				createSOAPFault(tException, m_response);
+			} finally {
+				DefaultXSLTStore.setRequestOrganization(null);
+				m_request.continueTransaction();
+			}
+		}
 	}
 }
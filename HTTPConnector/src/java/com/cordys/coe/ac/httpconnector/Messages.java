@@ -116,4 +116,152 @@ public class Messages {
 	public static final Message XSLT_FOUND_IN = MESSAGE_SET
 			.getMessage("xsltFoundIn");
 
+	/** Connection {0} closed */
+	public static final Message CONNECTION_CLOSED = MESSAGE_SET
+			.getMessage("connectionClosed");
+
+	/** Connection {0} closed while {1} requests were still in progress */
+	public static final Message CONNECTION_CLOSED_WITH_REQUESTS_IN_PROGRESS = MESSAGE_SET
+			.getMessage("connectionClosedWithRequestsInProgress");
+
+	/** Unable to reload the connections for {0}, the previous configuration stays in use */
+	public static final Message CONNECTION_RELOAD_FAILED = MESSAGE_SET
+			.getMessage("connectionReloadFailed");
+
+	/** Unable to close connection {0} */
+	public static final Message CONNECTION_CLOSE_FAILED = MESSAGE_SET
+			.getMessage("connectionCloseFailed");
+
+	/** {0} connections were still draining when the connector was closed */
+	public static final Message CONNECTIONS_STILL_DRAINING = MESSAGE_SET
+			.getMessage("connectionsStillDraining");
+
+	/** Statistics per connection */
+	public static final Message CONNECTION_STATISTICS = MESSAGE_SET
+			.getMessage("connectionStatistics");
+
+	/** Statistics per method */
+	public static final Message METHOD_STATISTICS = MESSAGE_SET
+			.getMessage("methodStatistics");
+
+	/** HTTP request time in milliseconds */
+	public static final Message HTTP_LATENCY = MESSAGE_SET
+			.getMessage("httpLatency");
+
+	/** Median HTTP request time in microseconds */
+	public static final Message HTTP_LATENCY_P50 = MESSAGE_SET
+			.getMessage("httpLatencyP50");
+
+	/** 99th percentile of the HTTP request time in microseconds */
+	public static final Message HTTP_LATENCY_P99 = MESSAGE_SET
+			.getMessage("httpLatencyP99");
+
+	/** 99.9th percentile of the HTTP request time in microseconds */
+	public static final Message HTTP_LATENCY_P999 = MESSAGE_SET
+			.getMessage("httpLatencyP999");
+
+	/** Responses with HTTP status 2xx */
+	public static final Message HTTP_STATUS_2XX = MESSAGE_SET
+			.getMessage("httpStatus2xx");
+
+	/** Responses with HTTP status 3xx */
+	public static final Message HTTP_STATUS_3XX = MESSAGE_SET
+			.getMessage("httpStatus3xx");
+
+	/** Responses with HTTP status 4xx */
+	public static final Message HTTP_STATUS_4XX = MESSAGE_SET
+			.getMessage("httpStatus4xx");
+
+	/** Responses with HTTP status 5xx */
+	public static final Message HTTP_STATUS_5XX = MESSAGE_SET
+			.getMessage("httpStatus5xx");
+
+	/** Failed requests */
+	public static final Message REQUEST_ERRORS = MESSAGE_SET
+			.getMessage("requestErrors");
+
+	/** Request bytes sent */
+	public static final Message BYTES_SENT = MESSAGE_SET
+			.getMessage("bytesSent");
+
+	/** Response bytes received */
+	public static final Message BYTES_RECEIVED = MESSAGE_SET
+			.getMessage("bytesReceived");
+
+	/** Connection pool statistics per connection */
+	public static final Message CONNECTION_POOL_STATISTICS = MESSAGE_SET
+			.getMessage("connectionPoolStatistics");
+
+	/** Pooled connections in use */
+	public static final Message POOL_LEASED_CONNECTIONS = MESSAGE_SET
+			.getMessage("poolLeasedConnections");
+
+	/** Idle pooled connections */
+	public static final Message POOL_IDLE_CONNECTIONS = MESSAGE_SET
+			.getMessage("poolIdleConnections");
+
+	/** Threads waiting for a pooled connection */
+	public static final Message POOL_WAITING_THREADS = MESSAGE_SET
+			.getMessage("poolWaitingThreads");
+
+	/** Average time to get a pooled connection in microseconds */
+	public static final Message POOL_ACQUIRE_TIME_AVERAGE = MESSAGE_SET
+			.getMessage("poolAcquireTimeAverage");
+
+	/** Longest time to get a pooled connection in microseconds */
+	public static final Message POOL_ACQUIRE_TIME_MAX = MESSAGE_SET
+			.getMessage("poolAcquireTimeMax");
+
+	/** Network connections opened */
+	public static final Message POOL_CONNECTIONS_CREATED = MESSAGE_SET
+			.getMessage("poolConnectionsCreated");
+
+	/** Network connections closed */
+	public static final Message POOL_CONNECTIONS_CLOSED = MESSAGE_SET
+			.getMessage("poolConnectionsClosed");
+
+	/** Circuit breaker and concurrency limits per connection */
+	public static final Message RESILIENCE_STATISTICS = MESSAGE_SET
+			.getMessage("resilienceStatistics");
+
+	/** Circuit breaker state: 0 closed, 1 open, 2 half open */
+	public static final Message CIRCUIT_BREAKER_STATE = MESSAGE_SET
+			.getMessage("circuitBreakerState");
+
+	/** Requests rejected by the open circuit breaker */
+	public static final Message CIRCUIT_BREAKER_REJECTIONS = MESSAGE_SET
+			.getMessage("circuitBreakerRejections");
+
+	/** Requests in progress in the connection bulkhead */
+	public static final Message BULKHEAD_ACTIVE_CALLS = MESSAGE_SET
+			.getMessage("bulkheadActiveCalls");
+
+	/** Requests rejected by a bulkhead */
+	public static final Message BULKHEAD_REJECTIONS = MESSAGE_SET
+			.getMessage("bulkheadRejections");
+
+	/** Current adaptive concurrency limit */
+	public static final Message CONCURRENCY_LIMIT = MESSAGE_SET
+			.getMessage("concurrencyLimit");
+
+	/** Requests rejected by the adaptive concurrency limit */
+	public static final Message CONCURRENCY_LIMIT_REJECTIONS = MESSAGE_SET
+			.getMessage("concurrencyLimitRejections");
+
+	/** Requests sent again after a failure */
+	public static final Message RETRIES = MESSAGE_SET
+			.getMessage("retries");
+
+	/** Retries skipped because the retry budget was exhausted */
+	public static final Message RETRY_BUDGET_EXHAUSTED = MESSAGE_SET
+			.getMessage("retryBudgetExhausted");
+
+	/** Number of hedged requests sent because the first request was slow */
+	public static final Message HEDGED_REQUESTS = MESSAGE_SET
+			.getMessage("hedgedRequests");
+
+	/** Number of hedged requests which answered before the first request */
+	public static final Message HEDGE_WINS = MESSAGE_SET
+			.getMessage("hedgeWins");
+
 }
\ No newline at end of file
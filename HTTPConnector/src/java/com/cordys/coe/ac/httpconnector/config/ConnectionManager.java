@@ -10,6 +10,8 @@ public interface ConnectionManager {
 
 	public abstract void reset();
 
+	public abstract void close();
+
 	public static class Factory {
 		public static ConnectionManager getConnectionManager(
 				HttpConfiguration configuration) throws ConnectorException {
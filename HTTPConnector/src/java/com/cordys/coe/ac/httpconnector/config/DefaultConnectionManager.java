@@ -30,9 +30,17 @@ import com.eibus.xml.nom.Node;
 import com.eibus.xml.xpath.XPathMetaInfo;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * This factory provides the means to create a server info object based on the
@@ -41,6 +49,15 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author pgussow
  */
 public class DefaultConnectionManager implements ConnectionManager {
+	/**
+	 * Maximum number of connections that are drained at the same time.
+	 */
+	private static final int DRAIN_THREADS = 4;
+	/**
+	 * Time in milliseconds after which an idle drainer thread stops.
+	 */
+	private static final long DRAIN_THREAD_KEEP_ALIVE = 60000;
+
 	private Map<String, ServerConnections> connectionMap = new ConcurrentHashMap<String, ServerConnections>();
 
 	private Object lock = new Object();
@@ -50,6 +67,12 @@ public class DefaultConnectionManager implements ConnectionManager {
 
 	private HttpConfiguration configuration;
 
+	/**
+	 * Drains and closes the connections which are no longer used. Its threads
+	 * stop when there is nothing left to drain.
+	 */
+	private ThreadPoolExecutor drainer = createDrainer();
+
 	public DefaultConnectionManager(HttpConfiguration configuration)
 			throws ConnectorException {
 		this.configuration = configuration;
@@ -78,6 +101,28 @@ public class DefaultConnectionManager implements ConnectionManager {
 
 	private ServerConnections createConnections(String organizationDN,
 			String level) throws ConnectorException {
+		ServerConnections connections = loadConnections(organizationDN, level);
+		connections.open();
+		connectionMap.put(getKey(level, organizationDN), connections);
+		return connections;
+	}
+
+	/**
+	 * Loads the connections of the given organization and level from the
+	 * configuration file. The connections are not opened.
+	 * 
+	 * @param organizationDN
+	 *            The organization to load the connections for.
+	 * @param level
+	 *            The level of the configuration file.
+	 * 
+	 * @return The loaded connections.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the configuration can not be loaded.
+	 */
+	ServerConnections loadConnections(String organizationDN, String level)
+			throws ConnectorException {
 
 		String sConfigFileName = configuration.getConfigurationFilePath();
 		if ((sConfigFileName == null) || sConfigFileName.equals("")) {
@@ -86,26 +131,22 @@ public class DefaultConnectionManager implements ConnectionManager {
 		}
 
 		int configNode = 0;
-		ServerConnections connections = null;
-		String key = getKey(level, organizationDN);
 		try {
 			configNode = StoreManager.getStore().load(sConfigFileName,
 					organizationDN, level);
-			connections = createConnections(configNode);
-			connections.open();
-			connectionMap.put(key, connections);
+			return createConnections(configNode, organizationDN, level);
 		} finally {
 			if (configNode != 0) {
 				Node.delete(configNode);
 				configNode = 0;
 			}
 		}
-		return connections;
 	}
 
-	private ServerConnections createConnections(int config)
-			throws ConnectorException {
-		ServerConnections serverConnections = new ServerConnections();
+	private ServerConnections createConnections(int config,
+			String organizationDN, String level) throws ConnectorException {
+		ServerConnections serverConnections = new ServerConnections(
+				organizationDN, level);
 		if (config == 0) {
 			return serverConnections;
 		}
@@ -172,9 +213,166 @@ public class DefaultConnectionManager implements ConnectionManager {
 	 */
 	@Override
 	public void reset() {
+		List<IServerConnection> retired = new ArrayList<IServerConnection>();
 		synchronized (lock) {
+			for (String key : new ArrayList<String>(connectionMap.keySet())) {
+				ServerConnections live = connectionMap.get(key);
+				ServerConnections reloaded;
+				try {
+					reloaded = loadConnections(live.getOrganizationDN(),
+							live.getLevel());
+				} catch (ConnectorException e) {
+					// Keep serving with the previous configuration.
+					logger.error(e, Messages.CONNECTION_RELOAD_FAILED, key);
+					continue;
+				}
+				retired.addAll(swapConnections(live, reloaded));
+				connectionMap.put(key, reloaded);
+			}
+		}
+		// Requests in progress may still be using the replaced pools, so they
+		// are drained in the background.
+		drain(retired);
+	}
+
+	/**
+	 * Moves the live connections whose pools can be kept into the reloaded
+	 * connection set and opens the others. A live connection is kept when its
+	 * URL, credentials, proxy and certificate settings did not change, so its
+	 * pooled (and already handshaked) connections stay in use.
+	 * 
+	 * @param live
+	 *            The connections currently in use.
+	 * @param reloaded
+	 *            The connections created from the reloaded configuration.
+	 * 
+	 * @return The live connections that are no longer used.
+	 */
+	private List<IServerConnection> swapConnections(ServerConnections live,
+			ServerConnections reloaded) {
+		List<IServerConnection> retired = new ArrayList<IServerConnection>(
+				live.getAll());
+		for (IServerConnection connection : reloaded.getAll()) {
+			IServerConnection current = live.get(connection.getId());
+			if ((current instanceof ServerConnection)
+					&& (connection instanceof ServerConnection)
+					&& ((ServerConnection) current)
+							.reconfigure((ServerConnection) connection)) {
+				reloaded.add(connection.getId(), current);
+				retired.remove(current);
+				if (logger.isDebugEnabled()) {
+					logger.debug("Kept the connection pool of " + current);
+				}
+			} else {
+				connection.open();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Created a new connection pool for "
+							+ connection);
+				}
+			}
+		}
+		return retired;
+	}
+
+	/**
+	 * Closes all connections. The connections are drained at the same time,
+	 * so this waits at most for the longest timeout of the connections. The
+	 * connections that are still draining after that are closed in the
+	 * background.
+	 * 
+	 * @see com.cordys.coe.ac.httpconnector.config.ConnectionManager#close()
+	 */
+	@Override
+	public void close() {
+		List<IServerConnection> retired = new ArrayList<IServerConnection>();
+		synchronized (lock) {
+			for (ServerConnections connections : connectionMap.values()) {
+				retired.addAll(connections.getAll());
+			}
 			connectionMap.clear();
 		}
+
+		long timeout = 0;
+
+		for (IServerConnection connection : retired) {
+			timeout = Math.max(timeout, connection.getTimeout());
+		}
+
+		long deadline = System.currentTimeMillis() + timeout;
+		int draining = 0;
+
+		for (Future<?> drain : drain(retired)) {
+			try {
+				drain.get(Math.max(deadline - System.currentTimeMillis(), 0),
+						TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				draining++;
+			} catch (ExecutionException e) {
+				// The drain task logs its own failures.
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		if (draining > 0) {
+			logger.warn(Messages.CONNECTIONS_STILL_DRAINING, draining);
+		}
+	}
+
+	/**
+	 * Closes the given connections on the drainer threads.
+	 * 
+	 * @param connections
+	 *            The connections to close.
+	 * 
+	 * @return The pending close of each connection.
+	 */
+	private List<Future<?>> drain(Collection<IServerConnection> connections) {
+		List<Future<?>> drains = new ArrayList<Future<?>>(connections.size());
+
+		for (final IServerConnection connection : connections) {
+			drains.add(drainer.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						connection.close();
+					} catch (RuntimeException e) {
+						logger.error(e, Messages.CONNECTION_CLOSE_FAILED,
+								connection.getId());
+					}
+				}
+			}));
+		}
+
+		return drains;
+	}
+
+	/**
+	 * Creates the executor which drains the connections. The queue is not
+	 * bounded, since it never holds more than the configured connections.
+	 * 
+	 * @return The drainer.
+	 */
+	private static ThreadPoolExecutor createDrainer() {
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable,
+						"HttpConnector connection drainer");
+
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		};
+
+		ThreadPoolExecutor drainer = new ThreadPoolExecutor(DRAIN_THREADS,
+				DRAIN_THREADS, DRAIN_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), threadFactory);
+		drainer.allowCoreThreadTimeOut(true);
+
+		return drainer;
 	}
 
 	private String getKey(String level, String organizationDN) {
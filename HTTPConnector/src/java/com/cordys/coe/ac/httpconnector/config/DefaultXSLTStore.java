@@ -1,5 +1,6 @@
 package com.cordys.coe.ac.httpconnector.config;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -22,6 +23,21 @@ public class DefaultXSLTStore implements IXSLTStore {
 			.getCordysLogger(DefaultXSLTStore.class);
 	private boolean organizationAware = false;
 	private Map<String, XSLTCollection> xsltMappings = new ConcurrentHashMap<String, XSLTCollection>();
+	/**
+	 * Holds the compiled file XSLTs, keyed by absolute file path. They are
+	 * shared by all methods that use the same file.
+	 */
+	private Map<String, FileXslt> fileXslts = new ConcurrentHashMap<String, FileXslt>();
+	/**
+	 * Holds the compiled inline XSLTs, keyed by the XSLT text. Methods with the
+	 * same inline XSLT share the compiled version.
+	 */
+	private Map<String, XSLT> inlineXslts = new ConcurrentHashMap<String, XSLT>();
+	/**
+	 * Holds the organization of the request executed by the current thread,
+	 * when the request is executed outside the SOAP processor thread.
+	 */
+	private static final ThreadLocal<String> requestOrganization = new ThreadLocal<String>();
 
 	protected DefaultXSLTStore(String baseOrganizationDN,
 			boolean organizationAware) {
@@ -40,33 +56,19 @@ public class DefaultXSLTStore implements IXSLTStore {
 					ConnectorExceptionMessages.BOTH_FILE_AND_XMLSTORE_ATTRIBUTES_CANNOT_BE_SET_FOR_XSLT);
 		}
 		XSLT xslt = null;
-		String organizationDN = null;
 
 		if (filePath != null) {
-			xslt = XSLT.parseFromFile(filePath);
-			if (logger.isInfoEnabled()) {
-				logger.info(Messages.XSLT_FOUND_IN, filePath, "file system");
-			}
+			xslt = getFileXslt(filePath);
 		}
 		if (xslt != null) {
 			return xslt;
 		}
 
 		if (xmlstorePath != null) {
-			if (organizationAware) {
-				organizationDN = SOAPTransaction.getCurrentSOAPTransaction()
-						.getIdentity().getUserOrganization();
-				xslt = get(xmlstorePath, organizationDN);
-			} else {
-				xslt = get(xmlstorePath, baseOrganizationDN);
-			}
+			xslt = getXslt(xmlstorePath);
 		}
 
 		if (xslt != null) {
-			if (logger.isInfoEnabled()) {
-				logger.info(Messages.XSLT_FOUND_IN, "inline",
-						"in method implementation");
-			}
 			return xslt;
 		}
 
@@ -79,10 +81,128 @@ public class DefaultXSLTStore implements IXSLTStore {
 					ConnectorExceptionMessages.EXPECTED_INLINE_XSLT_CONFIGURATION);
 			throw exception;
 		}
-		xslt = XSLT.parseFromString(Node.writeToString(xsltNode, false));
+		String xsltText = Node.writeToString(xsltNode, false);
+		xslt = inlineXslts.get(xsltText);
+		if (xslt == null) {
+			xslt = XSLT.parseFromString(xsltText);
+			if (xslt != null) {
+				if (logger.isInfoEnabled()) {
+					logger.info(Messages.XSLT_FOUND_IN, "inline",
+							"in method implementation");
+				}
+				inlineXslts.put(xsltText, xslt);
+			}
+		}
+		return xslt;
+	}
+
+	/**
+	 * Returns the compiled XSLT read from the given file. The XSLT is compiled
+	 * once and shared by all methods using the file. It is compiled again when
+	 * the modification time of the file changes.
+	 * 
+	 * @param filePath
+	 *            The path of the XSLT file.
+	 * 
+	 * @return Parsed XSLT object.
+	 * 
+	 * @throws ConnectorException
+	 *             Thrown if the operation failed.
+	 */
+	public XSLT getFileXslt(String filePath) throws ConnectorException {
+		File file = new File(filePath);
+		// Returns 0 when the file does not exist, in which case the XSLT
+		// parser reports the error.
+		long lastModified = file.lastModified();
+		String key = file.getAbsolutePath();
+		FileXslt cached = fileXslts.get(key);
+
+		if ((cached != null) && (cached.lastModified == lastModified)
+				&& (lastModified != 0)) {
+			return cached.xslt;
+		}
+
+		XSLT xslt = XSLT.parseFromFile(filePath);
+		if (xslt != null) {
+			if (logger.isInfoEnabled()) {
+				logger.info(Messages.XSLT_FOUND_IN, filePath, "file system");
+			}
+			if (lastModified != 0) {
+				fileXslts.put(key, new FileXslt(xslt, lastModified));
+			}
+		}
 		return xslt;
 	}
 
+	/**
+	 * Returns the compiled XSLT stored in the XMLStore for the current
+	 * organization. The XSLT is compiled once and shared by all requests, so
+	 * it must only be used for transformations.
+	 * 
+	 * @param xmlstorePath
+	 *            The XMLStore path of the XSLT.
+	 * 
+	 * @return Parsed XSLT object, or <code>null</code> if it does not exist.
+	 * 
+	 * @throws ConnectorException
+	 *             Thrown if the operation failed.
+	 */
+	public XSLT getXslt(String xmlstorePath) throws ConnectorException {
+		String organizationDN = baseOrganizationDN;
+
+		if (organizationAware) {
+			organizationDN = requestOrganization.get();
+
+			if (organizationDN == null) {
+				organizationDN = SOAPTransaction.getCurrentSOAPTransaction()
+						.getIdentity().getUserOrganization();
+			}
+		}
+
+		return get(xmlstorePath, organizationDN);
+	}
+
+	/**
+	 * Sets the organization of the request executed by the current thread.
+	 * Worker threads which execute a request outside the SOAP processor
+	 * thread have no SOAP transaction, so the organization is read on the
+	 * processor thread and set here.
+	 * 
+	 * @param organizationDN
+	 *            The organization DN, or null to use the SOAP transaction of
+	 *            the thread again.
+	 */
+	public static void setRequestOrganization(String organizationDN) {
+		if (organizationDN == null) {
+			requestOrganization.remove();
+		} else {
+			requestOrganization.set(organizationDN);
+		}
+	}
+
+	/**
+	 * Returns the organization of the SOAP request processed by the current
+	 * thread.
+	 * 
+	 * @return The organization DN, or null if the thread is not processing a
+	 *         SOAP request.
+	 */
+	public static String getRequestOrganization() {
+		String organizationDN = requestOrganization.get();
+
+		if (organizationDN == null) {
+			SOAPTransaction transaction = SOAPTransaction
+					.getCurrentSOAPTransaction();
+
+			if (transaction != null) {
+				organizationDN = transaction.getIdentity()
+						.getUserOrganization();
+			}
+		}
+
+		return organizationDN;
+	}
+
 	private XSLT get(String xmlstorePath, String organizationDN)
 			throws ConnectorException {
 		XSLT xslt = null;
@@ -99,7 +219,14 @@ public class DefaultXSLTStore implements IXSLTStore {
 		}
 		xslt = xslts.get(xmlstorePath);
 		if (xslt == null && !xslts.isLoaded(xmlstorePath)) {
-			xslt = loadFromStore(xmlstorePath, organizationDN, xslts);
+			// Only one thread per organization reads and compiles the XSLT,
+			// the others wait and then share the compiled template.
+			synchronized (xslts) {
+				xslt = xslts.get(xmlstorePath);
+				if (xslt == null && !xslts.isLoaded(xmlstorePath)) {
+					xslt = loadFromStore(xmlstorePath, organizationDN, xslts);
+				}
+			}
 		}
 		return xslt;
 
@@ -109,8 +236,13 @@ public class DefaultXSLTStore implements IXSLTStore {
 			XSLTCollection xslts) throws ConnectorException {
 		XSLT xslt = loadSpecificVersionFromStore(xmlstorePath, organizationDN,
 				ORGANIZATION_VERSION);
-		if (xslt == null) {
-			XSLTCollection isvCollection = xsltMappings.get(ISV_SPACE);
+		if (xslt != null) {
+			xslts.add(xmlstorePath, xslt);
+			return xslt;
+		}
+
+		XSLTCollection isvCollection = xsltMappings.get(ISV_SPACE);
+		synchronized (isvCollection) {
 			xslt = isvCollection.get(xmlstorePath);
 			if (xslt == null && !isvCollection.isLoaded(xmlstorePath)) {
 				xslt = loadSpecificVersionFromStore(xmlstorePath,
@@ -155,6 +287,37 @@ public class DefaultXSLTStore implements IXSLTStore {
 	public void reset() {
 		synchronized (this) {
 			xsltMappings.clear();
+			xsltMappings.put(ISV_SPACE, new XSLTCollection());
+			fileXslts.clear();
+			inlineXslts.clear();
+		}
+	}
+
+	/**
+	 * A compiled file XSLT and the modification time of the file it was read
+	 * from.
+	 */
+	private static class FileXslt {
+		/**
+		 * Holds the modification time of the file.
+		 */
+		private final long lastModified;
+		/**
+		 * Holds the compiled XSLT.
+		 */
+		private final XSLT xslt;
+
+		/**
+		 * Creates a new FileXslt object.
+		 * 
+		 * @param xslt
+		 *            The compiled XSLT.
+		 * @param lastModified
+		 *            The modification time of the file.
+		 */
+		FileXslt(XSLT xslt, long lastModified) {
+			this.xslt = xslt;
+			this.lastModified = lastModified;
 		}
 	}
 }
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.config;
+
+/**
+ * Contains the ways in which the requests of a connection are executed.
+ * 
+ * @author agent
+ */
+public enum EExecutionMode {
+	/**
+	 * The request is executed in the SOAP processor thread.
+	 */
+	SYNC,
+	/**
+	 * The request is executed by a worker thread of the connection and the
+	 * SOAP processor thread is released while the request is in progress.
+	 */
+	ASYNC;
+}
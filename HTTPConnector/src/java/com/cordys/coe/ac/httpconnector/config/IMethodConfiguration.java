@@ -19,6 +19,11 @@ package com.cordys.coe.ac.httpconnector.config;
 
 import com.cordys.coe.ac.httpconnector.IRequestHandler;
 import com.cordys.coe.ac.httpconnector.IResponseHandler;
+import com.cordys.coe.ac.httpconnector.execution.Bulkhead;
+import com.cordys.coe.ac.httpconnector.execution.RequestCoalescer;
+import com.cordys.coe.ac.httpconnector.execution.RequestHedger;
+import com.cordys.coe.ac.httpconnector.execution.ResponseCache;
+import com.cordys.coe.ac.httpconnector.execution.RetryPolicy;
 
 import com.eibus.xml.xpath.XPath;
 import com.eibus.xml.xpath.XPathMetaInfo;
@@ -37,18 +42,42 @@ public interface IMethodConfiguration {
 	 * Holds the name of the attribute 'prefix'.
 	 */
 	String ATTRIBUTE_PREFIX = "prefix";
+	/**
+	 * Holds the name of the tag 'alternate-url'.
+	 */
+	String TAG_ALTERNATE_URL = "alternate-url";
 	/**
 	 * Holds the name of the tag 'binding'.
 	 */
 	String TAG_BINDING = "binding";
+	/**
+	 * Holds the name of the tag 'bulkhead'.
+	 */
+	String TAG_BULKHEAD = "bulkhead";
 	/**
 	 * Holds the name of the tag 'clean-response-body'.
 	 */
 	String TAG_CLEAN_RESPONSE_BODY = "clean-response-body";
+	/**
+	 * Holds the name of the tag 'coalesce-requests'.
+	 */
+	String TAG_COALESCE_REQUESTS = "coalesce-requests";
 	/**
 	 * Holds the name of the tag 'connection-id'.
 	 */
 	String TAG_CONNECTION_ID = "connection-id";
+	/**
+	 * Holds the name of the tag 'default-ttl'.
+	 */
+	String TAG_DEFAULT_TTL = "default-ttl";
+	/**
+	 * Holds the name of the tag 'delay-percentile'.
+	 */
+	String TAG_DELAY_PERCENTILE = "delay-percentile";
+	/**
+	 * Holds the name of the tag 'hedge'.
+	 */
+	String TAG_HEDGE = "hedge";
 	/**
 	 * Holds the name of the tag 'http-method'.
 	 */
@@ -57,6 +86,46 @@ public interface IMethodConfiguration {
 	 * Holds the name of the tag 'implementation'.
 	 */
 	String TAG_IMPLEMENTATION = "implementation";
+	/**
+	 * Holds the name of the tag 'initial-backoff'.
+	 */
+	String TAG_INITIAL_BACKOFF = "initial-backoff";
+	/**
+	 * Holds the name of the tag 'max-attempts'.
+	 */
+	String TAG_MAX_ATTEMPTS = "max-attempts";
+	/**
+	 * Holds the name of the tag 'max-backoff'.
+	 */
+	String TAG_MAX_BACKOFF = "max-backoff";
+	/**
+	 * Holds the name of the tag 'max-concurrent-calls'.
+	 */
+	String TAG_MAX_CONCURRENT_CALLS = "max-concurrent-calls";
+	/**
+	 * Holds the name of the tag 'max-entries'.
+	 */
+	String TAG_MAX_ENTRIES = "max-entries";
+	/**
+	 * Holds the name of the tag 'max-hedge-rate'.
+	 */
+	String TAG_MAX_HEDGE_RATE = "max-hedge-rate";
+	/**
+	 * Holds the name of the tag 'max-retry-after'.
+	 */
+	String TAG_MAX_RETRY_AFTER = "max-retry-after";
+	/**
+	 * Holds the name of the tag 'max-waiting-calls'.
+	 */
+	String TAG_MAX_WAITING_CALLS = "max-waiting-calls";
+	/**
+	 * Holds the name of the tag 'max-wait-time'.
+	 */
+	String TAG_MAX_WAIT_TIME = "max-wait-time";
+	/**
+	 * Holds the name of the tag 'min-delay'.
+	 */
+	String TAG_MIN_DELAY = "min-delay";
 	/**
 	 * Holds the name of the tag 'namespaces'.
 	 */
@@ -65,10 +134,26 @@ public interface IMethodConfiguration {
 	 * Holds the name of the tag 'http-method'.
 	 */
 	String TAG_REQUEST_HANDLER = "request-handler";
+	/**
+	 * Holds the name of the tag 'response-cache'.
+	 */
+	String TAG_RESPONSE_CACHE = "response-cache";
 	/**
 	 * Holds the name of the tag 'response-handler'.
 	 */
 	String TAG_RESPONSE_HANDLER = "response-handler";
+	/**
+	 * Holds the name of the tag 'retry'.
+	 */
+	String TAG_RETRY = "retry";
+	/**
+	 * Holds the name of the tag 'retry-non-idempotent'.
+	 */
+	String TAG_RETRY_NON_IDEMPOTENT = "retry-non-idempotent";
+	/**
+	 * Holds the name of the tag 'retry-status-codes'.
+	 */
+	String TAG_RETRY_STATUS_CODES = "retry-status-codes";
 	/**
 	 * Holds the name of the tag 'uri'.
 	 */
@@ -82,6 +167,14 @@ public interface IMethodConfiguration {
 	 */
 	String TAG_VALID_RESPONSE_XPATH = "valid-response-xpath";
 
+	/**
+	 * Returns the bulkhead which limits the concurrent requests of this
+	 * method.
+	 * 
+	 * @return The bulkhead or null if the requests are not limited.
+	 */
+	Bulkhead getBulkhead();
+
 	/**
 	 * Returns the connectionId.
 	 * 
@@ -89,6 +182,14 @@ public interface IMethodConfiguration {
 	 */
 	String getConnectionId();
 
+	/**
+	 * Returns the object which sends a second request when the response to
+	 * the first one is slow.
+	 * 
+	 * @return The request hedger or null if requests are not hedged.
+	 */
+	RequestHedger getRequestHedger();
+
 	/**
 	 * Returns the httpMethodType.
 	 * 
@@ -96,6 +197,14 @@ public interface IMethodConfiguration {
 	 */
 	EHttpMethod getHttpMethodType();
 
+	/**
+	 * Returns the DN of the method this configuration belongs to.
+	 * 
+	 * @return The method DN, or null if the configuration was not created from
+	 *         a request.
+	 */
+	String getMethodDn();
+
 	/**
 	 * Returns the requestHandler.
 	 * 
@@ -103,6 +212,21 @@ public interface IMethodConfiguration {
 	 */
 	IRequestHandler getRequestHandler();
 
+	/**
+	 * Returns the object which lets identical concurrent requests of this
+	 * method share one HTTP exchange.
+	 * 
+	 * @return The request coalescer or null if requests are not shared.
+	 */
+	RequestCoalescer getRequestCoalescer();
+
+	/**
+	 * Returns the cache for the converted responses of this method.
+	 * 
+	 * @return The response cache or null if responses are not cached.
+	 */
+	ResponseCache getResponseCache();
+
 	/**
 	 * Returns the responseHandler.
 	 * 
@@ -110,6 +234,13 @@ public interface IMethodConfiguration {
 	 */
 	IResponseHandler getResponseHandler();
 
+	/**
+	 * Returns the policy for retrying failed requests of this method.
+	 * 
+	 * @return The retry policy or null if requests are not retried.
+	 */
+	RetryPolicy getRetryPolicy();
+
 	/**
 	 * Returns the uri.
 	 * 
@@ -20,31 +20,153 @@ package com.cordys.coe.ac.httpconnector.config;
 import java.net.URL;
 
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.httpclient.HttpClient;
 
+import com.cordys.coe.ac.httpconnector.execution.Bulkhead;
+import com.cordys.coe.ac.httpconnector.execution.CircuitBreaker;
+import com.cordys.coe.ac.httpconnector.execution.ConcurrencyLimiter;
+import com.cordys.coe.ac.httpconnector.execution.IHttpTransport;
+import com.cordys.coe.ac.httpconnector.execution.RetryBudget;
+
 /**
  * This interface describes the information for a specific HTTP connection.
  * 
  * @author pgussow
  */
 public interface IServerConnection {
+	/**
+	 * Holds the name for the attribute 'class'.
+	 */
+	String ATTRIBUTE_CLASS = "class";
 	/**
 	 * Holds the name for the attribute 'id'.
 	 */
 	String ATTRIBUTE_ID = "id";
+	/**
+	 * Contains the default idle time in milliseconds after which a pooled
+	 * connection is closed.
+	 */
+	long DEFAULT_IDLE_CONNECTION_TIMEOUT = 60000;
+	/**
+	 * Contains the default interval in milliseconds at which idle connections
+	 * are evicted from the pool.
+	 */
+	long DEFAULT_IDLE_EVICTION_INTERVAL = 30000;
+	/**
+	 * Contains the default maximum number of pooled connections per host.
+	 */
+	int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+	/**
+	 * Contains the default maximum response size in bytes. 0 means that the
+	 * response size is not limited.
+	 */
+	int DEFAULT_MAX_RESPONSE_SIZE = 0;
+	/**
+	 * Contains the default maximum number of pooled connections in total.
+	 */
+	int DEFAULT_MAX_TOTAL_CONNECTIONS = 20;
 	/**
 	 * Contains the default HTTP request timeout in milliseconds.
 	 */
 	int DEFAULT_TIMEOUT = 30000;
+	/**
+	 * Holds the name for the tag 'adaptive-concurrency'.
+	 */
+	String TAG_ADAPTIVE_CONCURRENCY = "adaptive-concurrency";
 	/**
 	 * Holds the name for the tag 'authenticate-always'.
 	 */
 	String TAG_AUTHENTICATE_ALWAYS = "authenticate-always";
+	/**
+	 * Holds the name for the tag 'bulkhead'.
+	 */
+	String TAG_BULKHEAD = "bulkhead";
 	/**
 	 * Holds the name for the tag 'check-certificate'.
 	 */
 	String TAG_CHECK_CERTIFICATE = "check-certificate";
+	/**
+	 * Holds the name for the tag 'circuit-breaker'.
+	 */
+	String TAG_CIRCUIT_BREAKER = "circuit-breaker";
+	/**
+	 * Holds the name for the tag 'connection-acquire-timeout'.
+	 */
+	String TAG_CONNECTION_ACQUIRE_TIMEOUT = "connection-acquire-timeout";
+	/**
+	 * Holds the name for the tag 'execution-mode'.
+	 */
+	String TAG_EXECUTION_MODE = "execution-mode";
+	/**
+	 * Holds the name for the tag 'failure-rate-threshold'.
+	 */
+	String TAG_FAILURE_RATE_THRESHOLD = "failure-rate-threshold";
+	/**
+	 * Holds the name for the tag 'half-open-calls'.
+	 */
+	String TAG_HALF_OPEN_CALLS = "half-open-calls";
+	/**
+	 * Holds the name for the tag 'idle-connection-timeout'.
+	 */
+	String TAG_IDLE_CONNECTION_TIMEOUT = "idle-connection-timeout";
+	/**
+	 * Holds the name for the tag 'idle-eviction-interval'.
+	 */
+	String TAG_IDLE_EVICTION_INTERVAL = "idle-eviction-interval";
+	/**
+	 * Holds the name for the tag 'initial-limit'.
+	 */
+	String TAG_INITIAL_LIMIT = "initial-limit";
+	/**
+	 * Holds the name for the tag 'max-concurrent-calls'.
+	 */
+	String TAG_MAX_CONCURRENT_CALLS = "max-concurrent-calls";
+	/**
+	 * Holds the name for the tag 'max-connections-per-host'.
+	 */
+	String TAG_MAX_CONNECTIONS_PER_HOST = "max-connections-per-host";
+	/**
+	 * Holds the name for the tag 'max-limit'.
+	 */
+	String TAG_MAX_LIMIT = "max-limit";
+	/**
+	 * Holds the name for the tag 'max-queued-requests'.
+	 */
+	String TAG_MAX_QUEUED_REQUESTS = "max-queued-requests";
+	/**
+	 * Holds the name for the tag 'max-response-size'.
+	 */
+	String TAG_MAX_RESPONSE_SIZE = "max-response-size";
+	/**
+	 * Holds the name for the tag 'max-total-connections'.
+	 */
+	String TAG_MAX_TOTAL_CONNECTIONS = "max-total-connections";
+	/**
+	 * Holds the name for the tag 'max-waiting-calls'.
+	 */
+	String TAG_MAX_WAITING_CALLS = "max-waiting-calls";
+	/**
+	 * Holds the name for the tag 'max-wait-time'.
+	 */
+	String TAG_MAX_WAIT_TIME = "max-wait-time";
+	/**
+	 * Holds the name for the tag 'minimum-calls'.
+	 */
+	String TAG_MINIMUM_CALLS = "minimum-calls";
+	/**
+	 * Holds the name for the tag 'min-limit'.
+	 */
+	String TAG_MIN_LIMIT = "min-limit";
+	/**
+	 * Holds the name for the tag 'min-retries-per-second'.
+	 */
+	String TAG_MIN_RETRIES_PER_SECOND = "min-retries-per-second";
+	/**
+	 * Holds the name for the tag 'open-duration'.
+	 */
+	String TAG_OPEN_DURATION = "open-duration";
 	/**
 	 * Holds the name of the tag 'parameter'.
 	 */
@@ -73,10 +195,30 @@ public interface IServerConnection {
 	 * Holds the name for the tag 'proxy-username'.
 	 */
 	String TAG_PROXY_USERNAME = "proxy-username";
+	/**
+	 * Holds the name for the tag 'retry-budget'.
+	 */
+	String TAG_RETRY_BUDGET = "retry-budget";
+	/**
+	 * Holds the name for the tag 'retry-ratio'.
+	 */
+	String TAG_RETRY_RATIO = "retry-ratio";
+	/**
+	 * Holds the name for the tag 'slow-call-duration'.
+	 */
+	String TAG_SLOW_CALL_DURATION = "slow-call-duration";
+	/**
+	 * Holds the name for the tag 'slow-call-rate-threshold'.
+	 */
+	String TAG_SLOW_CALL_RATE_THRESHOLD = "slow-call-rate-threshold";
 	/**
 	 * Holds the name for the tag 'timeout'.
 	 */
 	String TAG_TIMEOUT = "timeout";
+	/**
+	 * Holds the name for the tag 'transport'.
+	 */
+	String TAG_TRANSPORT = "transport";
 	/**
 	 * Holds the name for the tag 'url'.
 	 */
@@ -85,6 +227,64 @@ public interface IServerConnection {
 	 * Holds the name for the tag 'username'.
 	 */
 	String TAG_USERNAME = "username";
+	/**
+	 * Holds the name for the tag 'window-size'.
+	 */
+	String TAG_WINDOW_SIZE = "window-size";
+
+	/**
+	 * Closes this connection. Requests that are still in progress are given
+	 * the configured timeout to finish, after which the pooled connections
+	 * are shut down.
+	 */
+	void close();
+
+	/**
+	 * Returns the time in milliseconds a request waits for a free pooled
+	 * connection.
+	 * 
+	 * @return Connection acquire timeout.
+	 */
+	long getConnectionAcquireTimeout();
+
+	/**
+	 * Returns how the requests of this connection are executed.
+	 * 
+	 * @return Execution mode.
+	 */
+	EExecutionMode getExecutionMode();
+
+	/**
+	 * Returns the bulkhead which limits the concurrent requests of this
+	 * connection.
+	 * 
+	 * @return The bulkhead, or null if the requests are not limited.
+	 */
+	Bulkhead getBulkhead();
+
+	/**
+	 * Returns the circuit breaker of this connection.
+	 * 
+	 * @return The circuit breaker, or null if none is configured.
+	 */
+	CircuitBreaker getCircuitBreaker();
+
+	/**
+	 * Returns the limiter which adapts the number of concurrent requests of
+	 * this connection to the latency of the web server.
+	 * 
+	 * @return The limiter, or null if the requests are not limited.
+	 */
+	ConcurrencyLimiter getConcurrencyLimiter();
+
+	/**
+	 * Returns the executor which runs the requests of this connection in
+	 * asynchronous execution mode.
+	 * 
+	 * @return Executor or null if the connection is not open or does not use
+	 *         asynchronous execution.
+	 */
+	Executor getExecutor();
 
 	/**
 	 * Returns the client.
@@ -93,6 +293,13 @@ public interface IServerConnection {
 	 */
 	HttpClient getHttpClient();
 
+	/**
+	 * Returns the current statistics of the connection pool.
+	 * 
+	 * @return The statistics, or null if the connection is not open.
+	 */
+	PoolStatistics getPoolStatistics();
+
 	/**
 	 * Returns the id.
 	 * 
@@ -100,6 +307,44 @@ public interface IServerConnection {
 	 */
 	String getId();
 
+	/**
+	 * Returns the idle time in milliseconds after which a pooled connection is
+	 * closed.
+	 * 
+	 * @return Idle connection timeout.
+	 */
+	long getIdleConnectionTimeout();
+
+	/**
+	 * Returns the interval in milliseconds at which idle connections are
+	 * evicted. Zero disables the eviction.
+	 * 
+	 * @return Idle eviction interval.
+	 */
+	long getIdleEvictionInterval();
+
+	/**
+	 * Returns the maximum number of pooled connections per host.
+	 * 
+	 * @return Maximum connections per host.
+	 */
+	int getMaxConnectionsPerHost();
+
+	/**
+	 * Returns the maximum size in bytes of a response body read from this
+	 * connection. 0 means that the size is not limited.
+	 * 
+	 * @return Maximum response size.
+	 */
+	int getMaxResponseSize();
+
+	/**
+	 * Returns the maximum number of pooled connections in total.
+	 * 
+	 * @return Maximum total connections.
+	 */
+	int getMaxTotalConnections();
+
 	/**
 	 * This method gets the parameter with the given name. If the parameter is
 	 * not found null is returned.
@@ -127,6 +372,13 @@ public interface IServerConnection {
 	 */
 	String getPassword();
 
+	/**
+	 * Returns the budget which limits the retries of this connection.
+	 * 
+	 * @return The retry budget.
+	 */
+	RetryBudget getRetryBudget();
+
 	/**
 	 * Returns the timeout.
 	 * 
@@ -134,6 +386,13 @@ public interface IServerConnection {
 	 */
 	int getTimeout();
 
+	/**
+	 * Returns the transport which sends the requests of this connection.
+	 * 
+	 * @return The transport.
+	 */
+	IHttpTransport getTransport();
+
 	/**
 	 * Returns the url.
 	 * 
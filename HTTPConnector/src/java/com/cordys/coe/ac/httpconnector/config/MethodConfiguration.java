@@ -17,6 +17,8 @@
  */
 package com.cordys.coe.ac.httpconnector.config;
 
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Locale;
 
 import com.cordys.coe.ac.httpconnector.IRequestHandler;
@@ -24,6 +26,11 @@ import com.cordys.coe.ac.httpconnector.IResponseHandler;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorExceptionMessages;
 import com.cordys.coe.ac.httpconnector.exception.HandlerException;
+import com.cordys.coe.ac.httpconnector.execution.Bulkhead;
+import com.cordys.coe.ac.httpconnector.execution.RequestCoalescer;
+import com.cordys.coe.ac.httpconnector.execution.RequestHedger;
+import com.cordys.coe.ac.httpconnector.execution.ResponseCache;
+import com.cordys.coe.ac.httpconnector.execution.RetryPolicy;
 import com.cordys.coe.util.xml.nom.XPathHelper;
 import com.eibus.xml.nom.Node;
 import com.eibus.xml.xpath.XPath;
@@ -35,6 +42,53 @@ import com.eibus.xml.xpath.XPathMetaInfo;
  * @author mpoyhone
  */
 class MethodConfiguration implements IMethodConfiguration {
+	/**
+	 * Holds the default maximum number of cached responses.
+	 */
+	private static final int DEFAULT_CACHE_MAX_ENTRIES = 1000;
+	/**
+	 * Holds the default time in milliseconds a request waits for a free place
+	 * in the bulkhead.
+	 */
+	private static final long DEFAULT_BULKHEAD_MAX_WAIT_TIME = 30000;
+	/**
+	 * Holds the default percentile of the response times after which a
+	 * request is hedged.
+	 */
+	private static final int DEFAULT_HEDGE_DELAY_PERCENTILE = 95;
+	/**
+	 * Holds the default maximum percentage of the requests which are hedged.
+	 */
+	private static final int DEFAULT_HEDGE_MAX_RATE = 5;
+	/**
+	 * Holds the default minimum time in milliseconds before a request is
+	 * hedged.
+	 */
+	private static final long DEFAULT_HEDGE_MIN_DELAY = 10;
+	/**
+	 * Holds the default delay in milliseconds before the first retry.
+	 */
+	private static final long DEFAULT_RETRY_INITIAL_BACKOFF = 100;
+	/**
+	 * Holds the default maximum number of attempts of a request.
+	 */
+	private static final int DEFAULT_RETRY_MAX_ATTEMPTS = 3;
+	/**
+	 * Holds the default maximum delay in milliseconds before a retry.
+	 */
+	private static final long DEFAULT_RETRY_MAX_BACKOFF = 5000;
+	/**
+	 * Holds the default longest Retry-After delay in milliseconds.
+	 */
+	private static final long DEFAULT_RETRY_MAX_RETRY_AFTER = 10000;
+	/**
+	 * Holds the status codes which are retried by default.
+	 */
+	private static final String DEFAULT_RETRY_STATUS_CODES = "502 503 504";
+	/**
+	 * Contains the optional bulkhead which limits the concurrent requests.
+	 */
+	private Bulkhead m_bulkhead;
 	/**
 	 * If <code>true</code>, the response SOAP body contents will be cleared.
 	 * This is useful only for methods which cannot return the response method
@@ -49,16 +103,37 @@ class MethodConfiguration implements IMethodConfiguration {
 	 * Contains the actual HTTP method which will be used (GET, POST, etc).
 	 */
 	private EHttpMethod m_httpMethodType;
+	/**
+	 * Holds the DN of the method.
+	 */
+	private String m_methodDn;
 	/**
 	 * Contains the HTTP request handler for converting the SOAP request XML
 	 * into an HTTP request.
 	 */
 	private IRequestHandler m_requestHandler;
+	/**
+	 * Contains the optional object which lets identical concurrent requests
+	 * share one HTTP exchange.
+	 */
+	private RequestCoalescer m_requestCoalescer;
+	/**
+	 * Contains the optional object which hedges slow requests.
+	 */
+	private RequestHedger m_requestHedger;
+	/**
+	 * Contains the optional cache for the converted responses.
+	 */
+	private ResponseCache m_responseCache;
 	/**
 	 * Contains the HTTP response handler for converting the HTTP response to
 	 * SOAP request XML.
 	 */
 	private IResponseHandler m_responseHandler;
+	/**
+	 * Contains the optional policy for retrying failed requests.
+	 */
+	private RetryPolicy m_retryPolicy;
 	/**
 	 * Method specific URI. Usually this is the path.
 	 */
@@ -96,6 +171,14 @@ class MethodConfiguration implements IMethodConfiguration {
 		parseConfigurationXML(implNode, connector, xmi);
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getBulkhead()
+	 */
+	@Override
+	public Bulkhead getBulkhead() {
+		return m_bulkhead;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getConnectionId()
 	 */
@@ -112,6 +195,14 @@ class MethodConfiguration implements IMethodConfiguration {
 		return m_httpMethodType;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getMethodDn()
+	 */
+	@Override
+	public String getMethodDn() {
+		return m_methodDn;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getRequestHandler()
 	 */
@@ -120,6 +211,30 @@ class MethodConfiguration implements IMethodConfiguration {
 		return m_requestHandler;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getRequestCoalescer()
+	 */
+	@Override
+	public RequestCoalescer getRequestCoalescer() {
+		return m_requestCoalescer;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getRequestHedger()
+	 */
+	@Override
+	public RequestHedger getRequestHedger() {
+		return m_requestHedger;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getResponseCache()
+	 */
+	@Override
+	public ResponseCache getResponseCache() {
+		return m_responseCache;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getResponseHandler()
 	 */
@@ -128,6 +243,14 @@ class MethodConfiguration implements IMethodConfiguration {
 		return m_responseHandler;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getRetryPolicy()
+	 */
+	@Override
+	public RetryPolicy getRetryPolicy() {
+		return m_retryPolicy;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.config.IMethodConfiguration#getUri()
 	 */
@@ -168,6 +291,16 @@ class MethodConfiguration implements IMethodConfiguration {
 		return m_cleanResponseBody;
 	}
 
+	/**
+	 * Sets the DN of the method.
+	 * 
+	 * @param methodDn
+	 *            The method DN.
+	 */
+	void setMethodDn(String methodDn) {
+		m_methodDn = methodDn;
+	}
+
 	/**
 	 * This method parses the XML configuration for the method.
 	 * 
@@ -303,7 +436,302 @@ class MethodConfiguration implements IMethodConfiguration {
 			m_xpathInfo.addNamespaceBinding(prefix, uri);
 		}
 
+		// Read whether identical concurrent requests share one exchange.
+		if (XPathHelper.getBooleanValue(implNode, "ns:"
+				+ TAG_COALESCE_REQUESTS, xmi, false)) {
+			if (m_httpMethodType != EHttpMethod.GET) {
+				throw new ConnectorException(
+						ConnectorExceptionMessages.REQUEST_COALESCING_IS_ONLY_SUPPORTED_FOR_GET_METHODS);
+			}
+
+			m_requestCoalescer = new RequestCoalescer();
+		}
+
+		// Read the optional response cache.
+		int cacheNode = XPathHelper.selectSingleNode(implNode, "ns:"
+				+ TAG_RESPONSE_CACHE, xmi);
+
+		if (cacheNode != 0) {
+			m_responseCache = createResponseCache(cacheNode, xmi);
+		}
+
+		// Read the optional limit on concurrent requests.
+		int bulkheadNode = XPathHelper.selectSingleNode(implNode, "ns:"
+				+ TAG_BULKHEAD, xmi);
+
+		if (bulkheadNode != 0) {
+			m_bulkhead = createBulkhead(bulkheadNode, xmi);
+		}
+
+		// Read the optional retry policy.
+		int retryNode = XPathHelper.selectSingleNode(implNode, "ns:"
+				+ TAG_RETRY, xmi);
+
+		if (retryNode != 0) {
+			m_retryPolicy = createRetryPolicy(retryNode, xmi);
+		}
+
+		// Read the optional hedging of slow requests.
+		int hedgeNode = XPathHelper.selectSingleNode(implNode, "ns:"
+				+ TAG_HEDGE, xmi);
+
+		if (hedgeNode != 0) {
+			m_requestHedger = createRequestHedger(hedgeNode, xmi);
+		}
+
 		m_requestHandler.initialize(requestHandlerNode, connector, this, xmi);
 		m_responseHandler.initialize(responseHandlerNode, connector, this, xmi);
 	}
+
+	/**
+	 * Creates the bulkhead for this method.
+	 * 
+	 * @param bulkheadNode
+	 *            The bulkhead configuration.
+	 * @param xmi
+	 *            The namespace prefix mapping. The prefix ns must be mapped to
+	 *            the actual namespace.
+	 * 
+	 * @return The bulkhead.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the configuration is invalid.
+	 */
+	private Bulkhead createBulkhead(int bulkheadNode, XPathMetaInfo xmi)
+			throws ConnectorException {
+		int maxConcurrentCalls = XPathHelper.getIntegerValue(bulkheadNode,
+				"ns:" + TAG_MAX_CONCURRENT_CALLS, xmi, 0);
+
+		if (maxConcurrentCalls <= 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					maxConcurrentCalls, TAG_MAX_CONCURRENT_CALLS);
+		}
+
+		int maxWaitingCalls = XPathHelper.getIntegerValue(bulkheadNode, "ns:"
+				+ TAG_MAX_WAITING_CALLS, xmi, 0);
+
+		if (maxWaitingCalls < 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					maxWaitingCalls, TAG_MAX_WAITING_CALLS);
+		}
+
+		long maxWaitTime = XPathHelper.getLongValue(bulkheadNode, "ns:"
+				+ TAG_MAX_WAIT_TIME, xmi, DEFAULT_BULKHEAD_MAX_WAIT_TIME);
+
+		if (maxWaitTime < 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					maxWaitTime, TAG_MAX_WAIT_TIME);
+		}
+
+		return new Bulkhead(maxConcurrentCalls, maxWaitingCalls, maxWaitTime);
+	}
+
+	/**
+	 * Creates the request hedger for this method.
+	 * 
+	 * @param hedgeNode
+	 *            The hedge configuration.
+	 * @param xmi
+	 *            The namespace prefix mapping. The prefix ns must be mapped to
+	 *            the actual namespace.
+	 * 
+	 * @return The request hedger.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the configuration is invalid.
+	 */
+	private RequestHedger createRequestHedger(int hedgeNode,
+			XPathMetaInfo xmi) throws ConnectorException {
+		if (m_httpMethodType != EHttpMethod.GET) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.HEDGING_IS_ONLY_SUPPORTED_FOR_GET_METHODS);
+		}
+
+		int delayPercentile = XPathHelper.getIntegerValue(hedgeNode, "ns:"
+				+ TAG_DELAY_PERCENTILE, xmi, DEFAULT_HEDGE_DELAY_PERCENTILE);
+
+		if ((delayPercentile <= 0) || (delayPercentile >= 100)) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					delayPercentile, TAG_DELAY_PERCENTILE);
+		}
+
+		long minDelay = XPathHelper.getLongValue(hedgeNode, "ns:"
+				+ TAG_MIN_DELAY, xmi, DEFAULT_HEDGE_MIN_DELAY);
+
+		if (minDelay < 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					minDelay, TAG_MIN_DELAY);
+		}
+
+		int maxHedgeRate = XPathHelper.getIntegerValue(hedgeNode, "ns:"
+				+ TAG_MAX_HEDGE_RATE, xmi, DEFAULT_HEDGE_MAX_RATE);
+
+		if ((maxHedgeRate <= 0) || (maxHedgeRate > 100)) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					maxHedgeRate, TAG_MAX_HEDGE_RATE);
+		}
+
+		String alternateUrl = XPathHelper.getStringValue(hedgeNode, "ns:"
+				+ TAG_ALTERNATE_URL, xmi, "").trim();
+
+		if (alternateUrl.length() > 0) {
+			alternateUrl = getServerUrl(alternateUrl);
+		} else {
+			alternateUrl = null;
+		}
+
+		return new RequestHedger(delayPercentile, minDelay, maxHedgeRate,
+				alternateUrl);
+	}
+
+	/**
+	 * Returns the scheme, host and port of the given URL.
+	 * 
+	 * @param url
+	 *            The URL.
+	 * 
+	 * @return The URL without the path, like http://host:8080.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the URL is not a valid absolute HTTP URL.
+	 */
+	private static String getServerUrl(String url) throws ConnectorException {
+		try {
+			URL parsed = new URL(url);
+			String protocol = parsed.getProtocol();
+
+			if ((parsed.getHost().length() > 0)
+					&& ("http".equals(protocol) || "https".equals(protocol))) {
+				return protocol + "://" + parsed.getAuthority();
+			}
+		} catch (MalformedURLException ignored) {
+		}
+
+		throw new ConnectorException(
+				ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+				url, TAG_ALTERNATE_URL);
+	}
+
+	/**
+	 * Creates the response cache for this method.
+	 * 
+	 * @param cacheNode
+	 *            The response cache configuration.
+	 * @param xmi
+	 *            The namespace prefix mapping. The prefix ns must be mapped to
+	 *            the actual namespace.
+	 * 
+	 * @return The response cache.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the configuration is invalid.
+	 */
+	private ResponseCache createResponseCache(int cacheNode, XPathMetaInfo xmi)
+			throws ConnectorException {
+		if (m_httpMethodType != EHttpMethod.GET) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.RESPONSE_CACHE_IS_ONLY_SUPPORTED_FOR_GET_METHODS);
+		}
+
+		int maxEntries = XPathHelper.getIntegerValue(cacheNode, "ns:"
+				+ TAG_MAX_ENTRIES, xmi, DEFAULT_CACHE_MAX_ENTRIES);
+
+		if (maxEntries <= 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					maxEntries, TAG_MAX_ENTRIES);
+		}
+
+		long defaultTimeToLive = XPathHelper.getLongValue(cacheNode, "ns:"
+				+ TAG_DEFAULT_TTL, xmi, 0);
+
+		if (defaultTimeToLive < 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					defaultTimeToLive, TAG_DEFAULT_TTL);
+		}
+
+		return new ResponseCache(maxEntries, defaultTimeToLive);
+	}
+
+	/**
+	 * Creates the retry policy for this method.
+	 * 
+	 * @param retryNode
+	 *            The retry configuration.
+	 * @param xmi
+	 *            The namespace prefix mapping. The prefix ns must be mapped to
+	 *            the actual namespace.
+	 * 
+	 * @return The retry policy.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the configuration is invalid.
+	 */
+	private RetryPolicy createRetryPolicy(int retryNode, XPathMetaInfo xmi)
+			throws ConnectorException {
+		int maxAttempts = XPathHelper.getIntegerValue(retryNode, "ns:"
+				+ TAG_MAX_ATTEMPTS, xmi, DEFAULT_RETRY_MAX_ATTEMPTS);
+
+		if (maxAttempts <= 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					maxAttempts, TAG_MAX_ATTEMPTS);
+		}
+
+		long initialBackoff = XPathHelper.getLongValue(retryNode, "ns:"
+				+ TAG_INITIAL_BACKOFF, xmi, DEFAULT_RETRY_INITIAL_BACKOFF);
+
+		if (initialBackoff < 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					initialBackoff, TAG_INITIAL_BACKOFF);
+		}
+
+		long maxBackoff = XPathHelper.getLongValue(retryNode, "ns:"
+				+ TAG_MAX_BACKOFF, xmi,
+				Math.max(DEFAULT_RETRY_MAX_BACKOFF, initialBackoff));
+
+		if (maxBackoff < initialBackoff) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					maxBackoff, TAG_MAX_BACKOFF);
+		}
+
+		long maxRetryAfter = XPathHelper.getLongValue(retryNode, "ns:"
+				+ TAG_MAX_RETRY_AFTER, xmi, DEFAULT_RETRY_MAX_RETRY_AFTER);
+
+		if (maxRetryAfter < 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					maxRetryAfter, TAG_MAX_RETRY_AFTER);
+		}
+
+		String tmpStr = XPathHelper.getStringValue(retryNode, "ns:"
+				+ TAG_RETRY_STATUS_CODES, xmi, DEFAULT_RETRY_STATUS_CODES);
+		String[] codes = tmpStr.trim().split("[\\s,]+");
+		int[] statusCodes = new int[codes.length];
+
+		try {
+			for (int i = 0; i < codes.length; i++) {
+				statusCodes[i] = Integer.parseInt(codes[i]);
+			}
+		} catch (NumberFormatException e) {
+			throw new ConnectorException(e,
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_METHOD_SETTING_1,
+					tmpStr, TAG_RETRY_STATUS_CODES);
+		}
+
+		boolean retryNonIdempotent = XPathHelper.getBooleanValue(retryNode,
+				"ns:" + TAG_RETRY_NON_IDEMPOTENT, xmi, false);
+
+		return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff,
+				maxRetryAfter, statusCodes, retryNonIdempotent);
+	}
 }
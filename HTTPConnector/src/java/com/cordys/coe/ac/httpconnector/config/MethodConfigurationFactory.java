@@ -71,7 +71,7 @@ public class MethodConfigurationFactory {
 	public static IMethodConfiguration createMethodConfiguration(
 			IXSLTStore conn, BodyBlock req) throws ConnectorException,
 			HandlerException {
-		IMethodConfiguration returnValue = null;
+		MethodConfiguration returnValue = null;
 
 		MethodDefinition md = req.getMethodDefinition();
 
@@ -99,6 +99,8 @@ public class MethodConfigurationFactory {
 			returnValue = new MethodConfiguration(realImpl, conn, s_xmi);
 		}
 
+		returnValue.setMethodDn(md.getMethodDN().toString());
+
 		return returnValue;
 	}
 
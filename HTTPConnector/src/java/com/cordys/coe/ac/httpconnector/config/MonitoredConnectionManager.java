@@ -0,0 +1,284 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.config;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory;
+
+/**
+ * Connection pool which keeps statistics: how long threads wait for a
+ * connection, how many are waiting and how many network connections are
+ * opened and closed. The network connections are counted by the socket
+ * factory of the protocol returned by {@link #monitor(Protocol)}.
+ * 
+ * @author agent
+ */
+class MonitoredConnectionManager extends MultiThreadedHttpConnectionManager {
+	/**
+	 * Holds the number of threads which are getting a connection.
+	 */
+	private final AtomicInteger m_waitingThreads = new AtomicInteger();
+	/**
+	 * Holds the number of connections in use. The pool itself only counts all
+	 * its connections.
+	 */
+	private final AtomicInteger m_leased = new AtomicInteger();
+	/**
+	 * Holds the number of connections handed out.
+	 */
+	private final AtomicLong m_acquireCount = new AtomicLong();
+	/**
+	 * Holds the total time spent getting connections in nanoseconds.
+	 */
+	private final AtomicLong m_acquireNanos = new AtomicLong();
+	/**
+	 * Holds the longest time spent getting a connection in nanoseconds.
+	 */
+	private final AtomicLong m_maxAcquireNanos = new AtomicLong();
+	/**
+	 * Holds the number of opened sockets.
+	 */
+	private final AtomicLong m_socketsCreated = new AtomicLong();
+	/**
+	 * Holds the number of sockets which were found closed.
+	 */
+	private final AtomicLong m_socketsClosed = new AtomicLong();
+	/**
+	 * Holds the sockets which were open at the last check.
+	 */
+	private final Queue<Socket> m_openSockets = new ConcurrentLinkedQueue<Socket>();
+
+	/**
+	 * @see org.apache.commons.httpclient.MultiThreadedHttpConnectionManager#getConnectionWithTimeout(org.apache.commons.httpclient.HostConfiguration,
+	 *      long)
+	 */
+	@Override
+	public HttpConnection getConnectionWithTimeout(
+			HostConfiguration hostConfiguration, long timeout)
+			throws ConnectionPoolTimeoutException {
+		long start = System.nanoTime();
+
+		m_waitingThreads.incrementAndGet();
+
+		try {
+			HttpConnection connection = super.getConnectionWithTimeout(
+					hostConfiguration, timeout);
+			long nanos = System.nanoTime() - start;
+			long max;
+
+			m_leased.incrementAndGet();
+			m_acquireCount.incrementAndGet();
+			m_acquireNanos.addAndGet(nanos);
+
+			while ((max = m_maxAcquireNanos.get()) < nanos) {
+				if (m_maxAcquireNanos.compareAndSet(max, nanos)) {
+					break;
+				}
+			}
+
+			return connection;
+		} finally {
+			m_waitingThreads.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.MultiThreadedHttpConnectionManager#releaseConnection(org.apache.commons.httpclient.HttpConnection)
+	 */
+	@Override
+	public void releaseConnection(HttpConnection conn) {
+		super.releaseConnection(conn);
+		m_leased.decrementAndGet();
+	}
+
+	/**
+	 * Returns the number of connections which are in use.
+	 * 
+	 * @return The number of connections handed out and not yet released.
+	 */
+	int getLeasedConnections() {
+		return m_leased.get();
+	}
+
+	/**
+	 * Returns the current statistics of the pool.
+	 * 
+	 * @return The statistics.
+	 */
+	PoolStatistics getStatistics() {
+		// Closed sockets are only noticed here, which is good enough since
+		// the counts are only read here.
+		for (Iterator<Socket> it = m_openSockets.iterator(); it.hasNext();) {
+			if (it.next().isClosed()) {
+				it.remove();
+				m_socketsClosed.incrementAndGet();
+			}
+		}
+
+		int inPool = getConnectionsInPool();
+		int leased = Math.max(0, Math.min(m_leased.get(), inPool));
+
+		return new PoolStatistics(leased, inPool - leased,
+				m_waitingThreads.get(), m_acquireCount.get(),
+				m_acquireNanos.get(), m_maxAcquireNanos.get(),
+				m_socketsCreated.get(), m_socketsClosed.get());
+	}
+
+	/**
+	 * Returns a copy of the protocol whose socket factory counts the sockets
+	 * it creates.
+	 * 
+	 * @param protocol
+	 *            The protocol.
+	 * 
+	 * @return The monitored protocol.
+	 */
+	Protocol monitor(Protocol protocol) {
+		ProtocolSocketFactory factory = protocol.getSocketFactory();
+		ProtocolSocketFactory monitored;
+
+		if (factory instanceof SecureProtocolSocketFactory) {
+			monitored = new SecureSocketFactory(
+					(SecureProtocolSocketFactory) factory);
+		} else {
+			monitored = new SocketFactory(factory);
+		}
+
+		// The protocol is secure if the factory is a secure one.
+		return new Protocol(protocol.getScheme(), monitored,
+				protocol.getDefaultPort());
+	}
+
+	/**
+	 * Counts a newly opened socket.
+	 * 
+	 * @param socket
+	 *            The socket.
+	 * 
+	 * @return The socket.
+	 */
+	private Socket opened(Socket socket) {
+		m_socketsCreated.incrementAndGet();
+		m_openSockets.add(socket);
+
+		return socket;
+	}
+
+	/**
+	 * Socket factory which counts the sockets created by another factory.
+	 */
+	private class SocketFactory implements ProtocolSocketFactory {
+		/**
+		 * Holds the actual factory.
+		 */
+		private final ProtocolSocketFactory m_factory;
+
+		/**
+		 * Creates a new SocketFactory object.
+		 * 
+		 * @param factory
+		 *            The actual factory.
+		 */
+		SocketFactory(ProtocolSocketFactory factory) {
+			m_factory = factory;
+		}
+
+		/**
+		 * @see org.apache.commons.httpclient.protocol.ProtocolSocketFactory#createSocket(java.lang.String,
+		 *      int)
+		 */
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return opened(m_factory.createSocket(host, port));
+		}
+
+		/**
+		 * @see org.apache.commons.httpclient.protocol.ProtocolSocketFactory#createSocket(java.lang.String,
+		 *      int, java.net.InetAddress, int)
+		 */
+		@Override
+		public Socket createSocket(String host, int port,
+				InetAddress localAddress, int localPort) throws IOException {
+			return opened(m_factory.createSocket(host, port, localAddress,
+					localPort));
+		}
+
+		/**
+		 * @see org.apache.commons.httpclient.protocol.ProtocolSocketFactory#createSocket(java.lang.String,
+		 *      int, java.net.InetAddress, int,
+		 *      org.apache.commons.httpclient.params.HttpConnectionParams)
+		 */
+		@Override
+		public Socket createSocket(String host, int port,
+				InetAddress localAddress, int localPort,
+				HttpConnectionParams params) throws IOException {
+			return opened(m_factory.createSocket(host, port, localAddress,
+					localPort, params));
+		}
+	}
+
+	/**
+	 * Socket factory which counts the sockets created by a secure factory.
+	 * Sockets layered over a proxy tunnel are counted, the tunnel itself is
+	 * not created by this factory.
+	 */
+	private class SecureSocketFactory extends SocketFactory implements
+			SecureProtocolSocketFactory {
+		/**
+		 * Holds the actual factory.
+		 */
+		private final SecureProtocolSocketFactory m_secureFactory;
+
+		/**
+		 * Creates a new SecureSocketFactory object.
+		 * 
+		 * @param factory
+		 *            The actual factory.
+		 */
+		SecureSocketFactory(SecureProtocolSocketFactory factory) {
+			super(factory);
+			m_secureFactory = factory;
+		}
+
+		/**
+		 * @see org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory#createSocket(java.net.Socket,
+		 *      java.lang.String, int, boolean)
+		 */
+		@Override
+		public Socket createSocket(Socket socket, String host, int port,
+				boolean autoClose) throws IOException {
+			return opened(m_secureFactory.createSocket(socket, host, port,
+					autoClose));
+		}
+	}
+}
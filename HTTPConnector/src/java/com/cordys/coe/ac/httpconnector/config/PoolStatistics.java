@@ -0,0 +1,170 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.config;
+
+/**
+ * Snapshot of the state of the connection pool of a server connection.
+ * 
+ * @author agent
+ */
+public class PoolStatistics {
+	/**
+	 * Holds the number of connections in use by requests.
+	 */
+	private final int m_leased;
+	/**
+	 * Holds the number of pooled connections which are not in use.
+	 */
+	private final int m_idle;
+	/**
+	 * Holds the number of threads which are getting a connection.
+	 */
+	private final int m_waitingThreads;
+	/**
+	 * Holds the number of connections handed out by the pool.
+	 */
+	private final long m_acquireCount;
+	/**
+	 * Holds the total time spent getting connections in nanoseconds.
+	 */
+	private final long m_acquireNanos;
+	/**
+	 * Holds the longest time spent getting a connection in nanoseconds.
+	 */
+	private final long m_maxAcquireNanos;
+	/**
+	 * Holds the number of network connections which were opened.
+	 */
+	private final long m_connectionsCreated;
+	/**
+	 * Holds the number of network connections which were closed.
+	 */
+	private final long m_connectionsClosed;
+
+	/**
+	 * Creates a new PoolStatistics object.
+	 * 
+	 * @param leased
+	 *            The number of connections in use by requests.
+	 * @param idle
+	 *            The number of pooled connections which are not in use.
+	 * @param waitingThreads
+	 *            The number of threads which are getting a connection.
+	 * @param acquireCount
+	 *            The number of connections handed out by the pool.
+	 * @param acquireNanos
+	 *            The total time spent getting connections in nanoseconds.
+	 * @param maxAcquireNanos
+	 *            The longest time spent getting a connection in nanoseconds.
+	 * @param connectionsCreated
+	 *            The number of network connections which were opened.
+	 * @param connectionsClosed
+	 *            The number of network connections which were closed.
+	 */
+	public PoolStatistics(int leased, int idle, int waitingThreads,
+			long acquireCount, long acquireNanos, long maxAcquireNanos,
+			long connectionsCreated, long connectionsClosed) {
+		m_leased = leased;
+		m_idle = idle;
+		m_waitingThreads = waitingThreads;
+		m_acquireCount = acquireCount;
+		m_acquireNanos = acquireNanos;
+		m_maxAcquireNanos = maxAcquireNanos;
+		m_connectionsCreated = connectionsCreated;
+		m_connectionsClosed = connectionsClosed;
+	}
+
+	/**
+	 * Returns the number of connections handed out by the pool since it was
+	 * opened.
+	 * 
+	 * @return The number of connections handed out.
+	 */
+	public long getAcquireCount() {
+		return m_acquireCount;
+	}
+
+	/**
+	 * Returns the total time spent getting connections since the pool was
+	 * opened.
+	 * 
+	 * @return The time in nanoseconds.
+	 */
+	public long getAcquireNanos() {
+		return m_acquireNanos;
+	}
+
+	/**
+	 * Returns the number of network connections which were closed since the
+	 * pool was opened.
+	 * 
+	 * @return The number of closed connections.
+	 */
+	public long getConnectionsClosed() {
+		return m_connectionsClosed;
+	}
+
+	/**
+	 * Returns the number of network connections which were opened since the
+	 * pool was opened.
+	 * 
+	 * @return The number of opened connections.
+	 */
+	public long getConnectionsCreated() {
+		return m_connectionsCreated;
+	}
+
+	/**
+	 * Returns the number of pooled connections which are not in use.
+	 * 
+	 * @return The number of idle connections.
+	 */
+	public int getIdle() {
+		return m_idle;
+	}
+
+	/**
+	 * Returns the number of connections in use by requests.
+	 * 
+	 * @return The number of leased connections.
+	 */
+	public int getLeased() {
+		return m_leased;
+	}
+
+	/**
+	 * Returns the longest time spent getting a connection since the pool was
+	 * opened.
+	 * 
+	 * @return The time in nanoseconds.
+	 */
+	public long getMaxAcquireNanos() {
+		return m_maxAcquireNanos;
+	}
+
+	/**
+	 * Returns the number of threads which are getting a connection. Threads
+	 * which have to wait for a free connection are counted until they get one
+	 * or time out.
+	 * 
+	 * @return The number of waiting threads.
+	 */
+	public int getWaitingThreads() {
+		return m_waitingThreads;
+	}
+}
@@ -20,21 +20,35 @@ package com.cordys.coe.ac.httpconnector.config;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.protocol.Protocol;
 import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 
 import static com.cordys.coe.ac.httpconnector.HttpConnectorConstants.HTTPS_PROTOCOL_PREFIX;
 import com.cordys.coe.ac.httpconnector.Messages;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorExceptionMessages;
+import com.cordys.coe.ac.httpconnector.execution.Bulkhead;
+import com.cordys.coe.ac.httpconnector.execution.CircuitBreaker;
+import com.cordys.coe.ac.httpconnector.execution.ConcurrencyLimiter;
+import com.cordys.coe.ac.httpconnector.execution.CommonsHttpTransport;
+import com.cordys.coe.ac.httpconnector.execution.IHttpTransport;
+import com.cordys.coe.ac.httpconnector.execution.RetryBudget;
 import com.cordys.coe.ac.httpconnector.ssl.DummySSLSocketFactory;
 import com.cordys.coe.util.xml.nom.XPathHelper;
 import com.cordys.security.certificatemanager.CertificateManager;
@@ -56,32 +70,90 @@ class ServerConnection implements IServerConnection {
 	/**
 	 * Holds the parameters that are configured for this connection.
 	 */
-	Map<String, IParameter> m_parameters;
+	volatile Map<String, IParameter> m_parameters;
 	/**
 	 * If <code>true</code> authentication information is always sent before the
 	 * server asks for it.
 	 */
-	private boolean m_authenticateAlways;
+	private volatile boolean m_authenticateAlways;
 	/**
 	 * If <code>true</code> web server certificate is checked for validity.
 	 */
 	private boolean m_checkServerCertificate = true;
+	/**
+	 * Contains the bulkhead, or null if the requests are not limited.
+	 */
+	private volatile Bulkhead m_bulkhead;
+	/**
+	 * Contains the circuit breaker, or null if the connection has none.
+	 */
+	private volatile CircuitBreaker m_circuitBreaker;
 	/**
 	 * Contains the actual HTTP client.
 	 */
 	private HttpClient m_client;
+	/**
+	 * Contains the adaptive concurrency limiter, or null if the connection
+	 * has none.
+	 */
+	private volatile ConcurrencyLimiter m_concurrencyLimiter;
 	/**
 	 * Contains the HTTP connection manager.
 	 */
-	private MultiThreadedHttpConnectionManager m_connManager;
+	private MonitoredConnectionManager m_connManager;
+	/**
+	 * Time in milliseconds a request waits for a free pooled connection.
+	 */
+	private volatile long m_connectionAcquireTimeout;
+	/**
+	 * Contains the worker threads which execute the requests in asynchronous
+	 * execution mode.
+	 */
+	private ThreadPoolExecutor m_executor;
+	/**
+	 * Defines how the requests of this connection are executed.
+	 */
+	private EExecutionMode m_executionMode = EExecutionMode.SYNC;
+	/**
+	 * Holds the number of asynchronous requests which can wait for a worker.
+	 */
+	private int m_maxQueuedRequests = DEFAULT_MAX_QUEUED_REQUESTS;
 	/**
 	 * Connection ID.
 	 */
 	private String m_id;
+	/**
+	 * Idle time in milliseconds after which a pooled connection is closed.
+	 */
+	private volatile long m_idleConnectionTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
+	/**
+	 * Contains the thread which closes idle connections in the pool.
+	 */
+	private IdleConnectionTimeoutThread m_idleConnectionReaper;
+	/**
+	 * Interval in milliseconds at which idle connections are evicted.
+	 */
+	private volatile long m_idleEvictionInterval = DEFAULT_IDLE_EVICTION_INTERVAL;
+	/**
+	 * Maximum number of pooled connections per host.
+	 */
+	private volatile int m_maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+	/**
+	 * Maximum size in bytes of a response body. 0 means unlimited.
+	 */
+	private volatile int m_maxResponseSize = DEFAULT_MAX_RESPONSE_SIZE;
+	/**
+	 * Maximum number of pooled connections in total.
+	 */
+	private volatile int m_maxTotalConnections = DEFAULT_MAX_TOTAL_CONNECTIONS;
 	/**
 	 * Connection password.
 	 */
 	private String m_password;
+	/**
+	 * Contains the budget which limits the retries.
+	 */
+	private volatile RetryBudget m_retryBudget;
 	/**
 	 * Proxy server hostname.
 	 */
@@ -101,7 +173,11 @@ class ServerConnection implements IServerConnection {
 	/**
 	 * Timeout value for the HTTP request.
 	 */
-	private int m_timeout = DEFAULT_TIMEOUT;
+	private volatile int m_timeout = DEFAULT_TIMEOUT;
+	/**
+	 * Contains the transport which sends the requests.
+	 */
+	private IHttpTransport m_transport;
 	/**
 	 * Connection URL.
 	 */
@@ -111,6 +187,53 @@ class ServerConnection implements IServerConnection {
 	 */
 	private String m_username;
 
+	/**
+	 * Default percentage of failed requests at which the circuit opens.
+	 */
+	private static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+	/**
+	 * Default number of trial requests when the circuit is half open.
+	 */
+	private static final int DEFAULT_HALF_OPEN_CALLS = 5;
+	/**
+	 * Default number of asynchronous requests which can wait for a worker.
+	 */
+	private static final int DEFAULT_MAX_QUEUED_REQUESTS = 1000;
+	/**
+	 * Default number of requests before the circuit can open.
+	 */
+	private static final int DEFAULT_MINIMUM_CALLS = 20;
+	/**
+	 * Default number of retries per second which are always allowed.
+	 */
+	private static final int DEFAULT_MIN_RETRIES_PER_SECOND = 10;
+	/**
+	 * Default time in milliseconds the circuit stays open.
+	 */
+	private static final long DEFAULT_OPEN_DURATION = 30000;
+	/**
+	 * Default percentage of the requests which may be retried.
+	 */
+	private static final int DEFAULT_RETRY_RATIO = 10;
+	/**
+	 * Default percentage of slow requests at which the circuit opens.
+	 */
+	private static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 100;
+	/**
+	 * Default number of requests the circuit breaker rates are calculated
+	 * over.
+	 */
+	private static final int DEFAULT_WINDOW_SIZE = 100;
+	/**
+	 * Interval in milliseconds at which the pool is checked for requests in
+	 * progress while the connection is being closed.
+	 */
+	private static final long DRAIN_POLL_INTERVAL = 100;
+	/**
+	 * Time in milliseconds after which an idle asynchronous worker thread
+	 * stops.
+	 */
+	private static final long EXECUTOR_KEEP_ALIVE = 60000;
 	/**
 	 * Holds the logger to use.
 	 */
@@ -161,6 +284,105 @@ class ServerConnection implements IServerConnection {
 		m_timeout = XPathHelper.getIntegerValue(connection,
 				"ns:" + TAG_TIMEOUT, xmi, DEFAULT_TIMEOUT);
 
+		// Get the connection pool settings. By default a request waits for a
+		// pooled connection as long as it would wait for the response.
+		m_maxConnectionsPerHost = XPathHelper.getIntegerValue(connection, "ns:"
+				+ TAG_MAX_CONNECTIONS_PER_HOST, xmi,
+				DEFAULT_MAX_CONNECTIONS_PER_HOST);
+		m_maxTotalConnections = XPathHelper.getIntegerValue(connection, "ns:"
+				+ TAG_MAX_TOTAL_CONNECTIONS, xmi,
+				Math.max(DEFAULT_MAX_TOTAL_CONNECTIONS, m_maxConnectionsPerHost));
+
+		if (m_maxConnectionsPerHost <= 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_CONNECTION_SETTING_1,
+					m_maxConnectionsPerHost, TAG_MAX_CONNECTIONS_PER_HOST);
+		}
+
+		if (m_maxTotalConnections < m_maxConnectionsPerHost) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_CONNECTION_SETTING_1,
+					m_maxTotalConnections, TAG_MAX_TOTAL_CONNECTIONS);
+		}
+
+		m_connectionAcquireTimeout = XPathHelper.getLongValue(connection,
+				"ns:" + TAG_CONNECTION_ACQUIRE_TIMEOUT, xmi, m_timeout);
+		m_idleConnectionTimeout = XPathHelper.getLongValue(connection, "ns:"
+				+ TAG_IDLE_CONNECTION_TIMEOUT, xmi,
+				DEFAULT_IDLE_CONNECTION_TIMEOUT);
+		m_idleEvictionInterval = XPathHelper.getLongValue(connection, "ns:"
+				+ TAG_IDLE_EVICTION_INTERVAL, xmi,
+				DEFAULT_IDLE_EVICTION_INTERVAL);
+
+		m_transport = createTransport(connection, xmi);
+
+		int circuitBreakerNode = XPathHelper.selectSingleNode(connection,
+				"ns:" + TAG_CIRCUIT_BREAKER, xmi);
+
+		if (circuitBreakerNode != 0) {
+			m_circuitBreaker = createCircuitBreaker(circuitBreakerNode, xmi);
+		}
+
+		int bulkheadNode = XPathHelper.selectSingleNode(connection, "ns:"
+				+ TAG_BULKHEAD, xmi);
+
+		if (bulkheadNode != 0) {
+			m_bulkhead = createBulkhead(bulkheadNode, xmi);
+		}
+
+		int limiterNode = XPathHelper.selectSingleNode(connection, "ns:"
+				+ TAG_ADAPTIVE_CONCURRENCY, xmi);
+
+		if (limiterNode != 0) {
+			m_concurrencyLimiter = createConcurrencyLimiter(limiterNode, xmi);
+		}
+
+		// Retries are always limited, also when no budget is configured.
+		int retryBudgetNode = XPathHelper.selectSingleNode(connection, "ns:"
+				+ TAG_RETRY_BUDGET, xmi);
+		int retryRatio = DEFAULT_RETRY_RATIO;
+		int minRetriesPerSecond = DEFAULT_MIN_RETRIES_PER_SECOND;
+
+		if (retryBudgetNode != 0) {
+			retryRatio = XPathHelper.getIntegerValue(retryBudgetNode, "ns:"
+					+ TAG_RETRY_RATIO, xmi, DEFAULT_RETRY_RATIO);
+			minRetriesPerSecond = XPathHelper.getIntegerValue(
+					retryBudgetNode, "ns:" + TAG_MIN_RETRIES_PER_SECOND, xmi,
+					DEFAULT_MIN_RETRIES_PER_SECOND);
+
+			checkRange(retryRatio, 0, 100, TAG_RETRY_RATIO);
+			checkRange(minRetriesPerSecond, 0, Integer.MAX_VALUE,
+					TAG_MIN_RETRIES_PER_SECOND);
+		}
+
+		m_retryBudget = new RetryBudget(retryRatio, minRetriesPerSecond);
+
+		tmpStr = XPathHelper.getStringValue(connection, "ns:"
+				+ TAG_EXECUTION_MODE, xmi, EExecutionMode.SYNC.name());
+
+		try {
+			m_executionMode = EExecutionMode.valueOf(tmpStr.toUpperCase(
+					Locale.US).trim());
+		} catch (IllegalArgumentException e1) {
+			throw new ConnectorException(e1,
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_CONNECTION_SETTING_1,
+					tmpStr, TAG_EXECUTION_MODE);
+		}
+
+		m_maxQueuedRequests = XPathHelper.getIntegerValue(connection, "ns:"
+				+ TAG_MAX_QUEUED_REQUESTS, xmi, DEFAULT_MAX_QUEUED_REQUESTS);
+		checkRange(m_maxQueuedRequests, 1, Integer.MAX_VALUE,
+				TAG_MAX_QUEUED_REQUESTS);
+
+		m_maxResponseSize = XPathHelper.getIntegerValue(connection, "ns:"
+				+ TAG_MAX_RESPONSE_SIZE, xmi, DEFAULT_MAX_RESPONSE_SIZE);
+
+		if (m_maxResponseSize < 0) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_CONNECTION_SETTING_1,
+					m_maxResponseSize, TAG_MAX_RESPONSE_SIZE);
+		}
+
 		m_username = XPathHelper.getStringValue(connection, "ns:"
 				+ TAG_USERNAME, xmi, null);
 		m_password = XPathHelper.getStringValue(connection, "ns:"
@@ -213,6 +435,109 @@ class ServerConnection implements IServerConnection {
 		m_parameters = ParameterFactory.createParameters(connection, xmi);
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#close()
+	 */
+	@Override
+	public synchronized void close() {
+		MonitoredConnectionManager connManager = m_connManager;
+
+		if (connManager == null) {
+			return;
+		}
+
+		m_connManager = null;
+
+		stopIdleConnectionReaper();
+
+		// Let the requests in progress release their connections before the
+		// pool is shut down.
+		long deadline = System.currentTimeMillis() + m_timeout;
+
+		if (m_executor != null) {
+			m_executor.shutdown();
+
+			try {
+				m_executor.awaitTermination(m_timeout, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			m_executor = null;
+		}
+
+		while ((connManager.getLeasedConnections() > 0)
+				&& (System.currentTimeMillis() < deadline)) {
+			try {
+				Thread.sleep(DRAIN_POLL_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		int inUse = connManager.getLeasedConnections();
+
+		if (inUse > 0) {
+			LOG.warn(Messages.CONNECTION_CLOSED_WITH_REQUESTS_IN_PROGRESS, m_id,
+					inUse);
+		}
+
+		connManager.shutdown();
+
+		if (LOG.isInfoEnabled()) {
+			LOG.info(Messages.CONNECTION_CLOSED, m_id);
+		}
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getConnectionAcquireTimeout()
+	 */
+	@Override
+	public long getConnectionAcquireTimeout() {
+		return m_connectionAcquireTimeout;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getExecutionMode()
+	 */
+	@Override
+	public EExecutionMode getExecutionMode() {
+		return m_executionMode;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getBulkhead()
+	 */
+	@Override
+	public Bulkhead getBulkhead() {
+		return m_bulkhead;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getCircuitBreaker()
+	 */
+	@Override
+	public CircuitBreaker getCircuitBreaker() {
+		return m_circuitBreaker;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getConcurrencyLimiter()
+	 */
+	@Override
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return m_concurrencyLimiter;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getExecutor()
+	 */
+	@Override
+	public Executor getExecutor() {
+		return m_executor;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getHttpClient()
 	 */
@@ -229,6 +554,46 @@ class ServerConnection implements IServerConnection {
 		return m_id;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getIdleConnectionTimeout()
+	 */
+	@Override
+	public long getIdleConnectionTimeout() {
+		return m_idleConnectionTimeout;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getIdleEvictionInterval()
+	 */
+	@Override
+	public long getIdleEvictionInterval() {
+		return m_idleEvictionInterval;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getMaxConnectionsPerHost()
+	 */
+	@Override
+	public int getMaxConnectionsPerHost() {
+		return m_maxConnectionsPerHost;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getMaxResponseSize()
+	 */
+	@Override
+	public int getMaxResponseSize() {
+		return m_maxResponseSize;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getMaxTotalConnections()
+	 */
+	@Override
+	public int getMaxTotalConnections() {
+		return m_maxTotalConnections;
+	}
+
 	/**
 	 * This method gets the parameter with the given name. If the parameter is
 	 * not found null is returned.
@@ -263,6 +628,14 @@ class ServerConnection implements IServerConnection {
 		return m_password;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getRetryBudget()
+	 */
+	@Override
+	public RetryBudget getRetryBudget() {
+		return m_retryBudget;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getTimeout()
 	 */
@@ -271,6 +644,24 @@ class ServerConnection implements IServerConnection {
 		return m_timeout;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getPoolStatistics()
+	 */
+	@Override
+	public PoolStatistics getPoolStatistics() {
+		MonitoredConnectionManager connManager = m_connManager;
+
+		return (connManager != null) ? connManager.getStatistics() : null;
+	}
+
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getTransport()
+	 */
+	@Override
+	public IHttpTransport getTransport() {
+		return m_transport;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#getUrl()
 	 */
@@ -314,9 +705,23 @@ class ServerConnection implements IServerConnection {
 	 * @see com.cordys.coe.ac.httpconnector.config.IServerConnection#open()
 	 */
 	@Override
-	public void open() {
-		m_connManager = new MultiThreadedHttpConnectionManager();
+	public synchronized void open() {
+		m_connManager = new MonitoredConnectionManager();
+
+		HttpConnectionManagerParams poolParams = m_connManager.getParams();
+		poolParams.setDefaultMaxConnectionsPerHost(m_maxConnectionsPerHost);
+		poolParams.setMaxTotalConnections(m_maxTotalConnections);
+		poolParams.setStaleCheckingEnabled(true);
+
 		m_client = new HttpClient(m_connManager);
+		m_client.getParams().setConnectionManagerTimeout(
+				m_connectionAcquireTimeout);
+
+		startIdleConnectionReaper();
+
+		if (m_executionMode == EExecutionMode.ASYNC) {
+			startExecutor();
+		}
 
 		// Set the host information in the client.
 		HostConfiguration hostConfig = m_client.getHostConfiguration();
@@ -351,7 +756,7 @@ class ServerConnection implements IServerConnection {
 		} else {
 			protocol = Protocol.getProtocol(protoName);
 		}
-		hostConfig.setHost(hostName, port, protocol);
+		hostConfig.setHost(hostName, port, m_connManager.monitor(protocol));
 
 		if (m_proxyHost != null) {
 			hostConfig.setProxy(m_proxyHost, m_proxyPort);
@@ -380,6 +785,361 @@ class ServerConnection implements IServerConnection {
 		}
 	}
 
+	/**
+	 * Takes over the settings of the given connection that can be changed
+	 * without rebuilding the connection pool. The URL, credentials, proxy,
+	 * certificate, execution mode, request queue and transport settings are
+	 * bound to the pooled connections, so if any of them differ nothing is
+	 * changed and the connection has to be replaced.
+	 * 
+	 * @param reloaded
+	 *            The connection created from the reloaded configuration.
+	 * 
+	 * @return true if the settings were applied to this connection. False if
+	 *         this connection is not open or its transport settings differ.
+	 */
+	synchronized boolean reconfigure(ServerConnection reloaded) {
+		if ((m_connManager == null) || !hasSameTransport(reloaded)) {
+			return false;
+		}
+
+		m_parameters = reloaded.m_parameters;
+		m_timeout = reloaded.m_timeout;
+		m_authenticateAlways = reloaded.m_authenticateAlways;
+		m_connectionAcquireTimeout = reloaded.m_connectionAcquireTimeout;
+		m_maxConnectionsPerHost = reloaded.m_maxConnectionsPerHost;
+		m_maxTotalConnections = reloaded.m_maxTotalConnections;
+		m_maxResponseSize = reloaded.m_maxResponseSize;
+		m_idleConnectionTimeout = reloaded.m_idleConnectionTimeout;
+		m_idleEvictionInterval = reloaded.m_idleEvictionInterval;
+
+		// Keep the state of the circuit breaker unless its settings changed.
+		CircuitBreaker circuitBreaker = reloaded.m_circuitBreaker;
+
+		if ((m_circuitBreaker == null) || (circuitBreaker == null)
+				|| !m_circuitBreaker.hasSameSettings(circuitBreaker)) {
+			m_circuitBreaker = circuitBreaker;
+		}
+
+		// Requests in progress release their permit to the bulkhead they
+		// took it from, so a new bulkhead can simply replace the old one.
+		Bulkhead bulkhead = reloaded.m_bulkhead;
+
+		if ((m_bulkhead == null) || (bulkhead == null)
+				|| !m_bulkhead.hasSameSettings(bulkhead)) {
+			m_bulkhead = bulkhead;
+		}
+
+		// Keep the learned limit unless the settings changed.
+		ConcurrencyLimiter limiter = reloaded.m_concurrencyLimiter;
+
+		if ((m_concurrencyLimiter == null) || (limiter == null)
+				|| !m_concurrencyLimiter.hasSameSettings(limiter)) {
+			m_concurrencyLimiter = limiter;
+		}
+
+		if (!m_retryBudget.hasSameSettings(reloaded.m_retryBudget)) {
+			m_retryBudget = reloaded.m_retryBudget;
+		}
+
+		// The pool reads its limits on every checkout, so the new values apply
+		// to the next request.
+		HttpConnectionManagerParams poolParams = m_connManager.getParams();
+		poolParams.setDefaultMaxConnectionsPerHost(m_maxConnectionsPerHost);
+		poolParams.setMaxTotalConnections(m_maxTotalConnections);
+
+		if (m_executor != null) {
+			resizeExecutor();
+		}
+
+		m_client.getParams().setConnectionManagerTimeout(
+				m_connectionAcquireTimeout);
+
+		if (m_username != null) {
+			m_client.getParams().setAuthenticationPreemptive(
+					m_authenticateAlways);
+		}
+
+		stopIdleConnectionReaper();
+		startIdleConnectionReaper();
+
+		return true;
+	}
+
+	/**
+	 * Returns whether the given connection uses the same server, credentials,
+	 * proxy, certificate, execution mode, request queue and transport
+	 * settings as this connection.
+	 * 
+	 * @param other
+	 *            The connection to compare with.
+	 * 
+	 * @return true if the pooled connections of this connection can be used
+	 *         for the other connection.
+	 */
+	private boolean hasSameTransport(ServerConnection other) {
+		// URL.equals() resolves the host names, so compare the text instead.
+		return m_url.toExternalForm().equals(other.m_url.toExternalForm())
+				&& equal(m_username, other.m_username)
+				&& equal(m_password, other.m_password)
+				&& equal(m_proxyHost, other.m_proxyHost)
+				&& (m_proxyPort == other.m_proxyPort)
+				&& equal(m_proxyUsername, other.m_proxyUsername)
+				&& equal(m_proxyPassword, other.m_proxyPassword)
+				&& (m_checkServerCertificate == other.m_checkServerCertificate)
+				&& (m_executionMode == other.m_executionMode)
+				&& (m_maxQueuedRequests == other.m_maxQueuedRequests)
+				&& (m_transport.getClass() == other.m_transport.getClass());
+	}
+
+	/**
+	 * Creates the bulkhead configured for the connection. By default as many
+	 * requests run concurrently as there are pooled connections per host and
+	 * no requests wait.
+	 * 
+	 * @param bulkheadNode
+	 *            The bulkhead configuration.
+	 * @param xmi
+	 *            The XMI with prefix ns bound to the proper namespace.
+	 * 
+	 * @return The bulkhead.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the configuration is invalid.
+	 */
+	private Bulkhead createBulkhead(int bulkheadNode, XPathMetaInfo xmi)
+			throws ConnectorException {
+		int maxConcurrentCalls = XPathHelper.getIntegerValue(bulkheadNode,
+				"ns:" + TAG_MAX_CONCURRENT_CALLS, xmi, m_maxConnectionsPerHost);
+		int maxWaitingCalls = XPathHelper.getIntegerValue(bulkheadNode, "ns:"
+				+ TAG_MAX_WAITING_CALLS, xmi, 0);
+		long maxWaitTime = XPathHelper.getLongValue(bulkheadNode, "ns:"
+				+ TAG_MAX_WAIT_TIME, xmi, m_connectionAcquireTimeout);
+
+		checkRange(maxConcurrentCalls, 1, Integer.MAX_VALUE,
+				TAG_MAX_CONCURRENT_CALLS);
+		checkRange(maxWaitingCalls, 0, Integer.MAX_VALUE,
+				TAG_MAX_WAITING_CALLS);
+		checkRange(maxWaitTime, 0, Long.MAX_VALUE, TAG_MAX_WAIT_TIME);
+
+		return new Bulkhead(maxConcurrentCalls, maxWaitingCalls, maxWaitTime);
+	}
+
+	/**
+	 * Creates the adaptive concurrency limiter configured for the connection.
+	 * By default the limit moves between 1 and max-connections-per-host, since
+	 * more concurrent requests would only wait for a pooled connection.
+	 * 
+	 * @param limiterNode
+	 *            The limiter configuration.
+	 * @param xmi
+	 *            The XMI with prefix ns bound to the proper namespace.
+	 * 
+	 * @return The limiter.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the configuration is invalid.
+	 */
+	private ConcurrencyLimiter createConcurrencyLimiter(int limiterNode,
+			XPathMetaInfo xmi) throws ConnectorException {
+		int maxLimit = XPathHelper.getIntegerValue(limiterNode, "ns:"
+				+ TAG_MAX_LIMIT, xmi, m_maxConnectionsPerHost);
+		int minLimit = XPathHelper.getIntegerValue(limiterNode, "ns:"
+				+ TAG_MIN_LIMIT, xmi, 1);
+		int initialLimit = XPathHelper.getIntegerValue(limiterNode, "ns:"
+				+ TAG_INITIAL_LIMIT, xmi, maxLimit);
+
+		checkRange(maxLimit, 1, Integer.MAX_VALUE, TAG_MAX_LIMIT);
+		checkRange(minLimit, 1, maxLimit, TAG_MIN_LIMIT);
+		checkRange(initialLimit, minLimit, maxLimit, TAG_INITIAL_LIMIT);
+
+		return new ConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+	}
+
+	/**
+	 * Creates the circuit breaker configured for the connection.
+	 * 
+	 * @param circuitBreakerNode
+	 *            The circuit breaker configuration.
+	 * @param xmi
+	 *            The XMI with prefix ns bound to the proper namespace.
+	 * 
+	 * @return The circuit breaker.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the configuration is invalid.
+	 */
+	private CircuitBreaker createCircuitBreaker(int circuitBreakerNode,
+			XPathMetaInfo xmi) throws ConnectorException {
+		int failureRateThreshold = XPathHelper.getIntegerValue(
+				circuitBreakerNode, "ns:" + TAG_FAILURE_RATE_THRESHOLD, xmi,
+				DEFAULT_FAILURE_RATE_THRESHOLD);
+		int slowCallRateThreshold = XPathHelper.getIntegerValue(
+				circuitBreakerNode, "ns:" + TAG_SLOW_CALL_RATE_THRESHOLD, xmi,
+				DEFAULT_SLOW_CALL_RATE_THRESHOLD);
+		long slowCallDuration = XPathHelper.getLongValue(circuitBreakerNode,
+				"ns:" + TAG_SLOW_CALL_DURATION, xmi, m_timeout);
+		int windowSize = XPathHelper.getIntegerValue(circuitBreakerNode, "ns:"
+				+ TAG_WINDOW_SIZE, xmi, DEFAULT_WINDOW_SIZE);
+		int minimumCalls = XPathHelper.getIntegerValue(circuitBreakerNode,
+				"ns:" + TAG_MINIMUM_CALLS, xmi,
+				Math.min(DEFAULT_MINIMUM_CALLS, windowSize));
+		long openDuration = XPathHelper.getLongValue(circuitBreakerNode, "ns:"
+				+ TAG_OPEN_DURATION, xmi, DEFAULT_OPEN_DURATION);
+		int halfOpenCalls = XPathHelper.getIntegerValue(circuitBreakerNode,
+				"ns:" + TAG_HALF_OPEN_CALLS, xmi,
+				Math.min(DEFAULT_HALF_OPEN_CALLS, windowSize));
+
+		checkRange(failureRateThreshold, 1, 100, TAG_FAILURE_RATE_THRESHOLD);
+		checkRange(slowCallRateThreshold, 1, 100,
+				TAG_SLOW_CALL_RATE_THRESHOLD);
+		checkRange(slowCallDuration, 1, Long.MAX_VALUE, TAG_SLOW_CALL_DURATION);
+		checkRange(windowSize, 1, Integer.MAX_VALUE, TAG_WINDOW_SIZE);
+		checkRange(minimumCalls, 1, windowSize, TAG_MINIMUM_CALLS);
+		checkRange(openDuration, 0, Long.MAX_VALUE, TAG_OPEN_DURATION);
+		checkRange(halfOpenCalls, 1, windowSize, TAG_HALF_OPEN_CALLS);
+
+		return new CircuitBreaker(failureRateThreshold, slowCallRateThreshold,
+				slowCallDuration, windowSize, minimumCalls, openDuration,
+				halfOpenCalls);
+	}
+
+	/**
+	 * Checks whether a setting is within its range.
+	 * 
+	 * @param value
+	 *            The value of the setting.
+	 * @param min
+	 *            The lowest allowed value.
+	 * @param max
+	 *            The highest allowed value.
+	 * @param tag
+	 *            The name of the setting.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the value is out of range.
+	 */
+	private static void checkRange(long value, long min, long max, String tag)
+			throws ConnectorException {
+		if ((value < min) || (value > max)) {
+			throw new ConnectorException(
+					ConnectorExceptionMessages.INVALID_VALUE_0_FOR_CONNECTION_SETTING_1,
+					value, tag);
+		}
+	}
+
+	/**
+	 * Creates the transport configured for the connection. If no transport is
+	 * configured the commons-httpclient transport is used.
+	 * 
+	 * @param connection
+	 *            The connection XML.
+	 * @param xmi
+	 *            The XMI with prefix ns bound to the proper namespace.
+	 * 
+	 * @return The transport.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the transport class could not be loaded.
+	 */
+	private static IHttpTransport createTransport(int connection,
+			XPathMetaInfo xmi) throws ConnectorException {
+		int transportNode = XPathHelper.selectSingleNode(connection, "ns:"
+				+ TAG_TRANSPORT, xmi);
+		String className = null;
+
+		if (transportNode != 0) {
+			className = Node.getAttribute(transportNode, ATTRIBUTE_CLASS);
+		}
+
+		if ((className == null) || (className.length() == 0)) {
+			return new CommonsHttpTransport();
+		}
+
+		try {
+			Class<?> transportClass = Class.forName(className);
+
+			return (IHttpTransport) transportClass.newInstance();
+		} catch (Exception e) {
+			throw new ConnectorException(e,
+					ConnectorExceptionMessages.UNABLE_TO_LOAD_TRANSPORT_0,
+					className);
+		}
+	}
+
+	/**
+	 * Starts the worker threads for the asynchronous execution mode. There is
+	 * one worker per pooled connection, since more workers would only wait for
+	 * a free connection. Requests beyond that are queued without holding a
+	 * thread, up to the configured maximum. Further requests are rejected, so
+	 * callers notice an overloaded connection.
+	 */
+	private void startExecutor() {
+		ThreadFactory threadFactory = new ThreadFactory() {
+			private final AtomicInteger m_count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "HttpConnector async ["
+						+ m_id + "] " + m_count.incrementAndGet());
+
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		};
+
+		m_executor = new ThreadPoolExecutor(m_maxTotalConnections,
+				m_maxTotalConnections, EXECUTOR_KEEP_ALIVE,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+						m_maxQueuedRequests),
+				threadFactory);
+		m_executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Sets the number of worker threads to the current pool size.
+	 */
+	private void resizeExecutor() {
+		if (m_maxTotalConnections > m_executor.getMaximumPoolSize()) {
+			m_executor.setMaximumPoolSize(m_maxTotalConnections);
+			m_executor.setCorePoolSize(m_maxTotalConnections);
+		} else {
+			m_executor.setCorePoolSize(m_maxTotalConnections);
+			m_executor.setMaximumPoolSize(m_maxTotalConnections);
+		}
+	}
+
+	/**
+	 * Starts the thread which closes idle connections in the pool, if idle
+	 * eviction is enabled.
+	 */
+	private void startIdleConnectionReaper() {
+		if (m_idleEvictionInterval > 0) {
+			m_idleConnectionReaper = new IdleConnectionTimeoutThread();
+			m_idleConnectionReaper.setName("HttpConnector idle connections ["
+					+ m_id + "]");
+			m_idleConnectionReaper.setTimeoutInterval(m_idleEvictionInterval);
+			m_idleConnectionReaper.setConnectionTimeout(m_idleConnectionTimeout);
+			m_idleConnectionReaper.addConnectionManager(m_connManager);
+			m_idleConnectionReaper.start();
+		}
+	}
+
+	/**
+	 * Stops the thread which closes idle connections in the pool.
+	 */
+	private void stopIdleConnectionReaper() {
+		if (m_idleConnectionReaper != null) {
+			m_idleConnectionReaper.shutdown();
+			m_idleConnectionReaper = null;
+		}
+	}
+
+	private static boolean equal(Object first, Object second) {
+		return (first == null) ? (second == null) : first.equals(second);
+	}
+
 	private ProtocolSocketFactory createSocketFactory() {
 		ProtocolSocketFactory socketFactory = null;
 		try {
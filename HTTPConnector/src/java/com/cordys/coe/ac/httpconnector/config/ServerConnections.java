@@ -1,5 +1,7 @@
 package com.cordys.coe.ac.httpconnector.config;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -7,6 +9,15 @@ public class ServerConnections {
 
 	private Map<String, IServerConnection> connections = new HashMap<String, IServerConnection>();
 
+	private String organizationDN;
+
+	private String level;
+
+	public ServerConnections(String organizationDN, String level) {
+		this.organizationDN = organizationDN;
+		this.level = level;
+	}
+
 	public void add(String id, final IServerConnection connection) {
 		connections.put(id, connection);
 	}
@@ -20,4 +31,16 @@ public class ServerConnections {
 	public IServerConnection get(String id) {
 		return connections.get(id);
 	}
+
+	public Collection<IServerConnection> getAll() {
+		return new ArrayList<IServerConnection>(connections.values());
+	}
+
+	public String getOrganizationDN() {
+		return organizationDN;
+	}
+
+	public String getLevel() {
+		return level;
+	}
 }
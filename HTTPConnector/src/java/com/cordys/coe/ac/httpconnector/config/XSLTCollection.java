@@ -1,23 +1,54 @@
 package com.cordys.coe.ac.httpconnector.config;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.eibus.xml.xpath.XSLT;
 
+/**
+ * Holds the compiled XSLTs of one organization, keyed by XMLStore path. Reads
+ * do not lock, so a cached XSLT costs a single map lookup. Paths for which no
+ * XSLT was found are cached as well, so the XMLStore is not asked again.
+ */
 public class XSLTCollection {
 
-	private Map<String, XSLT> xsls = new HashMap<String, XSLT>();
+	/**
+	 * Holds the loaded entries per XMLStore path.
+	 */
+	private Map<String, Entry> xsls = new ConcurrentHashMap<String, Entry>();
 
-	public synchronized void add(String path, XSLT xslt) {
-		xsls.put(path, xslt);
+	public void add(String path, XSLT xslt) {
+		xsls.put(path, new Entry(xslt));
 	}
 
-	public synchronized XSLT get(String path) {
-		return xsls.get(path);
+	public XSLT get(String path) {
+		Entry entry = xsls.get(path);
+
+		return (entry == null) ? null : entry.xslt;
 	}
 
-	public synchronized boolean isLoaded(String path) {
+	public boolean isLoaded(String path) {
 		return xsls.containsKey(path);
 	}
+
+	/**
+	 * A compiled XSLT, or <code>null</code> if it was not found. The map can
+	 * not hold <code>null</code> values.
+	 */
+	private static class Entry {
+		/**
+		 * Holds the compiled XSLT.
+		 */
+		private final XSLT xslt;
+
+		/**
+		 * Creates a new Entry object.
+		 * 
+		 * @param xslt
+		 *            The compiled XSLT.
+		 */
+		Entry(XSLT xslt) {
+			this.xslt = xslt;
+		}
+	}
 }
@@ -171,4 +171,68 @@ public class ConnectorExceptionMessages {
 	public static final Message FAILED_TO_CREATE_CONNECTOR = MESSAGE_SET
 			.getMessage("FAILED_TO_CREATE_CONNECTOR");
 
+	/** Invalid value {0} for connection setting {1}. */
+	public static final Message INVALID_VALUE_0_FOR_CONNECTION_SETTING_1 = MESSAGE_SET
+			.getMessage("INVALID_VALUE_0_FOR_CONNECTION_SETTING_1");
+
+	/** Unable to load the HTTP transport {0}. */
+	public static final Message UNABLE_TO_LOAD_TRANSPORT_0 = MESSAGE_SET
+			.getMessage("UNABLE_TO_LOAD_TRANSPORT_0");
+
+	/** Invalid value {0} for method setting {1}. */
+	public static final Message INVALID_VALUE_0_FOR_METHOD_SETTING_1 = MESSAGE_SET
+			.getMessage("INVALID_VALUE_0_FOR_METHOD_SETTING_1");
+
+	/** The response cache is only supported for GET methods. */
+	public static final Message RESPONSE_CACHE_IS_ONLY_SUPPORTED_FOR_GET_METHODS = MESSAGE_SET
+			.getMessage("RESPONSE_CACHE_IS_ONLY_SUPPORTED_FOR_GET_METHODS");
+
+	/** Interrupted while waiting for an identical request which is in progress. */
+	public static final Message INTERRUPTED_WHILE_WAITING_FOR_AN_IDENTICAL_REQUEST = MESSAGE_SET
+			.getMessage("INTERRUPTED_WHILE_WAITING_FOR_AN_IDENTICAL_REQUEST");
+
+	/** A streaming XSLT must be read from a file or be inline. */
+	public static final Message STREAMING_XSLT_MUST_BE_READ_FROM_A_FILE_OR_BE_INLINE = MESSAGE_SET
+			.getMessage("STREAMING_XSLT_MUST_BE_READ_FROM_A_FILE_OR_BE_INLINE");
+
+	/** A streaming XSLT cannot be used together with a valid response XPath. */
+	public static final Message STREAMING_XSLT_CANNOT_BE_USED_WITH_A_VALID_RESPONSE_XPATH = MESSAGE_SET
+			.getMessage("STREAMING_XSLT_CANNOT_BE_USED_WITH_A_VALID_RESPONSE_XPATH");
+
+	/** Unable to compile the streaming XSLT: {0} */
+	public static final Message UNABLE_TO_COMPILE_THE_STREAMING_XSLT_0 = MESSAGE_SET
+			.getMessage("UNABLE_TO_COMPILE_THE_STREAMING_XSLT_0");
+
+	/** The streaming XSLT transformation failed: {0} */
+	public static final Message STREAMING_XSLT_TRANSFORMATION_FAILED_0 = MESSAGE_SET
+			.getMessage("STREAMING_XSLT_TRANSFORMATION_FAILED_0");
+
+	/** The circuit breaker of connection {0} is open, the request was not sent. */
+	public static final Message CIRCUIT_BREAKER_OF_CONNECTION_0_IS_OPEN = MESSAGE_SET
+			.getMessage("CIRCUIT_BREAKER_OF_CONNECTION_0_IS_OPEN");
+
+	/** Connection {0} has too many requests in progress, the request was not sent. */
+	public static final Message BULKHEAD_OF_CONNECTION_0_IS_FULL = MESSAGE_SET
+			.getMessage("BULKHEAD_OF_CONNECTION_0_IS_FULL");
+
+	/** Method {0} has too many requests in progress, the request was not sent. */
+	public static final Message BULKHEAD_OF_METHOD_0_IS_FULL = MESSAGE_SET
+			.getMessage("BULKHEAD_OF_METHOD_0_IS_FULL");
+
+	/** Connection {0} has reached its concurrency limit of {1} requests, the request was not sent. */
+	public static final Message CONCURRENCY_LIMIT_OF_CONNECTION_0_REACHED = MESSAGE_SET
+			.getMessage("CONCURRENCY_LIMIT_OF_CONNECTION_0_REACHED");
+
+	/** Hedging is only supported for GET methods */
+	public static final Message HEDGING_IS_ONLY_SUPPORTED_FOR_GET_METHODS = MESSAGE_SET
+			.getMessage("HEDGING_IS_ONLY_SUPPORTED_FOR_GET_METHODS");
+
+	/** The queue of asynchronous requests of connection {0} is full */
+	public static final Message ASYNC_QUEUE_OF_CONNECTION_0_IS_FULL = MESSAGE_SET
+			.getMessage("ASYNC_QUEUE_OF_CONNECTION_0_IS_FULL");
+
+	/** Request coalescing is only supported for GET methods */
+	public static final Message REQUEST_COALESCING_IS_ONLY_SUPPORTED_FOR_GET_METHODS = MESSAGE_SET
+			.getMessage("REQUEST_COALESCING_IS_ONLY_SUPPORTED_FOR_GET_METHODS");
+
 }
\ No newline at end of file
@@ -131,5 +131,18 @@ public class HandlerExceptionMessages {
 	 */
 	public static final Message THE_PARAMETER_0_HAS_NO_VALUE = MESSAGE_SET
 			.getMessage("THE_PARAMETER_0_HAS_NO_VALUE");
+	/**
+	 * Holds the definition of the message with ID
+	 * UNABLE_TO_CREATE_CUSTOM_PARAMETER_CLASS_0. Message text: Unable to create
+	 * the custom parameter class {0}
+	 */
+	public static final Message UNABLE_TO_CREATE_CUSTOM_PARAMETER_CLASS_0 = MESSAGE_SET
+			.getMessage("UNABLE_TO_CREATE_CUSTOM_PARAMETER_CLASS_0");
+	/**
+	 * Holds the definition of the message with ID INVALID_URI_TEMPLATE_0.
+	 * Message text: Invalid URI template: {0}
+	 */
+	public static final Message INVALID_URI_TEMPLATE_0 = MESSAGE_SET
+			.getMessage("INVALID_URI_TEMPLATE_0");
 
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent requests of a connection or method. When
+ * all permits are taken, a limited number of requests may wait for a free
+ * permit for a limited time. Other requests are rejected right away, so a
+ * slow web server cannot tie up all SOAP processor threads.
+ * 
+ * @author agent
+ */
+public class Bulkhead {
+	/**
+	 * Holds the maximum number of concurrent requests.
+	 */
+	private final int m_maxConcurrentCalls;
+	/**
+	 * Holds the maximum number of requests waiting for a permit.
+	 */
+	private final int m_maxWaitingCalls;
+	/**
+	 * Holds the time in milliseconds a request waits for a permit.
+	 */
+	private final long m_maxWaitTime;
+	/**
+	 * Holds the permits of the requests in progress.
+	 */
+	private final Semaphore m_permits;
+	/**
+	 * Holds the number of requests waiting for a permit.
+	 */
+	private final AtomicInteger m_waiting = new AtomicInteger();
+
+	/**
+	 * Creates a new Bulkhead object.
+	 * 
+	 * @param maxConcurrentCalls
+	 *            The maximum number of concurrent requests.
+	 * @param maxWaitingCalls
+	 *            The maximum number of requests waiting for a permit.
+	 * @param maxWaitTime
+	 *            The time in milliseconds a request waits for a permit.
+	 */
+	public Bulkhead(int maxConcurrentCalls, int maxWaitingCalls,
+			long maxWaitTime) {
+		m_maxConcurrentCalls = maxConcurrentCalls;
+		m_maxWaitingCalls = maxWaitingCalls;
+		m_maxWaitTime = maxWaitTime;
+		m_permits = new Semaphore(maxConcurrentCalls, true);
+	}
+
+	/**
+	 * Returns the number of requests in progress.
+	 * 
+	 * @return The number of requests in progress.
+	 */
+	public int getActiveCalls() {
+		return m_maxConcurrentCalls - m_permits.availablePermits();
+	}
+
+	/**
+	 * Returns the number of requests waiting for a permit.
+	 * 
+	 * @return The number of waiting requests.
+	 */
+	public int getWaitingCalls() {
+		return m_waiting.get();
+	}
+
+	/**
+	 * Returns whether the given bulkhead has the same settings as this one.
+	 * 
+	 * @param other
+	 *            The other bulkhead.
+	 * 
+	 * @return <code>true</code> if the settings are the same.
+	 */
+	public boolean hasSameSettings(Bulkhead other) {
+		return (m_maxConcurrentCalls == other.m_maxConcurrentCalls)
+				&& (m_maxWaitingCalls == other.m_maxWaitingCalls)
+				&& (m_maxWaitTime == other.m_maxWaitTime);
+	}
+
+	/**
+	 * Releases the permit taken by {@link #tryAcquire()}.
+	 */
+	public void release() {
+		m_permits.release();
+	}
+
+	/**
+	 * Takes a permit for a request. If no permit is free and the wait queue
+	 * is not full, the calling thread waits for at most the maximum wait
+	 * time.
+	 * 
+	 * @return <code>true</code> if a permit was taken, <code>false</code> if
+	 *         the request must be rejected.
+	 */
+	public boolean tryAcquire() {
+		if (m_permits.tryAcquire()) {
+			return true;
+		}
+
+		if ((m_maxWaitingCalls == 0) || (m_maxWaitTime == 0)) {
+			return false;
+		}
+
+		if (m_waiting.incrementAndGet() > m_maxWaitingCalls) {
+			m_waiting.decrementAndGet();
+
+			return false;
+		}
+
+		try {
+			return m_permits.tryAcquire(m_maxWaitTime, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			return false;
+		} finally {
+			m_waiting.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for the requests of a connection. The outcome of the last
+ * requests is kept in a sliding window. When the percentage of failed or slow
+ * requests in the window reaches its threshold, the circuit opens and
+ * requests are rejected right away instead of waiting for a web server that
+ * is down. After the open duration a number of trial requests is let
+ * through: if they do well the circuit closes again, otherwise it opens for
+ * another period.
+ * 
+ * @author agent
+ */
+public class CircuitBreaker {
+	/**
+	 * Holds the percentage of failed requests at which the circuit opens.
+	 */
+	private final int m_failureRateThreshold;
+	/**
+	 * Holds the percentage of slow requests at which the circuit opens.
+	 */
+	private final int m_slowCallRateThreshold;
+	/**
+	 * Holds the time in nanoseconds from which a request is slow.
+	 */
+	private final long m_slowCallNanos;
+	/**
+	 * Holds the number of requests needed before the rates are checked.
+	 */
+	private final int m_minimumCalls;
+	/**
+	 * Holds the time in nanoseconds the circuit stays open.
+	 */
+	private final long m_openNanos;
+	/**
+	 * Holds the number of trial requests in the half open state.
+	 */
+	private final int m_halfOpenCalls;
+	/**
+	 * Holds which requests in the window failed.
+	 */
+	private final boolean[] m_failed;
+	/**
+	 * Holds which requests in the window were slow.
+	 */
+	private final boolean[] m_slow;
+	/**
+	 * Holds the position in the window for the next request.
+	 */
+	private int m_next;
+	/**
+	 * Holds the number of requests in the window.
+	 */
+	private int m_calls;
+	/**
+	 * Holds the number of failed requests in the window.
+	 */
+	private int m_failures;
+	/**
+	 * Holds the number of slow requests in the window.
+	 */
+	private int m_slowCalls;
+	/**
+	 * Holds the number of trial requests let through in the half open state.
+	 */
+	private int m_trialsStarted;
+	/**
+	 * Holds the current state.
+	 */
+	private volatile ECircuitState m_state = ECircuitState.CLOSED;
+	/**
+	 * Holds the time the circuit was opened.
+	 */
+	private long m_openedAt;
+
+	/**
+	 * Creates a new CircuitBreaker object.
+	 * 
+	 * @param failureRateThreshold
+	 *            The percentage of failed requests at which the circuit opens.
+	 * @param slowCallRateThreshold
+	 *            The percentage of slow requests at which the circuit opens.
+	 * @param slowCallDuration
+	 *            The time in milliseconds from which a request is slow.
+	 * @param windowSize
+	 *            The number of requests the rates are calculated over.
+	 * @param minimumCalls
+	 *            The number of requests needed before the rates are checked.
+	 * @param openDuration
+	 *            The time in milliseconds the circuit stays open.
+	 * @param halfOpenCalls
+	 *            The number of trial requests in the half open state.
+	 */
+	public CircuitBreaker(int failureRateThreshold, int slowCallRateThreshold,
+			long slowCallDuration, int windowSize, int minimumCalls,
+			long openDuration, int halfOpenCalls) {
+		m_failureRateThreshold = failureRateThreshold;
+		m_slowCallRateThreshold = slowCallRateThreshold;
+		m_slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+		m_minimumCalls = Math.min(minimumCalls, windowSize);
+		m_openNanos = TimeUnit.MILLISECONDS.toNanos(openDuration);
+		m_halfOpenCalls = halfOpenCalls;
+		m_failed = new boolean[windowSize];
+		m_slow = new boolean[windowSize];
+	}
+
+	/**
+	 * Returns the current state.
+	 * 
+	 * @return The state.
+	 */
+	public ECircuitState getState() {
+		return m_state;
+	}
+
+	/**
+	 * Returns whether the given circuit breaker has the same settings.
+	 * 
+	 * @param other
+	 *            The other circuit breaker.
+	 * 
+	 * @return true if the settings are the same.
+	 */
+	public boolean hasSameSettings(CircuitBreaker other) {
+		return (m_failureRateThreshold == other.m_failureRateThreshold)
+				&& (m_slowCallRateThreshold == other.m_slowCallRateThreshold)
+				&& (m_slowCallNanos == other.m_slowCallNanos)
+				&& (m_failed.length == other.m_failed.length)
+				&& (m_minimumCalls == other.m_minimumCalls)
+				&& (m_openNanos == other.m_openNanos)
+				&& (m_halfOpenCalls == other.m_halfOpenCalls);
+	}
+
+	/**
+	 * Records the outcome of a request that was allowed by
+	 * {@link #tryAcquire()}.
+	 * 
+	 * @param nanos
+	 *            The time the request took in nanoseconds.
+	 * @param failed
+	 *            Whether the request failed.
+	 */
+	public synchronized void onResult(long nanos, boolean failed) {
+		boolean slow = nanos >= m_slowCallNanos;
+
+		if (m_state == ECircuitState.OPEN) {
+			// A request that was sent before the circuit opened.
+			return;
+		}
+
+		if (m_calls == m_failed.length) {
+			m_calls--;
+			m_failures -= m_failed[m_next] ? 1 : 0;
+			m_slowCalls -= m_slow[m_next] ? 1 : 0;
+		}
+
+		m_failed[m_next] = failed;
+		m_slow[m_next] = slow;
+		m_next = (m_next + 1) % m_failed.length;
+		m_calls++;
+		m_failures += failed ? 1 : 0;
+		m_slowCalls += slow ? 1 : 0;
+
+		if (m_state == ECircuitState.HALF_OPEN) {
+			// The window was cleared when the circuit became half open, so
+			// it holds the outcome of the trial requests.
+			if (m_calls >= m_halfOpenCalls) {
+				if (isThresholdReached()) {
+					open();
+				} else {
+					m_state = ECircuitState.CLOSED;
+				}
+			}
+		} else if ((m_calls >= m_minimumCalls) && isThresholdReached()) {
+			open();
+		}
+	}
+
+	/**
+	 * Returns whether a request may be sent. Every request that is allowed
+	 * must be reported to {@link #onResult(long, boolean)}, or to
+	 * {@link #release()} if it was not sent.
+	 * 
+	 * @return true if the request may be sent, false if the circuit is open.
+	 */
+	public synchronized boolean tryAcquire() {
+		switch (m_state) {
+		case CLOSED:
+			return true;
+
+		case OPEN:
+			if (System.nanoTime() - m_openedAt < m_openNanos) {
+				return false;
+			}
+
+			m_state = ECircuitState.HALF_OPEN;
+			m_trialsStarted = 0;
+			clearWindow();
+
+			return tryStartTrial();
+
+		default:
+			return tryStartTrial();
+		}
+	}
+
+	/**
+	 * Reports that a request which was allowed by {@link #tryAcquire()} was
+	 * not sent, for example because no connection was available. Its outcome
+	 * says nothing about the web server, so it is not counted. In the half
+	 * open state another trial request is let through instead.
+	 */
+	public synchronized void release() {
+		if ((m_state == ECircuitState.HALF_OPEN) && (m_trialsStarted > 0)) {
+			m_trialsStarted--;
+		}
+	}
+
+	/**
+	 * Lets a trial request through in the half open state, if not all trial
+	 * requests have been started yet.
+	 * 
+	 * @return true if the request may be sent.
+	 */
+	private boolean tryStartTrial() {
+		if (m_trialsStarted < m_halfOpenCalls) {
+			m_trialsStarted++;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Removes all requests from the window.
+	 */
+	private void clearWindow() {
+		m_next = 0;
+		m_calls = 0;
+		m_failures = 0;
+		m_slowCalls = 0;
+	}
+
+	/**
+	 * Returns whether the failure or slow request rate in the window reached
+	 * its threshold.
+	 * 
+	 * @return true if a threshold is reached.
+	 */
+	private boolean isThresholdReached() {
+		return ((m_failures * 100) >= (m_failureRateThreshold * m_calls))
+				|| ((m_slowCalls * 100) >= (m_slowCallRateThreshold * m_calls));
+	}
+
+	/**
+	 * Opens the circuit.
+	 */
+	private void open() {
+		m_state = ECircuitState.OPEN;
+		m_openedAt = System.nanoTime();
+		clearWindow();
+	}
+}
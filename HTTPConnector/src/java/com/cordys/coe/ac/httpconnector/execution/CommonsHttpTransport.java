@@ -0,0 +1,191 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+
+/**
+ * Transport which sends the requests with the pooled commons-httpclient
+ * client of the connection. This is the default transport. The methods
+ * created by the request handlers are executed as they are; the
+ * transport-neutral interface is implemented on top of that, so this class
+ * is also the adapter between the two.
+ * 
+ * @author agent
+ */
+public class CommonsHttpTransport implements IHttpTransport {
+	/**
+	 * Executes the method with the client of the connection. When this method
+	 * returns the response is available from the method.
+	 * 
+	 * @param httpMethod
+	 *            The HTTP method to execute.
+	 * @param serverConnection
+	 *            The connection to send the request to.
+	 * 
+	 * @return The HTTP status code of the response.
+	 * 
+	 * @throws IOException
+	 *             In case the request could not be sent or the response could
+	 *             not be read.
+	 */
+	public int execute(HttpMethod httpMethod,
+			IServerConnection serverConnection) throws IOException {
+		return serverConnection.getHttpClient().executeMethod(httpMethod);
+	}
+
+	/**
+	 * @see IHttpTransport#execute(HttpRequest, IServerConnection)
+	 */
+	@Override
+	public HttpResponse execute(HttpRequest request,
+			IServerConnection serverConnection) throws IOException {
+		final HttpMethodBase httpMethod = createMethod(request);
+
+		for (Map.Entry<String, List<String>> entry : request.getHeaders()
+				.entrySet()) {
+			for (String value : entry.getValue()) {
+				httpMethod.addRequestHeader(entry.getKey(), value);
+			}
+		}
+
+		httpMethod.getParams().setSoTimeout(request.getTimeout());
+
+		InputStream body = null;
+		boolean done = false;
+
+		try {
+			execute(httpMethod, serverConnection);
+
+			Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+
+			for (Header header : httpMethod.getResponseHeaders()) {
+				List<String> values = headers.get(header.getName());
+
+				if (values == null) {
+					values = new ArrayList<String>(1);
+					headers.put(header.getName(), values);
+				}
+
+				values.add(header.getValue());
+			}
+
+			body = httpMethod.getResponseBodyAsStream();
+
+			if (body != null) {
+				body = new FilterInputStream(body) {
+					@Override
+					public void close() throws IOException {
+						try {
+							super.close();
+						} finally {
+							httpMethod.releaseConnection();
+						}
+					}
+				};
+			}
+
+			done = true;
+
+			return new HttpResponse(httpMethod.getStatusCode(),
+					httpMethod.getStatusText(), headers, body);
+		} finally {
+			// The connection is released when the body is closed.
+			if (!done || (body == null)) {
+				httpMethod.releaseConnection();
+			}
+		}
+	}
+
+	/**
+	 * Creates the commons-httpclient method for the request.
+	 * 
+	 * @param request
+	 *            The request.
+	 * 
+	 * @return The method, without the request headers.
+	 * 
+	 * @throws IOException
+	 *             In case the URI of the request is invalid.
+	 */
+	private static HttpMethodBase createMethod(final HttpRequest request)
+			throws IOException {
+		HttpMethodBase httpMethod;
+		final HttpRequest.IBody body = request.getBody();
+
+		if (body == null) {
+			httpMethod = new HttpMethodBase(request.getUri()) {
+				@Override
+				public String getName() {
+					return request.getMethod();
+				}
+			};
+		} else {
+			EntityEnclosingMethod entityMethod = new EntityEnclosingMethod(
+					request.getUri()) {
+				@Override
+				public String getName() {
+					return request.getMethod();
+				}
+			};
+
+			entityMethod.setRequestEntity(new RequestEntity() {
+				@Override
+				public long getContentLength() {
+					return body.getContentLength();
+				}
+
+				@Override
+				public String getContentType() {
+					return body.getContentType();
+				}
+
+				@Override
+				public boolean isRepeatable() {
+					return body.isRepeatable();
+				}
+
+				@Override
+				public void writeRequest(OutputStream out) throws IOException {
+					body.writeTo(out);
+				}
+			});
+
+			httpMethod = entityMethod;
+		}
+
+		httpMethod.setFollowRedirects(false);
+
+		return httpMethod;
+	}
+}
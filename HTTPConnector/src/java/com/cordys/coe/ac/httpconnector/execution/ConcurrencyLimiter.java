@@ -0,0 +1,203 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+/**
+ * Limits the number of concurrent requests of a connection to a limit which
+ * follows the latency of the web server. The limiter keeps a short and a
+ * long term average of the response time. While the short term average stays
+ * near the long term one, the limit grows by about its square root per
+ * request; when requests slow down the limit shrinks with the ratio of the
+ * averages, and a failed request cuts it by a fixed factor. Requests above
+ * the limit are rejected right away instead of queuing at a web server that
+ * cannot keep up.
+ * 
+ * @author agent
+ */
+public class ConcurrencyLimiter {
+	/**
+	 * Holds the factor the limit is multiplied with after a failed request.
+	 */
+	private static final double BACKOFF_RATIO = 0.9;
+	/**
+	 * Holds the weight of a new sample in the long term response time.
+	 */
+	private static final double LONG_RTT_WEIGHT = 1.0 / 600;
+	/**
+	 * Holds the lowest allowed ratio of the response time averages.
+	 */
+	private static final double MIN_GRADIENT = 0.5;
+	/**
+	 * Holds the weight of a new sample in the short term response time.
+	 */
+	private static final double SHORT_RTT_WEIGHT = 1.0 / 10;
+	/**
+	 * Holds the weight of a newly calculated limit.
+	 */
+	private static final double SMOOTHING = 0.2;
+	/**
+	 * Holds the lowest limit.
+	 */
+	private final int m_minLimit;
+	/**
+	 * Holds the highest limit.
+	 */
+	private final int m_maxLimit;
+	/**
+	 * Holds the limit the limiter started with.
+	 */
+	private final int m_initialLimit;
+	/**
+	 * Holds the current limit.
+	 */
+	private double m_limit;
+	/**
+	 * Holds the number of requests in progress.
+	 */
+	private int m_inFlight;
+	/**
+	 * Holds the long term average response time in nanoseconds, or 0 before
+	 * the first request.
+	 */
+	private double m_longRtt;
+	/**
+	 * Holds the short term average response time in nanoseconds.
+	 */
+	private double m_shortRtt;
+
+	/**
+	 * Creates a new ConcurrencyLimiter object.
+	 * 
+	 * @param initialLimit
+	 *            The limit to start with.
+	 * @param minLimit
+	 *            The lowest limit.
+	 * @param maxLimit
+	 *            The highest limit.
+	 */
+	public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		m_initialLimit = initialLimit;
+		m_minLimit = minLimit;
+		m_maxLimit = maxLimit;
+		m_limit = initialLimit;
+	}
+
+	/**
+	 * Returns the number of requests in progress.
+	 * 
+	 * @return The number of requests in progress.
+	 */
+	public synchronized int getInFlight() {
+		return m_inFlight;
+	}
+
+	/**
+	 * Returns the current limit.
+	 * 
+	 * @return The current limit.
+	 */
+	public synchronized int getLimit() {
+		return (int) m_limit;
+	}
+
+	/**
+	 * Returns whether the given limiter has the same settings as this one.
+	 * 
+	 * @param other
+	 *            The other limiter.
+	 * 
+	 * @return <code>true</code> if the settings are the same.
+	 */
+	public boolean hasSameSettings(ConcurrencyLimiter other) {
+		return (m_initialLimit == other.m_initialLimit)
+				&& (m_minLimit == other.m_minLimit)
+				&& (m_maxLimit == other.m_maxLimit);
+	}
+
+	/**
+	 * Records the outcome of a request that was allowed by
+	 * {@link #tryAcquire()} and adjusts the limit.
+	 * 
+	 * @param nanos
+	 *            The time the request took in nanoseconds.
+	 * @param failed
+	 *            Whether the request failed.
+	 */
+	public synchronized void onResult(long nanos, boolean failed) {
+		int inFlight = m_inFlight--;
+
+		if (failed) {
+			m_limit = Math.max(m_minLimit, m_limit * BACKOFF_RATIO);
+
+			return;
+		}
+
+		if (m_longRtt == 0) {
+			m_longRtt = nanos;
+			m_shortRtt = nanos;
+		} else {
+			m_shortRtt += (nanos - m_shortRtt) * SHORT_RTT_WEIGHT;
+			m_longRtt += (nanos - m_longRtt) * LONG_RTT_WEIGHT;
+
+			// Let the long term average follow quickly when the web server
+			// has become much faster, or the limit would not grow for a long
+			// time.
+			if (m_longRtt > 2 * m_shortRtt) {
+				m_longRtt *= 0.95;
+			}
+		}
+
+		double gradient = Math.max(MIN_GRADIENT,
+				Math.min(1.0, m_longRtt / m_shortRtt));
+		double newLimit = m_limit * gradient + Math.sqrt(m_limit);
+
+		// Only grow when the limit is actually used, otherwise it would grow
+		// without bound while the load is low.
+		if ((newLimit > m_limit) && (inFlight < m_limit / 2)) {
+			return;
+		}
+
+		newLimit = m_limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+		m_limit = Math.max(m_minLimit, Math.min(m_maxLimit, newLimit));
+	}
+
+	/**
+	 * Releases a request allowed by {@link #tryAcquire()} which was not sent,
+	 * without adjusting the limit.
+	 */
+	public synchronized void release() {
+		m_inFlight--;
+	}
+
+	/**
+	 * Lets a request through if the number of requests in progress is below
+	 * the limit.
+	 * 
+	 * @return <code>true</code> if the request may be sent,
+	 *         <code>false</code> if it must be rejected.
+	 */
+	public synchronized boolean tryAcquire() {
+		if (m_inFlight >= (int) m_limit) {
+			return false;
+		}
+
+		m_inFlight++;
+
+		return true;
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+/**
+ * Contains the states of a circuit breaker.
+ * 
+ * @author agent
+ */
+public enum ECircuitState {
+	/**
+	 * Requests are sent and their outcome is recorded.
+	 */
+	CLOSED,
+	/**
+	 * Too many requests failed or were slow, so requests are rejected without
+	 * being sent.
+	 */
+	OPEN,
+	/**
+	 * A limited number of trial requests is sent to find out whether the web
+	 * server has recovered.
+	 */
+	HALF_OPEN;
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+
+/**
+ * HTTP request as it is passed to an {@link IHttpTransport}. It does not
+ * depend on an HTTP client library, so a transport can be built on any
+ * client.
+ * 
+ * @author agent
+ */
+public class HttpRequest {
+	/**
+	 * Holds the request body, or null if the request has no body.
+	 */
+	private final IBody m_body;
+	/**
+	 * Holds the request headers by name.
+	 */
+	private final Map<String, List<String>> m_headers;
+	/**
+	 * Holds the HTTP method name, like GET.
+	 */
+	private final String m_method;
+	/**
+	 * Holds the socket timeout in milliseconds.
+	 */
+	private final int m_timeout;
+	/**
+	 * Holds the absolute request URI.
+	 */
+	private final String m_uri;
+
+	/**
+	 * Creates a new HttpRequest object.
+	 * 
+	 * @param method
+	 *            The HTTP method name, like GET.
+	 * @param uri
+	 *            The absolute request URI.
+	 * @param headers
+	 *            The request headers by name.
+	 * @param body
+	 *            The request body, or null if the request has no body.
+	 * @param timeout
+	 *            The socket timeout in milliseconds, 0 for no timeout.
+	 */
+	public HttpRequest(String method, String uri,
+			Map<String, List<String>> headers, IBody body, int timeout) {
+		m_method = method;
+		m_uri = uri;
+		m_headers = Collections.unmodifiableMap(headers);
+		m_body = body;
+		m_timeout = timeout;
+	}
+
+	/**
+	 * Returns the request body.
+	 * 
+	 * @return The body, or null if the request has no body.
+	 */
+	public IBody getBody() {
+		return m_body;
+	}
+
+	/**
+	 * Returns the request headers.
+	 * 
+	 * @return The header values by header name, in the order they were set.
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return m_headers;
+	}
+
+	/**
+	 * Returns the HTTP method name.
+	 * 
+	 * @return The method name, like GET.
+	 */
+	public String getMethod() {
+		return m_method;
+	}
+
+	/**
+	 * Returns the socket timeout.
+	 * 
+	 * @return The timeout in milliseconds, 0 for no timeout.
+	 */
+	public int getTimeout() {
+		return m_timeout;
+	}
+
+	/**
+	 * Returns the request URI.
+	 * 
+	 * @return The absolute URI.
+	 */
+	public String getUri() {
+		return m_uri;
+	}
+
+	/**
+	 * Creates the request from a method created by a request handler.
+	 * 
+	 * @param httpMethod
+	 *            The method.
+	 * @param serverConnection
+	 *            The connection the request is sent to. Relative URIs are
+	 *            resolved against its URL.
+	 * 
+	 * @return The request.
+	 * 
+	 * @throws IOException
+	 *             In case the URI of the method is invalid.
+	 */
+	static HttpRequest fromMethod(HttpMethod httpMethod,
+			IServerConnection serverConnection) throws IOException {
+		URI uri = httpMethod.getURI();
+		String uriText;
+
+		if (uri.isAbsoluteURI()) {
+			uriText = uri.getEscapedURI();
+		} else {
+			URL url = serverConnection.getUrl();
+			StringBuilder buf = new StringBuilder(128);
+
+			buf.append(url.getProtocol()).append("://").append(url.getHost());
+
+			if (url.getPort() != -1) {
+				buf.append(':').append(url.getPort());
+			}
+
+			buf.append(uri.getEscapedURI());
+			uriText = buf.toString();
+		}
+
+		Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+
+		for (Header header : httpMethod.getRequestHeaders()) {
+			List<String> values = headers.get(header.getName());
+
+			if (values == null) {
+				values = new ArrayList<String>(1);
+				headers.put(header.getName(), values);
+			}
+
+			values.add(header.getValue());
+		}
+
+		IBody body = null;
+
+		if (httpMethod instanceof EntityEnclosingMethod) {
+			RequestEntity entity = ((EntityEnclosingMethod) httpMethod)
+					.getRequestEntity();
+
+			if (entity != null) {
+				body = new EntityBody(entity);
+			}
+		}
+
+		return new HttpRequest(httpMethod.getName(), uriText, headers, body,
+				httpMethod.getParams().getSoTimeout());
+	}
+
+	/**
+	 * Body of a request.
+	 */
+	public interface IBody {
+		/**
+		 * Returns the length of the body.
+		 * 
+		 * @return The length in bytes, or -1 if it is not known.
+		 */
+		long getContentLength();
+
+		/**
+		 * Returns the content type of the body.
+		 * 
+		 * @return The content type, or null if it is not known.
+		 */
+		String getContentType();
+
+		/**
+		 * Returns whether the body can be written more than once.
+		 * 
+		 * @return <code>true</code> if the body can be written again.
+		 */
+		boolean isRepeatable();
+
+		/**
+		 * Writes the body.
+		 * 
+		 * @param out
+		 *            The stream to write to. It is not closed.
+		 * 
+		 * @throws IOException
+		 *             In case the body could not be written.
+		 */
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * Body which writes a commons-httpclient request entity.
+	 */
+	private static class EntityBody implements IBody {
+		/**
+		 * Holds the request entity.
+		 */
+		private final RequestEntity m_entity;
+
+		/**
+		 * Creates a new EntityBody object.
+		 * 
+		 * @param entity
+		 *            The request entity.
+		 */
+		EntityBody(RequestEntity entity) {
+			m_entity = entity;
+		}
+
+		/**
+		 * @see IBody#getContentLength()
+		 */
+		@Override
+		public long getContentLength() {
+			return m_entity.getContentLength();
+		}
+
+		/**
+		 * @see IBody#getContentType()
+		 */
+		@Override
+		public String getContentType() {
+			return m_entity.getContentType();
+		}
+
+		/**
+		 * @see IBody#isRepeatable()
+		 */
+		@Override
+		public boolean isRepeatable() {
+			return m_entity.isRepeatable();
+		}
+
+		/**
+		 * @see IBody#writeTo(java.io.OutputStream)
+		 */
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			m_entity.writeRequest(out);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP response as it is returned by an {@link IHttpTransport}. It does not
+ * depend on an HTTP client library, so a transport can be built on any
+ * client. Closing the response closes the body, which lets the transport
+ * reuse or close its connection.
+ * 
+ * @author agent
+ */
+public class HttpResponse implements Closeable {
+	/**
+	 * Holds the response body, or null if the response has no body.
+	 */
+	private final InputStream m_body;
+	/**
+	 * Holds the response headers by name.
+	 */
+	private final Map<String, List<String>> m_headers;
+	/**
+	 * Holds the reason phrase of the status line.
+	 */
+	private final String m_reasonPhrase;
+	/**
+	 * Holds the status code.
+	 */
+	private final int m_statusCode;
+
+	/**
+	 * Creates a new HttpResponse object.
+	 * 
+	 * @param statusCode
+	 *            The status code.
+	 * @param reasonPhrase
+	 *            The reason phrase of the status line, may be null.
+	 * @param headers
+	 *            The response headers by name.
+	 * @param body
+	 *            The response body, or null if the response has no body.
+	 */
+	public HttpResponse(int statusCode, String reasonPhrase,
+			Map<String, List<String>> headers, InputStream body) {
+		m_statusCode = statusCode;
+		m_reasonPhrase = (reasonPhrase != null) ? reasonPhrase : "";
+		m_headers = Collections.unmodifiableMap(headers);
+		m_body = body;
+	}
+
+	/**
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (m_body != null) {
+			m_body.close();
+		}
+	}
+
+	/**
+	 * Returns the response body. It can be read once.
+	 * 
+	 * @return The body, or null if the response has no body.
+	 */
+	public InputStream getBody() {
+		return m_body;
+	}
+
+	/**
+	 * Returns the response headers.
+	 * 
+	 * @return The header values by header name.
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return m_headers;
+	}
+
+	/**
+	 * Returns the reason phrase of the status line.
+	 * 
+	 * @return The reason phrase, like OK.
+	 */
+	public String getReasonPhrase() {
+		return m_reasonPhrase;
+	}
+
+	/**
+	 * Returns the status code.
+	 * 
+	 * @return The status code, like 200.
+	 */
+	public int getStatusCode() {
+		return m_statusCode;
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.IOException;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+
+/**
+ * Sends HTTP requests to the web server. The transport is configured per
+ * connection with the class attribute of the transport element. Requests and
+ * responses are passed as {@link HttpRequest} and {@link HttpResponse}
+ * objects, which do not depend on an HTTP client library, so a transport can
+ * be built on any client. The request and response handlers keep working
+ * with commons-httpclient methods; the connector converts between the two.
+ * 
+ * <p>
+ * Implementations must have a public no-argument constructor and must be
+ * thread safe, since one instance is shared by all requests of a connection.
+ * </p>
+ * 
+ * @author agent
+ */
+public interface IHttpTransport {
+	/**
+	 * Sends the request and returns the response. When this method returns
+	 * the response status and headers are known and the response body can be
+	 * read. The connector closes the response when it is done with it.
+	 * 
+	 * @param request
+	 *            The request to send.
+	 * @param serverConnection
+	 *            The connection to send the request to.
+	 * 
+	 * @return The response.
+	 * 
+	 * @throws IOException
+	 *             In case the request could not be sent or the response could
+	 *             not be read.
+	 */
+	HttpResponse execute(HttpRequest request,
+			IServerConnection serverConnection) throws IOException;
+}
@@ -25,6 +25,8 @@ import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorExceptionMessages;
 import com.cordys.coe.ac.httpconnector.exception.HandlerException;
 import com.cordys.coe.ac.httpconnector.management.PerformanceCounters;
+import com.cordys.coe.ac.httpconnector.management.RequestCounters;
+import com.cordys.coe.ac.httpconnector.management.ResilienceCounters;
 
 import com.eibus.util.logger.CordysLogger;
 
@@ -32,11 +34,17 @@ import com.eibus.xml.nom.Node;
 import com.eibus.xml.nom.XMLException;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 
 /**
@@ -87,14 +95,14 @@ public class MethodExecutor {
 	 * @throws ConnectorException
 	 * @throws HandlerException
 	 */
-	public static int sendRequest(int reqNode,
-			IServerConnection serverConnection,
-			IMethodConfiguration methodInfo, PerformanceCounters counters)
-			throws ConnectorException, HandlerException {
+	public static int sendRequest(final int reqNode,
+			final IServerConnection serverConnection,
+			final IMethodConfiguration methodInfo,
+			final PerformanceCounters counters) throws ConnectorException,
+			HandlerException {
 		boolean setJMXInfo = counters == null ? false : true;
-		// Get request and response handlers for converting the data.
+		// Get the request handler for converting the data.
 		IRequestHandler requestHandler = methodInfo.getRequestHandler();
-		IResponseHandler responseHandler = methodInfo.getResponseHandler();
 
 		// Create the connection
 		HttpClient client = serverConnection.getHttpClient();
@@ -103,7 +111,7 @@ public class MethodExecutor {
 		client.getParams().setCredentialCharset("UTF-8");
 		client.getParams().setHttpElementCharset("UTF-8");
 
-		HttpMethod httpMethod;
+		final HttpMethod httpMethod;
 		int timeout = serverConnection.getTimeout();
 
 		// Convert the SOAP request XML into an HTTP request.
@@ -130,17 +138,189 @@ public class MethodExecutor {
 			if (timeout > 0) {
 				hmpMethodParams.setSoTimeout(timeout);
 			}
+
+			// The retry policy of the method replaces the retries of
+			// commons-httpclient.
+			if (methodInfo.getRetryPolicy() != null) {
+				hmpMethodParams.setParameter(HttpMethodParams.RETRY_HANDLER,
+						new DefaultHttpMethodRetryHandler(0, false));
+			}
 		}
 
+		RequestCoalescer coalescer = methodInfo.getRequestCoalescer();
+		String coalesceKey = null;
+
+		if (coalescer != null) {
+			coalesceKey = RequestCoalescer.getKey(serverConnection, httpMethod);
+		}
+
+		if (coalesceKey == null) {
+			return execute(reqNode, httpMethod, serverConnection, methodInfo,
+					counters);
+		}
+
+		// Identical requests which are already in progress share the response.
+		return coalescer.execute(coalesceKey, Node.getDocument(reqNode),
+				new RequestCoalescer.IExchange() {
+					@Override
+					public int execute() throws ConnectorException,
+							HandlerException {
+						return MethodExecutor.execute(reqNode, httpMethod,
+								serverConnection, methodInfo, counters);
+					}
+				});
+	}
+
+	/**
+	 * Sends the HTTP request to the web server and converts the response.
+	 * 
+	 * @param reqNode
+	 *            Request XML node.
+	 * @param httpMethod
+	 *            The HTTP method created by the request handler.
+	 * @param serverConnection
+	 *            Server connection information.
+	 * @param methodInfo
+	 *            Method information information.
+	 * @param counters
+	 *            JMX performance counters
+	 * @return Response XML node.
+	 * @throws ConnectorException
+	 * @throws HandlerException
+	 */
+	private static int execute(int reqNode, HttpMethod httpMethod,
+			IServerConnection serverConnection,
+			IMethodConfiguration methodInfo, PerformanceCounters counters)
+			throws ConnectorException, HandlerException {
+		boolean setJMXInfo = counters == null ? false : true;
+		IResponseHandler responseHandler = methodInfo.getResponseHandler();
+		long startTime = 0;
+		ResponseCache responseCache = methodInfo.getResponseCache();
+		RequestCounters connectionCounters = null;
+		RequestCounters methodCounters = null;
+		ResilienceCounters resilienceCounters = null;
+		Bulkhead connectionBulkhead = serverConnection.getBulkhead();
+		Bulkhead methodBulkhead = methodInfo.getBulkhead();
+		Bulkhead connectionPermit = null;
+		Bulkhead methodPermit = null;
+		boolean success = false;
+
+		if (setJMXInfo) {
+			connectionCounters = counters.getConnectionCounters(methodInfo
+					.getConnectionId());
+
+			if (methodInfo.getMethodDn() != null) {
+				methodCounters = counters.getMethodCounters(methodInfo
+						.getMethodDn());
+			}
+
+			if ((serverConnection.getCircuitBreaker() != null)
+					|| (serverConnection.getConcurrencyLimiter() != null)
+					|| (connectionBulkhead != null) || (methodBulkhead != null)
+					|| (methodInfo.getRetryPolicy() != null)
+					|| (methodInfo.getRequestHedger() != null)) {
+				resilienceCounters = counters
+						.getResilienceCounters(methodInfo.getConnectionId());
+			}
+		}
+
+		// With hedging the response is received by a copy of the method.
+		HttpMethod response = httpMethod;
+
 		// Send the request and handle the response.
 		try {
+			String cacheKey = null;
+			ResponseCache.Entry cached = null;
+
+			if (responseCache != null) {
+				cacheKey = ResponseCache.getKey(serverConnection, httpMethod);
+				cached = responseCache.get(cacheKey, httpMethod);
+
+				if (cached != null) {
+					if (cached.isFresh()) {
+						success = true;
+
+						return cached.load(Node.getDocument(reqNode));
+					}
+
+					cached.addConditionalHeaders(httpMethod);
+				}
+			}
+
+			// Take the bulkhead permits before asking the circuit breaker, so
+			// every request allowed by the breaker is also sent. The permits
+			// are kept while the request is retried.
+			if (methodBulkhead != null) {
+				if (!methodBulkhead.tryAcquire()) {
+					if (resilienceCounters != null) {
+						resilienceCounters.addBulkheadRejection();
+					}
+
+					throw new ConnectorException(
+							ConnectorExceptionMessages.BULKHEAD_OF_METHOD_0_IS_FULL,
+							methodInfo.getMethodDn());
+				}
+
+				methodPermit = methodBulkhead;
+			}
+
+			if (connectionBulkhead != null) {
+				if (!connectionBulkhead.tryAcquire()) {
+					if (resilienceCounters != null) {
+						resilienceCounters.addBulkheadRejection();
+					}
+
+					throw new ConnectorException(
+							ConnectorExceptionMessages.BULKHEAD_OF_CONNECTION_0_IS_FULL,
+							serverConnection.getId());
+				}
+
+				connectionPermit = connectionBulkhead;
+
+				if (resilienceCounters != null) {
+					resilienceCounters.setBulkheadActiveCalls(connectionPermit
+							.getActiveCalls());
+				}
+			}
+
+			// Every request adds to the retry budget, so the budget follows
+			// the load of the connection.
+			serverConnection.getRetryBudget().onRequest();
+
+			long sendTime = System.nanoTime();
+
 			if (setJMXInfo) {
 				startTime = counters.getStartTime();
 			}
-			int statusCode = client.executeMethod(httpMethod);
+
+			response = sendWithRetries(httpMethod, serverConnection,
+					methodInfo, resilienceCounters);
+
+			int statusCode = response.getStatusCode();
+
 			if (setJMXInfo) {
 				counters.finishHTTP(startTime);
+
+				long nanos = System.nanoTime() - sendTime;
+				long bytesSent = getRequestContentLength(httpMethod);
+				long bytesReceived = getResponseContentLength(response);
+
+				connectionCounters.addRequest(nanos, statusCode, bytesSent,
+						bytesReceived);
+
+				if (methodCounters != null) {
+					methodCounters.addRequest(nanos, statusCode, bytesSent,
+							bytesReceived);
+				}
+			}
+
+			if ((cached != null) && (statusCode == HttpStatus.SC_NOT_MODIFIED)) {
+				cached = responseCache.revalidated(cached, response);
+				success = true;
+
+				return cached.load(Node.getDocument(reqNode));
 			}
+
 			int validStatusCode = methodInfo.getValidResponseCode();
 
 			if (statusCode != HttpStatus.SC_OK) {
@@ -153,7 +333,7 @@ public class MethodExecutor {
 				startTime = counters.getStartTime();
 			}
 			// Convert the response into XML.
-			int responseNode = responseHandler.convertResponseToXml(httpMethod,
+			int responseNode = responseHandler.convertResponseToXml(response,
 					serverConnection, Node.getDocument(reqNode));
 			if (setJMXInfo) {
 				counters.finishResponseTransformation(startTime);
@@ -169,6 +349,13 @@ public class MethodExecutor {
 						statusCode, validStatusCode);
 			}
 
+			if ((responseCache != null) && (responseNode != 0)
+					&& (statusCode == HttpStatus.SC_OK)) {
+				responseCache.put(cacheKey, response, responseNode);
+			}
+
+			success = true;
+
 			return responseNode;
 		} catch (ConnectorException e) {
 			throw e;
@@ -184,8 +371,314 @@ public class MethodExecutor {
 			throw new ConnectorException((Throwable) e,
 					ConnectorExceptionMessages.INVALID_RESPONSE_XML_RECEIVED);
 		} finally {
+			if (methodPermit != null) {
+				methodPermit.release();
+			}
+
+			if (connectionPermit != null) {
+				connectionPermit.release();
+
+				if (resilienceCounters != null) {
+					resilienceCounters.setBulkheadActiveCalls(connectionPermit
+							.getActiveCalls());
+				}
+			}
+
+			if (!success && (connectionCounters != null)) {
+				connectionCounters.addError();
+
+				if (methodCounters != null) {
+					methodCounters.addError();
+				}
+			}
+
+			if (setJMXInfo) {
+				// Also when the request failed, because it may have timed out
+				// waiting for a pooled connection.
+				counters.getPoolCounters(methodInfo.getConnectionId()).update(
+						serverConnection);
+			}
+
 			// Release the connection.
+			if (response != httpMethod) {
+				response.releaseConnection();
+			}
+
 			httpMethod.releaseConnection();
 		}
 	}
+
+	/**
+	 * Returns the size of the request body.
+	 * 
+	 * @param httpMethod
+	 *            The HTTP method.
+	 * 
+	 * @return The size in bytes, or -1 if it is not known.
+	 */
+	private static long getRequestContentLength(HttpMethod httpMethod) {
+		if (httpMethod instanceof EntityEnclosingMethod) {
+			RequestEntity entity = ((EntityEnclosingMethod) httpMethod)
+					.getRequestEntity();
+
+			return (entity != null) ? entity.getContentLength() : 0;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns the size of the response body from the Content-Length header.
+	 * 
+	 * @param httpMethod
+	 *            The executed HTTP method.
+	 * 
+	 * @return The size in bytes, or -1 if it is not known.
+	 */
+	private static long getResponseContentLength(HttpMethod httpMethod) {
+		Header header = httpMethod.getResponseHeader("Content-Length");
+
+		if (header != null) {
+			try {
+				return Long.parseLong(header.getValue().trim());
+			} catch (NumberFormatException ignored) {
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns whether the request can be sent again.
+	 * 
+	 * @param httpMethod
+	 *            The HTTP method.
+	 * 
+	 * @return <code>true</code> if the request body can be written twice.
+	 */
+	private static boolean isRepeatable(HttpMethod httpMethod) {
+		if (httpMethod instanceof EntityEnclosingMethod) {
+			RequestEntity entity = ((EntityEnclosingMethod) httpMethod)
+					.getRequestEntity();
+
+			return (entity == null) || entity.isRepeatable();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Sends the request once, if the concurrency limiter and the circuit
+	 * breaker of the connection allow it, and reports the outcome to them.
+	 * 
+	 * @param httpMethod
+	 *            The HTTP method to send.
+	 * @param serverConnection
+	 *            Server connection information.
+	 * @param hedger
+	 *            The request hedger of the method, or null.
+	 * @param resilienceCounters
+	 *            The resilience counters of the connection, or null.
+	 * 
+	 * @return The method which received the response. This is a copy of the
+	 *         given method when the request was hedged.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the request was rejected.
+	 * @throws IOException
+	 *             In case the request failed.
+	 */
+	private static HttpMethod send(HttpMethod httpMethod,
+			IServerConnection serverConnection, RequestHedger hedger,
+			ResilienceCounters resilienceCounters) throws ConnectorException,
+			IOException {
+		ConcurrencyLimiter limiter = serverConnection.getConcurrencyLimiter();
+		CircuitBreaker breaker = serverConnection.getCircuitBreaker();
+
+		if (limiter != null) {
+			if (!limiter.tryAcquire()) {
+				if (resilienceCounters != null) {
+					resilienceCounters.addConcurrencyLimitRejection();
+				}
+
+				throw new ConnectorException(
+						ConnectorExceptionMessages.CONCURRENCY_LIMIT_OF_CONNECTION_0_REACHED,
+						serverConnection.getId(), limiter.getLimit());
+			}
+		}
+
+		if ((breaker != null) && !breaker.tryAcquire()) {
+			if (limiter != null) {
+				limiter.release();
+			}
+
+			if (resilienceCounters != null) {
+				resilienceCounters.addCircuitRejection();
+				resilienceCounters.setCircuitState(breaker.getState()
+						.ordinal());
+			}
+
+			throw new ConnectorException(
+					ConnectorExceptionMessages.CIRCUIT_BREAKER_OF_CONNECTION_0_IS_OPEN,
+					serverConnection.getId());
+		}
+
+		long sendTime = System.nanoTime();
+		HttpMethod response = httpMethod;
+		int statusCode = 0;
+		boolean sent = true;
+
+		try {
+			if (hedger != null) {
+				response = hedger.execute(httpMethod, serverConnection,
+						resilienceCounters);
+				statusCode = response.getStatusCode();
+			} else {
+				response = TransportMethod.execute(httpMethod,
+						serverConnection);
+				statusCode = response.getStatusCode();
+			}
+		} catch (ConnectionPoolTimeoutException e) {
+			// No connection was free, so the request never reached the web
+			// server and says nothing about its health.
+			sent = false;
+			throw e;
+		} finally {
+			long nanos = System.nanoTime() - sendTime;
+			// Connection failures and server errors count as failed calls,
+			// other status codes are answers of a healthy server.
+			boolean failed = (statusCode == 0)
+					|| (statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR);
+
+			if (breaker != null) {
+				if (sent) {
+					breaker.onResult(nanos, failed);
+				} else {
+					breaker.release();
+				}
+
+				if (resilienceCounters != null) {
+					resilienceCounters.setCircuitState(breaker.getState()
+							.ordinal());
+				}
+			}
+
+			if (limiter != null) {
+				if (sent) {
+					limiter.onResult(nanos, failed);
+				} else {
+					limiter.release();
+				}
+
+				if (resilienceCounters != null) {
+					resilienceCounters.setConcurrencyLimit(limiter.getLimit());
+				}
+			}
+		}
+
+		return response;
+	}
+
+	/**
+	 * Sends the request and sends it again as allowed by the retry policy of
+	 * the method and the retry budget of the connection. A request is retried
+	 * when the connection failed or the response has a retryable status code.
+	 * 
+	 * @param httpMethod
+	 *            The HTTP method to send.
+	 * @param serverConnection
+	 *            Server connection information.
+	 * @param methodInfo
+	 *            Method information information.
+	 * @param resilienceCounters
+	 *            The resilience counters of the connection, or null.
+	 * 
+	 * @return The method which received the response of the last attempt.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the request was rejected.
+	 * @throws IOException
+	 *             In case the last attempt failed.
+	 */
+	private static HttpMethod sendWithRetries(HttpMethod httpMethod,
+			IServerConnection serverConnection,
+			IMethodConfiguration methodInfo,
+			ResilienceCounters resilienceCounters) throws ConnectorException,
+			IOException {
+		RetryPolicy retryPolicy = methodInfo.getRetryPolicy();
+
+		if ((retryPolicy != null)
+				&& (!retryPolicy.isRetryable(methodInfo.getHttpMethodType())
+						|| !isRepeatable(httpMethod))) {
+			retryPolicy = null;
+		}
+
+		for (int attempt = 1;; attempt++) {
+			HttpMethod response = httpMethod;
+			int statusCode = 0;
+			IOException failure = null;
+
+			try {
+				response = send(httpMethod, serverConnection,
+						methodInfo.getRequestHedger(), resilienceCounters);
+				statusCode = response.getStatusCode();
+			} catch (IOException e) {
+				failure = e;
+			}
+
+			long delay = -1;
+
+			if ((retryPolicy != null)
+					&& (attempt < retryPolicy.getMaxAttempts())) {
+				if (failure != null) {
+					delay = retryPolicy.getBackoff(attempt);
+				} else if (retryPolicy.isRetryableStatus(statusCode)) {
+					delay = retryPolicy.getRetryDelay(attempt, response);
+				}
+			}
+
+			if ((delay >= 0) && !serverConnection.getRetryBudget().tryRetry()) {
+				if (resilienceCounters != null) {
+					resilienceCounters.addRetryBudgetExhausted();
+				}
+
+				delay = -1;
+			}
+
+			if (delay < 0) {
+				if (failure != null) {
+					throw failure;
+				}
+
+				return response;
+			}
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Retrying request in " + delay + " ms after "
+						+ ((failure != null) ? failure.toString()
+								: ("HTTP status " + statusCode)));
+			}
+
+			if (resilienceCounters != null) {
+				resilienceCounters.addRetry();
+			}
+
+			response.releaseConnection();
+
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				// The response has already been released, so it cannot be
+				// returned.
+				if (failure != null) {
+					throw failure;
+				}
+
+				throw new InterruptedIOException(
+						"Interrupted while waiting to retry the request");
+			}
+		}
+	}
 }
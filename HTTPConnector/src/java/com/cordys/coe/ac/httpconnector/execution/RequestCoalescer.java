@@ -0,0 +1,352 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
+import com.cordys.coe.ac.httpconnector.exception.ConnectorExceptionMessages;
+import com.cordys.coe.ac.httpconnector.exception.HandlerException;
+import com.eibus.xml.nom.Document;
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.nom.XMLException;
+
+/**
+ * Lets identical requests of a method which are executed at the same time
+ * share one HTTP exchange. The first request is sent to the web server and
+ * the others wait for it, after which each of them gets its own copy of the
+ * converted response. The response is only serialized for copying when
+ * other requests wait for it. Requests are identical if they go to the same
+ * connection with the same HTTP method, URI, request headers and body. The
+ * headers carry the credentials and cookies of the request, so a response is
+ * never shared between requests of different users.
+ * 
+ * <p>
+ * This is only supported for GET methods, which do not change anything on
+ * the web server.
+ * </p>
+ * 
+ * @author agent
+ */
+public class RequestCoalescer {
+	/**
+	 * Holds the requests which are in progress.
+	 */
+	private final ConcurrentMap<String, Call> m_calls = new ConcurrentHashMap<String, Call>();
+
+	/**
+	 * Returns the key which identifies identical requests.
+	 * 
+	 * @param serverConnection
+	 *            The connection the request is sent to.
+	 * @param httpMethod
+	 *            The request.
+	 * 
+	 * @return The key or null if the request body can not be read more than
+	 *         once, in which case the request can not be shared.
+	 */
+	public static String getKey(IServerConnection serverConnection,
+			HttpMethod httpMethod) {
+		StringBuilder key = new StringBuilder(128);
+
+		try {
+			key.append(serverConnection.getId()).append(' ');
+			key.append(serverConnection.getUrl()).append(' ');
+			key.append(httpMethod.getName()).append(' ');
+			key.append(httpMethod.getURI());
+
+			for (Header header : httpMethod.getRequestHeaders()) {
+				key.append('\n').append(header.getName().toLowerCase())
+						.append(": ").append(header.getValue());
+			}
+
+			if (httpMethod instanceof EntityEnclosingMethod) {
+				RequestEntity entity = ((EntityEnclosingMethod) httpMethod)
+						.getRequestEntity();
+
+				if (entity != null) {
+					if (!entity.isRepeatable()) {
+						return null;
+					}
+
+					key.append(' ').append(getDigest(entity));
+				}
+			}
+		} catch (IOException e) {
+			return null;
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * Executes the exchange, unless an identical request is already in
+	 * progress. In that case this method waits for it and returns a copy of
+	 * its response.
+	 * 
+	 * @param key
+	 *            The request key.
+	 * @param doc
+	 *            The document in which the response copy is created.
+	 * @param exchange
+	 *            The exchange which sends the request.
+	 * 
+	 * @return The response XML.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the request failed.
+	 * @throws HandlerException
+	 *             In case the request or response could not be converted.
+	 */
+	public int execute(String key, Document doc, IExchange exchange)
+			throws ConnectorException, HandlerException {
+		Call call = new Call();
+		Call inProgress;
+
+		while ((inProgress = m_calls.putIfAbsent(key, call)) != null) {
+			if (inProgress.join()) {
+				return inProgress.getResponse(doc);
+			}
+
+			// The request has just finished without copying its response.
+			m_calls.remove(key, inProgress);
+		}
+
+		try {
+			int responseNode = exchange.execute();
+
+			call.complete(responseNode);
+
+			return responseNode;
+		} catch (ConnectorException e) {
+			call.fail(e);
+			throw e;
+		} catch (HandlerException e) {
+			call.fail(e);
+			throw e;
+		} catch (RuntimeException e) {
+			call.fail(e);
+			throw e;
+		} catch (Error e) {
+			call.fail(e);
+			throw e;
+		} finally {
+			m_calls.remove(key, call);
+		}
+	}
+
+	/**
+	 * Returns a digest of the request body.
+	 * 
+	 * @param entity
+	 *            The request body.
+	 * 
+	 * @return The digest as a hexadecimal string.
+	 * 
+	 * @throws IOException
+	 *             In case the body could not be written.
+	 */
+	private static String getDigest(RequestEntity entity) throws IOException {
+		final MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage());
+		}
+
+		entity.writeRequest(new OutputStream() {
+			@Override
+			public void write(int b) {
+				digest.update((byte) b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				digest.update(b, off, len);
+			}
+		});
+
+		return new BigInteger(1, digest.digest()).toString(16);
+	}
+
+	/**
+	 * Sends the request which is shared by the identical requests.
+	 */
+	public interface IExchange {
+		/**
+		 * Sends the request and converts the response.
+		 * 
+		 * @return The response XML.
+		 * 
+		 * @throws ConnectorException
+		 *             In case the request failed.
+		 * @throws HandlerException
+		 *             In case the request or response could not be converted.
+		 */
+		int execute() throws ConnectorException, HandlerException;
+	}
+
+	/**
+	 * Contains the outcome of a request which is shared.
+	 */
+	private static class Call {
+		/**
+		 * Is released when the request has finished.
+		 */
+		private final CountDownLatch m_done = new CountDownLatch(1);
+		/**
+		 * Holds the exception if the request failed.
+		 */
+		private Throwable m_error;
+		/**
+		 * Indicates whether the request has finished, after which no more
+		 * requests can wait for it.
+		 */
+		private boolean m_finished;
+		/**
+		 * Holds the number of requests which wait for the response.
+		 */
+		private int m_followers;
+		/**
+		 * Holds the converted response XML or null if there is no response.
+		 */
+		private byte[] m_xml;
+
+		/**
+		 * Registers a request which waits for the response.
+		 * 
+		 * @return false if the request has already finished.
+		 */
+		synchronized boolean join() {
+			if (m_finished) {
+				return false;
+			}
+
+			m_followers++;
+
+			return true;
+		}
+
+		/**
+		 * Stores a copy of the response if other requests wait for it.
+		 * 
+		 * @param responseNode
+		 *            The response XML.
+		 */
+		void complete(int responseNode) {
+			int followers;
+
+			synchronized (this) {
+				m_finished = true;
+				followers = m_followers;
+			}
+
+			if ((responseNode != 0) && (followers > 0)) {
+				try {
+					m_xml = Node.writeToString(responseNode, false).getBytes(
+							"UTF-8");
+				} catch (UnsupportedEncodingException e) {
+					m_error = e;
+				}
+			}
+
+			m_done.countDown();
+		}
+
+		/**
+		 * Stores the exception of the request.
+		 * 
+		 * @param error
+		 *            The exception.
+		 */
+		void fail(Throwable error) {
+			synchronized (this) {
+				m_finished = true;
+			}
+
+			m_error = error;
+			m_done.countDown();
+		}
+
+		/**
+		 * Waits until the request has finished and returns a copy of its
+		 * response.
+		 * 
+		 * @param doc
+		 *            The document in which the copy is created.
+		 * 
+		 * @return The response XML.
+		 * 
+		 * @throws ConnectorException
+		 *             In case the request failed.
+		 * @throws HandlerException
+		 *             In case the request or response could not be
+		 *             converted.
+		 */
+		int getResponse(Document doc) throws ConnectorException,
+				HandlerException {
+			try {
+				m_done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ConnectorException(e,
+						ConnectorExceptionMessages.INTERRUPTED_WHILE_WAITING_FOR_AN_IDENTICAL_REQUEST);
+			}
+
+			if (m_error instanceof ConnectorException) {
+				throw (ConnectorException) m_error;
+			}
+
+			if (m_error instanceof HandlerException) {
+				throw (HandlerException) m_error;
+			}
+
+			if (m_error != null) {
+				throw new ConnectorException(m_error,
+						ConnectorExceptionMessages.ERROR_EXECUTING_REQUEST_0,
+						m_error.getMessage());
+			}
+
+			if (m_xml == null) {
+				return 0;
+			}
+
+			try {
+				return doc.load(m_xml);
+			} catch (XMLException e) {
+				throw new ConnectorException((Throwable) e,
+						ConnectorExceptionMessages.INVALID_RESPONSE_XML_RECEIVED);
+			}
+		}
+	}
+}
@@ -0,0 +1,591 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.Credentials;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.protocol.Protocol;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.management.LatencyHistogram;
+import com.cordys.coe.ac.httpconnector.management.ResilienceCounters;
+
+/**
+ * Hedges slow GET requests. When no response has been received after a
+ * percentile of the recent response times, a second request is sent, if
+ * needed to an alternate server, and the response which arrives first is
+ * used. The number of hedged requests is limited to a percentage of the
+ * requests, so hedging cannot double the load on a web server which is slow
+ * for all requests.
+ * 
+ * <p>
+ * Both requests are copies of the original method which are sent from a
+ * separate thread, so the original method is never sent and can be hedged
+ * again when the request is retried. The threads are shared by all hedgers
+ * and limited in number; when all are busy a request is sent without
+ * hedging. Until enough response times are known a request is not hedged
+ * and is sent on the caller's thread.
+ * </p>
+ * 
+ * <p>
+ * A hedged request to the alternate server is sent with the client of the
+ * connection, using the socket factory, proxy and credentials of the
+ * connection for the alternate host.
+ * </p>
+ * 
+ * <p>
+ * The delay is taken from the response times of the first requests only. A
+ * hedged request which wins is aborted when the first request answers
+ * later, but a first request which loses runs to its end, so its response
+ * time is known. Using the time of the winning request instead would lower
+ * the delay, which makes more requests hedged, which lowers it further.
+ * </p>
+ * 
+ * @author agent
+ */
+public class RequestHedger {
+	/**
+	 * Holds the number of response times needed before requests are hedged.
+	 */
+	private static final int MIN_SAMPLES = 100;
+	/**
+	 * Holds the number of response times after which the older ones are
+	 * forgotten, so the delay follows the current response times.
+	 */
+	private static final int MAX_SAMPLES = 10000;
+	/**
+	 * Holds the time in milliseconds between updates of the delay.
+	 */
+	private static final long UPDATE_INTERVAL = 1000;
+	/**
+	 * Holds the maximum number of threads which send the requests.
+	 */
+	private static final int MAX_THREADS = 128;
+	/**
+	 * Holds the time in seconds after which an idle thread stops.
+	 */
+	private static final long THREAD_KEEP_ALIVE = 60;
+	/**
+	 * Holds the threads which send the requests. A request is rejected when
+	 * all threads are busy.
+	 */
+	private static final Executor EXECUTOR = new ThreadPoolExecutor(0,
+			MAX_THREADS, THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+			new SynchronousQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger m_count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "HttpConnector-hedge-"
+							+ m_count.incrementAndGet());
+
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			});
+	/**
+	 * Holds the scheme, host and port of the server the hedged requests are
+	 * sent to, or null to send them to the server of the connection.
+	 */
+	private final String m_alternateUrl;
+	/**
+	 * Limits the number of hedged requests.
+	 */
+	private final RetryBudget m_budget;
+	/**
+	 * Holds the percentile of the response times used as delay.
+	 */
+	private final int m_delayPercentile;
+	/**
+	 * Holds the recent response times of the first requests in microseconds.
+	 */
+	private final LatencyHistogram m_latencies = new LatencyHistogram();
+	/**
+	 * Holds the minimum delay in milliseconds.
+	 */
+	private final long m_minDelay;
+	/**
+	 * Holds the time at which the delay is updated next.
+	 */
+	private final AtomicLong m_nextUpdate = new AtomicLong();
+	/**
+	 * Holds the delay in milliseconds after which a request is hedged, or -1
+	 * while not enough response times are known.
+	 */
+	private volatile long m_delay = -1;
+
+	/**
+	 * Creates a new RequestHedger object.
+	 * 
+	 * @param delayPercentile
+	 *            The percentile of the response times after which a request
+	 *            is hedged.
+	 * @param minDelay
+	 *            The minimum time in milliseconds before a request is hedged.
+	 * @param maxHedgeRate
+	 *            The maximum percentage of the requests which are hedged.
+	 * @param alternateUrl
+	 *            The scheme, host and port of the server the hedged requests
+	 *            are sent to, or null to send them to the same server.
+	 */
+	public RequestHedger(int delayPercentile, long minDelay,
+			int maxHedgeRate, String alternateUrl) {
+		m_delayPercentile = delayPercentile;
+		m_minDelay = minDelay;
+		m_alternateUrl = alternateUrl;
+		m_budget = new RetryBudget(maxHedgeRate, 0);
+	}
+
+	/**
+	 * Sends the request, and a hedged copy of it when the response is slow.
+	 * 
+	 * @param httpMethod
+	 *            The GET method to send.
+	 * @param serverConnection
+	 *            Server connection information.
+	 * @param resilienceCounters
+	 *            The resilience counters of the connection, or null.
+	 * 
+	 * @return The method which received the response. Its connection must be
+	 *         released by the caller.
+	 * 
+	 * @throws IOException
+	 *             In case all sent requests failed.
+	 */
+	public HttpMethod execute(HttpMethod httpMethod,
+			IServerConnection serverConnection,
+			ResilienceCounters resilienceCounters) throws IOException {
+		BlockingQueue<Attempt> results = new LinkedBlockingQueue<Attempt>();
+		Attempt primary = new Attempt(copy(httpMethod, null), null,
+				serverConnection, results, this);
+		Attempt hedge = null;
+		long delay = m_delay;
+
+		m_budget.onRequest();
+
+		if (delay < 0) {
+			// Not enough response times are known to hedge the request.
+			primary.run();
+		} else {
+			try {
+				EXECUTOR.execute(primary);
+			} catch (RejectedExecutionException e) {
+				// All threads are busy, so the request is sent without
+				// hedging.
+				delay = -1;
+				primary.run();
+			}
+		}
+
+		try {
+			Attempt first = null;
+
+			if (delay >= 0) {
+				first = results.poll(delay, TimeUnit.MILLISECONDS);
+
+				if ((first == null) && m_budget.tryRetry()) {
+					String hedgeUrl = m_alternateUrl;
+					HostConfiguration hedgeHost = null;
+
+					if ((hedgeUrl != null)
+							&& (serverConnection.getTransport() instanceof CommonsHttpTransport)) {
+						hedgeHost = createAlternateHost(serverConnection
+								.getHttpClient());
+						hedgeUrl = null;
+					}
+
+					hedge = new Attempt(copy(httpMethod, hedgeUrl), hedgeHost,
+							serverConnection, results, null);
+
+					try {
+						EXECUTOR.execute(hedge);
+
+						if (resilienceCounters != null) {
+							resilienceCounters.addHedgedRequest();
+						}
+					} catch (RejectedExecutionException e) {
+						// All threads are busy, so the request is not hedged.
+						hedge = null;
+					}
+				}
+			}
+
+			if (first == null) {
+				first = results.take();
+			}
+
+			// A failed request is only used when the other one failed too.
+			Attempt winner = first;
+
+			if ((winner.m_failure != null) && (hedge != null)) {
+				winner = results.take();
+			}
+
+			if (winner == primary) {
+				if (hedge != null) {
+					hedge.cancel();
+				}
+			} else {
+				// The first request runs to its end, so its response time
+				// is recorded.
+				primary.detach();
+			}
+
+			if (winner.m_failure != null) {
+				winner.cancel();
+
+				throw winner.m_failure;
+			}
+
+			if ((winner != primary) && (resilienceCounters != null)) {
+				resilienceCounters.addHedgeWin();
+			}
+
+			return winner.m_response;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			primary.cancel();
+
+			if (hedge != null) {
+				hedge.cancel();
+			}
+
+			throw new InterruptedIOException(
+					"Interrupted while waiting for the response");
+		}
+	}
+
+	/**
+	 * Returns a copy of the GET method.
+	 * 
+	 * @param httpMethod
+	 *            The GET method.
+	 * @param serverUrl
+	 *            The scheme, host and port of the server the copy is sent to,
+	 *            or null to send it to the server of the connection or to the
+	 *            host configuration it is executed with.
+	 * 
+	 * @return The copy.
+	 * 
+	 * @throws IOException
+	 *             In case the URL of the copy is invalid.
+	 */
+	private static HttpMethod copy(HttpMethod httpMethod, String serverUrl)
+			throws IOException {
+		GetMethod copy = new GetMethod();
+
+		if (serverUrl != null) {
+			copy.setURI(new URI(serverUrl + httpMethod.getPath(), true));
+		} else {
+			copy.setPath(httpMethod.getPath());
+		}
+
+		copy.setQueryString(httpMethod.getQueryString());
+		copy.setParams(httpMethod.getParams());
+		copy.setFollowRedirects(httpMethod.getFollowRedirects());
+		copy.setDoAuthentication(httpMethod.getDoAuthentication());
+
+		for (Header header : httpMethod.getRequestHeaders()) {
+			copy.addRequestHeader(header.getName(), header.getValue());
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Creates the host configuration for the requests to the alternate server.
+	 * The protocol of the connection is used with the port of the alternate
+	 * server, so its socket factory, which checks or ignores the server
+	 * certificate and monitors the sockets, is used as well. The credentials of
+	 * the connection are also used for the alternate host.
+	 * 
+	 * @param client
+	 *            The client of the connection.
+	 * 
+	 * @return The host configuration.
+	 * 
+	 * @throws IOException
+	 *             In case the alternate URL is invalid.
+	 */
+	private HostConfiguration createAlternateHost(HttpClient client)
+			throws IOException {
+		HostConfiguration connectionHost = client.getHostConfiguration();
+		HostConfiguration hostConfig = new HostConfiguration(connectionHost);
+		URL url = new URL(m_alternateUrl);
+		int port = url.getPort();
+
+		if (port <= 0) {
+			port = url.getDefaultPort();
+		}
+
+		Protocol protocol = connectionHost.getProtocol();
+
+		if ((protocol != null)
+				&& protocol.getScheme().equals(url.getProtocol())) {
+			protocol = new Protocol(protocol.getScheme(), protocol
+					.getSocketFactory(), port);
+		} else {
+			protocol = Protocol.getProtocol(url.getProtocol());
+		}
+
+		hostConfig.setHost(url.getHost(), port, protocol);
+
+		HttpState state = client.getState();
+		Credentials credentials = state.getCredentials(new AuthScope(
+				connectionHost.getHost(), connectionHost.getPort(),
+				AuthScope.ANY_REALM));
+
+		if (credentials != null) {
+			state.setCredentials(new AuthScope(url.getHost(), port,
+					AuthScope.ANY_REALM), credentials);
+		}
+
+		return hostConfig;
+	}
+
+	/**
+	 * Returns the delay after which a request is hedged.
+	 * 
+	 * @return The delay in milliseconds, or -1 while not enough response times
+	 *         are known.
+	 */
+	long getDelay() {
+		return m_delay;
+	}
+
+	/**
+	 * Records the response time of a first request.
+	 * 
+	 * @param nanos
+	 *            The response time in nanoseconds.
+	 */
+	void recordLatency(long nanos) {
+		m_latencies.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+		updateDelay();
+	}
+
+	/**
+	 * Updates the delay from the recent response times, at most once per
+	 * update interval.
+	 */
+	private void updateDelay() {
+		long count = m_latencies.getTotalCount();
+
+		if (count < MIN_SAMPLES) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		long next = m_nextUpdate.get();
+
+		if ((now < next)
+				|| !m_nextUpdate.compareAndSet(next, now + UPDATE_INTERVAL)) {
+			return;
+		}
+
+		long micros = m_latencies.getValueAtPercentile(m_delayPercentile);
+
+		m_delay = Math.max(m_minDelay, (micros + 999) / 1000);
+
+		if (count >= MAX_SAMPLES) {
+			m_latencies.reset();
+		}
+	}
+
+	/**
+	 * Sends one copy of the request.
+	 */
+	private static class Attempt implements Runnable {
+		/**
+		 * Holds the copy of the request.
+		 */
+		private final HttpMethod m_method;
+		/**
+		 * Holds the host configuration the request is sent with, or null to
+		 * send it with the transport of the connection.
+		 */
+		private final HostConfiguration m_hostConfiguration;
+		/**
+		 * Holds the connection the request is sent to.
+		 */
+		private final IServerConnection m_serverConnection;
+		/**
+		 * Receives the attempt when it is done.
+		 */
+		private final BlockingQueue<Attempt> m_results;
+		/**
+		 * Holds the hedger which records the response time, or null if it is
+		 * not recorded.
+		 */
+		private final RequestHedger m_hedger;
+		/**
+		 * Holds the method which received the response.
+		 */
+		private HttpMethod m_response;
+		/**
+		 * Holds the exception of a failed request.
+		 */
+		private IOException m_failure;
+		/**
+		 * Indicates whether the request was cancelled.
+		 */
+		private boolean m_cancelled;
+		/**
+		 * Indicates whether the request is done.
+		 */
+		private boolean m_done;
+		/**
+		 * Indicates whether the request is cancelled when it is done.
+		 */
+		private boolean m_detached;
+
+		/**
+		 * Creates a new Attempt object.
+		 * 
+		 * @param httpMethod
+		 *            The copy of the request.
+		 * @param hostConfiguration
+		 *            The host configuration the request is sent with, or null
+		 *            to send it with the transport of the connection.
+		 * @param serverConnection
+		 *            The connection the request is sent to.
+		 * @param results
+		 *            Receives the attempt when it is done.
+		 * @param hedger
+		 *            The hedger which records the response time, or null if
+		 *            it is not recorded.
+		 */
+		Attempt(HttpMethod httpMethod, HostConfiguration hostConfiguration,
+				IServerConnection serverConnection,
+				BlockingQueue<Attempt> results, RequestHedger hedger) {
+			m_method = httpMethod;
+			m_hostConfiguration = hostConfiguration;
+			m_serverConnection = serverConnection;
+			m_results = results;
+			m_hedger = hedger;
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			long startTime = System.nanoTime();
+
+			try {
+				HttpMethod response;
+
+				if (m_hostConfiguration != null) {
+					m_serverConnection.getHttpClient().executeMethod(
+							m_hostConfiguration, m_method);
+					response = m_method;
+				} else {
+					response = TransportMethod.execute(m_method,
+							m_serverConnection);
+				}
+
+				if (m_hedger != null) {
+					m_hedger.recordLatency(System.nanoTime() - startTime);
+				}
+
+				synchronized (this) {
+					m_response = response;
+				}
+			} catch (IOException e) {
+				m_failure = e;
+			} catch (RuntimeException e) {
+				m_failure = new IOException(e.toString(), e);
+			} finally {
+				synchronized (this) {
+					m_done = true;
+
+					if (m_cancelled) {
+						release();
+					} else if (m_detached) {
+						cancel();
+					}
+				}
+
+				m_results.add(this);
+			}
+		}
+
+		/**
+		 * Aborts the request and releases its connection. The connection is
+		 * closed, so an unread response body is not read.
+		 */
+		synchronized void cancel() {
+			if (m_cancelled) {
+				return;
+			}
+
+			m_cancelled = true;
+			m_method.abort();
+
+			if (m_done) {
+				release();
+			}
+		}
+
+		/**
+		 * Lets the request run to its end and then cancels it, so its
+		 * response time is recorded but its response is not used.
+		 */
+		synchronized void detach() {
+			if (m_done) {
+				cancel();
+			} else {
+				m_detached = true;
+			}
+		}
+
+		/**
+		 * Releases the connection of the request and of the response.
+		 */
+		private void release() {
+			m_method.releaseConnection();
+
+			if ((m_response != null) && (m_response != m_method)) {
+				m_response.releaseConnection();
+			}
+		}
+	}
+}
@@ -0,0 +1,551 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HeaderElement;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.URIException;
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.eibus.xml.nom.Document;
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.nom.XMLException;
+
+/**
+ * Caches the converted responses of a GET method. The response XML is stored
+ * after the response handler has transformed it, so a cache hit skips both
+ * the HTTP request and the transformation. Freshness follows the
+ * Cache-Control and Expires headers of the response. Stale entries with an
+ * ETag or Last-Modified header are revalidated with a conditional request.
+ * The cache holds a limited number of entries and drops the least recently
+ * used one when it is full.
+ * <p>
+ * The cache is shared by all users of the method. Responses to requests with
+ * an Authorization or Cookie header are only stored when they are marked
+ * public, and responses which vary on every request header are not stored.
+ * The values of the request headers named in the Vary header of a response
+ * are part of its cache key.
+ * </p>
+ * 
+ * @author agent
+ */
+public class ResponseCache {
+	/**
+	 * Holds the time in milliseconds a response is fresh if it does not
+	 * specify it itself.
+	 */
+	private final long m_defaultTimeToLive;
+	/**
+	 * Holds the cached responses in least recently used order.
+	 */
+	private final Map<String, Entry> m_entries;
+	/**
+	 * Holds the request headers the responses vary on by cache key.
+	 */
+	private final Map<String, Set<String>> m_varyHeaders;
+
+	/**
+	 * Creates a new ResponseCache object.
+	 * 
+	 * @param maxEntries
+	 *            The maximum number of cached responses.
+	 * @param defaultTimeToLive
+	 *            The time in milliseconds a response is fresh if it does not
+	 *            specify it itself.
+	 */
+	public ResponseCache(final int maxEntries, long defaultTimeToLive) {
+		m_defaultTimeToLive = defaultTimeToLive;
+		m_entries = createMap(maxEntries);
+		m_varyHeaders = createMap(maxEntries);
+	}
+
+	/**
+	 * Returns the cache key for the given request. The key consists of the
+	 * connection and the request URI.
+	 * 
+	 * @param serverConnection
+	 *            The connection the request is sent to.
+	 * @param httpMethod
+	 *            The request.
+	 * 
+	 * @return The cache key.
+	 * 
+	 * @throws URIException
+	 *             In case the request URI is invalid.
+	 */
+	public static String getKey(IServerConnection serverConnection,
+			HttpMethod httpMethod) throws URIException {
+		return serverConnection.getId() + " " + serverConnection.getUrl()
+				+ " " + httpMethod.getURI();
+	}
+
+	/**
+	 * Returns the cached response for the given request.
+	 * 
+	 * @param key
+	 *            The cache key.
+	 * @param httpMethod
+	 *            The request. The response is only returned if the request
+	 *            headers it varies on have the same values.
+	 * 
+	 * @return The cached response or null if there is none.
+	 */
+	public synchronized Entry get(String key, HttpMethod httpMethod) {
+		return m_entries.get(getVariantKey(key, m_varyHeaders.get(key),
+				httpMethod));
+	}
+
+	/**
+	 * Stores the converted response of the given method. If the response
+	 * must not be stored or can never be used without a new request, the
+	 * response cached for the request is removed instead, so it is not used
+	 * after the server has changed its mind about caching it.
+	 * 
+	 * @param key
+	 *            The cache key.
+	 * @param httpMethod
+	 *            The executed method.
+	 * @param responseNode
+	 *            The converted response XML.
+	 */
+	public void put(String key, HttpMethod httpMethod, int responseNode) {
+		long timeToLive = getStoreTimeToLive(httpMethod);
+
+		if (timeToLive < 0) {
+			remove(key, httpMethod);
+			return;
+		}
+
+		byte[] xml;
+
+		try {
+			xml = Node.writeToString(responseNode, false).getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			return;
+		}
+
+		store(key, httpMethod, timeToLive, xml);
+	}
+
+	/**
+	 * Renews the given entry after the server answered a conditional request
+	 * with 304 Not Modified.
+	 * 
+	 * @param entry
+	 *            The revalidated entry.
+	 * @param httpMethod
+	 *            The executed conditional request.
+	 * 
+	 * @return The renewed entry.
+	 */
+	public Entry revalidated(Entry entry, HttpMethod httpMethod) {
+		long timeToLive = getTimeToLive(httpMethod);
+		String etag = getHeaderValue(httpMethod, "ETag");
+		String lastModified = getHeaderValue(httpMethod, "Last-Modified");
+		Entry renewed = new Entry(entry.m_key, entry.m_xml, System
+				.currentTimeMillis()
+				+ Math.max(timeToLive, 0), (etag != null) ? etag
+				: entry.m_etag, (lastModified != null) ? lastModified
+				: entry.m_lastModified);
+
+		synchronized (this) {
+			if (timeToLive < 0) {
+				m_entries.remove(entry.m_key);
+			} else {
+				m_entries.put(entry.m_key, renewed);
+			}
+		}
+
+		return renewed;
+	}
+
+	/**
+	 * Stores the converted response of the given method.
+	 * 
+	 * @param key
+	 *            The cache key.
+	 * @param httpMethod
+	 *            The executed method.
+	 * @param timeToLive
+	 *            The time in milliseconds the response is fresh.
+	 * @param xml
+	 *            The converted response XML.
+	 */
+	void store(String key, HttpMethod httpMethod, long timeToLive, byte[] xml) {
+		Set<String> varyHeaders = getVaryHeaders(httpMethod);
+		String variantKey = getVariantKey(key, varyHeaders, httpMethod);
+		Entry entry = new Entry(variantKey, xml, System.currentTimeMillis()
+				+ timeToLive, getHeaderValue(httpMethod, "ETag"),
+				getHeaderValue(httpMethod, "Last-Modified"));
+
+		synchronized (this) {
+			if (varyHeaders.isEmpty()) {
+				m_varyHeaders.remove(key);
+			} else {
+				m_varyHeaders.put(key, varyHeaders);
+			}
+
+			m_entries.put(variantKey, entry);
+		}
+	}
+
+	/**
+	 * Removes the cached response for the given request.
+	 * 
+	 * @param key
+	 *            The cache key.
+	 * @param httpMethod
+	 *            The request.
+	 */
+	private synchronized void remove(String key, HttpMethod httpMethod) {
+		m_entries.remove(getVariantKey(key, m_varyHeaders.get(key),
+				httpMethod));
+	}
+
+	/**
+	 * Returns the time in milliseconds the response of the given method is
+	 * fresh, if the response may be stored in this cache.
+	 * 
+	 * @param httpMethod
+	 *            The executed method.
+	 * 
+	 * @return The time to live or -1 if the response must not be stored.
+	 */
+	long getStoreTimeToLive(HttpMethod httpMethod) {
+		if (getVaryHeaders(httpMethod) == null) {
+			return -1;
+		}
+
+		if (((httpMethod.getRequestHeader("Authorization") != null) || (httpMethod
+				.getRequestHeader("Cookie") != null))
+				&& !hasCacheDirective(httpMethod, "public")) {
+			// The response may be meant for this user only.
+			return -1;
+		}
+
+		long timeToLive = getTimeToLive(httpMethod);
+
+		if ((timeToLive == 0) && (getHeaderValue(httpMethod, "ETag") == null)
+				&& (getHeaderValue(httpMethod, "Last-Modified") == null)) {
+			return -1;
+		}
+
+		return timeToLive;
+	}
+
+	/**
+	 * Returns the time in milliseconds the response of the given method is
+	 * fresh.
+	 * 
+	 * @param httpMethod
+	 *            The executed method.
+	 * 
+	 * @return The time to live, 0 if the response must be revalidated before
+	 *         each use or -1 if it must not be cached.
+	 */
+	long getTimeToLive(HttpMethod httpMethod) {
+		Header[] headers = httpMethod.getResponseHeaders("Cache-Control");
+		long maxAge = -1;
+
+		for (Header header : headers) {
+			for (HeaderElement element : header.getElements()) {
+				String name = element.getName().toLowerCase(Locale.US);
+
+				if ("no-store".equals(name) || "private".equals(name)) {
+					// This cache is shared by all users.
+					return -1;
+				}
+
+				if ("no-cache".equals(name)) {
+					return 0;
+				}
+
+				if ("max-age".equals(name) && (element.getValue() != null)) {
+					try {
+						maxAge = Math.max(Long.parseLong(element.getValue()
+								.trim()) * 1000, 0);
+					} catch (NumberFormatException e) {
+						return 0;
+					}
+				}
+			}
+		}
+
+		if (maxAge >= 0) {
+			return maxAge;
+		}
+
+		String expires = getHeaderValue(httpMethod, "Expires");
+
+		if (expires != null) {
+			try {
+				Date expiresDate = DateUtil.parseDate(expires);
+				String date = getHeaderValue(httpMethod, "Date");
+				long now = (date != null) ? DateUtil.parseDate(date).getTime()
+						: System.currentTimeMillis();
+
+				return Math.max(expiresDate.getTime() - now, 0);
+			} catch (DateParseException e) {
+				return 0;
+			}
+		}
+
+		String pragma = getHeaderValue(httpMethod, "Pragma");
+
+		if ((pragma != null) && pragma.toLowerCase(Locale.US).contains("no-cache")) {
+			return 0;
+		}
+
+		return m_defaultTimeToLive;
+	}
+
+	/**
+	 * Returns whether the Cache-Control header of the response contains the
+	 * given directive.
+	 * 
+	 * @param httpMethod
+	 *            The executed method.
+	 * @param directive
+	 *            The name of the directive in lower case.
+	 * 
+	 * @return true if the response contains the directive.
+	 */
+	private static boolean hasCacheDirective(HttpMethod httpMethod,
+			String directive) {
+		for (Header header : httpMethod.getResponseHeaders("Cache-Control")) {
+			for (HeaderElement element : header.getElements()) {
+				if (directive.equalsIgnoreCase(element.getName())) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the names of the request headers the response varies on.
+	 * 
+	 * @param httpMethod
+	 *            The executed method.
+	 * 
+	 * @return The header names in lower case or null if the response varies
+	 *         on every request header.
+	 */
+	private static Set<String> getVaryHeaders(HttpMethod httpMethod) {
+		Set<String> names = new TreeSet<String>();
+
+		for (Header header : httpMethod.getResponseHeaders("Vary")) {
+			for (String name : header.getValue().split(",")) {
+				name = name.trim().toLowerCase(Locale.US);
+
+				if ("*".equals(name)) {
+					return null;
+				}
+
+				if (name.length() > 0) {
+					names.add(name);
+				}
+			}
+		}
+
+		return names;
+	}
+
+	/**
+	 * Returns the key of the response variant for the given request.
+	 * 
+	 * @param key
+	 *            The cache key.
+	 * @param varyHeaders
+	 *            The names of the request headers the response varies on or
+	 *            null if it does not vary.
+	 * @param httpMethod
+	 *            The request.
+	 * 
+	 * @return The key with the values of the request headers.
+	 */
+	private static String getVariantKey(String key, Set<String> varyHeaders,
+			HttpMethod httpMethod) {
+		if ((varyHeaders == null) || varyHeaders.isEmpty()) {
+			return key;
+		}
+
+		StringBuilder buf = new StringBuilder(key);
+
+		for (String name : varyHeaders) {
+			buf.append('\n').append(name).append(':');
+
+			String separator = "";
+
+			for (Header header : httpMethod.getRequestHeaders(name)) {
+				buf.append(separator).append(header.getValue());
+				separator = ", ";
+			}
+		}
+
+		return buf.toString();
+	}
+
+	/**
+	 * Creates a map which drops the least recently used entry when it is
+	 * full.
+	 * 
+	 * @param maxEntries
+	 *            The maximum number of entries.
+	 * 
+	 * @return The map.
+	 */
+	private static <V> Map<String, V> createMap(final int maxEntries) {
+		return new LinkedHashMap<String, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the value of a response header.
+	 * 
+	 * @param httpMethod
+	 *            The executed method.
+	 * @param name
+	 *            The header name.
+	 * 
+	 * @return The header value or null if the header is not present.
+	 */
+	private static String getHeaderValue(HttpMethod httpMethod, String name) {
+		Header header = httpMethod.getResponseHeader(name);
+
+		return (header != null) ? header.getValue() : null;
+	}
+
+	/**
+	 * Contains a cached response.
+	 */
+	public static class Entry {
+		/**
+		 * Holds the ETag of the response.
+		 */
+		private final String m_etag;
+		/**
+		 * Holds the time until which the response is fresh.
+		 */
+		private final long m_expires;
+		/**
+		 * Holds the key of the response variant.
+		 */
+		private final String m_key;
+		/**
+		 * Holds the Last-Modified date of the response.
+		 */
+		private final String m_lastModified;
+		/**
+		 * Holds the converted response XML.
+		 */
+		private final byte[] m_xml;
+
+		/**
+		 * Creates a new Entry object.
+		 * 
+		 * @param key
+		 *            The key of the response variant.
+		 * @param xml
+		 *            The converted response XML.
+		 * @param expires
+		 *            The time until which the response is fresh.
+		 * @param etag
+		 *            The ETag of the response.
+		 * @param lastModified
+		 *            The Last-Modified date of the response.
+		 */
+		Entry(String key, byte[] xml, long expires, String etag,
+				String lastModified) {
+			m_key = key;
+			m_xml = xml;
+			m_expires = expires;
+			m_etag = etag;
+			m_lastModified = lastModified;
+		}
+
+		/**
+		 * Adds the headers which make the request conditional on this entry
+		 * having changed.
+		 * 
+		 * @param httpMethod
+		 *            The request.
+		 */
+		public void addConditionalHeaders(HttpMethod httpMethod) {
+			if (m_etag != null) {
+				httpMethod.setRequestHeader("If-None-Match", m_etag);
+			}
+
+			if (m_lastModified != null) {
+				httpMethod.setRequestHeader("If-Modified-Since",
+						m_lastModified);
+			}
+		}
+
+		/**
+		 * Returns whether the response can be used without asking the server.
+		 * 
+		 * @return true if the response is fresh.
+		 */
+		public boolean isFresh() {
+			return System.currentTimeMillis() < m_expires;
+		}
+
+		/**
+		 * Returns the converted response XML.
+		 * 
+		 * @return The XML bytes.
+		 */
+		byte[] getXml() {
+			return m_xml;
+		}
+
+		/**
+		 * Parses the cached response XML.
+		 * 
+		 * @param doc
+		 *            The document to create the XML in.
+		 * 
+		 * @return The response XML.
+		 * 
+		 * @throws XMLException
+		 *             In case the XML could not be parsed.
+		 */
+		public int load(Document doc) throws XMLException {
+			return doc.load(m_xml);
+		}
+	}
+}
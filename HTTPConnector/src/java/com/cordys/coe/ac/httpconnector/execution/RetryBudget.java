@@ -0,0 +1,117 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+/**
+ * Limits the number of retries of a connection, so retries cannot multiply
+ * the load on a web server that is already in trouble. Every request adds a
+ * fraction of a retry to the budget and every retry takes a whole one, so the
+ * retries are at most the configured percentage of the requests. A minimum
+ * number of retries per second is always allowed, so a connection with few
+ * requests can still retry.
+ * 
+ * @author agent
+ */
+public class RetryBudget {
+	/**
+	 * Holds the number of requests whose retry fractions can be saved up.
+	 */
+	private static final int WINDOW = 1000;
+	/**
+	 * Holds the fraction of a retry each request adds to the budget.
+	 */
+	private final double m_ratio;
+	/**
+	 * Holds the number of retries per second which are always allowed.
+	 */
+	private final int m_minRetriesPerSecond;
+	/**
+	 * Holds the retries saved up from the requests.
+	 */
+	private double m_balance;
+	/**
+	 * Holds the second in which the minimum retries were counted.
+	 */
+	private long m_second;
+	/**
+	 * Holds the number of minimum retries used in the current second.
+	 */
+	private int m_retriesInSecond;
+
+	/**
+	 * Creates a new RetryBudget object.
+	 * 
+	 * @param retryRatio
+	 *            The percentage of the requests which may be retried.
+	 * @param minRetriesPerSecond
+	 *            The number of retries per second which are always allowed.
+	 */
+	public RetryBudget(int retryRatio, int minRetriesPerSecond) {
+		m_ratio = retryRatio / 100.0;
+		m_minRetriesPerSecond = minRetriesPerSecond;
+	}
+
+	/**
+	 * Returns whether the given budget has the same settings as this one.
+	 * 
+	 * @param other
+	 *            The other budget.
+	 * 
+	 * @return <code>true</code> if the settings are the same.
+	 */
+	public boolean hasSameSettings(RetryBudget other) {
+		return (m_ratio == other.m_ratio)
+				&& (m_minRetriesPerSecond == other.m_minRetriesPerSecond);
+	}
+
+	/**
+	 * Adds the retry fraction of a new request to the budget.
+	 */
+	public synchronized void onRequest() {
+		m_balance = Math.min(m_balance + m_ratio, m_ratio * WINDOW);
+	}
+
+	/**
+	 * Takes a retry from the budget.
+	 * 
+	 * @return <code>true</code> if the request may be retried,
+	 *         <code>false</code> if the budget is exhausted.
+	 */
+	public synchronized boolean tryRetry() {
+		if (m_balance >= 1) {
+			m_balance -= 1;
+
+			return true;
+		}
+
+		long second = System.nanoTime() / 1000000000L;
+
+		if (second != m_second) {
+			m_second = second;
+			m_retriesInSecond = 0;
+		}
+
+		if (m_retriesInSecond < m_minRetriesPerSecond) {
+			m_retriesInSecond++;
+
+			return true;
+		}
+
+		return false;
+	}
+}
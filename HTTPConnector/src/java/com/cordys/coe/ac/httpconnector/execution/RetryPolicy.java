@@ -0,0 +1,214 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
+
+import com.cordys.coe.ac.httpconnector.config.EHttpMethod;
+
+/**
+ * Decides whether and when a failed request of a method is sent again. A
+ * request is retried when the connection failed or the web server answered
+ * with one of the retryable status codes. The delay before a retry grows
+ * exponentially with a random part, so clients which failed at the same
+ * moment do not retry at the same moment. A Retry-After header of the
+ * response is honored. POST requests are only retried when this is
+ * explicitly allowed, since they may not be idempotent.
+ * 
+ * @author agent
+ */
+public class RetryPolicy {
+	/**
+	 * Holds the random generator for the backoff delays.
+	 */
+	private static final Random RANDOM = new Random();
+	/**
+	 * Holds the delay in milliseconds before the first retry.
+	 */
+	private final long m_initialBackoff;
+	/**
+	 * Holds the maximum number of attempts, including the first one.
+	 */
+	private final int m_maxAttempts;
+	/**
+	 * Holds the maximum delay in milliseconds before a retry.
+	 */
+	private final long m_maxBackoff;
+	/**
+	 * Holds the longest Retry-After delay in milliseconds which is waited
+	 * for.
+	 */
+	private final long m_maxRetryAfter;
+	/**
+	 * Indicates whether non idempotent requests are retried.
+	 */
+	private final boolean m_retryNonIdempotent;
+	/**
+	 * Holds the sorted status codes which are retried.
+	 */
+	private final int[] m_retryStatusCodes;
+
+	/**
+	 * Creates a new RetryPolicy object.
+	 * 
+	 * @param maxAttempts
+	 *            The maximum number of attempts, including the first one.
+	 * @param initialBackoff
+	 *            The delay in milliseconds before the first retry.
+	 * @param maxBackoff
+	 *            The maximum delay in milliseconds before a retry.
+	 * @param maxRetryAfter
+	 *            The longest Retry-After delay in milliseconds which is
+	 *            waited for.
+	 * @param retryStatusCodes
+	 *            The status codes which are retried.
+	 * @param retryNonIdempotent
+	 *            Whether non idempotent requests are retried.
+	 */
+	public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff,
+			long maxRetryAfter, int[] retryStatusCodes,
+			boolean retryNonIdempotent) {
+		m_maxAttempts = maxAttempts;
+		m_initialBackoff = initialBackoff;
+		m_maxBackoff = maxBackoff;
+		m_maxRetryAfter = maxRetryAfter;
+		m_retryStatusCodes = retryStatusCodes.clone();
+		m_retryNonIdempotent = retryNonIdempotent;
+
+		Arrays.sort(m_retryStatusCodes);
+	}
+
+	/**
+	 * Returns the delay before a retry after a failed connection. The delay
+	 * is a random time up to the exponentially growing backoff.
+	 * 
+	 * @param attempt
+	 *            The number of the attempt which failed, starting at 1.
+	 * 
+	 * @return The delay in milliseconds.
+	 */
+	public long getBackoff(int attempt) {
+		long backoff = m_initialBackoff;
+
+		for (int i = 1; (i < attempt) && (backoff < m_maxBackoff); i++) {
+			backoff *= 2;
+		}
+
+		backoff = Math.min(backoff, m_maxBackoff);
+
+		synchronized (RANDOM) {
+			return (long) (RANDOM.nextDouble() * backoff);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of attempts, including the first one.
+	 * 
+	 * @return The maximum number of attempts.
+	 */
+	public int getMaxAttempts() {
+		return m_maxAttempts;
+	}
+
+	/**
+	 * Returns the delay before a retry after a response with a retryable
+	 * status code. If the response has a Retry-After header, the delay is at
+	 * least the time it asks for.
+	 * 
+	 * @param attempt
+	 *            The number of the attempt which failed, starting at 1.
+	 * @param httpMethod
+	 *            The HTTP method with the response.
+	 * 
+	 * @return The delay in milliseconds, or -1 if the server asks to wait
+	 *         longer than the maximum Retry-After delay.
+	 */
+	public long getRetryDelay(int attempt, HttpMethod httpMethod) {
+		long backoff = getBackoff(attempt);
+		Header header = httpMethod.getResponseHeader("Retry-After");
+
+		if (header == null) {
+			return backoff;
+		}
+
+		long retryAfter = parseRetryAfter(header.getValue());
+
+		if (retryAfter > m_maxRetryAfter) {
+			return -1;
+		}
+
+		return Math.max(backoff, retryAfter);
+	}
+
+	/**
+	 * Returns whether requests with the given HTTP method may be retried.
+	 * 
+	 * @param httpMethodType
+	 *            The HTTP method type.
+	 * 
+	 * @return <code>true</code> if the requests may be retried.
+	 */
+	public boolean isRetryable(EHttpMethod httpMethodType) {
+		return m_retryNonIdempotent || (httpMethodType != EHttpMethod.POST);
+	}
+
+	/**
+	 * Returns whether a response with the given status code is retried.
+	 * 
+	 * @param statusCode
+	 *            The HTTP status code.
+	 * 
+	 * @return <code>true</code> if the response is retried.
+	 */
+	public boolean isRetryableStatus(int statusCode) {
+		return Arrays.binarySearch(m_retryStatusCodes, statusCode) >= 0;
+	}
+
+	/**
+	 * Parses a Retry-After header, which holds either a number of seconds or
+	 * an HTTP date.
+	 * 
+	 * @param value
+	 *            The header value.
+	 * 
+	 * @return The delay in milliseconds, or 0 if the value is invalid or in
+	 *         the past.
+	 */
+	static long parseRetryAfter(String value) {
+		value = value.trim();
+
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException e) {
+			// Not a number of seconds, so it should be a date.
+		}
+
+		try {
+			return Math.max(0, DateUtil.parseDate(value).getTime()
+					- System.currentTimeMillis());
+		} catch (DateParseException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,604 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.httpclient.StatusLine;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
+import org.apache.commons.httpclient.auth.AuthState;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+
+/**
+ * Method which holds the response of an {@link IHttpTransport} which is not
+ * based on commons-httpclient. The request side is taken from the method
+ * created by the request handler, the response side from the
+ * {@link HttpResponse}, so the response handlers work with any transport.
+ * 
+ * @author agent
+ */
+class TransportMethod implements HttpMethod {
+	/**
+	 * Holds the default charset of a response body.
+	 */
+	private static final String DEFAULT_CHARSET = "ISO-8859-1";
+	/**
+	 * Holds the method created by the request handler.
+	 */
+	private final HttpMethod m_request;
+	/**
+	 * Holds the response returned by the transport.
+	 */
+	private final HttpResponse m_response;
+	/**
+	 * Holds the response headers.
+	 */
+	private final Header[] m_responseHeaders;
+	/**
+	 * Holds the status line of the response.
+	 */
+	private final StatusLine m_statusLine;
+	/**
+	 * Holds the response body once it has been read with
+	 * getResponseBody().
+	 */
+	private byte[] m_responseBody;
+
+	/**
+	 * Creates a new TransportMethod object.
+	 * 
+	 * @param request
+	 *            The method created by the request handler.
+	 * @param response
+	 *            The response returned by the transport.
+	 * 
+	 * @throws IOException
+	 *             In case the status of the response is invalid.
+	 */
+	TransportMethod(HttpMethod request, HttpResponse response)
+			throws IOException {
+		m_request = request;
+		m_response = response;
+		m_statusLine = new StatusLine("HTTP/1.1 " + response.getStatusCode()
+				+ " " + response.getReasonPhrase());
+
+		List<Header> headers = new ArrayList<Header>();
+
+		for (Map.Entry<String, List<String>> entry : response.getHeaders()
+				.entrySet()) {
+			for (String value : entry.getValue()) {
+				headers.add(new Header(entry.getKey(), value));
+			}
+		}
+
+		m_responseHeaders = headers.toArray(new Header[headers.size()]);
+	}
+
+	/**
+	 * Sends the request of the method with the transport of the connection.
+	 * The commons-httpclient transport executes the method itself, other
+	 * transports get a transport-neutral copy of the request.
+	 * 
+	 * @param httpMethod
+	 *            The method to send.
+	 * @param serverConnection
+	 *            The connection to send the request to.
+	 * 
+	 * @return The method which holds the response. This is the given method
+	 *         for the commons-httpclient transport.
+	 * 
+	 * @throws IOException
+	 *             In case the request could not be sent or the response could
+	 *             not be read.
+	 */
+	static HttpMethod execute(HttpMethod httpMethod,
+			IServerConnection serverConnection) throws IOException {
+		IHttpTransport transport = serverConnection.getTransport();
+
+		if (transport instanceof CommonsHttpTransport) {
+			((CommonsHttpTransport) transport).execute(httpMethod,
+					serverConnection);
+
+			return httpMethod;
+		}
+
+		HttpResponse response = transport.execute(
+				HttpRequest.fromMethod(httpMethod, serverConnection),
+				serverConnection);
+
+		if (response == null) {
+			throw new IOException("The transport returned no response");
+		}
+
+		return new TransportMethod(httpMethod, response);
+	}
+
+	/**
+	 * @see HttpMethod#abort()
+	 */
+	@Override
+	public void abort() {
+		releaseConnection();
+	}
+
+	/**
+	 * @see HttpMethod#addRequestHeader(Header)
+	 */
+	@Override
+	public void addRequestHeader(Header header) {
+		m_request.addRequestHeader(header);
+	}
+
+	/**
+	 * @see HttpMethod#addRequestHeader(String, String)
+	 */
+	@Override
+	public void addRequestHeader(String headerName, String headerValue) {
+		m_request.addRequestHeader(headerName, headerValue);
+	}
+
+	/**
+	 * @see HttpMethod#addResponseFooter(Header)
+	 */
+	@Override
+	public void addResponseFooter(Header footer) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @see HttpMethod#execute(HttpState, HttpConnection)
+	 */
+	@Override
+	public int execute(HttpState state, HttpConnection conn)
+			throws HttpException, IOException {
+		throw new UnsupportedOperationException(
+				"The request has already been sent");
+	}
+
+	/**
+	 * @see HttpMethod#getDoAuthentication()
+	 */
+	@Override
+	public boolean getDoAuthentication() {
+		return m_request.getDoAuthentication();
+	}
+
+	/**
+	 * @see HttpMethod#getFollowRedirects()
+	 */
+	@Override
+	public boolean getFollowRedirects() {
+		return m_request.getFollowRedirects();
+	}
+
+	/**
+	 * @see HttpMethod#getHostAuthState()
+	 */
+	@Override
+	public AuthState getHostAuthState() {
+		return m_request.getHostAuthState();
+	}
+
+	/**
+	 * @see HttpMethod#getHostConfiguration()
+	 */
+	@Override
+	@SuppressWarnings("deprecation")
+	public HostConfiguration getHostConfiguration() {
+		return m_request.getHostConfiguration();
+	}
+
+	/**
+	 * @see HttpMethod#getName()
+	 */
+	@Override
+	public String getName() {
+		return m_request.getName();
+	}
+
+	/**
+	 * @see HttpMethod#getParams()
+	 */
+	@Override
+	public HttpMethodParams getParams() {
+		return m_request.getParams();
+	}
+
+	/**
+	 * @see HttpMethod#getPath()
+	 */
+	@Override
+	public String getPath() {
+		return m_request.getPath();
+	}
+
+	/**
+	 * @see HttpMethod#getProxyAuthState()
+	 */
+	@Override
+	public AuthState getProxyAuthState() {
+		return m_request.getProxyAuthState();
+	}
+
+	/**
+	 * @see HttpMethod#getQueryString()
+	 */
+	@Override
+	public String getQueryString() {
+		return m_request.getQueryString();
+	}
+
+	/**
+	 * @see HttpMethod#getRequestHeader(String)
+	 */
+	@Override
+	public Header getRequestHeader(String headerName) {
+		return m_request.getRequestHeader(headerName);
+	}
+
+	/**
+	 * @see HttpMethod#getRequestHeaders()
+	 */
+	@Override
+	public Header[] getRequestHeaders() {
+		return m_request.getRequestHeaders();
+	}
+
+	/**
+	 * @see HttpMethod#getRequestHeaders(String)
+	 */
+	@Override
+	public Header[] getRequestHeaders(String headerName) {
+		return m_request.getRequestHeaders(headerName);
+	}
+
+	/**
+	 * @see HttpMethod#getResponseBody()
+	 */
+	@Override
+	public synchronized byte[] getResponseBody() throws IOException {
+		if (m_responseBody == null) {
+			InputStream in = m_response.getBody();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+			if (in != null) {
+				try {
+					byte[] buffer = new byte[4096];
+					int len;
+
+					while ((len = in.read(buffer)) > 0) {
+						out.write(buffer, 0, len);
+					}
+				} finally {
+					in.close();
+				}
+			}
+
+			m_responseBody = out.toByteArray();
+		}
+
+		return m_responseBody;
+	}
+
+	/**
+	 * @see HttpMethod#getResponseBodyAsStream()
+	 */
+	@Override
+	public synchronized InputStream getResponseBodyAsStream()
+			throws IOException {
+		if (m_responseBody != null) {
+			return new ByteArrayInputStream(m_responseBody);
+		}
+
+		return m_response.getBody();
+	}
+
+	/**
+	 * @see HttpMethod#getResponseBodyAsString()
+	 */
+	@Override
+	public String getResponseBodyAsString() throws IOException {
+		return new String(getResponseBody(), getResponseCharSet());
+	}
+
+	/**
+	 * @see HttpMethod#getResponseFooter(String)
+	 */
+	@Override
+	public Header getResponseFooter(String footerName) {
+		return null;
+	}
+
+	/**
+	 * @see HttpMethod#getResponseFooters()
+	 */
+	@Override
+	public Header[] getResponseFooters() {
+		return new Header[0];
+	}
+
+	/**
+	 * @see HttpMethod#getResponseHeader(String)
+	 */
+	@Override
+	public Header getResponseHeader(String headerName) {
+		for (Header header : m_responseHeaders) {
+			if (header.getName().equalsIgnoreCase(headerName)) {
+				return header;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @see HttpMethod#getResponseHeaders()
+	 */
+	@Override
+	public Header[] getResponseHeaders() {
+		return m_responseHeaders.clone();
+	}
+
+	/**
+	 * @see HttpMethod#getResponseHeaders(String)
+	 */
+	@Override
+	public Header[] getResponseHeaders(String headerName) {
+		List<Header> result = new ArrayList<Header>(1);
+
+		for (Header header : m_responseHeaders) {
+			if (header.getName().equalsIgnoreCase(headerName)) {
+				result.add(header);
+			}
+		}
+
+		return result.toArray(new Header[result.size()]);
+	}
+
+	/**
+	 * @see HttpMethod#getStatusCode()
+	 */
+	@Override
+	public int getStatusCode() {
+		return m_statusLine.getStatusCode();
+	}
+
+	/**
+	 * @see HttpMethod#getStatusLine()
+	 */
+	@Override
+	public StatusLine getStatusLine() {
+		return m_statusLine;
+	}
+
+	/**
+	 * @see HttpMethod#getStatusText()
+	 */
+	@Override
+	public String getStatusText() {
+		return m_statusLine.getReasonPhrase();
+	}
+
+	/**
+	 * @see HttpMethod#getURI()
+	 */
+	@Override
+	public URI getURI() throws URIException {
+		return m_request.getURI();
+	}
+
+	/**
+	 * @see HttpMethod#hasBeenUsed()
+	 */
+	@Override
+	public boolean hasBeenUsed() {
+		return true;
+	}
+
+	/**
+	 * @see HttpMethod#isRequestSent()
+	 */
+	@Override
+	public boolean isRequestSent() {
+		return true;
+	}
+
+	/**
+	 * @see HttpMethod#isStrictMode()
+	 */
+	@Override
+	@SuppressWarnings("deprecation")
+	public boolean isStrictMode() {
+		return m_request.isStrictMode();
+	}
+
+	/**
+	 * @see HttpMethod#recycle()
+	 */
+	@Override
+	@SuppressWarnings("deprecation")
+	public void recycle() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Closes the response, so the transport can reuse or close its
+	 * connection.
+	 * 
+	 * @see HttpMethod#releaseConnection()
+	 */
+	@Override
+	public void releaseConnection() {
+		try {
+			m_response.close();
+		} catch (IOException ignored) {
+			// The response is not used anymore.
+		}
+	}
+
+	/**
+	 * @see HttpMethod#removeRequestHeader(Header)
+	 */
+	@Override
+	public void removeRequestHeader(Header header) {
+		m_request.removeRequestHeader(header);
+	}
+
+	/**
+	 * @see HttpMethod#removeRequestHeader(String)
+	 */
+	@Override
+	public void removeRequestHeader(String headerName) {
+		m_request.removeRequestHeader(headerName);
+	}
+
+	/**
+	 * @see HttpMethod#setDoAuthentication(boolean)
+	 */
+	@Override
+	public void setDoAuthentication(boolean doAuthentication) {
+		m_request.setDoAuthentication(doAuthentication);
+	}
+
+	/**
+	 * @see HttpMethod#setFollowRedirects(boolean)
+	 */
+	@Override
+	public void setFollowRedirects(boolean followRedirects) {
+		m_request.setFollowRedirects(followRedirects);
+	}
+
+	/**
+	 * @see HttpMethod#setParams(HttpMethodParams)
+	 */
+	@Override
+	public void setParams(HttpMethodParams params) {
+		m_request.setParams(params);
+	}
+
+	/**
+	 * @see HttpMethod#setPath(String)
+	 */
+	@Override
+	public void setPath(String path) {
+		m_request.setPath(path);
+	}
+
+	/**
+	 * @see HttpMethod#setQueryString(NameValuePair[])
+	 */
+	@Override
+	public void setQueryString(NameValuePair[] params) {
+		m_request.setQueryString(params);
+	}
+
+	/**
+	 * @see HttpMethod#setQueryString(String)
+	 */
+	@Override
+	public void setQueryString(String queryString) {
+		m_request.setQueryString(queryString);
+	}
+
+	/**
+	 * @see HttpMethod#setRequestHeader(Header)
+	 */
+	@Override
+	public void setRequestHeader(Header header) {
+		m_request.setRequestHeader(header);
+	}
+
+	/**
+	 * @see HttpMethod#setRequestHeader(String, String)
+	 */
+	@Override
+	public void setRequestHeader(String headerName, String headerValue) {
+		m_request.setRequestHeader(headerName, headerValue);
+	}
+
+	/**
+	 * @see HttpMethod#setStrictMode(boolean)
+	 */
+	@Override
+	@SuppressWarnings("deprecation")
+	public void setStrictMode(boolean strictMode) {
+		m_request.setStrictMode(strictMode);
+	}
+
+	/**
+	 * @see HttpMethod#setURI(URI)
+	 */
+	@Override
+	public void setURI(URI uri) throws URIException {
+		m_request.setURI(uri);
+	}
+
+	/**
+	 * @see HttpMethod#validate()
+	 */
+	@Override
+	public boolean validate() {
+		return m_request.validate();
+	}
+
+	/**
+	 * Returns the charset of the response body from the content type.
+	 * 
+	 * @return The charset, ISO-8859-1 if the content type has none.
+	 */
+	private String getResponseCharSet() {
+		Header contentType = getResponseHeader("Content-Type");
+
+		if (contentType != null) {
+			for (String part : contentType.getValue().split(";")) {
+				part = part.trim();
+
+				if (part.regionMatches(true, 0, "charset=", 0, 8)) {
+					String charset = part.substring(8).trim();
+
+					if (charset.startsWith("\"") && charset.endsWith("\"")
+							&& (charset.length() > 1)) {
+						charset = charset.substring(1, charset.length() - 1);
+					}
+
+					if (charset.length() > 0) {
+						return charset;
+					}
+				}
+			}
+		}
+
+		return DEFAULT_CHARSET;
+	}
+}
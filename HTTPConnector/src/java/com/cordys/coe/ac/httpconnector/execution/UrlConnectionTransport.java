@@ -0,0 +1,363 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.commons.httpclient.Credentials;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.auth.BasicScheme;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.SecureProtocolSocketFactory;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+
+/**
+ * Transport which sends the requests with the HttpURLConnection of the Java
+ * runtime instead of commons-httpclient. The runtime keeps the connections to
+ * a server alive and reuses them, so the pool settings and pool statistics of
+ * the connection do not apply.
+ * 
+ * <p>
+ * The proxy, the proxy credentials and the TLS socket factory are taken from
+ * the configured client of the connection, so the certificate checking works
+ * as with the default transport. The user name and password of the
+ * connection are always sent with basic authentication, since the runtime
+ * only answers authentication challenges through a JVM wide authenticator.
+ * Proxy credentials are only sent to proxies of plain HTTP requests.
+ * </p>
+ * 
+ * @author agent
+ */
+public class UrlConnectionTransport implements IHttpTransport {
+	/**
+	 * Accepts every host name, for connections which do not check the server
+	 * certificate.
+	 */
+	private static final HostnameVerifier ANY_HOST = new HostnameVerifier() {
+		@Override
+		public boolean verify(String hostname, SSLSession session) {
+			return true;
+		}
+	};
+	/**
+	 * Holds the charset of the encoded credentials.
+	 */
+	private static final String CREDENTIALS_CHARSET = "ISO-8859-1";
+
+	/**
+	 * @see IHttpTransport#execute(HttpRequest, IServerConnection)
+	 */
+	@Override
+	public HttpResponse execute(HttpRequest request,
+			IServerConnection serverConnection) throws IOException {
+		URL url = new URL(request.getUri());
+		HttpClient client = serverConnection.getHttpClient();
+		HostConfiguration hostConfig = client.getHostConfiguration();
+		Proxy proxy = Proxy.NO_PROXY;
+
+		if (hostConfig.getProxyHost() != null) {
+			proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(
+					hostConfig.getProxyHost(), hostConfig.getProxyPort()));
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) url
+				.openConnection(proxy);
+
+		if (connection instanceof HttpsURLConnection) {
+			configureTls((HttpsURLConnection) connection, hostConfig,
+					serverConnection);
+		}
+
+		connection.setInstanceFollowRedirects(false);
+		connection.setUseCaches(false);
+		connection.setConnectTimeout(request.getTimeout());
+		connection.setReadTimeout(request.getTimeout());
+		connection.setRequestMethod(request.getMethod());
+
+		for (Map.Entry<String, List<String>> entry : request.getHeaders()
+				.entrySet()) {
+			String name = entry.getKey();
+
+			// These follow from the body and can not be set by the caller.
+			if ("Content-Length".equalsIgnoreCase(name)
+					|| "Transfer-Encoding".equalsIgnoreCase(name)) {
+				continue;
+			}
+
+			for (String value : entry.getValue()) {
+				connection.addRequestProperty(name, value);
+			}
+		}
+
+		setCredentials(connection, url, client, serverConnection);
+
+		HttpRequest.IBody body = request.getBody();
+
+		if (body != null) {
+			long length = body.getContentLength();
+
+			connection.setDoOutput(true);
+
+			if ((length >= 0) && (length <= Integer.MAX_VALUE)) {
+				connection.setFixedLengthStreamingMode((int) length);
+			} else {
+				connection.setChunkedStreamingMode(0);
+			}
+
+			if ((connection.getRequestProperty("Content-Type") == null)
+					&& (body.getContentType() != null)) {
+				connection.setRequestProperty("Content-Type",
+						body.getContentType());
+			}
+		}
+
+		boolean done = false;
+
+		try {
+			if (body != null) {
+				OutputStream out = connection.getOutputStream();
+
+				try {
+					body.writeTo(out);
+				} finally {
+					out.close();
+				}
+			}
+
+			int statusCode = connection.getResponseCode();
+
+			if (statusCode == -1) {
+				throw new IOException("Invalid HTTP response from " + url);
+			}
+
+			// Reading the headers by index keeps their order.
+			Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+
+			for (int i = 1;; i++) {
+				String name = connection.getHeaderFieldKey(i);
+				String value = connection.getHeaderField(i);
+
+				if ((name == null) && (value == null)) {
+					break;
+				}
+
+				if (name == null) {
+					continue;
+				}
+
+				List<String> values = headers.get(name);
+
+				if (values == null) {
+					values = new ArrayList<String>(1);
+					headers.put(name, values);
+				}
+
+				values.add(value);
+			}
+
+			InputStream responseBody = (statusCode >= 400) ? connection
+					.getErrorStream() : connection.getInputStream();
+
+			done = true;
+
+			return new HttpResponse(statusCode,
+					connection.getResponseMessage(), headers, responseBody);
+		} finally {
+			if (!done) {
+				connection.disconnect();
+			}
+		}
+	}
+
+	/**
+	 * Sends the credentials of the connection and of its proxy with basic
+	 * authentication, unless the request handler set them.
+	 * 
+	 * @param connection
+	 *            The URL connection.
+	 * @param url
+	 *            The request URL.
+	 * @param client
+	 *            The configured client of the connection.
+	 * @param serverConnection
+	 *            The server connection.
+	 */
+	private static void setCredentials(HttpURLConnection connection,
+			URL url, HttpClient client, IServerConnection serverConnection) {
+		if ((serverConnection.getUsername() != null)
+				&& (connection.getRequestProperty("Authorization") == null)) {
+			connection.setRequestProperty("Authorization", BasicScheme
+					.authenticate(new UsernamePasswordCredentials(
+							serverConnection.getUsername(),
+							serverConnection.getPassword()),
+							CREDENTIALS_CHARSET));
+		}
+
+		if (client.getHostConfiguration().getProxyHost() != null) {
+			int port = (url.getPort() != -1) ? url.getPort() : url
+					.getDefaultPort();
+			Credentials credentials = client.getState().getProxyCredentials(
+					new AuthScope(url.getHost(), port, AuthScope.ANY_REALM));
+
+			if ((credentials instanceof UsernamePasswordCredentials)
+					&& (connection.getRequestProperty("Proxy-Authorization") == null)) {
+				connection.setRequestProperty("Proxy-Authorization",
+						BasicScheme.authenticate(
+								(UsernamePasswordCredentials) credentials,
+								CREDENTIALS_CHARSET));
+			}
+		}
+	}
+
+	/**
+	 * Makes the connection use the TLS socket factory configured for the
+	 * server connection.
+	 * 
+	 * @param connection
+	 *            The URL connection.
+	 * @param hostConfig
+	 *            The host configuration of the server connection.
+	 * @param serverConnection
+	 *            The server connection.
+	 */
+	private static void configureTls(HttpsURLConnection connection,
+			HostConfiguration hostConfig, IServerConnection serverConnection) {
+		Protocol protocol = hostConfig.getProtocol();
+
+		if ((protocol != null)
+				&& (protocol.getSocketFactory() instanceof SecureProtocolSocketFactory)) {
+			connection.setSSLSocketFactory(new LayeredSocketFactory(
+					(SecureProtocolSocketFactory) protocol.getSocketFactory()));
+		}
+
+		if (!serverConnection.isCheckServerCertificate()) {
+			connection.setHostnameVerifier(ANY_HOST);
+		}
+	}
+
+	/**
+	 * Socket factory which lets a commons-httpclient socket factory start TLS
+	 * on the sockets the URL connection opens. Unconnected sockets are not
+	 * supported, so the runtime connects a plain socket itself, honouring the
+	 * connect timeout, and then layers TLS on top of it.
+	 */
+	private static class LayeredSocketFactory extends SSLSocketFactory {
+		/**
+		 * Holds the commons-httpclient socket factory.
+		 */
+		private final SecureProtocolSocketFactory m_factory;
+
+		/**
+		 * Creates a new LayeredSocketFactory object.
+		 * 
+		 * @param factory
+		 *            The commons-httpclient socket factory.
+		 */
+		LayeredSocketFactory(SecureProtocolSocketFactory factory) {
+			m_factory = factory;
+		}
+
+		/**
+		 * @see javax.net.SocketFactory#createSocket(String, int)
+		 */
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return m_factory.createSocket(host, port);
+		}
+
+		/**
+		 * @see javax.net.SocketFactory#createSocket(String, int,
+		 *      java.net.InetAddress, int)
+		 */
+		@Override
+		public Socket createSocket(String host, int port,
+				InetAddress localHost, int localPort) throws IOException {
+			return m_factory.createSocket(host, port, localHost, localPort);
+		}
+
+		/**
+		 * @see javax.net.SocketFactory#createSocket(java.net.InetAddress, int)
+		 */
+		@Override
+		public Socket createSocket(InetAddress host, int port)
+				throws IOException {
+			return m_factory.createSocket(host.getHostAddress(), port);
+		}
+
+		/**
+		 * @see javax.net.SocketFactory#createSocket(java.net.InetAddress, int,
+		 *      java.net.InetAddress, int)
+		 */
+		@Override
+		public Socket createSocket(InetAddress address, int port,
+				InetAddress localAddress, int localPort) throws IOException {
+			return m_factory.createSocket(address.getHostAddress(), port,
+					localAddress, localPort);
+		}
+
+		/**
+		 * @see SSLSocketFactory#createSocket(java.net.Socket, String, int,
+		 *      boolean)
+		 */
+		@Override
+		public Socket createSocket(Socket socket, String host, int port,
+				boolean autoClose) throws IOException {
+			return m_factory.createSocket(socket, host, port, autoClose);
+		}
+
+		/**
+		 * @see SSLSocketFactory#getDefaultCipherSuites()
+		 */
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return ((SSLSocketFactory) SSLSocketFactory.getDefault())
+					.getDefaultCipherSuites();
+		}
+
+		/**
+		 * @see SSLSocketFactory#getSupportedCipherSuites()
+		 */
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return ((SSLSocketFactory) SSLSocketFactory.getDefault())
+					.getSupportedCipherSuites();
+		}
+	}
+}
@@ -17,8 +17,6 @@
  */
 package com.cordys.coe.ac.httpconnector.impl;
 
-import java.text.MessageFormat;
-
 import org.apache.commons.httpclient.HttpClient;
 
 import com.cordys.coe.ac.httpconnector.config.IMethodConfiguration;
@@ -57,6 +55,14 @@ public class RestRequestHandler extends StandardRequestHandler {
 	 * Contains URI parameters that are read from the method implementation.
 	 */
 	private UriParameter[] urlParamArray = null;
+	/**
+	 * Contains whether the value of each URI parameter is percent encoded.
+	 */
+	private boolean[] urlParamEncode = null;
+	/**
+	 * Contains the parsed method URI, or null if the method has no URI.
+	 */
+	private UriTemplate uriTemplate = null;
 
 	/**
 	 * @see StandardRequestHandler#initialize(int, IXSLTStore,
@@ -71,6 +77,7 @@ public class RestRequestHandler extends StandardRequestHandler {
 		int[] params = XPathHelper.selectNodes(configXml, "ns:"
 				+ TAG_URI_PARAMETERS + "/ns:" + TAG_PARAMETER, xmi);
 		urlParamArray = new UriParameter[params.length];
+		urlParamEncode = new boolean[params.length];
 
 		for (int i = 0; i < params.length; i++) {
 			int paramNode = params[i];
@@ -105,8 +112,18 @@ public class RestRequestHandler extends StandardRequestHandler {
 			default:
 			}
 
+			// Values from the request are encoded unless switched off.
+			urlParamEncode[i] = Boolean.parseBoolean(Node.getAttribute(
+					paramNode, "encode",
+					String.valueOf(p.type == EUriParameterType.XPATH)));
 			urlParamArray[i] = p;
 		}
+
+		String uri = method.getUri();
+
+		if ((uri != null) && (uri.length() > 0)) {
+			uriTemplate = new UriTemplate(uri);
+		}
 	}
 
 	/**
@@ -116,13 +133,11 @@ public class RestRequestHandler extends StandardRequestHandler {
 	@Override
 	protected String getRequestUri(int requestNode,
 			IServerConnection connection, HttpClient httpClient) {
-		String uri = m_method.getUri();
-
-		if ((uri == null) || (uri.length() == 0)) {
+		if (uriTemplate == null) {
 			return "/";
 		}
 
-		Object[] args = new Object[urlParamArray.length];
+		String[] args = new String[urlParamArray.length];
 
 		for (int i = 0; i < args.length; i++) {
 			String value = null;
@@ -158,7 +173,7 @@ public class RestRequestHandler extends StandardRequestHandler {
 			args[i] = ((value != null) ? value : "");
 		}
 
-		uri = MessageFormat.format(uri, args);
+		String uri = uriTemplate.format(args, urlParamEncode);
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("REST request URI: " + uri);
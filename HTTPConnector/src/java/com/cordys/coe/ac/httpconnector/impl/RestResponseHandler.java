@@ -7,7 +7,6 @@ import org.apache.commons.httpclient.HttpMethod;
 import com.cordys.coe.ac.httpconnector.IResponseHandler;
 import com.cordys.coe.ac.httpconnector.config.IServerConnection;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
-import com.eibus.util.logger.CordysLogger;
 import com.eibus.xml.nom.Document;
 import com.eibus.xml.nom.Node;
 import com.eibus.xml.nom.XMLException;
@@ -18,12 +17,6 @@ import com.eibus.xml.nom.XMLException;
  * @author jpluimer
  */
 public class RestResponseHandler extends StandardResponseHandler {
-	/**
-	 * Logger for log messages from this class.
-	 */
-	private static final CordysLogger LOG = CordysLogger
-			.getCordysLogger(RestResponseHandler.class);
-
 	/**
 	 * @see IResponseHandler#convertResponseToXml(HttpMethod, IServerConnection,
 	 *      Document)
@@ -32,19 +25,9 @@ public class RestResponseHandler extends StandardResponseHandler {
 	public int convertResponseToXml(HttpMethod httpMethod,
 			IServerConnection serverConnection, Document doc)
 			throws XMLException, ConnectorException, IOException {
-		byte[] responseBody = httpMethod.getResponseBody();
-
-		if (LOG.isDebugEnabled()) {
-			try {
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("Received response data: "
-							+ new String(responseBody, "UTF-8"));
-				}
-			} catch (Exception ignored) {
-			}
-		}
+		byte[] responseBody = getHTTPResponse(httpMethod, serverConnection);
 
-		if (responseBody.length == 0) {
+		if ((responseBody == null) || (responseBody.length == 0)) {
 			return 0;
 		}
 
@@ -18,6 +18,7 @@
 package com.cordys.coe.ac.httpconnector.impl;
 
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.HashSet;
 import java.util.Set;
@@ -30,10 +31,12 @@ import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
 
 import com.cordys.coe.ac.httpconnector.IRequestHandler;
 import com.cordys.coe.ac.httpconnector.config.IMethodConfiguration;
 import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.config.DefaultXSLTStore;
 import com.cordys.coe.ac.httpconnector.config.IXSLTStore;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
 import com.cordys.coe.ac.httpconnector.exception.HandlerException;
@@ -95,6 +98,12 @@ public class StandardRequestHandler implements IRequestHandler {
 	 * If <code>true</code> all namespace definitions are removed.
 	 */
 	private boolean m_removeAllNamespaces;
+	/**
+	 * If <code>true</code> the subclass creates the request body in
+	 * {@link #getPostData(int, IServerConnection)} or
+	 * {@link #convertXmlToBytes(int)}, so the request XML is not streamed.
+	 */
+	private boolean m_customPostData;
 	/**
 	 * Contains namespace URI's which will be removed from the final XML.
 	 */
@@ -110,7 +119,16 @@ public class StandardRequestHandler implements IRequestHandler {
 
 	private XSLT xslt;
 
-	boolean isInXMLStore = false;
+	/**
+	 * Holds the path of the XSLT file, if the XSLT is read from a file. The
+	 * XSLT store checks whether the file has changed.
+	 */
+	private String xsltFile;
+	/**
+	 * Holds the XMLStore path of the XSLT, if the XSLT is stored there. These
+	 * XSLTs are shared through the XSLT store, which knows the organization.
+	 */
+	private String xmlstorePath;
 	
 	/**
 	 * Contains request headers that are read from the method implementation.
@@ -127,6 +145,7 @@ public class StandardRequestHandler implements IRequestHandler {
 			throws HandlerException {
 		this.xslStore = xslStore;
 		m_method = method;
+		m_customPostData = overridesPostData(getClass());
 
 		int tmpNode;
 
@@ -134,9 +153,9 @@ public class StandardRequestHandler implements IRequestHandler {
 		if ((tmpNode = XPathHelper.selectSingleNode(configXml,
 				"ns:" + TAG_XSLT, xmi)) != 0) {
 			xsltNode = Node.duplicate(tmpNode);
-			if (Node.getAttribute(xsltNode, "file", null) == null
-					&& Node.getAttribute(xsltNode, "xmlstore", null) != null) {
-				isInXMLStore = true;
+			xsltFile = Node.getAttribute(xsltNode, "file", null);
+			if (xsltFile == null) {
+				xmlstorePath = Node.getAttribute(xsltNode, "xmlstore", null);
 			}
 		}
 
@@ -256,15 +275,10 @@ public class StandardRequestHandler implements IRequestHandler {
 			}
 
 			// Get the data that should be posted.
-			byte[] reqData = getPostData(reqNode, connection);
 			String contentType = getContentType();
 
-			httpMethod.setRequestEntity(new ByteArrayRequestEntity(reqData,
+			httpMethod.setRequestEntity(getRequestEntity(reqNode, connection,
 					contentType));
-			
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("Sending data: " + new String(reqData));
-			}
 
 			httpMethod.setRequestHeader("Content-type", contentType);
 			setRequestHeaders(httpMethod);
@@ -323,10 +337,19 @@ public class StandardRequestHandler implements IRequestHandler {
 	protected int executeXslt(int requestNode, IMethodConfiguration method,
 			boolean mustDelete) throws HandlerException {
 		XSLT xslt = this.xslt;
+		// The default store shares the file and XMLStore XSLTs and notices
+		// when they change, so they are not kept by the handler.
+		boolean shared = xslStore instanceof DefaultXSLTStore;
 		try {
+			if ((xslt == null) && shared && (xsltFile != null)) {
+				xslt = ((DefaultXSLTStore) xslStore).getFileXslt(xsltFile);
+			}
+			if ((xslt == null) && shared && (xmlstorePath != null)) {
+				xslt = ((DefaultXSLTStore) xslStore).getXslt(xmlstorePath);
+			}
 			if (xslt == null) {
 				xslt = xslStore.loadXslt(xsltNode);
-				if (!isInXMLStore) {
+				if ((xmlstorePath == null) && !(shared && (xsltFile != null))) {
 					this.xslt = xslt;
 				}
 			}
@@ -358,6 +381,75 @@ public class StandardRequestHandler implements IRequestHandler {
 		return DEFAULT_CONTENT_TYPE;
 	}
 
+	/**
+	 * This method returns the entity that is sent as the request body. This
+	 * implementation sends the request XML, which is encoded while it is
+	 * written to the connection. If a subclass overrides
+	 * {@link #getPostData(int, IServerConnection)} or
+	 * {@link #convertXmlToBytes(int)} the data returned by them is sent
+	 * instead.
+	 * 
+	 * @param requestNode
+	 *            The current request XML.
+	 * @param connection
+	 *            The current server connection.
+	 * @param contentType
+	 *            The content type of the request.
+	 * 
+	 * @return The request entity.
+	 * 
+	 * @throws HandlerException
+	 *             In case of any exceptions.
+	 */
+	protected RequestEntity getRequestEntity(int requestNode,
+			IServerConnection connection, String contentType)
+			throws HandlerException {
+		if (!m_customPostData) {
+			XmlRequestEntity entity = new XmlRequestEntity(requestNode,
+					contentType);
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Sending data: " + entity);
+			}
+
+			return entity;
+		}
+
+		byte[] reqData = getPostData(requestNode, connection);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Sending data: " + new String(reqData));
+		}
+
+		return new ByteArrayRequestEntity(reqData, contentType);
+	}
+
+	/**
+	 * Returns whether the handler class overrides one of the methods which
+	 * create the request body.
+	 * 
+	 * @param handlerClass
+	 *            The class of the handler.
+	 * 
+	 * @return <code>true</code> if getPostData or convertXmlToBytes is
+	 *         overridden.
+	 */
+	private static boolean overridesPostData(Class<?> handlerClass) {
+		for (Class<?> c = handlerClass; c != StandardRequestHandler.class; c = c
+				.getSuperclass()) {
+			for (Method m : c.getDeclaredMethods()) {
+				String name = m.getName();
+
+				if ("getPostData".equals(name)
+						|| "convertXmlToBytes".equals(name)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * This method returns the data that should be put into the post data.
 	 * 
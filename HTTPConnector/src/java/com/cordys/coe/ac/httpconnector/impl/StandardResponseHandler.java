@@ -26,9 +26,11 @@ import org.apache.commons.httpclient.HttpMethod;
 import com.cordys.coe.ac.httpconnector.IResponseHandler;
 import com.cordys.coe.ac.httpconnector.config.IMethodConfiguration;
 import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.config.DefaultXSLTStore;
 import com.cordys.coe.ac.httpconnector.config.IXSLTStore;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
 import com.cordys.coe.ac.httpconnector.exception.ConnectorExceptionMessages;
+import com.cordys.coe.ac.httpconnector.utils.Utils;
 import com.cordys.coe.ac.httpconnector.utils.XmlUtils;
 import com.cordys.coe.util.xml.nom.XPathHelper;
 import com.eibus.util.logger.CordysLogger;
@@ -66,6 +68,10 @@ public class StandardResponseHandler implements IResponseHandler {
 	 * Holds the name of the tag 'namespace-uri'.
 	 */
 	private static final String TAG_NAMESPACE_URI = "namespace-uri";
+	/**
+	 * Holds the name of the XSLT attribute 'streaming'.
+	 */
+	private static final String ATTRIBUTE_STREAMING = "streaming";
 	/**
 	 * Contains the method configuration to which this handler is attached to.
 	 */
@@ -89,7 +95,21 @@ public class StandardResponseHandler implements IResponseHandler {
 
 	private XSLT xslt;
 
-	boolean isInXMLStore = false;
+	/**
+	 * Holds the path of the XSLT file, if the XSLT is read from a file. The
+	 * XSLT store checks whether the file has changed.
+	 */
+	private String xsltFile;
+	/**
+	 * Holds the XMLStore path of the XSLT, if the XSLT is stored there. These
+	 * XSLTs are shared through the XSLT store, which knows the organization.
+	 */
+	private String xmlstorePath;
+	/**
+	 * Holds the XSLT which is applied while the response is read, if the XSLT
+	 * is configured for streaming.
+	 */
+	private StreamingXslt m_streamingXslt;
 
 	/**
 	 * @see IResponseHandler#convertResponseToXml(HttpMethod, IServerConnection,
@@ -99,7 +119,12 @@ public class StandardResponseHandler implements IResponseHandler {
 	public int convertResponseToXml(HttpMethod httpMethod,
 			IServerConnection serverConnection, Document doc)
 			throws XMLException, ConnectorException, IOException {
-		int resNode = convertToXml(httpMethod, doc);
+		if (m_streamingXslt != null) {
+			return convertStreamingResponseToXml(httpMethod, serverConnection,
+					doc);
+		}
+
+		int resNode = convertToXml(httpMethod, serverConnection, doc);
 
 		if (resNode == 0) {
 			return 0;
@@ -168,9 +193,19 @@ public class StandardResponseHandler implements IResponseHandler {
 		if ((tmpNode = XPathHelper.selectSingleNode(configXml,
 				"ns:" + TAG_XSLT, xmi)) != 0) {
 			xsltNode = Node.duplicate(tmpNode);
-			if (Node.getAttribute(xsltNode, "file", null) == null
-					&& Node.getAttribute(xsltNode, "xmlstore", null) != null) {
-				isInXMLStore = true;
+			xsltFile = Node.getAttribute(xsltNode, "file", null);
+			if (xsltFile == null) {
+				xmlstorePath = Node.getAttribute(xsltNode, "xmlstore", null);
+			}
+
+			if (Boolean.parseBoolean(Node.getAttribute(xsltNode,
+					ATTRIBUTE_STREAMING, "false"))) {
+				if (method.getValidResponseXPath() != null) {
+					throw new ConnectorException(
+							ConnectorExceptionMessages.STREAMING_XSLT_CANNOT_BE_USED_WITH_A_VALID_RESPONSE_XPATH);
+				}
+
+				m_streamingXslt = StreamingXslt.create(xsltNode);
 			}
 		}
 
@@ -213,10 +248,14 @@ public class StandardResponseHandler implements IResponseHandler {
 	}
 
 	/**
-	 * Converts the HTTP response to XML.
+	 * Converts the HTTP response to XML by streaming it through the XSLT. The
+	 * response is not loaded as NOM XML before the transformation, so
+	 * {@link #preProcessXml(int)} is not called.
 	 * 
 	 * @param httpMethod
 	 *            HTTP method object from which the response data is read.
+	 * @param serverConnection
+	 *            Server connection which limits the response size.
 	 * @param doc
 	 *            NOM document for creating the XML.
 	 * 
@@ -224,22 +263,96 @@ public class StandardResponseHandler implements IResponseHandler {
 	 * 
 	 * @throws IOException
 	 * @throws XMLException
+	 * @throws ConnectorException
 	 */
-	protected int convertToXml(HttpMethod httpMethod, Document doc)
-			throws IOException, XMLException {
-		byte[] responseBody = httpMethod.getResponseBody();
+	protected int convertStreamingResponseToXml(HttpMethod httpMethod,
+			IServerConnection serverConnection, Document doc)
+			throws IOException, XMLException, ConnectorException {
+		int resNode = m_streamingXslt.transform(httpMethod, serverConnection,
+				doc);
+
+		if (resNode == 0) {
+			return 0;
+		}
+
+		boolean success = false;
 
 		if (LOG.isDebugEnabled()) {
-			try {
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("Received response data: "
-							+ new String(responseBody, "UTF-8"));
+			LOG.debug("Response XML after streaming XSLT transformation: "
+					+ Node.writeToString(resNode, true));
+		}
+
+		try {
+			if (m_responseRootXPath != null) {
+				resNode = handleResponseXPath(resNode, method);
+			}
+
+			if ((m_removeNamespaceUriSet != null) || m_removeAllNamespaces) {
+				XmlUtils.removeNamespacesRecursively(resNode,
+						m_removeNamespaceUriSet);
+			}
+
+			resNode = postProcessXml(resNode);
+
+			success = true;
+		} finally {
+			if (!success) {
+				if (resNode != 0) {
+					Node.delete(resNode);
+					resNode = 0;
 				}
-			} catch (Exception ignored) {
 			}
 		}
 
-		 if (responseBody == null || responseBody.length == 0){
+		return resNode;
+	}
+
+	/**
+	 * Converts the HTTP response to XML. The size of the response is not
+	 * limited.
+	 * 
+	 * @param httpMethod
+	 *            HTTP method object from which the response data is read.
+	 * @param doc
+	 *            NOM document for creating the XML.
+	 * 
+	 * @return Converted NOM XML.
+	 * 
+	 * @throws IOException
+	 * @throws XMLException
+	 * 
+	 * @deprecated Use
+	 *             {@link #convertToXml(HttpMethod, IServerConnection, Document)}
+	 *             , which applies the maximum response size of the connection.
+	 */
+	@Deprecated
+	protected int convertToXml(HttpMethod httpMethod, Document doc)
+			throws IOException, XMLException {
+		return convertToXml(httpMethod, null, doc);
+	}
+
+	/**
+	 * Converts the HTTP response to XML.
+	 * 
+	 * @param httpMethod
+	 *            HTTP method object from which the response data is read.
+	 * @param serverConnection
+	 *            Server connection which limits the response size, or null
+	 *            for no limit.
+	 * @param doc
+	 *            NOM document for creating the XML.
+	 * 
+	 * @return Converted NOM XML.
+	 * 
+	 * @throws IOException
+	 * @throws XMLException
+	 */
+	protected int convertToXml(HttpMethod httpMethod,
+			IServerConnection serverConnection, Document doc)
+			throws IOException, XMLException {
+		byte[] responseBody = getHTTPResponse(httpMethod, serverConnection);
+
+		if (responseBody == null || responseBody.length == 0){
 			return 0;
 		}
 
@@ -261,9 +374,18 @@ public class StandardResponseHandler implements IResponseHandler {
 	protected int executeXslt(int responseNode, IMethodConfiguration method)
 			throws ConnectorException {
 		XSLT xslt = this.xslt;
+		// The default store shares the file and XMLStore XSLTs and notices
+		// when they change, so they are not kept by the handler.
+		boolean shared = xslStore instanceof DefaultXSLTStore;
+		if ((xslt == null) && shared && (xsltFile != null)) {
+			xslt = ((DefaultXSLTStore) xslStore).getFileXslt(xsltFile);
+		}
+		if ((xslt == null) && shared && (xmlstorePath != null)) {
+			xslt = ((DefaultXSLTStore) xslStore).getXslt(xmlstorePath);
+		}
 		if (xslt == null) {
 			xslt = xslStore.loadXslt(xsltNode);
-			if (!isInXMLStore) {
+			if ((xmlstorePath == null) && !(shared && (xsltFile != null))) {
 				this.xslt = xslt;
 			}
 		}
@@ -283,6 +405,7 @@ public class StandardResponseHandler implements IResponseHandler {
 
 	/**
 	 * This method will log the response as it was received from the web server.
+	 * The size of the response is not limited.
 	 * 
 	 * @param httpMethod
 	 *            The HTTP method.
@@ -291,19 +414,41 @@ public class StandardResponseHandler implements IResponseHandler {
 	 * 
 	 * @throws IOException
 	 *             In case the response could not be read for some reason.
+	 * 
+	 * @deprecated Use {@link #getHTTPResponse(HttpMethod, IServerConnection)},
+	 *             which applies the maximum response size of the connection.
 	 */
+	@Deprecated
 	protected byte[] getHTTPResponse(HttpMethod httpMethod) throws IOException {
-		byte[] returnValue = httpMethod.getResponseBody();
+		return getHTTPResponse(httpMethod, null);
+	}
 
-		if (LOG.isDebugEnabled()) {
-			if (LOG.isDebugEnabled()) {
-				try {
-					if (LOG.isDebugEnabled()) {
-						LOG.debug("Received response data: "
-								+ new String(returnValue, "UTF-8"));
-					}
-				} catch (Exception ignored) {
-				}
+	/**
+	 * This method will log the response as it was received from the web server.
+	 * 
+	 * @param httpMethod
+	 *            The HTTP method.
+	 * @param serverConnection
+	 *            Server connection which limits the response size, or null
+	 *            for no limit.
+	 * 
+	 * @return The response body.
+	 * 
+	 * @throws IOException
+	 *             In case the response could not be read for some reason or
+	 *             it is larger than the configured maximum size.
+	 */
+	protected byte[] getHTTPResponse(HttpMethod httpMethod,
+			IServerConnection serverConnection) throws IOException {
+		byte[] returnValue = Utils.readResponseBody(httpMethod,
+				(serverConnection != null) ? serverConnection
+						.getMaxResponseSize() : 0);
+
+		if (LOG.isDebugEnabled() && (returnValue != null)) {
+			try {
+				LOG.debug("Received response data: "
+						+ new String(returnValue, "UTF-8"));
+			} catch (Exception ignored) {
 			}
 		}
 
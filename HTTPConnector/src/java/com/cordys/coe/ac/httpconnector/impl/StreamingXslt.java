@@ -0,0 +1,354 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.StringReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
+import com.cordys.coe.ac.httpconnector.exception.ConnectorExceptionMessages;
+import com.cordys.coe.ac.httpconnector.utils.Utils;
+import com.eibus.xml.nom.Document;
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.nom.XMLException;
+
+/**
+ * XSLT which is applied to the response body while it is read from the
+ * connection. The response is not loaded into a NOM tree first. The result
+ * of the transformation is written to a byte buffer which is then loaded as
+ * NOM XML, so only the (usually much smaller) transformed response is held
+ * in memory twice. The XSLT is compiled once with JAXP and can be used by
+ * several threads at the same time. Like the other file XSLTs, an XSLT read
+ * from a file is compiled again when the modification time of the file
+ * changes.
+ * 
+ * <p>
+ * The response comes from an untrusted server. It is parsed with secure
+ * processing enabled and without external entities or DTDs.
+ * </p>
+ * 
+ * @author agent
+ */
+public class StreamingXslt {
+	/**
+	 * Resolves every external entity to an empty document, in case the
+	 * parser ignores one of the features which disable them.
+	 */
+	private static final EntityResolver NO_EXTERNAL_ENTITIES = new EntityResolver() {
+		@Override
+		public InputSource resolveEntity(String publicId, String systemId) {
+			return new InputSource(new StringReader(""));
+		}
+	};
+	/**
+	 * Creates the parsers for the response. Access is synchronized, since a
+	 * factory is not thread safe.
+	 */
+	private final SAXParserFactory m_parserFactory;
+	/**
+	 * Holds the XSLT file, or null if the XSLT is inline.
+	 */
+	private final File m_file;
+	/**
+	 * Holds the modification time of the XSLT file when it was compiled.
+	 */
+	private volatile long m_lastModified;
+	/**
+	 * Holds the compiled XSLT.
+	 */
+	private volatile Templates m_templates;
+
+	/**
+	 * Creates a new StreamingXslt object.
+	 * 
+	 * @param templates
+	 *            The compiled XSLT.
+	 * @param parserFactory
+	 *            Creates the parsers for the response.
+	 * @param file
+	 *            The XSLT file, or null if the XSLT is inline.
+	 * @param lastModified
+	 *            The modification time of the file when it was compiled.
+	 */
+	private StreamingXslt(Templates templates, SAXParserFactory parserFactory,
+			File file, long lastModified) {
+		m_templates = templates;
+		m_parserFactory = parserFactory;
+		m_file = file;
+		m_lastModified = lastModified;
+	}
+
+	/**
+	 * Compiles the XSLT from the XSLT configuration node. The XSLT must be
+	 * read from a file or be inline, because XMLStore XSLTs depend on the
+	 * organization of the request.
+	 * 
+	 * @param xsltNode
+	 *            XSLT configuration node.
+	 * 
+	 * @return The compiled XSLT.
+	 * 
+	 * @throws ConnectorException
+	 *             Thrown if the XSLT could not be compiled.
+	 */
+	public static StreamingXslt create(int xsltNode) throws ConnectorException {
+		String filePath = Node.getAttribute(xsltNode, "file", null);
+		File file = null;
+		long lastModified = 0;
+		StreamSource source;
+
+		if (filePath != null) {
+			file = new File(filePath);
+			lastModified = file.lastModified();
+			source = new StreamSource(file);
+		} else {
+			int inlineNode = Node.getFirstElement(xsltNode);
+
+			if ((inlineNode == 0)
+					|| (Node.getAttribute(xsltNode, "xmlstore", null) != null)) {
+				throw new ConnectorException(
+						ConnectorExceptionMessages.STREAMING_XSLT_MUST_BE_READ_FROM_A_FILE_OR_BE_INLINE);
+			}
+
+			source = new StreamSource(new StringReader(Node.writeToString(
+					inlineNode, false)));
+		}
+
+		try {
+			return new StreamingXslt(compile(source), createParserFactory(),
+					file, lastModified);
+		} catch (ParserConfigurationException e) {
+			throw new ConnectorException(e,
+					ConnectorExceptionMessages.UNABLE_TO_COMPILE_THE_STREAMING_XSLT_0,
+					e.getMessage());
+		} catch (SAXException e) {
+			throw new ConnectorException(e,
+					ConnectorExceptionMessages.UNABLE_TO_COMPILE_THE_STREAMING_XSLT_0,
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * Transforms the response body and loads the result as NOM XML.
+	 * 
+	 * @param httpMethod
+	 *            HTTP method object from which the response data is read.
+	 * @param serverConnection
+	 *            Server connection which limits the response size.
+	 * @param doc
+	 *            NOM document for creating the XML.
+	 * 
+	 * @return The transformed XML or 0 if the response or the result is empty.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the response could not be read or is too large.
+	 * @throws XMLException
+	 *             Thrown if the result is not valid XML.
+	 * @throws ConnectorException
+	 *             Thrown if the transformation failed.
+	 */
+	public int transform(HttpMethod httpMethod,
+			IServerConnection serverConnection, Document doc)
+			throws IOException, XMLException, ConnectorException {
+		InputStream in = Utils.getResponseStream(httpMethod,
+				serverConnection.getMaxResponseSize());
+
+		if (in == null) {
+			return 0;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try {
+			PushbackInputStream body = new PushbackInputStream(in);
+			int first = body.read();
+
+			if (first == -1) {
+				return 0;
+			}
+
+			body.unread(first);
+
+			getTemplates().newTransformer().transform(
+					new SAXSource(createReader(), new InputSource(body)),
+					new StreamResult(out));
+		} catch (TransformerException e) {
+			Throwable cause = e.getException();
+
+			// Report read errors, like a too large response, as such.
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+
+			throw new ConnectorException(e,
+					ConnectorExceptionMessages.STREAMING_XSLT_TRANSFORMATION_FAILED_0,
+					e.getMessageAndLocation());
+		} finally {
+			in.close();
+		}
+
+		if (out.size() == 0) {
+			return 0;
+		}
+
+		return doc.load(out.toByteArray());
+	}
+
+	/**
+	 * Compiles an XSLT.
+	 * 
+	 * @param source
+	 *            The XSLT.
+	 * 
+	 * @return The compiled XSLT.
+	 * 
+	 * @throws ConnectorException
+	 *             Thrown if the XSLT could not be compiled.
+	 */
+	private static Templates compile(Source source) throws ConnectorException {
+		try {
+			TransformerFactory factory = TransformerFactory.newInstance();
+
+			factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+
+			return factory.newTemplates(source);
+		} catch (TransformerConfigurationException e) {
+			throw new ConnectorException(e,
+					ConnectorExceptionMessages.UNABLE_TO_COMPILE_THE_STREAMING_XSLT_0,
+					e.getMessageAndLocation());
+		}
+	}
+
+	/**
+	 * Returns the compiled XSLT. A file XSLT is compiled again when the
+	 * modification time of the file has changed, as
+	 * {@link com.cordys.coe.ac.httpconnector.config.DefaultXSLTStore#getFileXslt(String)}
+	 * does. If the file can not be read anymore the last compiled XSLT stays
+	 * in use.
+	 * 
+	 * @return The compiled XSLT.
+	 * 
+	 * @throws ConnectorException
+	 *             Thrown if the changed XSLT could not be compiled.
+	 */
+	private Templates getTemplates() throws ConnectorException {
+		if (m_file == null) {
+			return m_templates;
+		}
+
+		long lastModified = m_file.lastModified();
+
+		if ((lastModified == m_lastModified) || (lastModified == 0)) {
+			return m_templates;
+		}
+
+		synchronized (this) {
+			if (lastModified != m_lastModified) {
+				m_templates = compile(new StreamSource(m_file));
+				m_lastModified = lastModified;
+			}
+
+			return m_templates;
+		}
+	}
+
+	/**
+	 * Creates the factory for the parsers which read the response. Secure
+	 * processing limits entity expansion, and external entities and DTDs are
+	 * not loaded, so a response can not make the connector read local files
+	 * or other servers.
+	 * 
+	 * @return The parser factory.
+	 * 
+	 * @throws ParserConfigurationException
+	 *             In case the parser does not support one of the features.
+	 * @throws SAXException
+	 *             In case the parser does not recognize one of the features.
+	 */
+	private static SAXParserFactory createParserFactory()
+			throws ParserConfigurationException, SAXException {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+
+		factory.setNamespaceAware(true);
+		factory.setValidating(false);
+		factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		factory.setFeature(
+				"http://xml.org/sax/features/external-general-entities", false);
+		factory.setFeature(
+				"http://xml.org/sax/features/external-parameter-entities",
+				false);
+		factory.setFeature(
+				"http://apache.org/xml/features/nonvalidating/load-external-dtd",
+				false);
+
+		return factory;
+	}
+
+	/**
+	 * Creates the parser for one response.
+	 * 
+	 * @return The parser.
+	 * 
+	 * @throws ConnectorException
+	 *             In case the parser could not be created.
+	 */
+	private XMLReader createReader() throws ConnectorException {
+		XMLReader reader;
+
+		try {
+			synchronized (m_parserFactory) {
+				reader = m_parserFactory.newSAXParser().getXMLReader();
+			}
+		} catch (ParserConfigurationException e) {
+			throw new ConnectorException(e,
+					ConnectorExceptionMessages.STREAMING_XSLT_TRANSFORMATION_FAILED_0,
+					e.getMessage());
+		} catch (SAXException e) {
+			throw new ConnectorException(e,
+					ConnectorExceptionMessages.STREAMING_XSLT_TRANSFORMATION_FAILED_0,
+					e.getMessage());
+		}
+
+		reader.setEntityResolver(NO_EXTERNAL_ENTITIES);
+
+		return reader;
+	}
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cordys.coe.ac.httpconnector.exception.HandlerException;
+import com.cordys.coe.ac.httpconnector.exception.HandlerExceptionMessages;
+
+/**
+ * URI pattern which is parsed once into literal text and parameter slots. The
+ * pattern uses the MessageFormat syntax: {0} is replaced with the first value
+ * and text between single quotes is copied as-is. Values can be percent
+ * encoded according to RFC 3986. Values in the path are encoded as a path
+ * segment, values after the '?' as a query component.
+ * 
+ * @author agent
+ */
+class UriTemplate {
+	/**
+	 * Holds the characters that are not encoded in a path segment.
+	 */
+	private static final boolean[] PATH_SEGMENT_CHARS = getAllowedChars("!$&'()*+,;=:@");
+	/**
+	 * Holds the characters that are not encoded in a query component.
+	 */
+	private static final boolean[] QUERY_CHARS = getAllowedChars("!$'()*,;:@/?");
+	/**
+	 * Holds the hexadecimal digits used for percent encoding.
+	 */
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	/**
+	 * Holds the literal text before each slot. The last entry holds the text
+	 * after the last slot.
+	 */
+	private final String[] m_literals;
+	/**
+	 * Holds the value index of each slot.
+	 */
+	private final int[] m_slots;
+	/**
+	 * Holds whether each slot is in the query part of the URI.
+	 */
+	private final boolean[] m_inQuery;
+	/**
+	 * Holds the expected length of the URI, used to size the buffer.
+	 */
+	private final int m_lengthHint;
+
+	/**
+	 * Creates a new UriTemplate object.
+	 * 
+	 * @param pattern
+	 *            The URI pattern.
+	 * 
+	 * @throws HandlerException
+	 *             Thrown if the pattern has unmatched braces or a parameter
+	 *             which is not a plain index.
+	 */
+	UriTemplate(String pattern) throws HandlerException {
+		List<String> literals = new ArrayList<String>();
+		List<Integer> slots = new ArrayList<Integer>();
+		List<Boolean> inQuery = new ArrayList<Boolean>();
+		StringBuilder literal = new StringBuilder(pattern.length());
+		boolean query = false;
+		boolean quoted = false;
+		int length = pattern.length();
+
+		for (int i = 0; i < length; i++) {
+			char c = pattern.charAt(i);
+
+			if (c == '\'') {
+				if ((i + 1 < length) && (pattern.charAt(i + 1) == '\'')) {
+					literal.append(c);
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if ((c == '{') && !quoted) {
+				int end = pattern.indexOf('}', i);
+				int index = -1;
+
+				if (end > i) {
+					try {
+						index = Integer.parseInt(pattern.substring(i + 1, end)
+								.trim());
+					} catch (NumberFormatException ignored) {
+					}
+				}
+
+				if (index < 0) {
+					throw new HandlerException(
+							HandlerExceptionMessages.INVALID_URI_TEMPLATE_0,
+							pattern);
+				}
+
+				literals.add(literal.toString());
+				literal.setLength(0);
+				slots.add(index);
+				inQuery.add(query);
+				i = end;
+			} else {
+				if ((c == '?') || (c == '#')) {
+					query = true;
+				}
+
+				literal.append(c);
+			}
+		}
+
+		literals.add(literal.toString());
+
+		m_literals = literals.toArray(new String[literals.size()]);
+		m_slots = new int[slots.size()];
+		m_inQuery = new boolean[slots.size()];
+
+		for (int i = 0; i < m_slots.length; i++) {
+			m_slots[i] = slots.get(i);
+			m_inQuery[i] = inQuery.get(i);
+		}
+
+		m_lengthHint = pattern.length() + (m_slots.length * 16);
+	}
+
+	/**
+	 * Builds the URI from the given values. A slot without a value is copied
+	 * as-is, like MessageFormat does.
+	 * 
+	 * @param values
+	 *            The values, by index.
+	 * @param encode
+	 *            Whether the value with the same index must be encoded.
+	 * 
+	 * @return The URI.
+	 */
+	String format(String[] values, boolean[] encode) {
+		StringBuilder sb = new StringBuilder(m_lengthHint);
+
+		for (int i = 0; i < m_slots.length; i++) {
+			sb.append(m_literals[i]);
+
+			int index = m_slots[i];
+
+			if (index >= values.length) {
+				sb.append('{').append(index).append('}');
+			} else if (encode[index]) {
+				appendEncoded(sb, values[index], m_inQuery[i] ? QUERY_CHARS
+						: PATH_SEGMENT_CHARS);
+			} else {
+				sb.append(values[index]);
+			}
+		}
+
+		sb.append(m_literals[m_slots.length]);
+
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the value to the buffer, percent encoding the UTF-8 bytes of all
+	 * characters which are not unreserved or explicitly allowed.
+	 * 
+	 * @param sb
+	 *            The buffer.
+	 * @param value
+	 *            The value to encode.
+	 * @param allowed
+	 *            The allowed ASCII characters.
+	 */
+	static void appendEncoded(StringBuilder sb, String value, boolean[] allowed) {
+		int length = value.length();
+		int i = 0;
+
+		// Most values need no encoding, so those are appended in one go.
+		while ((i < length) && (value.charAt(i) < 128)
+				&& allowed[value.charAt(i)]) {
+			i++;
+		}
+
+		if (i == length) {
+			sb.append(value);
+			return;
+		}
+
+		sb.append(value, 0, i);
+
+		byte[] bytes;
+
+		try {
+			bytes = value.substring(i).getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+
+		for (byte b : bytes) {
+			int c = b & 0xFF;
+
+			if ((c < 128) && allowed[c]) {
+				sb.append((char) c);
+			} else {
+				sb.append('%').append(HEX_DIGITS[c >> 4])
+						.append(HEX_DIGITS[c & 0xF]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the table of ASCII characters which are not encoded. These are
+	 * the unreserved characters of RFC 3986 and the given extra characters.
+	 * 
+	 * @param extra
+	 *            The extra characters.
+	 * 
+	 * @return The table, indexed by character.
+	 */
+	private static boolean[] getAllowedChars(String extra) {
+		boolean[] allowed = new boolean[128];
+
+		for (char c = 'a'; c <= 'z'; c++) {
+			allowed[c] = true;
+			allowed[Character.toUpperCase(c)] = true;
+		}
+
+		for (char c = '0'; c <= '9'; c++) {
+			allowed[c] = true;
+		}
+
+		for (char c : "-._~".toCharArray()) {
+			allowed[c] = true;
+		}
+
+		for (char c : extra.toCharArray()) {
+			allowed[c] = true;
+		}
+
+		return allowed;
+	}
+}
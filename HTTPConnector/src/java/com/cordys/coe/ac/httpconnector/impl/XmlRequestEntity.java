@@ -0,0 +1,201 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import com.eibus.xml.nom.Node;
+
+/**
+ * Request entity which sends an XML node as UTF-8. NOM only serializes a node
+ * to a String, so the request is held once as text. The text is encoded while
+ * it is written to the connection, so no byte array copy of it is made. The
+ * content length is calculated from the text, which allows the entity to be
+ * sent to servers which do not accept chunked requests.
+ * 
+ * @author agent
+ */
+public class XmlRequestEntity implements RequestEntity {
+	/**
+	 * Holds the character set used to encode the XML.
+	 */
+	private static final String CHARSET = "UTF-8";
+	/**
+	 * Holds the size of the buffer the XML is encoded into.
+	 */
+	private static final int WRITE_BUFFER_SIZE = 8192;
+	/**
+	 * Holds the length of the encoded XML in bytes.
+	 */
+	private final long m_contentLength;
+	/**
+	 * Holds the content type of the request.
+	 */
+	private final String m_contentType;
+	/**
+	 * Holds the serialized XML.
+	 */
+	private final String m_xml;
+
+	/**
+	 * Creates a new XmlRequestEntity object. The node is serialized right
+	 * away, so it can be deleted before the request is sent.
+	 * 
+	 * @param node
+	 *            The XML node to send.
+	 * @param contentType
+	 *            The content type of the request.
+	 */
+	public XmlRequestEntity(int node, String contentType) {
+		this(Node.writeToString(node, false), contentType);
+	}
+
+	/**
+	 * Creates a new XmlRequestEntity object.
+	 * 
+	 * @param xml
+	 *            The serialized XML to send.
+	 * @param contentType
+	 *            The content type of the request.
+	 */
+	XmlRequestEntity(String xml, String contentType) {
+		m_xml = xml;
+		m_contentType = contentType;
+		m_contentLength = getEncodedLength(m_xml);
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.methods.RequestEntity#getContentLength()
+	 */
+	@Override
+	public long getContentLength() {
+		return m_contentLength;
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.methods.RequestEntity#getContentType()
+	 */
+	@Override
+	public String getContentType() {
+		return m_contentType;
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.methods.RequestEntity#isRepeatable()
+	 */
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.methods.RequestEntity#writeRequest(java.io.OutputStream)
+	 */
+	@Override
+	public void writeRequest(OutputStream out) throws IOException {
+		// An OutputStreamWriter can not be used, because it holds back a
+		// trailing unpaired surrogate until it is closed, and closing it would
+		// close the connection.
+		CharsetEncoder encoder = Charset.forName(CHARSET).newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer in = CharBuffer.wrap(m_xml);
+		ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+		while (encoder.encode(in, buffer, true).isOverflow()) {
+			write(out, buffer);
+		}
+
+		while (encoder.flush(buffer).isOverflow()) {
+			write(out, buffer);
+		}
+
+		write(out, buffer);
+		out.flush();
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return m_xml;
+	}
+
+	/**
+	 * Writes the encoded bytes in the buffer to the stream and empties the
+	 * buffer.
+	 * 
+	 * @param out
+	 *            The stream to write to.
+	 * @param buffer
+	 *            The buffer.
+	 * 
+	 * @throws IOException
+	 *             In case the bytes can not be written.
+	 */
+	private static void write(OutputStream out, ByteBuffer buffer)
+			throws IOException {
+		out.write(buffer.array(), 0, buffer.position());
+		buffer.clear();
+	}
+
+	/**
+	 * Returns the number of bytes the given text takes when encoded as UTF-8.
+	 * Unpaired surrogates count as one byte, since the encoder replaces them
+	 * with a question mark.
+	 * 
+	 * @param text
+	 *            The text.
+	 * 
+	 * @return The encoded length.
+	 */
+	static long getEncodedLength(String text) {
+		long length = 0;
+		int count = text.length();
+
+		for (int i = 0; i < count; i++) {
+			char c = text.charAt(i);
+
+			if (c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && (i + 1 < count)
+					&& Character.isLowSurrogate(text.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else if ((c >= Character.MIN_SURROGATE)
+					&& (c <= Character.MAX_SURROGATE)) {
+				length += 1;
+			} else {
+				length += 3;
+			}
+		}
+
+		return length;
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.management;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram in the style of HdrHistogram. Values are
+ * recorded in microseconds. Values below 32 have their own bucket, larger
+ * values share a bucket with values that differ less than about 6 percent, so
+ * the memory use is fixed and recording is cheap.
+ * 
+ * @author agent
+ */
+public class LatencyHistogram {
+	/**
+	 * Holds the number of values which have their own bucket.
+	 */
+	private static final int LINEAR_BUCKETS = 32;
+	/**
+	 * Holds the number of buckets per power of two above the linear buckets.
+	 */
+	private static final int SUB_BUCKETS = 16;
+	/**
+	 * Holds the largest value that is recorded, which is a bit more than an
+	 * hour. Larger values are counted as this value.
+	 */
+	private static final long MAX_VALUE = (1L << 32) - 1;
+	/**
+	 * Holds the counts per bucket.
+	 */
+	private final AtomicLongArray m_counts = new AtomicLongArray(
+			getBucket(MAX_VALUE) + 1);
+	/**
+	 * Holds the total number of recorded values.
+	 */
+	private final AtomicLong m_totalCount = new AtomicLong();
+	/**
+	 * Holds the largest recorded value.
+	 */
+	private final AtomicLong m_maxValue = new AtomicLong();
+
+	/**
+	 * Records a value.
+	 * 
+	 * @param micros
+	 *            The value in microseconds.
+	 */
+	public void record(long micros) {
+		long value = Math.max(0, Math.min(micros, MAX_VALUE));
+
+		m_counts.incrementAndGet(getBucket(value));
+		m_totalCount.incrementAndGet();
+
+		long max;
+
+		while ((max = m_maxValue.get()) < value) {
+			if (m_maxValue.compareAndSet(max, value)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 * 
+	 * @return The number of recorded values.
+	 */
+	public long getTotalCount() {
+		return m_totalCount.get();
+	}
+
+	/**
+	 * Returns the largest recorded value.
+	 * 
+	 * @return The largest value in microseconds.
+	 */
+	public long getMaxValue() {
+		return m_maxValue.get();
+	}
+
+	/**
+	 * Returns the value at the given percentile. The result is the highest
+	 * value of the bucket the percentile falls in, but never more than the
+	 * largest recorded value. Values recorded while this method runs may or
+	 * may not be taken into account.
+	 * 
+	 * @param percentile
+	 *            The percentile, like 99.9.
+	 * 
+	 * @return The value in microseconds, or 0 if nothing was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = m_totalCount.get();
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil((percentile / 100) * total));
+		long count = 0;
+		int buckets = m_counts.length();
+
+		for (int i = 0; i < buckets; i++) {
+			count += m_counts.get(i);
+
+			if (count >= rank) {
+				return Math.min(getHighestValue(i), m_maxValue.get());
+			}
+		}
+
+		return m_maxValue.get();
+	}
+
+	/**
+	 * Removes all recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < m_counts.length(); i++) {
+			m_counts.set(i, 0);
+		}
+
+		m_totalCount.set(0);
+		m_maxValue.set(0);
+	}
+
+	/**
+	 * Returns the bucket for the given value.
+	 * 
+	 * @param value
+	 *            The value, between 0 and MAX_VALUE.
+	 * 
+	 * @return The bucket index.
+	 */
+	static int getBucket(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+
+		// Keep the 5 most significant bits, of which the first is always set.
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+		int sub = (int) (value >>> shift) - SUB_BUCKETS;
+
+		return LINEAR_BUCKETS + ((shift - 1) * SUB_BUCKETS) + sub;
+	}
+
+	/**
+	 * Returns the highest value which is counted in the given bucket.
+	 * 
+	 * @param bucket
+	 *            The bucket index.
+	 * 
+	 * @return The highest value.
+	 */
+	static long getHighestValue(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = ((bucket - LINEAR_BUCKETS) / SUB_BUCKETS) + 1;
+		long sub = ((bucket - LINEAR_BUCKETS) % SUB_BUCKETS) + SUB_BUCKETS;
+
+		return ((sub + 1) << shift) - 1;
+	}
+}
@@ -1,6 +1,10 @@
 package com.cordys.coe.ac.httpconnector.management;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import com.cordys.coe.ac.httpconnector.Messages;
+import com.eibus.localization.message.Message;
 import com.eibus.management.IManagedComponent;
 import com.eibus.management.counters.CounterFactory;
 import com.eibus.management.counters.ITimerEventValueCounter;
@@ -11,6 +15,14 @@ public class PerformanceCounters {
 	private ITimerEventValueCounter requestTransformation;
 	private ITimerEventValueCounter httpProcessing;
 	private ITimerEventValueCounter responseTransformation;
+	private IManagedComponent connectionsInfo;
+	private IManagedComponent methodsInfo;
+	private IManagedComponent poolsInfo;
+	private IManagedComponent resilienceInfo;
+	private final ConcurrentMap<String, RequestCounters> connectionCounters = new ConcurrentHashMap<String, RequestCounters>();
+	private final ConcurrentMap<String, RequestCounters> methodCounters = new ConcurrentHashMap<String, RequestCounters>();
+	private final ConcurrentMap<String, PoolCounters> poolCounters = new ConcurrentHashMap<String, PoolCounters>();
+	private final ConcurrentMap<String, ResilienceCounters> resilienceCounters = new ConcurrentHashMap<String, ResilienceCounters>();
 
 	public PerformanceCounters(IManagedComponent managedComponent) {
 		processingInfo = managedComponent.createSubComponent("Processing",
@@ -28,6 +40,15 @@ public class PerformanceCounters {
 				.createPerformanceCounter("ResponseTransformation",
 						Messages.RESPONSE_TRANSFORMATION_TIME,
 						CounterFactory.TIMER_EVENT_VALUE_COUNTER);
+
+		connectionsInfo = managedComponent.createSubComponent("Connections",
+				"Connections", Messages.CONNECTION_STATISTICS, this);
+		methodsInfo = managedComponent.createSubComponent("Methods",
+				"Methods", Messages.METHOD_STATISTICS, this);
+		poolsInfo = managedComponent.createSubComponent("ConnectionPools",
+				"Connection Pools", Messages.CONNECTION_POOL_STATISTICS, this);
+		resilienceInfo = managedComponent.createSubComponent("Resilience",
+				"Resilience", Messages.RESILIENCE_STATISTICS, this);
 	}
 
 	public long getStartTime() {
@@ -45,4 +66,150 @@ public class PerformanceCounters {
 	public void finishResponseTransformation(long startTime) {
 		responseTransformation.finish(startTime);
 	}
+
+	/**
+	 * Returns the request counters of a connection. The counters are created
+	 * the first time a connection is used.
+	 * 
+	 * @param connectionId
+	 *            The connection ID.
+	 * 
+	 * @return The counters.
+	 */
+	public RequestCounters getConnectionCounters(String connectionId) {
+		return getRequestCounters(connectionCounters, connectionsInfo,
+				Messages.CONNECTION_STATISTICS, connectionId);
+	}
+
+	/**
+	 * Returns the request counters of a method. The counters are created the
+	 * first time a method is used.
+	 * 
+	 * @param methodDn
+	 *            The method DN.
+	 * 
+	 * @return The counters.
+	 */
+	public RequestCounters getMethodCounters(String methodDn) {
+		return getRequestCounters(methodCounters, methodsInfo,
+				Messages.METHOD_STATISTICS, methodDn);
+	}
+
+	/**
+	 * Returns the pool counters of a connection. The counters are created the
+	 * first time a connection is used.
+	 * 
+	 * @param connectionId
+	 *            The connection ID.
+	 * 
+	 * @return The counters.
+	 */
+	public PoolCounters getPoolCounters(String connectionId) {
+		PoolCounters res = poolCounters.get(connectionId);
+
+		if (res != null) {
+			return res;
+		}
+
+		synchronized (poolCounters) {
+			res = poolCounters.get(connectionId);
+
+			if (res == null) {
+				res = new PoolCounters(createSubComponent(poolsInfo,
+						Messages.CONNECTION_POOL_STATISTICS, connectionId));
+				poolCounters.put(connectionId, res);
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Returns the resilience counters of a connection. The counters are
+	 * created the first time a connection is used.
+	 * 
+	 * @param connectionId
+	 *            The connection ID.
+	 * 
+	 * @return The counters.
+	 */
+	public ResilienceCounters getResilienceCounters(String connectionId) {
+		ResilienceCounters res = resilienceCounters.get(connectionId);
+
+		if (res != null) {
+			return res;
+		}
+
+		synchronized (resilienceCounters) {
+			res = resilienceCounters.get(connectionId);
+
+			if (res == null) {
+				res = new ResilienceCounters(createSubComponent(
+						resilienceInfo, Messages.RESILIENCE_STATISTICS,
+						connectionId));
+				resilienceCounters.put(connectionId, res);
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Returns the counters with the given key, creating them in a new sub
+	 * component when needed.
+	 * 
+	 * @param counters
+	 *            The existing counters.
+	 * @param parent
+	 *            The component for new counters.
+	 * @param description
+	 *            The description of new components.
+	 * @param key
+	 *            The connection ID or method DN.
+	 * 
+	 * @return The counters.
+	 */
+	private RequestCounters getRequestCounters(
+			ConcurrentMap<String, RequestCounters> counters,
+			IManagedComponent parent, Message description, String key) {
+		RequestCounters res = counters.get(key);
+
+		if (res != null) {
+			return res;
+		}
+
+		// A component can be created only once, so creation is serialized.
+		synchronized (counters) {
+			res = counters.get(key);
+
+			if (res == null) {
+				res = new RequestCounters(createSubComponent(parent,
+						description, key));
+				counters.put(key, res);
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Creates the sub component for a connection or method.
+	 * 
+	 * @param parent
+	 *            The parent component.
+	 * @param description
+	 *            The description of the component.
+	 * @param key
+	 *            The connection ID or method DN.
+	 * 
+	 * @return The new component.
+	 */
+	private IManagedComponent createSubComponent(IManagedComponent parent,
+			Message description, String key) {
+		// Names become part of a JMX object name, so characters like the =
+		// and , of a DN are replaced.
+		return parent.createSubComponent(
+				key.replaceAll("[=,:;\"*?\\\\]", "_"), key, description,
+				this);
+	}
 }
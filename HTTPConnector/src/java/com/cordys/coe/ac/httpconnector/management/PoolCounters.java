@@ -0,0 +1,153 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.management;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cordys.coe.ac.httpconnector.Messages;
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.config.PoolStatistics;
+import com.eibus.localization.message.Message;
+import com.eibus.management.IManagedComponent;
+import com.eibus.management.counters.CounterFactory;
+import com.eibus.management.counters.IValueCounter;
+
+/**
+ * Holds the connection pool counters of one connection. The counters show the
+ * state of the pool when they were last updated, which happens at most once
+ * per second while requests are sent.
+ * 
+ * @author agent
+ */
+public class PoolCounters {
+	/**
+	 * Holds the minimum time between two updates.
+	 */
+	private static final long UPDATE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+	/**
+	 * Holds the time after which the counters are updated.
+	 */
+	private final AtomicLong m_nextUpdate = new AtomicLong(System.nanoTime());
+	/**
+	 * Holds the number of connections in use.
+	 */
+	private final IValueCounter m_leased;
+	/**
+	 * Holds the number of idle connections.
+	 */
+	private final IValueCounter m_idle;
+	/**
+	 * Holds the number of threads getting a connection.
+	 */
+	private final IValueCounter m_waitingThreads;
+	/**
+	 * Holds the average time to get a connection.
+	 */
+	private final IValueCounter m_acquireTimeAverage;
+	/**
+	 * Holds the longest time to get a connection.
+	 */
+	private final IValueCounter m_acquireTimeMax;
+	/**
+	 * Holds the number of opened network connections.
+	 */
+	private final IValueCounter m_connectionsCreated;
+	/**
+	 * Holds the number of closed network connections.
+	 */
+	private final IValueCounter m_connectionsClosed;
+
+	/**
+	 * Creates the counters in the given component.
+	 * 
+	 * @param component
+	 *            The managed component of the connection pool.
+	 */
+	PoolCounters(IManagedComponent component) {
+		m_leased = createCounter(component, "LeasedConnections",
+				Messages.POOL_LEASED_CONNECTIONS);
+		m_idle = createCounter(component, "IdleConnections",
+				Messages.POOL_IDLE_CONNECTIONS);
+		m_waitingThreads = createCounter(component, "WaitingThreads",
+				Messages.POOL_WAITING_THREADS);
+		m_acquireTimeAverage = createCounter(component,
+				"AcquireTimeAverage", Messages.POOL_ACQUIRE_TIME_AVERAGE);
+		m_acquireTimeMax = createCounter(component, "AcquireTimeMax",
+				Messages.POOL_ACQUIRE_TIME_MAX);
+		m_connectionsCreated = createCounter(component, "ConnectionsCreated",
+				Messages.POOL_CONNECTIONS_CREATED);
+		m_connectionsClosed = createCounter(component, "ConnectionsClosed",
+				Messages.POOL_CONNECTIONS_CLOSED);
+	}
+
+	/**
+	 * Updates the counters from the pool of the given connection, unless they
+	 * were updated less than a second ago.
+	 * 
+	 * @param connection
+	 *            The connection.
+	 */
+	public void update(IServerConnection connection) {
+		long now = System.nanoTime();
+		long next = m_nextUpdate.get();
+
+		if ((now - next < 0)
+				|| !m_nextUpdate.compareAndSet(next, now + UPDATE_INTERVAL)) {
+			return;
+		}
+
+		PoolStatistics stats = connection.getPoolStatistics();
+
+		if (stats == null) {
+			return;
+		}
+
+		m_leased.setValue(stats.getLeased());
+		m_idle.setValue(stats.getIdle());
+		m_waitingThreads.setValue(stats.getWaitingThreads());
+
+		if (stats.getAcquireCount() > 0) {
+			m_acquireTimeAverage.setValue(TimeUnit.NANOSECONDS
+					.toMicros(stats.getAcquireNanos() / stats.getAcquireCount()));
+		}
+
+		m_acquireTimeMax.setValue(TimeUnit.NANOSECONDS.toMicros(stats
+				.getMaxAcquireNanos()));
+		m_connectionsCreated.setValue(stats.getConnectionsCreated());
+		m_connectionsClosed.setValue(stats.getConnectionsClosed());
+	}
+
+	/**
+	 * Creates a value counter.
+	 * 
+	 * @param component
+	 *            The managed component.
+	 * @param name
+	 *            The name of the counter.
+	 * @param description
+	 *            The description of the counter.
+	 * 
+	 * @return The counter.
+	 */
+	private static IValueCounter createCounter(IManagedComponent component,
+			String name, Message description) {
+		return (IValueCounter) component.createPerformanceCounter(name,
+				description, CounterFactory.VALUE_COUNTER);
+	}
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.management;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cordys.coe.ac.httpconnector.Messages;
+import com.eibus.management.IManagedComponent;
+import com.eibus.management.counters.CounterFactory;
+import com.eibus.management.counters.IEventCounter;
+import com.eibus.management.counters.IEventValueCounter;
+import com.eibus.management.counters.IValueCounter;
+
+/**
+ * Holds the counters of the HTTP requests for one connection or one method:
+ * the request time with its percentiles, the number of responses per status
+ * class, the failed requests and the bytes sent and received. The percentiles
+ * are those of the requests in the last refresh interval, so they follow the
+ * current request times instead of all requests since the start.
+ * 
+ * @author agent
+ */
+public class RequestCounters {
+	/**
+	 * Holds the minimum time between two updates of the percentile counters.
+	 */
+	private static final long PERCENTILE_REFRESH_INTERVAL = TimeUnit.SECONDS
+			.toNanos(1);
+	/**
+	 * Holds the two interval histograms. One records the request times of
+	 * the current interval, the other is read and cleared when the interval
+	 * ends.
+	 */
+	private final LatencyHistogram[] m_histograms = { new LatencyHistogram(),
+			new LatencyHistogram() };
+	/**
+	 * Holds the histogram of the current interval.
+	 */
+	private volatile LatencyHistogram m_histogram = m_histograms[0];
+	/**
+	 * Holds the time after which the percentile counters are updated.
+	 */
+	private final AtomicLong m_nextRefresh = new AtomicLong(System.nanoTime()
+			+ PERCENTILE_REFRESH_INTERVAL);
+	/**
+	 * Holds the request time counter.
+	 */
+	private final IEventValueCounter m_latency;
+	/**
+	 * Holds the median request time.
+	 */
+	private final IValueCounter m_latencyP50;
+	/**
+	 * Holds the 99th percentile of the request time.
+	 */
+	private final IValueCounter m_latencyP99;
+	/**
+	 * Holds the 99.9th percentile of the request time.
+	 */
+	private final IValueCounter m_latencyP999;
+	/**
+	 * Holds the response counters for the status classes 2xx to 5xx.
+	 */
+	private final IEventCounter[] m_statusClasses;
+	/**
+	 * Holds the failed request counter.
+	 */
+	private final IEventCounter m_errors;
+	/**
+	 * Holds the sent bytes counter.
+	 */
+	private final IEventValueCounter m_bytesSent;
+	/**
+	 * Holds the received bytes counter.
+	 */
+	private final IEventValueCounter m_bytesReceived;
+
+	/**
+	 * Creates the counters in the given component.
+	 * 
+	 * @param component
+	 *            The managed component of the connection or method.
+	 */
+	RequestCounters(IManagedComponent component) {
+		m_latency = (IEventValueCounter) component.createPerformanceCounter(
+				"HTTPLatency", Messages.HTTP_LATENCY,
+				CounterFactory.EVENT_VALUE_COUNTER);
+		m_latencyP50 = (IValueCounter) component.createPerformanceCounter(
+				"HTTPLatencyP50", Messages.HTTP_LATENCY_P50,
+				CounterFactory.VALUE_COUNTER);
+		m_latencyP99 = (IValueCounter) component.createPerformanceCounter(
+				"HTTPLatencyP99", Messages.HTTP_LATENCY_P99,
+				CounterFactory.VALUE_COUNTER);
+		m_latencyP999 = (IValueCounter) component.createPerformanceCounter(
+				"HTTPLatencyP999", Messages.HTTP_LATENCY_P999,
+				CounterFactory.VALUE_COUNTER);
+		m_statusClasses = new IEventCounter[] {
+				(IEventCounter) component.createPerformanceCounter(
+						"HTTPStatus2xx", Messages.HTTP_STATUS_2XX,
+						CounterFactory.EVENT_COUNTER),
+				(IEventCounter) component.createPerformanceCounter(
+						"HTTPStatus3xx", Messages.HTTP_STATUS_3XX,
+						CounterFactory.EVENT_COUNTER),
+				(IEventCounter) component.createPerformanceCounter(
+						"HTTPStatus4xx", Messages.HTTP_STATUS_4XX,
+						CounterFactory.EVENT_COUNTER),
+				(IEventCounter) component.createPerformanceCounter(
+						"HTTPStatus5xx", Messages.HTTP_STATUS_5XX,
+						CounterFactory.EVENT_COUNTER) };
+		m_errors = (IEventCounter) component.createPerformanceCounter(
+				"RequestErrors", Messages.REQUEST_ERRORS,
+				CounterFactory.EVENT_COUNTER);
+		m_bytesSent = (IEventValueCounter) component.createPerformanceCounter(
+				"BytesSent", Messages.BYTES_SENT,
+				CounterFactory.EVENT_VALUE_COUNTER);
+		m_bytesReceived = (IEventValueCounter) component
+				.createPerformanceCounter("BytesReceived",
+						Messages.BYTES_RECEIVED,
+						CounterFactory.EVENT_VALUE_COUNTER);
+	}
+
+	/**
+	 * Counts a failed request.
+	 */
+	public void addError() {
+		m_errors.addEvent();
+	}
+
+	/**
+	 * Counts a completed HTTP request.
+	 * 
+	 * @param nanos
+	 *            The request time in nanoseconds.
+	 * @param statusCode
+	 *            The HTTP status code.
+	 * @param bytesSent
+	 *            The size of the request body, or -1 if it is not known.
+	 * @param bytesReceived
+	 *            The size of the response body, or -1 if it is not known.
+	 */
+	public void addRequest(long nanos, int statusCode, long bytesSent,
+			long bytesReceived) {
+		m_latency.addEvent(TimeUnit.NANOSECONDS.toMillis(nanos));
+		m_histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+
+		int statusClass = (statusCode / 100) - 2;
+
+		if ((statusClass >= 0) && (statusClass < m_statusClasses.length)) {
+			m_statusClasses[statusClass].addEvent();
+		}
+
+		if (bytesSent >= 0) {
+			m_bytesSent.addEvent(bytesSent);
+		}
+
+		if (bytesReceived >= 0) {
+			m_bytesReceived.addEvent(bytesReceived);
+		}
+
+		// Calculating the percentiles walks the histogram, so it is done at
+		// most once per interval by the thread that wins the update.
+		long now = System.nanoTime();
+		long next = m_nextRefresh.get();
+
+		if ((now - next >= 0)
+				&& m_nextRefresh.compareAndSet(next, now
+						+ PERCENTILE_REFRESH_INTERVAL)) {
+			rotate();
+		}
+	}
+
+	/**
+	 * Starts a new interval and sets the percentile counters from the
+	 * interval which ended. Only one thread calls this at a time. A request
+	 * time which is recorded in the ended interval while it is read may be
+	 * lost, which does not matter for the percentiles.
+	 */
+	private void rotate() {
+		LatencyHistogram ended = m_histogram;
+
+		m_histogram = (ended == m_histograms[0]) ? m_histograms[1]
+				: m_histograms[0];
+
+		m_latencyP50.setValue(ended.getValueAtPercentile(50));
+		m_latencyP99.setValue(ended.getValueAtPercentile(99));
+		m_latencyP999.setValue(ended.getValueAtPercentile(99.9));
+
+		ended.reset();
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2006 Cordys R&D B.V. 
+ * 
+ * This file is part of the Cordys HTTP Connector. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cordys.coe.ac.httpconnector.management;
+
+import com.cordys.coe.ac.httpconnector.Messages;
+import com.eibus.management.IManagedComponent;
+import com.eibus.management.counters.CounterFactory;
+import com.eibus.management.counters.IEventCounter;
+import com.eibus.management.counters.IValueCounter;
+
+/**
+ * Holds the counters of the mechanisms which protect a connection against a
+ * failing or slow web server.
+ * 
+ * @author agent
+ */
+public class ResilienceCounters {
+	/**
+	 * Holds the requests in progress in the bulkhead of the connection.
+	 */
+	private final IValueCounter m_bulkheadActiveCalls;
+	/**
+	 * Holds the requests rejected by the bulkhead of the connection or of one
+	 * of its methods.
+	 */
+	private final IEventCounter m_bulkheadRejections;
+	/**
+	 * Holds the current adaptive concurrency limit.
+	 */
+	private final IValueCounter m_concurrencyLimit;
+	/**
+	 * Holds the requests rejected by the adaptive concurrency limit.
+	 */
+	private final IEventCounter m_concurrencyLimitRejections;
+	/**
+	 * Holds the hedged requests.
+	 */
+	private final IEventCounter m_hedgedRequests;
+	/**
+	 * Holds the hedged requests which answered first.
+	 */
+	private final IEventCounter m_hedgeWins;
+	/**
+	 * Holds the retried requests.
+	 */
+	private final IEventCounter m_retries;
+	/**
+	 * Holds the retries skipped because the retry budget was exhausted.
+	 */
+	private final IEventCounter m_retryBudgetExhausted;
+	/**
+	 * Holds the state of the circuit breaker.
+	 */
+	private final IValueCounter m_circuitState;
+	/**
+	 * Holds the requests rejected by the circuit breaker.
+	 */
+	private final IEventCounter m_circuitRejections;
+
+	/**
+	 * Creates the counters in the given component.
+	 * 
+	 * @param component
+	 *            The managed component of the connection.
+	 */
+	ResilienceCounters(IManagedComponent component) {
+		m_circuitState = (IValueCounter) component.createPerformanceCounter(
+				"CircuitBreakerState", Messages.CIRCUIT_BREAKER_STATE,
+				CounterFactory.VALUE_COUNTER);
+		m_circuitRejections = (IEventCounter) component
+				.createPerformanceCounter("CircuitBreakerRejections",
+						Messages.CIRCUIT_BREAKER_REJECTIONS,
+						CounterFactory.EVENT_COUNTER);
+		m_bulkheadActiveCalls = (IValueCounter) component
+				.createPerformanceCounter("BulkheadActiveCalls",
+						Messages.BULKHEAD_ACTIVE_CALLS,
+						CounterFactory.VALUE_COUNTER);
+		m_bulkheadRejections = (IEventCounter) component
+				.createPerformanceCounter("BulkheadRejections",
+						Messages.BULKHEAD_REJECTIONS,
+						CounterFactory.EVENT_COUNTER);
+		m_concurrencyLimit = (IValueCounter) component
+				.createPerformanceCounter("ConcurrencyLimit",
+						Messages.CONCURRENCY_LIMIT,
+						CounterFactory.VALUE_COUNTER);
+		m_concurrencyLimitRejections = (IEventCounter) component
+				.createPerformanceCounter("ConcurrencyLimitRejections",
+						Messages.CONCURRENCY_LIMIT_REJECTIONS,
+						CounterFactory.EVENT_COUNTER);
+		m_hedgedRequests = (IEventCounter) component
+				.createPerformanceCounter("HedgedRequests",
+						Messages.HEDGED_REQUESTS, CounterFactory.EVENT_COUNTER);
+		m_hedgeWins = (IEventCounter) component.createPerformanceCounter(
+				"HedgeWins", Messages.HEDGE_WINS, CounterFactory.EVENT_COUNTER);
+		m_retries = (IEventCounter) component.createPerformanceCounter(
+				"Retries", Messages.RETRIES, CounterFactory.EVENT_COUNTER);
+		m_retryBudgetExhausted = (IEventCounter) component
+				.createPerformanceCounter("RetryBudgetExhausted",
+						Messages.RETRY_BUDGET_EXHAUSTED,
+						CounterFactory.EVENT_COUNTER);
+	}
+
+	/**
+	 * Counts a request rejected by a bulkhead.
+	 */
+	public void addBulkheadRejection() {
+		m_bulkheadRejections.addEvent();
+	}
+
+	/**
+	 * Counts a request rejected by the circuit breaker.
+	 */
+	public void addCircuitRejection() {
+		m_circuitRejections.addEvent();
+	}
+
+	/**
+	 * Counts a request rejected by the adaptive concurrency limit.
+	 */
+	public void addConcurrencyLimitRejection() {
+		m_concurrencyLimitRejections.addEvent();
+	}
+
+	/**
+	 * Counts a hedged request.
+	 */
+	public void addHedgedRequest() {
+		m_hedgedRequests.addEvent();
+	}
+
+	/**
+	 * Counts a hedged request which answered before the first request.
+	 */
+	public void addHedgeWin() {
+		m_hedgeWins.addEvent();
+	}
+
+	/**
+	 * Counts a retried request.
+	 */
+	public void addRetry() {
+		m_retries.addEvent();
+	}
+
+	/**
+	 * Counts a retry skipped because the retry budget was exhausted.
+	 */
+	public void addRetryBudgetExhausted() {
+		m_retryBudgetExhausted.addEvent();
+	}
+
+	/**
+	 * Sets the number of requests in progress in the bulkhead of the
+	 * connection.
+	 * 
+	 * @param calls
+	 *            The number of requests.
+	 */
+	public void setBulkheadActiveCalls(int calls) {
+		m_bulkheadActiveCalls.setValue(calls);
+	}
+
+	/**
+	 * Sets the current adaptive concurrency limit.
+	 * 
+	 * @param limit
+	 *            The limit.
+	 */
+	public void setConcurrencyLimit(int limit) {
+		m_concurrencyLimit.setValue(limit);
+	}
+
+	/**
+	 * Sets the state of the circuit breaker.
+	 * 
+	 * @param state
+	 *            The state: 0 closed, 1 open, 2 half open.
+	 */
+	public void setCircuitState(int state) {
+		m_circuitState.setValue(state);
+	}
+}
@@ -24,6 +24,11 @@ import com.cordys.coe.ac.httpconnector.exception.HandlerException;
 /**
  * This interface describes a custom parameter. A custom parameter will do
  * complex logic to create post data based on the request.
+ * <p>
+ * By default each thread gets its own instance, which it reuses for its
+ * later requests. Thread-safe implementations can set instance-per-thread to
+ * false, so one instance is shared by all requests.
+ * </p>
  * 
  * @author pgussow
  */
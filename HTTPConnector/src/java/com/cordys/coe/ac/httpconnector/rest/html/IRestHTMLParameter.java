@@ -17,6 +17,8 @@
  */
 package com.cordys.coe.ac.httpconnector.rest.html;
 
+import com.eibus.xml.xpath.XPath;
+
 /**
  * Holds the definition of Rest HTML parameters.
  * 
@@ -37,6 +39,14 @@ public interface IRestHTMLParameter {
 	 */
 	EDestination getDestination();
 
+	/**
+	 * This method gets whether each thread gets its own instance of the
+	 * custom parameter class.
+	 * 
+	 * @return Whether each thread gets its own instance.
+	 */
+	boolean getInstancePerThread();
+
 	/**
 	 * This method gets the name of the parameter as it should be in the URL.
 	 * 
@@ -65,6 +75,15 @@ public interface IRestHTMLParameter {
 	 */
 	String getValue();
 
+	/**
+	 * This method gets the compiled value of an XPATH or XPATH_MULTI
+	 * parameter.
+	 * 
+	 * @return The compiled XPath, or null if this is not an XPath parameter
+	 *         or the value is empty.
+	 */
+	XPath getXPath();
+
 	/**
 	 * This method returns whether or not the parameter has a default value.
 	 * 
@@ -88,6 +107,15 @@ public interface IRestHTMLParameter {
 	 */
 	void setDestination(EDestination destination);
 
+	/**
+	 * This method sets whether each thread gets its own instance of the custom
+	 * parameter class.
+	 * 
+	 * @param instancePerThread
+	 *            Whether each thread gets its own instance.
+	 */
+	void setInstancePerThread(boolean instancePerThread);
+
 	/**
 	 * This method sets the name of the parameter as it should be in the URL.
 	 * 
@@ -20,6 +20,7 @@ package com.cordys.coe.ac.httpconnector.rest.html;
 import com.cordys.coe.ac.httpconnector.exception.HandlerException;
 import com.cordys.coe.ac.httpconnector.exception.HandlerExceptionMessages;
 import com.cordys.coe.util.xml.nom.XPathHelper;
+import com.eibus.xml.xpath.XPath;
 import com.eibus.xml.xpath.XPathMetaInfo;
 
 /**
@@ -32,6 +33,10 @@ class RestHTMLParameter implements IRestHTMLParameter {
 	 * Holds the default value for the parameter.
 	 */
 	private String m_defaultValue;
+	/**
+	 * Holds whether each thread gets its own instance of a custom parameter.
+	 */
+	private boolean m_instancePerThread;
 	/**
 	 * Holds the destination for this parameter.
 	 */
@@ -52,6 +57,10 @@ class RestHTMLParameter implements IRestHTMLParameter {
 	 * Holds the value of the parameter.
 	 */
 	private String m_value;
+	/**
+	 * Holds the compiled value for the XPATH and XPATH_MULTI parameters.
+	 */
+	private XPath m_xpath;
 
 	/**
 	 * Creates a new RestHtmlParameter object.
@@ -88,6 +97,11 @@ class RestHTMLParameter implements IRestHTMLParameter {
 		}
 		m_destination = EDestination.valueOf(temp);
 
+		// Get whether a custom parameter class needs an instance per thread.
+		// Classes are not assumed to be thread-safe.
+		m_instancePerThread = XPathHelper.getBooleanValue(parameter, "ns:"
+				+ "instance-per-thread", xmi, true);
+
 		// Get the parameter type.
 		temp = XPathHelper.getStringValue(parameter, "ns:" + "type", xmi, "");
 
@@ -107,6 +121,8 @@ class RestHTMLParameter implements IRestHTMLParameter {
 					m_name);
 		}
 
+		compileXPath();
+
 		// Get the default value
 		m_defaultValue = XPathHelper.getStringValue(parameter, "ns:"
 				+ "default", xmi, null);
@@ -137,6 +153,14 @@ class RestHTMLParameter implements IRestHTMLParameter {
 		return m_destination;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.rest.html.IRestHTMLParameter#getInstancePerThread()
+	 */
+	@Override
+	public boolean getInstancePerThread() {
+		return m_instancePerThread;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.rest.html.IRestHTMLParameter#getName()
 	 */
@@ -169,6 +193,14 @@ class RestHTMLParameter implements IRestHTMLParameter {
 		return m_value;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.rest.html.IRestHTMLParameter#getXPath()
+	 */
+	@Override
+	public XPath getXPath() {
+		return m_xpath;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.rest.html.IRestHTMLParameter#hasDefaultValue()
 	 */
@@ -193,6 +225,14 @@ class RestHTMLParameter implements IRestHTMLParameter {
 		m_destination = destination;
 	}
 
+	/**
+	 * @see com.cordys.coe.ac.httpconnector.rest.html.IRestHTMLParameter#setInstancePerThread(boolean)
+	 */
+	@Override
+	public void setInstancePerThread(boolean instancePerThread) {
+		m_instancePerThread = instancePerThread;
+	}
+
 	/**
 	 * @see com.cordys.coe.ac.httpconnector.rest.html.IRestHTMLParameter#setName(java.lang.String)
 	 */
@@ -215,6 +255,7 @@ class RestHTMLParameter implements IRestHTMLParameter {
 	@Override
 	public void setType(ERestHTMLParameterType type) {
 		m_type = type;
+		compileXPath();
 	}
 
 	/**
@@ -223,5 +264,21 @@ class RestHTMLParameter implements IRestHTMLParameter {
 	@Override
 	public void setValue(String value) {
 		m_value = value;
+		compileXPath();
+	}
+
+	/**
+	 * Compiles the value if this is an XPath parameter, so the expression is
+	 * not parsed again for every request.
+	 */
+	private void compileXPath() {
+		boolean isXPath = (m_type == ERestHTMLParameterType.XPATH)
+				|| (m_type == ERestHTMLParameterType.XPATH_MULTI);
+
+		if (isXPath && (m_value != null) && (m_value.length() > 0)) {
+			m_xpath = XPath.getXPathInstance(m_value);
+		} else {
+			m_xpath = null;
+		}
 	}
 }
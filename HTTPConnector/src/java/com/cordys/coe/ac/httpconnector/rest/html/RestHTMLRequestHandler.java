@@ -31,10 +31,12 @@ import com.cordys.coe.util.xml.nom.XPathHelper;
 import com.eibus.util.logger.CordysLogger;
 
 import com.eibus.xml.nom.Node;
+import com.eibus.xml.xpath.XPath;
 import com.eibus.xml.xpath.XPathMetaInfo;
 
 import java.net.URLEncoder;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -67,6 +69,10 @@ public class RestHTMLRequestHandler extends StandardRequestHandler {
 	 * Holds all parameters for the query string .
 	 */
 	private Map<String, IRestHTMLParameter> m_requestParameters = new LinkedHashMap<String, IRestHTMLParameter>();
+	/**
+	 * Holds the custom parameter instances per parameter name.
+	 */
+	private Map<String, CustomParameter> m_customParameters = new HashMap<String, CustomParameter>();
 
 	/**
 	 * @see IRequestHandler#initialize(int, IXSLTStore, IMethodConfiguration,
@@ -88,6 +94,11 @@ public class RestHTMLRequestHandler extends StandardRequestHandler {
 			switch (rhp.getDestination()) {
 			case BODY:
 				m_bodyParameters.put(rhp.getName(), rhp);
+
+				if (rhp.getType() == ERestHTMLParameterType.CUSTOM) {
+					m_customParameters.put(rhp.getName(), new CustomParameter(
+							rhp));
+				}
 				break;
 
 			case REQUEST:
@@ -118,8 +129,10 @@ public class RestHTMLRequestHandler extends StandardRequestHandler {
 
 		for (IRestHTMLParameter rhp : m_bodyParameters.values()) {
 			if (rhp.getType() == ERestHTMLParameterType.XPATH_MULTI) {
-				int[] matches = XPathHelper.selectNodes(requestNode,
-						rhp.getValue(), m_method.getXPathMetaInfo());
+				XPath xpath = rhp.getXPath();
+				int[] matches = (xpath == null) ? new int[0] : XPathHelper
+						.selectNodes(requestNode, xpath,
+								m_method.getXPathMetaInfo());
 
 				if (matches.length > 0) {
 					for (int count = 0; count < matches.length; count++) {
@@ -142,9 +155,8 @@ public class RestHTMLRequestHandler extends StandardRequestHandler {
 			} else if (rhp.getType() == ERestHTMLParameterType.CUSTOM) {
 				// A custom XML handler.
 				try {
-					Class<?> clazz = Class.forName(rhp.getValue());
-					ICustomParameter cp = (ICustomParameter) clazz
-							.newInstance();
+					ICustomParameter cp = m_customParameters.get(
+							rhp.getName()).getInstance();
 					String additionalData = cp.getPostData(rhp, requestNode,
 							m_method, connection);
 
@@ -171,8 +183,7 @@ public class RestHTMLRequestHandler extends StandardRequestHandler {
 
 				switch (rhp.getType()) {
 				case XPATH:
-					value = XPathHelper.getStringValue(requestNode, value,
-							m_method.getXPathMetaInfo(), rhp.getDefaultValue());
+					value = getXPathValue(requestNode, rhp);
 					break;
 
 				case CONNECTION_URI:
@@ -257,8 +268,7 @@ public class RestHTMLRequestHandler extends StandardRequestHandler {
 
 				switch (rhp.getType()) {
 				case XPATH:
-					value = XPathHelper.getStringValue(requestNode, value,
-							m_method.getXPathMetaInfo(), rhp.getDefaultValue());
+					value = getXPathValue(requestNode, rhp);
 					break;
 
 				case CONNECTION_URI:
@@ -320,4 +330,99 @@ public class RestHTMLRequestHandler extends StandardRequestHandler {
 
 		return returnValue.toString();
 	}
+
+	/**
+	 * Evaluates the compiled XPath of the parameter on the request.
+	 * 
+	 * @param requestNode
+	 *            The current request XML.
+	 * @param rhp
+	 *            The XPATH parameter.
+	 * 
+	 * @return The text of the first match, or the default value if nothing
+	 *         matched.
+	 */
+	private String getXPathValue(int requestNode, IRestHTMLParameter rhp) {
+		XPath xpath = rhp.getXPath();
+
+		if (xpath == null) {
+			return rhp.getDefaultValue();
+		}
+
+		return XPathHelper.getStringValue(requestNode, xpath,
+				m_method.getXPathMetaInfo(), false, rhp.getDefaultValue());
+	}
+
+	/**
+	 * Holds the custom parameter class, which is loaded when the handler is
+	 * initialized. Each thread gets its own instance, unless the parameter
+	 * allows one instance to be shared by all threads.
+	 */
+	private static class CustomParameter {
+		/**
+		 * Holds the custom parameter class.
+		 */
+		private final Class<? extends ICustomParameter> m_class;
+		/**
+		 * Holds the instance used by all threads.
+		 */
+		private final ICustomParameter m_shared;
+		/**
+		 * Holds the instance of each thread, if the class is not thread-safe.
+		 */
+		private final ThreadLocal<ICustomParameter> m_perThread;
+
+		/**
+		 * Creates a new CustomParameter object.
+		 * 
+		 * @param rhp
+		 *            The CUSTOM parameter definition.
+		 * 
+		 * @throws HandlerException
+		 *             Thrown if the class could not be loaded or created.
+		 */
+		CustomParameter(IRestHTMLParameter rhp) throws HandlerException {
+			try {
+				m_class = Class.forName(rhp.getValue()).asSubclass(
+						ICustomParameter.class);
+
+				if (rhp.getInstancePerThread()) {
+					m_shared = null;
+					m_perThread = new ThreadLocal<ICustomParameter>();
+				} else {
+					m_shared = m_class.newInstance();
+					m_perThread = null;
+				}
+			} catch (Exception e) {
+				throw new HandlerException(
+						e,
+						HandlerExceptionMessages.UNABLE_TO_CREATE_CUSTOM_PARAMETER_CLASS_0,
+						rhp.getValue());
+			}
+		}
+
+		/**
+		 * Returns the instance to use for the current thread.
+		 * 
+		 * @return The custom parameter instance.
+		 * 
+		 * @throws Exception
+		 *             Thrown if the instance for this thread could not be
+		 *             created.
+		 */
+		ICustomParameter getInstance() throws Exception {
+			if (m_perThread == null) {
+				return m_shared;
+			}
+
+			ICustomParameter instance = m_perThread.get();
+
+			if (instance == null) {
+				instance = m_class.newInstance();
+				m_perThread.set(instance);
+			}
+
+			return instance;
+		}
+	}
 }
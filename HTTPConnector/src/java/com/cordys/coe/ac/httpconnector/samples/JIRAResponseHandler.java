@@ -66,7 +66,8 @@ public class JIRAResponseHandler extends StandardResponseHandler {
 
 		try {
 			// Get the actual response from the web server.
-			byte[] responseBody = getHTTPResponse(httpMethod);
+			byte[] responseBody = getHTTPResponse(httpMethod,
+					serverConnection);
 
 			// Parse the HTML into a DOM tree2
 			org.w3c.dom.Document document = parseResponse(responseBody);
@@ -17,7 +17,15 @@
  */
 package com.cordys.coe.ac.httpconnector.utils;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.Arrays;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpContentTooLargeException;
+import org.apache.commons.httpclient.HttpMethod;
 
 /**
  * General utility methods.
@@ -25,6 +33,19 @@ import java.net.URL;
  * @author mpoyhone
  */
 public class Utils {
+	/**
+	 * Initial buffer size for a response without a content length.
+	 */
+	private static final int RESPONSE_BUFFER_SIZE = 4096;
+	/**
+	 * Largest buffer allocated for a response before its bytes arrive.
+	 */
+	private static final int MAX_INITIAL_BUFFER_SIZE = RESPONSE_BUFFER_SIZE * 256;
+	/**
+	 * Largest array size the virtual machine can allocate.
+	 */
+	private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
 	/**
 	 * Returns the path portion from the given URL. This includes the path,
 	 * query and fragment.
@@ -58,4 +79,195 @@ public class Utils {
 
 		return buf.toString();
 	}
+
+	/**
+	 * Reads the response body of the given HTTP method. The body is read
+	 * straight from the response stream into a buffer of the announced
+	 * content length, so a response with a Content-Length header is held in
+	 * memory only once. The announced length is not trusted for more than
+	 * 1 MB; larger buffers grow as the bytes arrive. The read is aborted as
+	 * soon as the body exceeds the given maximum size.
+	 * 
+	 * @param httpMethod
+	 *            HTTP method from which the response is read.
+	 * @param maxSize
+	 *            Maximum size of the body in bytes. 0 means unlimited.
+	 * 
+	 * @return The response body or null if the response has no body.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the response could not be read or is too large.
+	 */
+	public static byte[] readResponseBody(HttpMethod httpMethod, int maxSize)
+			throws IOException {
+		InputStream in = httpMethod.getResponseBodyAsStream();
+
+		if (in == null) {
+			return null;
+		}
+
+		long contentLength = getContentLength(httpMethod);
+
+		if ((maxSize > 0) && (contentLength > maxSize)) {
+			throw new HttpContentTooLargeException("Response of "
+					+ contentLength + " bytes exceeds the maximum size of "
+					+ maxSize + " bytes.", maxSize);
+		}
+
+		byte[] buffer = new byte[(contentLength >= 0) ? (int) Math.min(
+				contentLength, MAX_INITIAL_BUFFER_SIZE) : RESPONSE_BUFFER_SIZE];
+		int length = 0;
+
+		try {
+			while (true) {
+				if (length == buffer.length) {
+					// Check for the end of the stream before growing the
+					// buffer, so an exactly sized buffer is not copied.
+					int next = in.read();
+
+					if (next == -1) {
+						break;
+					}
+
+					long newSize = Math.max(buffer.length * 2L,
+							RESPONSE_BUFFER_SIZE);
+
+					if ((maxSize > 0) && (newSize > maxSize)) {
+						newSize = Math.max(maxSize, length + 1);
+					}
+
+					if (newSize > MAX_BUFFER_SIZE) {
+						if (length >= MAX_BUFFER_SIZE) {
+							throw new HttpContentTooLargeException(
+									"Response exceeds the maximum size of "
+											+ MAX_BUFFER_SIZE + " bytes.",
+									MAX_BUFFER_SIZE);
+						}
+
+						newSize = MAX_BUFFER_SIZE;
+					}
+
+					buffer = Arrays.copyOf(buffer, (int) newSize);
+					buffer[length++] = (byte) next;
+
+					if ((maxSize > 0) && (length > maxSize)) {
+						throw new HttpContentTooLargeException(
+								"Response exceeds the maximum size of "
+										+ maxSize + " bytes.", maxSize);
+					}
+				}
+
+				int read = in.read(buffer, length, buffer.length - length);
+
+				if (read == -1) {
+					break;
+				}
+
+				length += read;
+
+				if ((maxSize > 0) && (length > maxSize)) {
+					throw new HttpContentTooLargeException(
+							"Response exceeds the maximum size of " + maxSize
+									+ " bytes.", maxSize);
+				}
+			}
+		} finally {
+			in.close();
+		}
+
+		return (length == buffer.length) ? buffer : Arrays.copyOf(buffer,
+				length);
+	}
+
+	/**
+	 * Returns the response body stream of the given HTTP method. Reading from
+	 * the stream fails as soon as more than the given maximum number of bytes
+	 * has been read.
+	 * 
+	 * @param httpMethod
+	 *            HTTP method from which the response is read.
+	 * @param maxSize
+	 *            Maximum size of the body in bytes. 0 means unlimited.
+	 * 
+	 * @return The response stream or null if the response has no body.
+	 * 
+	 * @throws IOException
+	 *             Thrown if the stream could not be opened or the announced
+	 *             content length is too large.
+	 */
+	public static InputStream getResponseStream(HttpMethod httpMethod,
+			final int maxSize) throws IOException {
+		InputStream in = httpMethod.getResponseBodyAsStream();
+
+		if ((in == null) || (maxSize <= 0)) {
+			return in;
+		}
+
+		long contentLength = getContentLength(httpMethod);
+
+		if (contentLength > maxSize) {
+			in.close();
+			throw new HttpContentTooLargeException("Response of "
+					+ contentLength + " bytes exceeds the maximum size of "
+					+ maxSize + " bytes.", maxSize);
+		}
+
+		return new FilterInputStream(in) {
+			private long m_count;
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+
+				if (b != -1) {
+					count(1);
+				}
+
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+
+				if (read > 0) {
+					count(read);
+				}
+
+				return read;
+			}
+
+			private void count(int read) throws HttpContentTooLargeException {
+				m_count += read;
+
+				if (m_count > maxSize) {
+					throw new HttpContentTooLargeException(
+							"Response exceeds the maximum size of " + maxSize
+									+ " bytes.", maxSize);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the value of the Content-Length header of the response.
+	 * 
+	 * @param httpMethod
+	 *            HTTP method.
+	 * 
+	 * @return Content length or -1 if it is not known.
+	 */
+	private static long getContentLength(HttpMethod httpMethod) {
+		Header header = httpMethod.getResponseHeader("Content-Length");
+
+		if (header == null) {
+			return -1;
+		}
+
+		try {
+			return Math.max(Long.parseLong(header.getValue().trim()), -1);
+		} catch (NumberFormatException ignored) {
+			return -1;
+		}
+	}
 }
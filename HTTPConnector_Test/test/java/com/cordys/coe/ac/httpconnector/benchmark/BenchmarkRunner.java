@@ -0,0 +1,97 @@
+package com.cordys.coe.ac.httpconnector.benchmark;
+
+/**
+ * Minimal benchmark runner. Each task is first run for the warm-up time, so
+ * the JIT has compiled the hot path, and then for the measurement time. JMH is
+ * not available in this project, so this runner gives comparable numbers
+ * between runs on the same machine, not absolute ones.
+ * 
+ * @author agent
+ */
+public class BenchmarkRunner {
+	/**
+	 * Holds the warm-up time in milliseconds.
+	 */
+	private final long m_warmupMillis;
+	/**
+	 * Holds the measurement time in milliseconds.
+	 */
+	private final long m_measureMillis;
+
+	/**
+	 * Creates a new BenchmarkRunner object.
+	 * 
+	 * @param warmupMillis
+	 *            The warm-up time in milliseconds.
+	 * @param measureMillis
+	 *            The measurement time in milliseconds.
+	 */
+	public BenchmarkRunner(long warmupMillis, long measureMillis) {
+		m_warmupMillis = warmupMillis;
+		m_measureMillis = measureMillis;
+	}
+
+	/**
+	 * Runs the task and prints the average time per operation.
+	 * 
+	 * @param name
+	 *            The name of the benchmark.
+	 * @param task
+	 *            The operation to measure.
+	 * 
+	 * @return The average time per operation in nanoseconds.
+	 * 
+	 * @throws Exception
+	 *             In case the task fails.
+	 */
+	public double run(String name, Task task) throws Exception {
+		runFor(task, m_warmupMillis);
+
+		long start = System.nanoTime();
+		long operations = runFor(task, m_measureMillis);
+		double nanosPerOp = (double) (System.nanoTime() - start) / operations;
+
+		System.out.println(String.format("%-60s %12.1f ns/op %10.0f ops/s",
+				name, nanosPerOp, 1000000000d / nanosPerOp));
+
+		return nanosPerOp;
+	}
+
+	/**
+	 * Runs the task repeatedly for the given time.
+	 * 
+	 * @param task
+	 *            The operation.
+	 * @param millis
+	 *            The time in milliseconds.
+	 * 
+	 * @return The number of operations that were run.
+	 * 
+	 * @throws Exception
+	 *             In case the task fails.
+	 */
+	private static long runFor(Task task, long millis) throws Exception {
+		long end = System.nanoTime() + (millis * 1000000L);
+		long operations = 0;
+
+		do {
+			task.run();
+			operations++;
+		} while (System.nanoTime() < end);
+
+		return operations;
+	}
+
+	/**
+	 * A single benchmarked operation.
+	 */
+	public interface Task {
+		/**
+		 * Runs the operation once.
+		 * 
+		 * @throws Exception
+		 *             In case the operation fails.
+		 */
+		void run() throws Exception;
+	}
+}
@@ -0,0 +1,99 @@
+package com.cordys.coe.ac.httpconnector.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples of one thread. The recorders of all threads are
+ * merged when the test is done, so recording needs no locking.
+ * 
+ * @author agent
+ */
+public class LatencyRecorder {
+	/**
+	 * Holds the samples in nanoseconds.
+	 */
+	private long[] m_samples = new long[1024];
+	/**
+	 * Holds the number of samples.
+	 */
+	private int m_count;
+
+	/**
+	 * Adds a sample.
+	 * 
+	 * @param nanos
+	 *            The latency in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (m_count == m_samples.length) {
+			m_samples = Arrays.copyOf(m_samples, m_count * 2);
+		}
+
+		m_samples[m_count++] = nanos;
+	}
+
+	/**
+	 * Removes all samples.
+	 */
+	public void clear() {
+		m_count = 0;
+	}
+
+	/**
+	 * Returns the number of samples.
+	 * 
+	 * @return The number of samples.
+	 */
+	public int getCount() {
+		return m_count;
+	}
+
+	/**
+	 * Merges the samples of the given recorders and sorts them.
+	 * 
+	 * @param recorders
+	 *            The recorders.
+	 * 
+	 * @return The sorted samples in nanoseconds.
+	 */
+	public static long[] merge(LatencyRecorder... recorders) {
+		int total = 0;
+
+		for (LatencyRecorder recorder : recorders) {
+			total += recorder.m_count;
+		}
+
+		long[] merged = new long[total];
+		int offset = 0;
+
+		for (LatencyRecorder recorder : recorders) {
+			System.arraycopy(recorder.m_samples, 0, merged, offset,
+					recorder.m_count);
+			offset += recorder.m_count;
+		}
+
+		Arrays.sort(merged);
+
+		return merged;
+	}
+
+	/**
+	 * Returns a percentile of sorted samples, using the nearest rank.
+	 * 
+	 * @param sorted
+	 *            The sorted samples.
+	 * @param percentile
+	 *            The percentile, like 99.9.
+	 * 
+	 * @return The sample at the percentile, or 0 if there are no samples.
+	 */
+	public static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+
+		int rank = (int) Math.ceil((percentile / 100) * sorted.length);
+
+		return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+	}
+}
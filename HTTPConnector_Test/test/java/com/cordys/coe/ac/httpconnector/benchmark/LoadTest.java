@@ -0,0 +1,280 @@
+package com.cordys.coe.ac.httpconnector.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.HttpClient;
+
+import com.cordys.coe.ac.httpconnector.benchmark.PipelineFixture.Exchange;
+import com.eibus.xml.nom.Node;
+import com.eibus.xml.nom.XMLException;
+
+/**
+ * Load generator which runs HttpTransaction.process() from a number of
+ * threads against a LoadTestServer. After a warm-up it reports the throughput,
+ * the latency percentiles of the transactions and the time spent waiting for
+ * a pooled connection.
+ * <p>
+ * Arguments are name=value pairs, for example
+ * <code>threads=64 max-connections=20 delay=10 items=100</code>. See
+ * {@link #DEFAULTS} for the names and default values.
+ * </p>
+ * 
+ * @author agent
+ */
+public class LoadTest {
+	/**
+	 * Holds the settings and their default values.
+	 */
+	private static final String[][] DEFAULTS = { { "port", "18182" },
+			{ "threads", "16" }, { "warmup", "5" }, { "duration", "30" },
+			{ "delay", "0" }, { "error-rate", "0" }, { "items", "100" },
+			{ "request-items", "10" }, { "max-connections", "20" } };
+	/**
+	 * Holds the number of transactions after which a worker creates a new
+	 * exchange, so the mocks do not record too many calls.
+	 */
+	private static final int EXCHANGE_CALLS = 1000;
+	/**
+	 * Holds whether the workers should record their samples.
+	 */
+	private static volatile boolean s_measuring;
+	/**
+	 * Holds whether the workers should stop.
+	 */
+	private static volatile boolean s_stopped;
+
+	/**
+	 * Runs the load test.
+	 * 
+	 * @param args
+	 *            The settings as name=value pairs.
+	 * 
+	 * @throws Exception
+	 *             In case of any exceptions.
+	 */
+	public static void main(String[] args) throws Exception {
+		Map<String, String> settings = parseSettings(args);
+		int threads = Integer.parseInt(settings.get("threads"));
+		int maxConnections = Integer
+				.parseInt(settings.get("max-connections"));
+		final int requestItems = Integer.parseInt(settings
+				.get("request-items"));
+
+		LoadTestServer server = new LoadTestServer(Integer.parseInt(settings
+				.get("port")));
+		int payloadSize = server.setPayloadItems(Integer.parseInt(settings
+				.get("items")));
+
+		server.setDelay(Long.parseLong(settings.get("delay")));
+		server.setErrorRate(Double.parseDouble(settings.get("error-rate")));
+
+		final PipelineFixture fixture = new PipelineFixture(server,
+				"<max-connections-per-host>" + maxConnections
+						+ "</max-connections-per-host>",
+				PipelineFixture.createImplementation());
+
+		try {
+			HttpClient client = fixture.getConnection().getHttpClient();
+			final TimedConnectionManager pool = new TimedConnectionManager(
+					client.getHttpConnectionManager());
+
+			client.setHttpConnectionManager(pool);
+
+			final LatencyRecorder[] latencies = new LatencyRecorder[threads];
+			final LatencyRecorder[] waits = new LatencyRecorder[threads];
+			final AtomicLong errors = new AtomicLong();
+			final CountDownLatch done = new CountDownLatch(threads);
+
+			for (int i = 0; i < threads; i++) {
+				final LatencyRecorder latency = new LatencyRecorder();
+				final LatencyRecorder wait = new LatencyRecorder();
+
+				latencies[i] = latency;
+				waits[i] = wait;
+
+				Thread worker = new Thread("LoadTest-" + i) {
+					@Override
+					public void run() {
+						try {
+							runWorker(fixture, pool, requestItems, latency,
+									wait, errors);
+						} catch (XMLException e) {
+							e.printStackTrace();
+						} finally {
+							done.countDown();
+						}
+					}
+				};
+
+				worker.setDaemon(true);
+				worker.start();
+			}
+
+			System.out.println(String.format(
+					"Load test: %s, response %d bytes", settings, payloadSize));
+
+			Thread.sleep(Long.parseLong(settings.get("warmup")) * 1000L);
+
+			// The workers clear their samples when they see the switch.
+			errors.set(0);
+			s_measuring = true;
+
+			long start = System.nanoTime();
+
+			Thread.sleep(Long.parseLong(settings.get("duration")) * 1000L);
+
+			s_stopped = true;
+			done.await();
+
+			long elapsed = System.nanoTime() - start;
+
+			report(LatencyRecorder.merge(latencies),
+					LatencyRecorder.merge(waits), errors.get(), elapsed);
+		} finally {
+			fixture.close();
+		}
+	}
+
+	/**
+	 * Sends requests until the test is stopped.
+	 * 
+	 * @param fixture
+	 *            The fixture.
+	 * @param pool
+	 *            The timed connection pool.
+	 * @param requestItems
+	 *            The number of items in the request.
+	 * @param latency
+	 *            The recorder for the transaction latency.
+	 * @param wait
+	 *            The recorder for the pool waits.
+	 * @param errors
+	 *            The number of failed transactions.
+	 * 
+	 * @throws XMLException
+	 *             In case the request could not be created.
+	 */
+	private static void runWorker(PipelineFixture fixture,
+			TimedConnectionManager pool, int requestItems,
+			LatencyRecorder latency, LatencyRecorder wait, AtomicLong errors)
+			throws XMLException {
+		int request = fixture.getDocument().parseString(
+				PipelineFixture.createRequest(requestItems));
+		boolean measuring = false;
+		Exchange exchange = null;
+		int calls = 0;
+
+		pool.setRecorder(wait);
+
+		try {
+			while (!s_stopped) {
+				if (!measuring && s_measuring) {
+					latency.clear();
+					wait.clear();
+					measuring = true;
+				}
+
+				if ((exchange == null) || (++calls > EXCHANGE_CALLS)) {
+					exchange = fixture.newExchange();
+					calls = 0;
+				}
+
+				long start = System.nanoTime();
+				boolean success;
+
+				try {
+					success = exchange.process(request);
+				} catch (RuntimeException e) {
+					success = false;
+				}
+
+				latency.record(System.nanoTime() - start);
+
+				if (!success) {
+					errors.incrementAndGet();
+				}
+			}
+		} finally {
+			pool.setRecorder(null);
+			Node.delete(request);
+		}
+	}
+
+	/**
+	 * Prints the results.
+	 * 
+	 * @param latencies
+	 *            The sorted transaction latencies.
+	 * @param waits
+	 *            The sorted pool waits.
+	 * @param errors
+	 *            The number of failed transactions.
+	 * @param elapsed
+	 *            The measured time in nanoseconds.
+	 */
+	private static void report(long[] latencies, long[] waits, long errors,
+			long elapsed) {
+		long totalWait = 0;
+
+		for (long wait : waits) {
+			totalWait += wait;
+		}
+
+		System.out.println(String.format(
+				"Transactions: %d in %.1f s, %.1f/s, %d errors",
+				latencies.length, elapsed / 1e9,
+				latencies.length / (elapsed / 1e9), errors));
+		printPercentiles("Latency", latencies);
+		printPercentiles("Pool wait", waits);
+		System.out.println(String.format("Pool wait mean: %.3f ms",
+				(waits.length == 0) ? 0d : (totalWait / 1e6) / waits.length));
+	}
+
+	/**
+	 * Prints the percentiles of sorted samples in milliseconds.
+	 * 
+	 * @param name
+	 *            The name of the samples.
+	 * @param sorted
+	 *            The sorted samples in nanoseconds.
+	 */
+	private static void printPercentiles(String name, long[] sorted) {
+		System.out.println(String.format(
+				"%s: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+				name, LatencyRecorder.percentile(sorted, 50) / 1e6,
+				LatencyRecorder.percentile(sorted, 99) / 1e6,
+				LatencyRecorder.percentile(sorted, 99.9) / 1e6,
+				LatencyRecorder.percentile(sorted, 100) / 1e6));
+	}
+
+	/**
+	 * Parses the name=value arguments.
+	 * 
+	 * @param args
+	 *            The arguments.
+	 * 
+	 * @return The settings, including the defaults.
+	 */
+	private static Map<String, String> parseSettings(String[] args) {
+		Map<String, String> settings = new HashMap<String, String>();
+
+		for (String[] setting : DEFAULTS) {
+			settings.put(setting[0], setting[1]);
+		}
+
+		for (String arg : args) {
+			int index = arg.indexOf('=');
+
+			if ((index <= 0) || !settings.containsKey(arg.substring(0, index))) {
+				throw new IllegalArgumentException("Invalid argument: " + arg);
+			}
+
+			settings.put(arg.substring(0, index), arg.substring(index + 1));
+		}
+
+		return settings;
+	}
+}
@@ -0,0 +1,135 @@
+package com.cordys.coe.ac.httpconnector.benchmark;
+
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+
+import java.io.IOException;
+import java.util.Random;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.cordys.coe.ac.httpconnector.HTTPServer;
+
+/**
+ * Stub server for load tests. Every response is delayed by a fixed time, and
+ * a configurable part of the requests fails with HTTP 503.
+ * 
+ * @author agent
+ */
+public class LoadTestServer extends HTTPServer {
+	/**
+	 * Holds the backend which answers the requests.
+	 */
+	private final Backend m_backend;
+
+	/**
+	 * Creates a new LoadTestServer object.
+	 * 
+	 * @param port
+	 *            The port to listen on.
+	 */
+	public LoadTestServer(int port) {
+		this(port, new Backend());
+	}
+
+	/**
+	 * Creates a new LoadTestServer object.
+	 * 
+	 * @param port
+	 *            The port to listen on.
+	 * @param backend
+	 *            The backend which answers the requests.
+	 */
+	private LoadTestServer(int port, Backend backend) {
+		super(port, backend);
+		m_backend = backend;
+	}
+
+	/**
+	 * Sets the time each response is delayed.
+	 * 
+	 * @param delayMillis
+	 *            The delay in milliseconds.
+	 */
+	public void setDelay(long delayMillis) {
+		m_backend.m_delayMillis = delayMillis;
+	}
+
+	/**
+	 * Sets the part of the requests which fail.
+	 * 
+	 * @param errorRate
+	 *            The error rate, between 0 and 1.
+	 */
+	public void setErrorRate(double errorRate) {
+		m_backend.m_errorRate = errorRate;
+	}
+
+	/**
+	 * Sets the number of items in the response payload.
+	 * 
+	 * @param items
+	 *            The number of items.
+	 * 
+	 * @return The size of the payload in bytes.
+	 * 
+	 * @throws IOException
+	 *             In case the payload could not be encoded.
+	 */
+	public int setPayloadItems(int items) throws IOException {
+		byte[] payload = PipelineFixture.createPayload(items).getBytes(
+				"UTF-8");
+
+		m_backend.setPayload(payload);
+
+		return payload.length;
+	}
+
+	/**
+	 * Backend which adds the delay and the errors.
+	 */
+	private static class Backend extends StubBackend {
+		/**
+		 * Holds the response delay in milliseconds.
+		 */
+		private volatile long m_delayMillis;
+		/**
+		 * Holds the part of the requests which fail.
+		 */
+		private volatile double m_errorRate;
+		/**
+		 * Holds the random generator for the errors. Random is thread safe.
+		 */
+		private final Random m_random = new Random();
+
+		/**
+		 * Creates a new Backend object.
+		 */
+		Backend() {
+			super(new byte[0]);
+		}
+
+		/**
+		 * @see com.cordys.coe.ac.httpconnector.benchmark.StubBackend#writeResponse(javax.servlet.http.HttpServletResponse)
+		 */
+		@Override
+		protected void writeResponse(HttpServletResponse res)
+				throws IOException {
+			long delay = m_delayMillis;
+
+			if (delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			if ((m_errorRate > 0) && (m_random.nextDouble() < m_errorRate)) {
+				res.sendError(SC_SERVICE_UNAVAILABLE);
+				return;
+			}
+
+			super.writeResponse(res);
+		}
+	}
+}
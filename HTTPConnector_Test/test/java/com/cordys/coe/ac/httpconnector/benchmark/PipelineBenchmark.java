@@ -0,0 +1,369 @@
+package com.cordys.coe.ac.httpconnector.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+import com.cordys.coe.ac.httpconnector.HTTPServer;
+import com.cordys.coe.ac.httpconnector.IRequestHandler;
+import com.cordys.coe.ac.httpconnector.IResponseHandler;
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.config.IXSLTStore;
+import com.cordys.coe.ac.httpconnector.config.MethodConfigurationFactory;
+import com.cordys.coe.ac.httpconnector.impl.RestRequestHandler;
+import com.cordys.coe.ac.httpconnector.utils.XmlUtils;
+import com.eibus.xml.nom.Document;
+import com.eibus.xml.nom.Node;
+
+/**
+ * Measures the stages of the request pipeline for several payload sizes: the
+ * request handler, the response handler, namespace removal, building a REST
+ * URI and a full HttpTransaction.process() call against a local Jetty server.
+ * Run it as a Java application. JMH is not available in this project, so
+ * BenchmarkRunner does a time based warm-up and measurement.
+ * <p>
+ * Arguments: [port] [warm-up ms] [measure ms]
+ * </p>
+ * 
+ * @author agent
+ */
+public class PipelineBenchmark {
+	/**
+	 * Holds the number of items in the payloads that are measured.
+	 */
+	private static final int[] PAYLOAD_ITEMS = { 10, 1000, 10000 };
+	/**
+	 * Holds the REST method implementation.
+	 */
+	private static final String REST_IMPLEMENTATION = "<implementation type=\"HTTP\" xmlns=\""
+			+ "http://httpconnector.coe.cordys.com/2.0/implementation\">"
+			+ "<connection-id>"
+			+ PipelineFixture.CONNECTION_ID
+			+ "</connection-id>"
+			+ "<uri>/rest/api/2/project/{0}/issue/{1}?expand={2}</uri>"
+			+ "<http-method>GET</http-method>"
+			+ "<request-handler class=\""
+			+ UriRequestHandler.class.getName()
+			+ "\"><uri-parameters>"
+			+ "<parameter type=\"xpath\">project</parameter>"
+			+ "<parameter type=\"xpath\">issue</parameter>"
+			+ "<parameter type=\"fixed\">changelog</parameter>"
+			+ "</uri-parameters></request-handler>"
+			+ "<response-handler class=\""
+			+ "com.cordys.coe.ac.httpconnector.impl.StandardResponseHandler\"/>"
+			+ "<valid-response-code>200</valid-response-code>"
+			+ "<namespaces/></implementation>";
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            The optional port, warm-up time and measure time.
+	 * 
+	 * @throws Exception
+	 *             In case of any exceptions.
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : 18181;
+		long warmup = (args.length > 1) ? Long.parseLong(args[1]) : 3000;
+		long measure = (args.length > 2) ? Long.parseLong(args[2]) : 5000;
+		BenchmarkRunner runner = new BenchmarkRunner(warmup, measure);
+		StubBackend backend = new StubBackend(new byte[0]);
+		PipelineFixture fixture = new PipelineFixture(new HTTPServer(port,
+				backend), "", PipelineFixture.createImplementation());
+
+		try {
+			runRequestUri(runner, fixture);
+
+			for (int items : PAYLOAD_ITEMS) {
+				byte[] payload = PipelineFixture.createPayload(items)
+						.getBytes("UTF-8");
+
+				backend.setPayload(payload);
+
+				String suffix = " [" + items + " items, " + payload.length
+						+ " bytes]";
+
+				runRequestHandler(runner, fixture, items, suffix);
+				runResponseHandler(runner, fixture, payload, suffix);
+				runRemoveNamespaces(runner, fixture, payload, suffix);
+				runTransaction(runner, fixture, items, suffix);
+			}
+		} finally {
+			fixture.close();
+		}
+	}
+
+	/**
+	 * Measures the request handler, which builds the HTTP method from the
+	 * request XML.
+	 * 
+	 * @param runner
+	 *            The benchmark runner.
+	 * @param fixture
+	 *            The fixture.
+	 * @param items
+	 *            The number of items in the request.
+	 * @param suffix
+	 *            The suffix for the benchmark name.
+	 * 
+	 * @throws Exception
+	 *             In case of any exceptions.
+	 */
+	private static void runRequestHandler(BenchmarkRunner runner,
+			PipelineFixture fixture, int items, String suffix)
+			throws Exception {
+		final IRequestHandler handler = fixture.getMethod()
+				.getRequestHandler();
+		final IServerConnection connection = fixture.getConnection();
+		final HttpClient client = connection.getHttpClient();
+		final int request = fixture.getDocument().parseString(
+				PipelineFixture.createRequest(items));
+
+		try {
+			runner.run("StandardRequestHandler.process" + suffix,
+					new BenchmarkRunner.Task() {
+						@Override
+						public void run() throws Exception {
+							HttpMethod method = handler.process(request,
+									connection, client);
+
+							method.releaseConnection();
+						}
+					});
+		} finally {
+			Node.delete(request);
+		}
+	}
+
+	/**
+	 * Measures the response handler, which converts a canned HTTP response
+	 * into XML.
+	 * 
+	 * @param runner
+	 *            The benchmark runner.
+	 * @param fixture
+	 *            The fixture.
+	 * @param payload
+	 *            The response body.
+	 * @param suffix
+	 *            The suffix for the benchmark name.
+	 * 
+	 * @throws Exception
+	 *             In case of any exceptions.
+	 */
+	private static void runResponseHandler(BenchmarkRunner runner,
+			PipelineFixture fixture, final byte[] payload, String suffix)
+			throws Exception {
+		final IResponseHandler handler = fixture.getMethod()
+				.getResponseHandler();
+		final IServerConnection connection = fixture.getConnection();
+		final Document doc = fixture.getDocument();
+
+		runner.run("StandardResponseHandler.convertResponseToXml" + suffix,
+				new BenchmarkRunner.Task() {
+					@Override
+					public void run() throws Exception {
+						int response = handler.convertResponseToXml(
+								new CannedResponseMethod(payload), connection,
+								doc);
+
+						Node.delete(response);
+					}
+				});
+	}
+
+	/**
+	 * Measures removing all namespaces from a copy of the response.
+	 * 
+	 * @param runner
+	 *            The benchmark runner.
+	 * @param fixture
+	 *            The fixture.
+	 * @param payload
+	 *            The response body.
+	 * @param suffix
+	 *            The suffix for the benchmark name.
+	 * 
+	 * @throws Exception
+	 *             In case of any exceptions.
+	 */
+	private static void runRemoveNamespaces(BenchmarkRunner runner,
+			PipelineFixture fixture, byte[] payload, String suffix)
+			throws Exception {
+		final int template = fixture.getDocument().load(payload);
+
+		try {
+			// The copy is part of the measurement, but it is much cheaper
+			// than the namespace removal.
+			runner.run("XmlUtils.removeNamespacesRecursively" + suffix,
+					new BenchmarkRunner.Task() {
+						@Override
+						public void run() throws Exception {
+							int node = Node.duplicate(template);
+
+							XmlUtils.removeNamespacesRecursively(node, null);
+							Node.delete(node);
+						}
+					});
+		} finally {
+			Node.delete(template);
+		}
+	}
+
+	/**
+	 * Measures building a REST URI from the request XML.
+	 * 
+	 * @param runner
+	 *            The benchmark runner.
+	 * @param fixture
+	 *            The fixture.
+	 * 
+	 * @throws Exception
+	 *             In case of any exceptions.
+	 */
+	private static void runRequestUri(BenchmarkRunner runner,
+			PipelineFixture fixture) throws Exception {
+		Document doc = fixture.getDocument();
+		int impl = doc.parseString(REST_IMPLEMENTATION);
+		final UriRequestHandler handler;
+
+		try {
+			handler = (UriRequestHandler) MethodConfigurationFactory
+					.createMethodConfiguration(
+							IXSLTStore.Factory.getStore("o=benchmark", false),
+							impl).getRequestHandler();
+		} finally {
+			Node.delete(impl);
+		}
+
+		final IServerConnection connection = fixture.getConnection();
+		final int request = doc.parseString("<GetIssue><project>COE</project>"
+				+ "<issue>COE 1234/5</issue></GetIssue>");
+
+		try {
+			runner.run("RestRequestHandler.getRequestUri",
+					new BenchmarkRunner.Task() {
+						@Override
+						public void run() throws Exception {
+							handler.buildUri(request, connection);
+						}
+					});
+		} finally {
+			Node.delete(request);
+		}
+	}
+
+	/**
+	 * Measures a complete HttpTransaction.process() call, including the HTTP
+	 * request to the stub backend.
+	 * 
+	 * @param runner
+	 *            The benchmark runner.
+	 * @param fixture
+	 *            The fixture.
+	 * @param items
+	 *            The number of items in the request.
+	 * @param suffix
+	 *            The suffix for the benchmark name.
+	 * 
+	 * @throws Exception
+	 *             In case of any exceptions.
+	 */
+	private static void runTransaction(BenchmarkRunner runner,
+			final PipelineFixture fixture, int items, String suffix)
+			throws Exception {
+		final int request = fixture.getDocument().parseString(
+				PipelineFixture.createRequest(items));
+
+		try {
+			runner.run("HttpTransaction.process" + suffix,
+					new BenchmarkRunner.Task() {
+						/**
+						 * Holds the current exchange. It is replaced now and
+						 * then, because the mocks record all calls.
+						 */
+						private PipelineFixture.Exchange m_exchange;
+						/**
+						 * Holds the number of calls on the current exchange.
+						 */
+						private int m_calls;
+
+						@Override
+						public void run() throws Exception {
+							if ((m_exchange == null) || (++m_calls > 1000)) {
+								m_exchange = fixture.newExchange();
+								m_calls = 0;
+							}
+
+							if (!m_exchange.process(request)) {
+								throw new IllegalStateException(
+										"The transaction did not return a response");
+							}
+						}
+					});
+		} finally {
+			Node.delete(request);
+		}
+	}
+
+	/**
+	 * HTTP method which returns a canned response body, so the response
+	 * handler can be measured without a server.
+	 */
+	private static class CannedResponseMethod extends GetMethod {
+		/**
+		 * Holds the response body.
+		 */
+		private final byte[] m_body;
+
+		/**
+		 * Creates a new CannedResponseMethod object.
+		 * 
+		 * @param body
+		 *            The response body.
+		 */
+		CannedResponseMethod(byte[] body) {
+			m_body = body;
+		}
+
+		/**
+		 * @see org.apache.commons.httpclient.HttpMethodBase#getResponseBodyAsStream()
+		 */
+		@Override
+		public InputStream getResponseBodyAsStream() {
+			return new ByteArrayInputStream(m_body);
+		}
+
+		/**
+		 * @see org.apache.commons.httpclient.HttpMethodBase#getResponseContentLength()
+		 */
+		@Override
+		public long getResponseContentLength() {
+			return m_body.length;
+		}
+	}
+
+	/**
+	 * REST request handler which makes getRequestUri() available to the
+	 * benchmark.
+	 */
+	public static class UriRequestHandler extends RestRequestHandler {
+		/**
+		 * Builds the URI for the given request.
+		 * 
+		 * @param requestNode
+		 *            The request XML.
+		 * @param connection
+		 *            The connection.
+		 * 
+		 * @return The URI.
+		 */
+		public String buildUri(int requestNode, IServerConnection connection) {
+			return getRequestUri(requestNode, connection, null);
+		}
+	}
+}
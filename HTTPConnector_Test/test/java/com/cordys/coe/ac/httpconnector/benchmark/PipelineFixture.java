@@ -0,0 +1,388 @@
+package com.cordys.coe.ac.httpconnector.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.cordys.coe.ac.httpconnector.HTTPServer;
+import com.cordys.coe.ac.httpconnector.HttpConnector;
+import com.cordys.coe.ac.httpconnector.HttpTransaction;
+import com.cordys.coe.ac.httpconnector.config.ConnectionManager;
+import com.cordys.coe.ac.httpconnector.config.DefaultConnectionManager;
+import com.cordys.coe.ac.httpconnector.config.IMethodConfiguration;
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.config.IXSLTStore;
+import com.cordys.coe.ac.httpconnector.config.MethodConfigurationFactory;
+import com.cordys.coe.ac.httpconnector.management.PerformanceCounters;
+import com.eibus.soap.BodyBlock;
+import com.eibus.xml.nom.Document;
+import com.eibus.xml.nom.Node;
+
+/**
+ * Runs the connector against a local stub backend, without a Cordys
+ * processor. The connection and method configuration are created from XML
+ * like the connector does, and HttpTransaction is driven with mocked body
+ * blocks.
+ * 
+ * @author agent
+ */
+public class PipelineFixture {
+	/**
+	 * Holds the ID of the benchmark connection.
+	 */
+	public static final String CONNECTION_ID = "Benchmark";
+	/**
+	 * Holds the namespace of the generated payloads.
+	 */
+	public static final String NS_BOOKS = "http://example.com/books";
+	/**
+	 * Holds the XML document used for all nodes.
+	 */
+	private final Document m_doc = new Document();
+	/**
+	 * Holds the embedded HTTP server.
+	 */
+	private final HTTPServer m_server;
+	/**
+	 * Holds the connection to the stub backend.
+	 */
+	private final IServerConnection m_connection;
+	/**
+	 * Holds the method configuration.
+	 */
+	private final IMethodConfiguration m_method;
+	/**
+	 * Holds the transaction which processes the requests.
+	 */
+	private final HttpTransaction m_transaction;
+
+	/**
+	 * Creates a new PipelineFixture object and starts the stub backend.
+	 * 
+	 * @param server
+	 *            The server with the stub backend.
+	 * @param connectionSettings
+	 *            Extra XML for the connection element, like pool settings.
+	 * @param implementation
+	 *            The method implementation XML.
+	 * 
+	 * @throws Exception
+	 *             In case the fixture could not be created.
+	 */
+	public PipelineFixture(HTTPServer server, String connectionSettings,
+			String implementation) throws Exception {
+		m_server = server;
+		m_server.start();
+
+		int config = m_doc.parseString("<configuration xmlns=\""
+				+ "http://httpconnector.coe.cordys.com/2.0/configuration\">"
+				+ "<connections><connection id=\"" + CONNECTION_ID + "\">"
+				+ "<url>http://localhost:" + server.port + "</url>"
+				+ connectionSettings + "</connection></connections>"
+				+ "</configuration>");
+		int impl = 0;
+
+		try {
+			m_connection = DefaultConnectionManager
+					.createServerConnections(config)[0];
+			m_connection.open();
+
+			impl = m_doc.parseString(implementation);
+			m_method = MethodConfigurationFactory.createMethodConfiguration(
+					IXSLTStore.Factory.getStore("o=benchmark", false), impl);
+		} finally {
+			Node.delete(config);
+			Node.delete(impl);
+		}
+
+		m_transaction = new HttpTransaction(new FixtureConnector(
+				m_connection, m_method), null);
+	}
+
+	/**
+	 * Returns the standard implementation used by the benchmarks. It posts
+	 * the request XML and removes all namespaces from the response.
+	 * 
+	 * @return The implementation XML.
+	 */
+	public static String createImplementation() {
+		return "<implementation type=\"HTTP\" xmlns=\""
+				+ "http://httpconnector.coe.cordys.com/2.0/implementation\">"
+				+ "<connection-id>" + CONNECTION_ID + "</connection-id>"
+				+ "<uri>/books</uri><http-method>POST</http-method>"
+				+ "<request-handler class=\""
+				+ "com.cordys.coe.ac.httpconnector.impl.StandardRequestHandler\"/>"
+				+ "<response-handler class=\""
+				+ "com.cordys.coe.ac.httpconnector.impl.StandardResponseHandler\">"
+				+ "<remove-namespaces><namespace-uri>*</namespace-uri>"
+				+ "</remove-namespaces></response-handler>"
+				+ "<valid-response-code>200</valid-response-code>"
+				+ "<namespaces/></implementation>";
+	}
+
+	/**
+	 * Creates a response payload with the given number of items.
+	 * 
+	 * @param items
+	 *            The number of items.
+	 * 
+	 * @return The payload XML.
+	 */
+	public static String createPayload(int items) {
+		StringBuilder sb = new StringBuilder(128 + (items * 160));
+
+		sb.append("<books xmlns=\"").append(NS_BOOKS).append(
+				"\" xmlns:x=\"http://example.com/extra\">");
+
+		for (int i = 0; i < items; i++) {
+			sb.append("<book id=\"").append(i).append("\"><title>Title ")
+					.append(i).append("</title><author>Author ").append(i)
+					.append("</author><x:price currency=\"EUR\">").append(i)
+					.append(".99</x:price></book>");
+		}
+
+		return sb.append("</books>").toString();
+	}
+
+	/**
+	 * Creates a request with the given number of items.
+	 * 
+	 * @param items
+	 *            The number of items.
+	 * 
+	 * @return The request XML.
+	 */
+	public static String createRequest(int items) {
+		StringBuilder sb = new StringBuilder(128 + (items * 64));
+
+		sb.append("<GetBooks xmlns=\"").append(NS_BOOKS).append("\">");
+
+		for (int i = 0; i < items; i++) {
+			sb.append("<id>").append(i).append("</id>");
+		}
+
+		return sb.append("</GetBooks>").toString();
+	}
+
+	/**
+	 * Stops the stub backend and closes the connection.
+	 * 
+	 * @throws Exception
+	 *             In case the server could not be stopped.
+	 */
+	public void close() throws Exception {
+		m_connection.close();
+		m_server.stop();
+	}
+
+	/**
+	 * Returns the connection to the stub backend.
+	 * 
+	 * @return The connection.
+	 */
+	public IServerConnection getConnection() {
+		return m_connection;
+	}
+
+	/**
+	 * Returns the XML document used by the fixture.
+	 * 
+	 * @return The document.
+	 */
+	public Document getDocument() {
+		return m_doc;
+	}
+
+	/**
+	 * Returns the method configuration.
+	 * 
+	 * @return The method configuration.
+	 */
+	public IMethodConfiguration getMethod() {
+		return m_method;
+	}
+
+	/**
+	 * Creates a new exchange. An exchange holds mocked body blocks, which
+	 * record every call, so long running callers should create a new one now
+	 * and then. An exchange must only be used by one thread at a time.
+	 * 
+	 * @return The exchange.
+	 */
+	public Exchange newExchange() {
+		return new Exchange();
+	}
+
+	/**
+	 * Runs requests through HttpTransaction.process() with mocked body
+	 * blocks.
+	 */
+	public class Exchange {
+		/**
+		 * Holds the request body block.
+		 */
+		private final BodyBlock m_request = mock(BodyBlock.class);
+		/**
+		 * Holds the response body block.
+		 */
+		private final BodyBlock m_response = mock(BodyBlock.class);
+		/**
+		 * Holds the request node of the current call.
+		 */
+		private int m_requestNode;
+		/**
+		 * Holds the response node of the current call.
+		 */
+		private int m_responseNode;
+
+		/**
+		 * Creates a new Exchange object.
+		 */
+		Exchange() {
+			when(m_request.getXMLNode()).thenAnswer(new Answer<Integer>() {
+				@Override
+				public Integer answer(InvocationOnMock invocation) {
+					return m_requestNode;
+				}
+			});
+			when(m_response.getXMLNode()).thenAnswer(new Answer<Integer>() {
+				@Override
+				public Integer answer(InvocationOnMock invocation) {
+					return m_responseNode;
+				}
+			});
+		}
+
+		/**
+		 * Processes a copy of the request.
+		 * 
+		 * @param requestTemplate
+		 *            The request XML, which is not changed.
+		 * 
+		 * @return true if the response contains data, false if it holds a
+		 *         SOAP fault or nothing.
+		 */
+		public boolean process(int requestTemplate) {
+			// The transaction unlinks and deletes the request, so it is put
+			// under its own parent, which cleans it up when the transaction
+			// failed before that.
+			int requestBody = m_doc.createElement("Body");
+			int responseBody = m_doc.createElement("Body");
+
+			m_requestNode = Node.appendToChildren(Node.duplicate(requestTemplate),
+					requestBody);
+			m_responseNode = m_doc.createElement("GetBooksResponse",
+					responseBody);
+
+			try {
+				m_transaction.process(m_request, m_response);
+
+				int first = Node.getFirstChild(m_responseNode);
+
+				return (first != 0)
+						&& !"Fault".equals(Node.getLocalName(first));
+			} finally {
+				Node.delete(requestBody);
+				Node.delete(responseBody);
+			}
+		}
+	}
+
+	/**
+	 * Connection manager with only the fixture connection.
+	 */
+	private static class FixtureConnectionManager implements
+			ConnectionManager {
+		/**
+		 * Holds the connection.
+		 */
+		private final IServerConnection m_connection;
+
+		/**
+		 * Creates a new FixtureConnectionManager object.
+		 * 
+		 * @param connection
+		 *            The connection.
+		 */
+		FixtureConnectionManager(IServerConnection connection) {
+			m_connection = connection;
+		}
+
+		/**
+		 * @see com.cordys.coe.ac.httpconnector.config.ConnectionManager#close()
+		 */
+		@Override
+		public void close() {
+		}
+
+		/**
+		 * @see com.cordys.coe.ac.httpconnector.config.ConnectionManager#getConnection(java.lang.String)
+		 */
+		@Override
+		public IServerConnection getConnection(String connectionId) {
+			return CONNECTION_ID.equals(connectionId) ? m_connection : null;
+		}
+
+		/**
+		 * @see com.cordys.coe.ac.httpconnector.config.ConnectionManager#reset()
+		 */
+		@Override
+		public void reset() {
+		}
+	}
+
+	/**
+	 * Connector which hands out the fixture connection and method, so no
+	 * Cordys processor is needed.
+	 */
+	private static class FixtureConnector extends HttpConnector {
+		/**
+		 * Holds the connection manager with the fixture connection.
+		 */
+		private final ConnectionManager m_manager;
+		/**
+		 * Holds the method configuration.
+		 */
+		private final IMethodConfiguration m_method;
+
+		/**
+		 * Creates a new FixtureConnector object.
+		 * 
+		 * @param connection
+		 *            The connection.
+		 * @param method
+		 *            The method configuration.
+		 */
+		FixtureConnector(IServerConnection connection,
+				IMethodConfiguration method) {
+			m_method = method;
+			m_manager = new FixtureConnectionManager(connection);
+		}
+
+		/**
+		 * @see com.cordys.coe.ac.httpconnector.HttpConnector#getConnectionFactory()
+		 */
+		@Override
+		public ConnectionManager getConnectionFactory() {
+			return m_manager;
+		}
+
+		/**
+		 * @see com.cordys.coe.ac.httpconnector.HttpConnector#getCounters()
+		 */
+		@Override
+		public PerformanceCounters getCounters() {
+			return null;
+		}
+
+		/**
+		 * @see com.cordys.coe.ac.httpconnector.HttpConnector#getMethodConfig(com.eibus.soap.BodyBlock)
+		 */
+		@Override
+		public IMethodConfiguration getMethodConfig(BodyBlock req) {
+			return m_method;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.cordys.coe.ac.httpconnector.benchmark;
+
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.mortbay.jetty.HttpConnection;
+import org.mortbay.jetty.Request;
+import org.mortbay.jetty.handler.AbstractHandler;
+
+/**
+ * Jetty handler which answers every request with a fixed XML payload. The
+ * request body is read completely, like a real backend would.
+ * 
+ * @author agent
+ */
+public class StubBackend extends AbstractHandler {
+	/**
+	 * Holds the response body.
+	 */
+	private volatile byte[] m_payload;
+
+	/**
+	 * Creates a new StubBackend object.
+	 * 
+	 * @param payload
+	 *            The response body.
+	 */
+	public StubBackend(byte[] payload) {
+		m_payload = payload;
+	}
+
+	/**
+	 * Sets the response body for the next requests.
+	 * 
+	 * @param payload
+	 *            The response body.
+	 */
+	public void setPayload(byte[] payload) {
+		m_payload = payload;
+	}
+
+	/**
+	 * @see org.mortbay.jetty.Handler#handle(java.lang.String,
+	 *      javax.servlet.http.HttpServletRequest,
+	 *      javax.servlet.http.HttpServletResponse, int)
+	 */
+	@Override
+	public void handle(String target, HttpServletRequest req,
+			HttpServletResponse res, int dispatch) throws IOException,
+			ServletException {
+		Request baseRequest = (req instanceof Request) ? (Request) req
+				: HttpConnection.getCurrentConnection().getRequest();
+
+		consume(req.getInputStream());
+		writeResponse(res);
+		baseRequest.setHandled(true);
+	}
+
+	/**
+	 * Writes the response for the current request.
+	 * 
+	 * @param res
+	 *            The servlet response.
+	 * 
+	 * @throws IOException
+	 *             In case the response could not be written.
+	 */
+	protected void writeResponse(HttpServletResponse res) throws IOException {
+		byte[] payload = m_payload;
+
+		res.setStatus(SC_OK);
+		res.setContentType("text/xml;charset=utf-8");
+		res.setContentLength(payload.length);
+
+		OutputStream out = res.getOutputStream();
+
+		out.write(payload);
+		out.flush();
+	}
+
+	/**
+	 * Reads and discards the request body.
+	 * 
+	 * @param in
+	 *            The request body.
+	 * 
+	 * @throws IOException
+	 *             In case the body could not be read.
+	 */
+	private static void consume(InputStream in) throws IOException {
+		byte[] buffer = new byte[4096];
+
+		while (in.read(buffer) != -1) {
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.cordys.coe.ac.httpconnector.benchmark;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+
+/**
+ * Connection manager which measures how long threads wait for a pooled
+ * connection. The other calls are passed to the pool of the connection.
+ * 
+ * @author agent
+ */
+public class TimedConnectionManager implements HttpConnectionManager {
+	/**
+	 * Holds the recorder of the current thread.
+	 */
+	private final ThreadLocal<LatencyRecorder> m_recorder = new ThreadLocal<LatencyRecorder>();
+	/**
+	 * Holds the actual connection pool.
+	 */
+	private final HttpConnectionManager m_pool;
+
+	/**
+	 * Creates a new TimedConnectionManager object.
+	 * 
+	 * @param pool
+	 *            The actual connection pool.
+	 */
+	public TimedConnectionManager(HttpConnectionManager pool) {
+		m_pool = pool;
+	}
+
+	/**
+	 * Sets the recorder for the waits of the current thread.
+	 * 
+	 * @param recorder
+	 *            The recorder, or null to stop recording.
+	 */
+	public void setRecorder(LatencyRecorder recorder) {
+		m_recorder.set(recorder);
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.HttpConnectionManager#closeIdleConnections(long)
+	 */
+	@Override
+	public void closeIdleConnections(long idleTimeout) {
+		m_pool.closeIdleConnections(idleTimeout);
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.HttpConnectionManager#getConnection(org.apache.commons.httpclient.HostConfiguration)
+	 */
+	@Override
+	public HttpConnection getConnection(HostConfiguration hostConfiguration) {
+		long start = System.nanoTime();
+
+		try {
+			return m_pool.getConnection(hostConfiguration);
+		} finally {
+			record(start);
+		}
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.HttpConnectionManager#getConnection(org.apache.commons.httpclient.HostConfiguration,
+	 *      long)
+	 */
+	@Override
+	@SuppressWarnings("deprecation")
+	public HttpConnection getConnection(HostConfiguration hostConfiguration,
+			long timeout) throws HttpException {
+		long start = System.nanoTime();
+
+		try {
+			return m_pool.getConnection(hostConfiguration, timeout);
+		} finally {
+			record(start);
+		}
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.HttpConnectionManager#getConnectionWithTimeout(org.apache.commons.httpclient.HostConfiguration,
+	 *      long)
+	 */
+	@Override
+	public HttpConnection getConnectionWithTimeout(
+			HostConfiguration hostConfiguration, long timeout)
+			throws ConnectionPoolTimeoutException {
+		long start = System.nanoTime();
+
+		try {
+			return m_pool.getConnectionWithTimeout(hostConfiguration, timeout);
+		} finally {
+			record(start);
+		}
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.HttpConnectionManager#getParams()
+	 */
+	@Override
+	public HttpConnectionManagerParams getParams() {
+		return m_pool.getParams();
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.HttpConnectionManager#releaseConnection(org.apache.commons.httpclient.HttpConnection)
+	 */
+	@Override
+	public void releaseConnection(HttpConnection conn) {
+		m_pool.releaseConnection(conn);
+	}
+
+	/**
+	 * @see org.apache.commons.httpclient.HttpConnectionManager#setParams(org.apache.commons.httpclient.params.HttpConnectionManagerParams)
+	 */
+	@Override
+	public void setParams(HttpConnectionManagerParams params) {
+		m_pool.setParams(params);
+	}
+
+	/**
+	 * Records the wait of the current thread.
+	 * 
+	 * @param start
+	 *            The start of the wait in nanoseconds.
+	 */
+	private void record(long start) {
+		LatencyRecorder recorder = m_recorder.get();
+
+		if (recorder != null) {
+			recorder.record(System.nanoTime() - start);
+		}
+	}
+}
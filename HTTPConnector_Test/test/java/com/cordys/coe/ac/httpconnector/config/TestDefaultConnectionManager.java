@@ -0,0 +1,390 @@
+package com.cordys.coe.ac.httpconnector.config;
+
+import static com.cordys.coe.ac.httpconnector.HttpConnectorConstants.ISV_VERSION;
+import static com.cordys.coe.ac.httpconnector.HttpConnectorConstants.ORGANIZATION_VERSION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.cordys.coe.ac.httpconnector.HttpConfiguration;
+import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
+import com.cordys.coe.ac.httpconnector.exception.ConnectorExceptionMessages;
+import com.eibus.xml.nom.Document;
+import com.eibus.xml.nom.Node;
+
+/**
+ * This class tests how the connection manager replaces and closes the
+ * connections.
+ *
+ * @author agent
+ */
+public class TestDefaultConnectionManager {
+	/**
+	 * Holds the organization of the connections.
+	 */
+	private static final String ORGANIZATION = "o=system,cn=cordys,cn=test,o=example.com";
+	/**
+	 * Holds the settings of the connection used by the reload tests.
+	 */
+	private static final String SETTINGS = "<url>http://localhost:8080/service</url>"
+			+ "<username>user</username><password>c2VjcmV0</password>"
+			+ "<proxy-host>proxy</proxy-host><proxy-port>3128</proxy-port>";
+	/**
+	 * Holds the XML document.
+	 */
+	private static Document s_doc = new Document();
+	/**
+	 * Holds the connections returned by the next loads of the configuration.
+	 */
+	private LinkedList<ServerConnections> m_loads = new LinkedList<ServerConnections>();
+	/**
+	 * Holds the connector configuration.
+	 */
+	private HttpConfiguration m_configuration;
+
+	/**
+	 * Creates the connector configuration.
+	 */
+	@Before
+	public void prepare() {
+		m_configuration = mock(HttpConfiguration.class);
+		when(m_configuration.getBaseOrganizationDN()).thenReturn(ORGANIZATION);
+	}
+
+	/**
+	 * Tests that reset() drains the replaced connections in the background.
+	 */
+	@Test
+	public void testResetDrainsReplacedConnections() throws Exception {
+		final CountDownLatch released = new CountDownLatch(1);
+		IServerConnection replaced = createConnection("first", 10000);
+		IServerConnection reloaded = createConnection("first", 10000);
+
+		blockClose(replaced, released);
+
+		DefaultConnectionManager manager = createManager(load(replaced));
+
+		m_loads.add(load(reloaded));
+
+		long start = System.currentTimeMillis();
+
+		manager.reset();
+
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		verify(reloaded).open();
+		verify(replaced, timeout(1000)).close();
+		verify(reloaded, never()).close();
+
+		released.countDown();
+	}
+
+	/**
+	 * Tests that close() closes every connection.
+	 */
+	@Test
+	public void testCloseClosesAllConnections() throws Exception {
+		IServerConnection first = createConnection("first", 1000);
+		IServerConnection second = createConnection("second", 1000);
+
+		DefaultConnectionManager manager = createManager(load(first, second));
+
+		manager.close();
+
+		verify(first).close();
+		verify(second).close();
+	}
+
+	/**
+	 * Tests that close() drains the connections at the same time.
+	 */
+	@Test
+	public void testCloseDrainsInParallel() throws Exception {
+		IServerConnection first = createConnection("first", 5000);
+		IServerConnection second = createConnection("second", 5000);
+
+		delayClose(first, 500);
+		delayClose(second, 500);
+
+		DefaultConnectionManager manager = createManager(load(first, second));
+
+		long start = System.currentTimeMillis();
+
+		manager.close();
+
+		long duration = System.currentTimeMillis() - start;
+
+		assertTrue(duration >= 450);
+		assertTrue(duration < 950);
+	}
+
+	/**
+	 * Tests that close() waits no longer than the longest connection timeout
+	 * when a connection does not finish draining.
+	 */
+	@Test
+	public void testCloseWaitIsBounded() throws Exception {
+		CountDownLatch released = new CountDownLatch(1);
+		IServerConnection stuck = createConnection("stuck", 200);
+		IServerConnection other = createConnection("other", 100);
+
+		blockClose(stuck, released);
+
+		DefaultConnectionManager manager = createManager(load(stuck, other));
+
+		long start = System.currentTimeMillis();
+
+		manager.close();
+
+		long duration = System.currentTimeMillis() - start;
+
+		assertTrue(duration >= 150);
+		assertTrue(duration < 1000);
+		verify(other).close();
+
+		released.countDown();
+	}
+
+	/**
+	 * Tests that a reload which only changes settings that are not bound to
+	 * the pooled connections keeps the connection and its pool.
+	 */
+	@Test
+	public void testUnchangedPoolIsKept() throws Exception {
+		IServerConnection live = parseConnection(SETTINGS
+				+ "<timeout>1000</timeout>");
+		IServerConnection reloaded = parseConnection(SETTINGS
+				+ "<timeout>2000</timeout>");
+
+		DefaultConnectionManager manager = createManager(load(live));
+		Object client = live.getHttpClient();
+
+		m_loads.add(load(reloaded));
+		manager.reset();
+
+		IServerConnection current = manager.getConnection("first");
+
+		assertSame(live, current);
+		assertSame(client, current.getHttpClient());
+		assertEquals(2000, current.getTimeout());
+
+		manager.close();
+	}
+
+	/**
+	 * Tests that a changed URL gets a new pool.
+	 */
+	@Test
+	public void testChangedUrlGetsNewPool() throws Exception {
+		assertReplaced(SETTINGS, SETTINGS.replace("8080", "8081"));
+	}
+
+	/**
+	 * Tests that changed credentials get a new pool.
+	 */
+	@Test
+	public void testChangedCredentialsGetNewPool() throws Exception {
+		assertReplaced(SETTINGS, SETTINGS.replace(">user<", ">other<"));
+	}
+
+	/**
+	 * Tests that a changed proxy gets a new pool.
+	 */
+	@Test
+	public void testChangedProxyGetsNewPool() throws Exception {
+		assertReplaced(SETTINGS, SETTINGS.replace("3128", "3129"));
+	}
+
+	/**
+	 * Tests that the previous configuration stays in use when the
+	 * configuration can not be reloaded.
+	 */
+	@Test
+	public void testFailedReloadKeepsConfiguration() throws Exception {
+		IServerConnection live = parseConnection(SETTINGS
+				+ "<timeout>1000</timeout>");
+
+		DefaultConnectionManager manager = createManager(load(live));
+		Object client = live.getHttpClient();
+
+		manager.reset();
+
+		IServerConnection current = manager.getConnection("first");
+
+		assertSame(live, current);
+		assertSame(client, current.getHttpClient());
+		assertEquals(1000, current.getTimeout());
+
+		manager.close();
+	}
+
+	/**
+	 * Asserts that reloading a connection with the given settings replaces
+	 * the live connection with an opened new connection.
+	 *
+	 * @param before
+	 *            The settings of the live connection.
+	 * @param after
+	 *            The settings of the reloaded connection.
+	 */
+	private void assertReplaced(String before, String after) throws Exception {
+		IServerConnection live = parseConnection(before);
+		IServerConnection reloaded = parseConnection(after);
+
+		DefaultConnectionManager manager = createManager(load(live));
+
+		m_loads.add(load(reloaded));
+		manager.reset();
+
+		IServerConnection current = manager.getConnection("first");
+
+		assertSame(reloaded, current);
+		assertNotNull(current.getHttpClient());
+
+		manager.close();
+	}
+
+	/**
+	 * Creates a connection manager which loaded the given connections.
+	 *
+	 * @param initial
+	 *            The connections loaded when the manager is created.
+	 *
+	 * @return The connection manager.
+	 */
+	private DefaultConnectionManager createManager(ServerConnections initial)
+			throws ConnectorException {
+		m_loads.add(initial);
+
+		return new DefaultConnectionManager(m_configuration) {
+			@Override
+			ServerConnections loadConnections(String organizationDN,
+					String level) throws ConnectorException {
+				if (ORGANIZATION_VERSION.equals(level)) {
+					return new ServerConnections(organizationDN, level);
+				}
+
+				ServerConnections connections = m_loads.poll();
+
+				if (connections == null) {
+					throw new ConnectorException(
+							ConnectorExceptionMessages.CONFIGURATION_NOT_FOUND);
+				}
+
+				return connections;
+			}
+		};
+	}
+
+	/**
+	 * Creates the connections of a configuration load.
+	 *
+	 * @param connections
+	 *            The connections in the configuration.
+	 *
+	 * @return The loaded connections.
+	 */
+	private static ServerConnections load(IServerConnection... connections) {
+		ServerConnections result = new ServerConnections(ORGANIZATION,
+				ISV_VERSION);
+
+		for (IServerConnection connection : connections) {
+			result.add(connection.getId(), connection);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Parses a connection with ID first.
+	 *
+	 * @param settings
+	 *            The XML of the connection settings.
+	 *
+	 * @return The connection.
+	 */
+	private static IServerConnection parseConnection(String settings)
+			throws Exception {
+		int config = s_doc.parseString("<configurations xmlns=\""
+				+ "http://httpconnector.coe.cordys.com/2.0/configuration\">"
+				+ "<connections><connection id=\"first\">" + settings
+				+ "</connection></connections></configurations>");
+
+		try {
+			return DefaultConnectionManager.createServerConnections(config)[0];
+		} finally {
+			Node.delete(config);
+		}
+	}
+
+	/**
+	 * Creates a connection.
+	 *
+	 * @param id
+	 *            The connection ID.
+	 * @param timeout
+	 *            The connection timeout in milliseconds.
+	 *
+	 * @return The connection.
+	 */
+	private static IServerConnection createConnection(String id, int timeout) {
+		IServerConnection connection = mock(IServerConnection.class);
+
+		when(connection.getId()).thenReturn(id);
+		when(connection.getTimeout()).thenReturn(timeout);
+
+		return connection;
+	}
+
+	/**
+	 * Makes closing the connection take the given time.
+	 *
+	 * @param connection
+	 *            The connection.
+	 * @param duration
+	 *            The time in milliseconds closing takes.
+	 */
+	private static void delayClose(IServerConnection connection,
+			final long duration) {
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				Thread.sleep(duration);
+				return null;
+			}
+		}).when(connection).close();
+	}
+
+	/**
+	 * Makes closing the connection block until the latch is released.
+	 *
+	 * @param connection
+	 *            The connection.
+	 * @param released
+	 *            The latch to wait for.
+	 */
+	private static void blockClose(IServerConnection connection,
+			final CountDownLatch released) {
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				released.await();
+				return null;
+			}
+		}).when(connection).close();
+	}
+}
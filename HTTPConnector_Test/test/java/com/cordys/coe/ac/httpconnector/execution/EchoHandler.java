@@ -0,0 +1,78 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import java.io.IOException;
+import java.util.Enumeration;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.mortbay.jetty.HttpConnection;
+import org.mortbay.jetty.Request;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.handler.AbstractHandler;
+
+/**
+ * Jetty handler which echoes the request. The response has the request body
+ * as its body, the method in the X-Method header, the query in the X-Query
+ * header and every X-Test request header as an X-Test response header. The
+ * status is 201, or 500 for the path /error.
+ *
+ * @author agent
+ */
+public class EchoHandler extends AbstractHandler {
+	/**
+	 * Starts a server with this handler on a free port.
+	 *
+	 * @return The started server.
+	 */
+	public static Server startServer() throws Exception {
+		Server server = new Server(0);
+
+		server.setHandler(new EchoHandler());
+		server.start();
+
+		return server;
+	}
+
+	/**
+	 * Returns the port of the server.
+	 *
+	 * @param server
+	 *            The server.
+	 *
+	 * @return The port.
+	 */
+	public static int getPort(Server server) {
+		return server.getConnectors()[0].getLocalPort();
+	}
+
+	@Override
+	public void handle(String target, HttpServletRequest req,
+			HttpServletResponse res, int dispatch) throws IOException,
+			ServletException {
+		Request baseRequest = req instanceof Request ? (Request) req
+				: HttpConnection.getCurrentConnection().getRequest();
+		byte[] body = IOUtils.toByteArray(req.getInputStream());
+
+		res.setStatus("/error".equals(target) ? 500 : 201);
+		res.setHeader("X-Method", req.getMethod());
+
+		if (req.getQueryString() != null) {
+			res.setHeader("X-Query", req.getQueryString());
+		}
+
+		for (Enumeration<?> e = req.getHeaders("X-Test"); e.hasMoreElements();) {
+			res.addHeader("X-Test", (String) e.nextElement());
+		}
+
+		if (req.getContentType() != null) {
+			res.setContentType(req.getContentType());
+		}
+
+		res.setContentLength(body.length);
+		res.getOutputStream().write(body);
+		baseRequest.setHandled(true);
+	}
+}
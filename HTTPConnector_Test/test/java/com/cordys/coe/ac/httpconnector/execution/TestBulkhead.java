@@ -0,0 +1,102 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * This class tests the limits of the bulkhead.
+ * 
+ * @author agent
+ */
+public class TestBulkhead {
+	/**
+	 * Tests that no more than the maximum number of requests run at the same
+	 * time when requests may not wait.
+	 */
+	@Test
+	public void testLimitsConcurrentCalls() {
+		Bulkhead bulkhead = new Bulkhead(2, 0, 0);
+
+		assertTrue(bulkhead.tryAcquire());
+		assertTrue(bulkhead.tryAcquire());
+		assertFalse(bulkhead.tryAcquire());
+		assertEquals(2, bulkhead.getActiveCalls());
+
+		bulkhead.release();
+
+		assertEquals(1, bulkhead.getActiveCalls());
+		assertTrue(bulkhead.tryAcquire());
+	}
+
+	/**
+	 * Tests that a waiting request gives up after the maximum wait time.
+	 */
+	@Test
+	public void testWaitTimesOut() {
+		Bulkhead bulkhead = new Bulkhead(1, 1, 50);
+
+		assertTrue(bulkhead.tryAcquire());
+
+		long start = System.currentTimeMillis();
+
+		assertFalse(bulkhead.tryAcquire());
+		assertTrue(System.currentTimeMillis() - start >= 40);
+		assertEquals(0, bulkhead.getWaitingCalls());
+	}
+
+	/**
+	 * Tests that a waiting request runs when another request is done, and
+	 * that no more than the maximum number of requests wait.
+	 */
+	@Test
+	public void testLimitsWaitingCalls() throws Exception {
+		final Bulkhead bulkhead = new Bulkhead(1, 1, 10000);
+		final AtomicBoolean acquired = new AtomicBoolean();
+
+		assertTrue(bulkhead.tryAcquire());
+
+		Thread waiter = new Thread() {
+			@Override
+			public void run() {
+				acquired.set(bulkhead.tryAcquire());
+			}
+		};
+
+		waiter.start();
+
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while ((bulkhead.getWaitingCalls() == 0)
+				&& (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(1);
+		}
+
+		assertEquals(1, bulkhead.getWaitingCalls());
+		// The only waiting place is taken, so this request is rejected at
+		// once.
+		assertFalse(bulkhead.tryAcquire());
+
+		bulkhead.release();
+		waiter.join(5000);
+
+		assertTrue(acquired.get());
+		assertEquals(1, bulkhead.getActiveCalls());
+		assertEquals(0, bulkhead.getWaitingCalls());
+	}
+
+	/**
+	 * Tests the comparison of the settings.
+	 */
+	@Test
+	public void testHasSameSettings() {
+		assertTrue(new Bulkhead(2, 1, 10).hasSameSettings(new Bulkhead(2, 1,
+				10)));
+		assertFalse(new Bulkhead(2, 1, 10).hasSameSettings(new Bulkhead(2,
+				1, 20)));
+	}
+}
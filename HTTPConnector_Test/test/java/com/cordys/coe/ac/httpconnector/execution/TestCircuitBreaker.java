@@ -0,0 +1,216 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class tests the state transitions of the circuit breaker.
+ * 
+ * @author agent
+ */
+public class TestCircuitBreaker {
+	/**
+	 * Holds the duration of a fast request in nanoseconds.
+	 */
+	private static final long FAST = 1000000L;
+	/**
+	 * Holds the duration of a slow request in nanoseconds.
+	 */
+	private static final long SLOW = 200000000L;
+
+	/**
+	 * Tests that the circuit stays closed until the minimum number of
+	 * requests is reached and then opens on the failure rate.
+	 */
+	@Test
+	public void testOpensOnFailureRate() {
+		CircuitBreaker breaker = createBreaker(60000);
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onResult(FAST, true);
+			assertEquals(ECircuitState.CLOSED, breaker.getState());
+		}
+
+		assertTrue(breaker.tryAcquire());
+		breaker.onResult(FAST, true);
+
+		assertEquals(ECircuitState.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	/**
+	 * Tests that the circuit stays closed while the failure rate is below the
+	 * threshold.
+	 */
+	@Test
+	public void testStaysClosedBelowThreshold() {
+		CircuitBreaker breaker = createBreaker(60000);
+
+		for (int i = 0; i < 20; i++) {
+			assertTrue(breaker.tryAcquire());
+			// One in four requests fails, the threshold is one in two.
+			breaker.onResult(FAST, (i % 4) == 0);
+		}
+
+		assertEquals(ECircuitState.CLOSED, breaker.getState());
+	}
+
+	/**
+	 * Tests that the circuit opens on the slow request rate.
+	 */
+	@Test
+	public void testOpensOnSlowCallRate() {
+		CircuitBreaker breaker = createBreaker(60000);
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onResult(SLOW, false);
+		}
+
+		assertEquals(ECircuitState.OPEN, breaker.getState());
+	}
+
+	/**
+	 * Tests that old requests leave the window, so earlier failures are
+	 * forgotten.
+	 */
+	@Test
+	public void testWindowSlides() {
+		CircuitBreaker breaker = createBreaker(60000);
+
+		breaker.tryAcquire();
+		breaker.onResult(FAST, true);
+
+		for (int i = 0; i < 4; i++) {
+			breaker.tryAcquire();
+			breaker.onResult(FAST, false);
+		}
+
+		// The window holds four successes; one failure is 25 percent.
+		breaker.tryAcquire();
+		breaker.onResult(FAST, true);
+
+		assertEquals(ECircuitState.CLOSED, breaker.getState());
+	}
+
+	/**
+	 * Tests that the circuit becomes half open after the open duration, lets
+	 * a limited number of trial requests through and closes when they
+	 * succeed.
+	 */
+	@Test
+	public void testHalfOpenCloses() {
+		CircuitBreaker breaker = createBreaker(0);
+
+		open(breaker);
+
+		assertTrue(breaker.tryAcquire());
+		assertEquals(ECircuitState.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+
+		breaker.onResult(FAST, false);
+		assertEquals(ECircuitState.HALF_OPEN, breaker.getState());
+		breaker.onResult(FAST, false);
+
+		assertEquals(ECircuitState.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+	}
+
+	/**
+	 * Tests that the circuit opens again when the trial requests fail.
+	 */
+	@Test
+	public void testHalfOpenReopens() {
+		CircuitBreaker breaker = createBreaker(0);
+
+		open(breaker);
+
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		breaker.onResult(FAST, true);
+		breaker.onResult(FAST, false);
+
+		assertEquals(ECircuitState.OPEN, breaker.getState());
+	}
+
+	/**
+	 * Tests that a trial request which was not sent lets another trial
+	 * request through.
+	 */
+	@Test
+	public void testReleasedTrialIsReplaced() {
+		CircuitBreaker breaker = createBreaker(0);
+
+		open(breaker);
+
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+
+		breaker.release();
+
+		assertTrue(breaker.tryAcquire());
+		assertEquals(ECircuitState.HALF_OPEN, breaker.getState());
+	}
+
+	/**
+	 * Tests that results of requests which were sent before the circuit
+	 * opened are ignored.
+	 */
+	@Test
+	public void testIgnoresResultsWhileOpen() {
+		CircuitBreaker breaker = createBreaker(60000);
+
+		open(breaker);
+
+		for (int i = 0; i < 10; i++) {
+			breaker.onResult(FAST, false);
+		}
+
+		assertEquals(ECircuitState.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	/**
+	 * Tests the comparison of the settings.
+	 */
+	@Test
+	public void testHasSameSettings() {
+		assertTrue(createBreaker(100).hasSameSettings(createBreaker(100)));
+		assertFalse(createBreaker(100).hasSameSettings(createBreaker(200)));
+	}
+
+	/**
+	 * Creates a circuit breaker which opens when half of at least four
+	 * requests in a window of four failed or took 100 ms or more. It lets
+	 * two trial requests through when half open.
+	 * 
+	 * @param openDuration
+	 *            The time in milliseconds the circuit stays open.
+	 * 
+	 * @return The circuit breaker.
+	 */
+	private static CircuitBreaker createBreaker(long openDuration) {
+		return new CircuitBreaker(50, 50, 100, 4, 4, openDuration, 2);
+	}
+
+	/**
+	 * Opens the circuit with failed requests.
+	 * 
+	 * @param breaker
+	 *            The circuit breaker.
+	 */
+	private static void open(CircuitBreaker breaker) {
+		for (int i = 0; i < 4; i++) {
+			breaker.tryAcquire();
+			breaker.onResult(FAST, true);
+		}
+
+		assertEquals(ECircuitState.OPEN, breaker.getState());
+	}
+}
@@ -0,0 +1,131 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class tests how the concurrency limiter adapts its limit.
+ * 
+ * @author agent
+ */
+public class TestConcurrencyLimiter {
+	/**
+	 * Holds a response time in nanoseconds.
+	 */
+	private static final long RTT = 10000000L;
+
+	/**
+	 * Tests that no more than the limit of requests are in flight.
+	 */
+	@Test
+	public void testLimitsInFlight() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(3, 1, 10);
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(limiter.tryAcquire());
+		}
+
+		assertFalse(limiter.tryAcquire());
+		assertEquals(3, limiter.getInFlight());
+
+		limiter.release();
+
+		assertEquals(2, limiter.getInFlight());
+		assertTrue(limiter.tryAcquire());
+	}
+
+	/**
+	 * Tests that failures lower the limit, but not below the minimum.
+	 */
+	@Test
+	public void testFailuresLowerLimit() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20);
+
+		limiter.tryAcquire();
+		limiter.onResult(RTT, true);
+
+		assertEquals(9, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+
+		for (int i = 0; i < 100; i++) {
+			limiter.tryAcquire();
+			limiter.onResult(RTT, true);
+		}
+
+		assertEquals(2, limiter.getLimit());
+	}
+
+	/**
+	 * Tests that the limit grows while it is used and the response times are
+	 * stable, but not above the maximum.
+	 */
+	@Test
+	public void testGrowsUnderLoad() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20);
+
+		for (int round = 0; round < 100; round++) {
+			int calls = 0;
+
+			while (limiter.tryAcquire()) {
+				calls++;
+			}
+
+			for (int i = 0; i < calls; i++) {
+				limiter.onResult(RTT, false);
+			}
+		}
+
+		assertEquals(20, limiter.getLimit());
+	}
+
+	/**
+	 * Tests that the limit does not grow while few requests are in flight.
+	 */
+	@Test
+	public void testDoesNotGrowWhenIdle() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20);
+
+		for (int i = 0; i < 100; i++) {
+			limiter.tryAcquire();
+			limiter.onResult(RTT, false);
+		}
+
+		assertEquals(10, limiter.getLimit());
+	}
+
+	/**
+	 * Tests that the limit drops when the response times rise.
+	 */
+	@Test
+	public void testShrinksWhenSlower() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20);
+
+		for (int round = 0; round < 20; round++) {
+			int calls = 0;
+
+			while (limiter.tryAcquire()) {
+				calls++;
+			}
+
+			for (int i = 0; i < calls; i++) {
+				limiter.onResult(round < 10 ? RTT : RTT * 10, false);
+			}
+		}
+
+		assertTrue(limiter.getLimit() < 10);
+	}
+
+	/**
+	 * Tests the comparison of the settings.
+	 */
+	@Test
+	public void testHasSameSettings() {
+		assertTrue(new ConcurrencyLimiter(10, 2, 20)
+				.hasSameSettings(new ConcurrencyLimiter(10, 2, 20)));
+		assertFalse(new ConcurrencyLimiter(10, 2, 20)
+				.hasSameSettings(new ConcurrencyLimiter(10, 2, 30)));
+	}
+}
@@ -0,0 +1,457 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.InputStreamRequestEntity;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+import com.cordys.coe.ac.httpconnector.exception.ConnectorException;
+import com.cordys.coe.ac.httpconnector.exception.ConnectorExceptionMessages;
+import com.cordys.coe.ac.httpconnector.exception.HandlerException;
+import com.cordys.coe.ac.httpconnector.exception.HandlerExceptionMessages;
+import com.eibus.xml.nom.Document;
+import com.eibus.xml.nom.Node;
+
+/**
+ * This class tests how identical requests share one exchange.
+ *
+ * @author agent
+ */
+public class TestRequestCoalescer {
+	/**
+	 * Holds the number of requests which wait for the first one.
+	 */
+	private static final int FOLLOWERS = 5;
+	/**
+	 * Holds the XML document.
+	 */
+	private static Document s_doc = new Document();
+	/**
+	 * Holds the coalescer.
+	 */
+	private RequestCoalescer m_coalescer = new RequestCoalescer();
+	/**
+	 * Holds the connection the requests are sent to.
+	 */
+	private IServerConnection m_connection;
+	/**
+	 * Holds the executor which runs the concurrent requests.
+	 */
+	private ThreadPoolExecutor m_executor;
+	/**
+	 * Holds the number of exchanges which were started.
+	 */
+	private AtomicInteger m_exchanges = new AtomicInteger();
+	/**
+	 * Is released when the first exchange may finish.
+	 */
+	private CountDownLatch m_released = new CountDownLatch(1);
+
+	/**
+	 * Creates the connection and the executor.
+	 */
+	@Before
+	public void prepare() throws Exception {
+		m_connection = mock(IServerConnection.class);
+
+		when(m_connection.getId()).thenReturn("first");
+		when(m_connection.getUrl()).thenReturn(
+				new URL("http://localhost:8080/service"));
+
+		m_executor = (ThreadPoolExecutor) Executors
+				.newFixedThreadPool(FOLLOWERS + 1);
+	}
+
+	/**
+	 * Stops the executor.
+	 */
+	@After
+	public void close() {
+		m_executor.shutdownNow();
+	}
+
+	/**
+	 * Tests that identical requests get the same key.
+	 */
+	@Test
+	public void testIdenticalRequestsHaveSameKey() throws Exception {
+		assertEquals(RequestCoalescer.getKey(m_connection, get("/a?b=1",
+				"Authorization", "Basic 1")), RequestCoalescer.getKey(
+				m_connection, get("/a?b=1", "Authorization", "Basic 1")));
+		assertEquals(RequestCoalescer.getKey(m_connection, post("/a",
+				new byte[] { 1, 2 })), RequestCoalescer.getKey(m_connection,
+				post("/a", new byte[] { 1, 2 })));
+	}
+
+	/**
+	 * Tests that requests which differ in any part get different keys.
+	 */
+	@Test
+	public void testDifferentRequestsHaveDifferentKeys() throws Exception {
+		String key = RequestCoalescer.getKey(m_connection, get("/a?b=1",
+				"Authorization", "Basic 1"));
+		URL url = m_connection.getUrl();
+		IServerConnection other = mock(IServerConnection.class);
+
+		when(other.getId()).thenReturn("second");
+		when(other.getUrl()).thenReturn(url);
+
+		assertFalse(key.equals(RequestCoalescer.getKey(other, get("/a?b=1",
+				"Authorization", "Basic 1"))));
+		assertFalse(key.equals(RequestCoalescer.getKey(m_connection, get(
+				"/a?b=2", "Authorization", "Basic 1"))));
+		assertFalse(key.equals(RequestCoalescer.getKey(m_connection, get(
+				"/a?b=1", "Authorization", "Basic 2"))));
+		assertFalse(key.equals(RequestCoalescer.getKey(m_connection, get(
+				"/a?b=1"))));
+		assertFalse(RequestCoalescer.getKey(m_connection,
+				post("/a", new byte[] { 1 })).equals(
+				RequestCoalescer.getKey(m_connection, post("/a",
+						new byte[] { 2 }))));
+		assertFalse(RequestCoalescer.getKey(m_connection, post("/a", null))
+				.equals(RequestCoalescer.getKey(m_connection, get("/a"))));
+	}
+
+	/**
+	 * Tests that a request with a body which can only be read once is not
+	 * shared.
+	 */
+	@Test
+	public void testNonRepeatableBodyIsNotShared() throws Exception {
+		PostMethod method = new PostMethod("/a");
+
+		method.setRequestEntity(new InputStreamRequestEntity(
+				new ByteArrayInputStream(new byte[] { 1 })));
+
+		assertNull(RequestCoalescer.getKey(m_connection, method));
+	}
+
+	/**
+	 * Tests that the requests which wait for the first one each get their own
+	 * copy of its response.
+	 */
+	@Test
+	public void testFollowersGetCopies() throws Exception {
+		int responseNode = s_doc
+				.parseString("<response><value>1</value></response>");
+		List<Integer> copies = new ArrayList<Integer>();
+
+		try {
+			Future<Integer> leader = m_executor.submit(execute(blockingExchange(
+					responseNode, null)));
+			List<Future<Integer>> followers = startFollowers();
+
+			m_released.countDown();
+
+			assertEquals(responseNode, leader.get().intValue());
+
+			for (Future<Integer> follower : followers) {
+				int copy = follower.get();
+
+				assertFalse(copy == responseNode);
+				assertFalse(copies.contains(copy));
+				assertEquals(Node.writeToString(responseNode, false), Node
+						.writeToString(copy, false));
+
+				copies.add(copy);
+			}
+
+			assertEquals(1, m_exchanges.get());
+		} finally {
+			Node.delete(responseNode);
+
+			for (int copy : copies) {
+				Node.delete(copy);
+			}
+		}
+	}
+
+	/**
+	 * Tests that the requests which wait for the first one get no response
+	 * when it has none.
+	 */
+	@Test
+	public void testFollowersGetEmptyResponse() throws Exception {
+		Future<Integer> leader = m_executor.submit(execute(blockingExchange(0,
+				null)));
+		List<Future<Integer>> followers = startFollowers();
+
+		m_released.countDown();
+
+		assertEquals(0, leader.get().intValue());
+
+		for (Future<Integer> follower : followers) {
+			assertEquals(0, follower.get().intValue());
+		}
+
+		assertEquals(1, m_exchanges.get());
+	}
+
+	/**
+	 * Tests that the exception of the first request is thrown to the
+	 * requests which wait for it.
+	 */
+	@Test
+	public void testLeaderExceptionReachesFollowers() throws Exception {
+		HandlerException error = new HandlerException(
+				HandlerExceptionMessages.ERROR_CONVERTING_THE_RESPONSE_TO_PROPER_XML);
+		Future<Integer> leader = m_executor.submit(execute(blockingExchange(0,
+				error)));
+		List<Future<Integer>> followers = startFollowers();
+
+		m_released.countDown();
+
+		assertSame(error, getException(leader));
+
+		for (Future<Integer> follower : followers) {
+			assertSame(error, getException(follower));
+		}
+
+		assertEquals(1, m_exchanges.get());
+	}
+
+	/**
+	 * Tests that a runtime exception of the first request reaches the
+	 * requests which wait for it as a connector exception.
+	 */
+	@Test
+	public void testLeaderRuntimeExceptionReachesFollowers() throws Exception {
+		IllegalStateException error = new IllegalStateException("failed");
+		Future<Integer> leader = m_executor.submit(execute(blockingExchange(0,
+				error)));
+		List<Future<Integer>> followers = startFollowers();
+
+		m_released.countDown();
+
+		assertSame(error, getException(leader));
+
+		for (Future<Integer> follower : followers) {
+			Throwable e = getException(follower);
+
+			assertSame(ConnectorException.class, e.getClass());
+			assertSame(error, e.getCause());
+		}
+	}
+
+	/**
+	 * Tests that a request after the first one has finished sends its own
+	 * request.
+	 */
+	@Test
+	public void testLaterRequestIsNotShared() throws Exception {
+		assertEquals(0, m_coalescer.execute("key", s_doc,
+				new RequestCoalescer.IExchange() {
+					@Override
+					public int execute() {
+						return 0;
+					}
+				}));
+
+		try {
+			m_coalescer.execute("key", s_doc, failingExchange());
+			fail("The second request must send its own request.");
+		} catch (ConnectorException e) {
+			// The second request sent its own request.
+		}
+	}
+
+	/**
+	 * Starts the requests which wait for the first one, after the first one
+	 * has started its exchange.
+	 *
+	 * @return The requests.
+	 */
+	private List<Future<Integer>> startFollowers() throws Exception {
+		List<Future<Integer>> followers = new ArrayList<Future<Integer>>();
+
+		waitForActive(1);
+
+		for (int i = 0; i < FOLLOWERS; i++) {
+			followers.add(m_executor.submit(execute(failingExchange())));
+		}
+
+		waitForActive(FOLLOWERS + 1);
+
+		return followers;
+	}
+
+	/**
+	 * Waits until the executor runs the given number of tasks and the first
+	 * exchange has started. The tasks then wait for the exchange, which does
+	 * not finish before it is released.
+	 *
+	 * @param active
+	 *            The number of running tasks.
+	 */
+	private void waitForActive(int active) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while ((m_executor.getActiveCount() < active)
+				|| (m_exchanges.get() == 0)) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("The requests did not start.");
+			}
+
+			Thread.sleep(10);
+		}
+
+		// Give the requests time to reach the coalescer.
+		Thread.sleep(100);
+	}
+
+	/**
+	 * Returns a task which executes an exchange with the coalescer.
+	 *
+	 * @param exchange
+	 *            The exchange.
+	 *
+	 * @return The task.
+	 */
+	private Callable<Integer> execute(final RequestCoalescer.IExchange exchange) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return m_coalescer.execute("key", s_doc, exchange);
+			}
+		};
+	}
+
+	/**
+	 * Returns an exchange which waits until it is released.
+	 *
+	 * @param responseNode
+	 *            The response XML the exchange returns.
+	 * @param error
+	 *            The exception the exchange throws or null.
+	 *
+	 * @return The exchange.
+	 */
+	private RequestCoalescer.IExchange blockingExchange(
+			final int responseNode, final Exception error) {
+		return new RequestCoalescer.IExchange() {
+			@Override
+			public int execute() throws ConnectorException, HandlerException {
+				m_exchanges.incrementAndGet();
+
+				try {
+					m_released.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				if (error instanceof HandlerException) {
+					throw (HandlerException) error;
+				}
+
+				if (error != null) {
+					throw (RuntimeException) error;
+				}
+
+				return responseNode;
+			}
+		};
+	}
+
+	/**
+	 * Returns an exchange which fails, for requests which must not send a
+	 * request themselves.
+	 *
+	 * @return The exchange.
+	 */
+	private static RequestCoalescer.IExchange failingExchange() {
+		return new RequestCoalescer.IExchange() {
+			@Override
+			public int execute() throws ConnectorException {
+				throw new ConnectorException(
+						ConnectorExceptionMessages.ERROR_EXECUTING_REQUEST_0,
+						"The request was sent twice.");
+			}
+		};
+	}
+
+	/**
+	 * Returns the exception a task failed with.
+	 *
+	 * @param future
+	 *            The task.
+	 *
+	 * @return The exception.
+	 */
+	private static Throwable getException(Future<Integer> future)
+			throws InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+
+		fail("The request did not fail.");
+
+		return null;
+	}
+
+	/**
+	 * Creates a GET request.
+	 *
+	 * @param uri
+	 *            The request URI.
+	 * @param headers
+	 *            The header names and values.
+	 *
+	 * @return The request.
+	 */
+	private static HttpMethod get(String uri, String... headers) {
+		HttpMethod method = new GetMethod(uri);
+
+		for (int i = 0; i < headers.length; i += 2) {
+			method.addRequestHeader(headers[i], headers[i + 1]);
+		}
+
+		return method;
+	}
+
+	/**
+	 * Creates a POST request.
+	 *
+	 * @param uri
+	 *            The request URI.
+	 * @param body
+	 *            The request body or null.
+	 *
+	 * @return The request.
+	 */
+	private static HttpMethod post(String uri, byte[] body) {
+		PostMethod method = new PostMethod(uri);
+
+		if (body != null) {
+			method.setRequestEntity(new ByteArrayRequestEntity(body));
+		}
+
+		return method;
+	}
+}
@@ -0,0 +1,417 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.DefaultProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mortbay.jetty.HttpConnection;
+import org.mortbay.jetty.Request;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.handler.AbstractHandler;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+
+/**
+ * This class tests the delay after which requests are hedged, the limit on
+ * the number of hedged requests and the cancellation of the request which
+ * loses.
+ *
+ * @author agent
+ */
+public class TestRequestHedger {
+	/**
+	 * Holds the server of the connection.
+	 */
+	private Server m_primary;
+	/**
+	 * Holds the handler of the server of the connection.
+	 */
+	private SlowHandler m_primaryHandler = new SlowHandler("primary");
+	/**
+	 * Holds the alternate server.
+	 */
+	private Server m_alternate;
+	/**
+	 * Holds the handler of the alternate server.
+	 */
+	private SlowHandler m_alternateHandler = new SlowHandler("alternate");
+	/**
+	 * Holds the socket factory of the connection.
+	 */
+	private RecordingSocketFactory m_socketFactory = new RecordingSocketFactory();
+
+	/**
+	 * Starts the servers.
+	 */
+	@Before
+	public void prepare() throws Exception {
+		m_primary = startServer(m_primaryHandler);
+		m_alternate = startServer(m_alternateHandler);
+	}
+
+	/**
+	 * Stops the servers.
+	 */
+	@After
+	public void close() throws Exception {
+		m_primary.stop();
+		m_alternate.stop();
+	}
+
+	/**
+	 * Tests that the delay is only set when enough response times are known.
+	 */
+	@Test
+	public void testDelayNeedsMinimumSamples() throws Exception {
+		RequestHedger hedger = new RequestHedger(50, 0, 10, null);
+
+		recordLatencies(hedger, 99, 10);
+
+		assertEquals(-1, hedger.getDelay());
+
+		recordLatencies(hedger, 1, 10);
+
+		assertEquals(10, hedger.getDelay());
+	}
+
+	/**
+	 * Tests that the delay is the configured percentile of the response
+	 * times, but not less than the minimum delay.
+	 */
+	@Test
+	public void testDelayPercentile() throws Exception {
+		RequestHedger hedger = new RequestHedger(95, 0, 10, null);
+
+		recordLatencies(hedger, 90, 1);
+		recordLatencies(hedger, 10, 100);
+
+		assertEquals(100, hedger.getDelay());
+
+		hedger = new RequestHedger(50, 20, 10, null);
+
+		recordLatencies(hedger, 90, 1);
+		recordLatencies(hedger, 10, 100);
+
+		assertEquals(20, hedger.getDelay());
+	}
+
+	/**
+	 * Tests that requests are not hedged while the response times are not
+	 * known.
+	 */
+	@Test
+	public void testNoHedgingWithoutResponseTimes() throws Exception {
+		RequestHedger hedger = new RequestHedger(50, 0, 100,
+				getUrl(m_alternate));
+		IServerConnection connection = createConnection();
+
+		m_primaryHandler.m_delay = 50;
+
+		for (int i = 0; i < 3; i++) {
+			assertServer("primary", hedger.execute(new GetMethod("/slow"),
+					connection, null));
+		}
+
+		assertEquals(3, m_primaryHandler.m_requests.get());
+		assertEquals(0, m_alternateHandler.m_requests.get());
+	}
+
+	/**
+	 * Tests that no more than the configured percentage of the requests is
+	 * hedged.
+	 */
+	@Test
+	public void testBudgetLimitsHedges() throws Exception {
+		RequestHedger hedger = new RequestHedger(50, 0, 25,
+				getUrl(m_alternate));
+		IServerConnection connection = createConnection();
+
+		recordLatencies(hedger, 100, 1);
+		m_primaryHandler.m_delay = 50;
+
+		for (int i = 0; i < 20; i++) {
+			hedger.execute(new GetMethod("/slow"), connection, null)
+					.releaseConnection();
+		}
+
+		assertEquals(5, m_alternateHandler.m_requests.get());
+	}
+
+	/**
+	 * Tests that the hedged request is aborted when the first request wins.
+	 */
+	@Test
+	public void testHedgeIsCancelled() throws Exception {
+		RequestHedger hedger = new RequestHedger(50, 0, 100,
+				getUrl(m_alternate));
+		IServerConnection connection = createConnection();
+
+		recordLatencies(hedger, 100, 1);
+		m_primaryHandler.m_delay = 200;
+		m_alternateHandler.m_delay = 5000;
+
+		long start = System.currentTimeMillis();
+
+		assertServer("primary", hedger.execute(new GetMethod("/slow"),
+				connection, null));
+		assertTrue(System.currentTimeMillis() - start < 2000);
+		assertEquals(1, m_alternateHandler.m_requests.get());
+
+		// The hedged request was sent with the socket factory of the
+		// connection, and its socket is closed.
+		Socket socket = m_socketFactory.getSocket(getPort(m_alternate));
+
+		assertNotNull(socket);
+		assertTrue(socket.isClosed());
+	}
+
+	/**
+	 * Tests that the first request runs to its end and is then closed when
+	 * the hedged request wins, and that the hedged request is sent with the
+	 * credentials of the connection.
+	 */
+	@Test
+	public void testFirstRequestIsDetached() throws Exception {
+		RequestHedger hedger = new RequestHedger(50, 0, 100,
+				getUrl(m_alternate));
+		IServerConnection connection = createConnection();
+		HttpClient client = connection.getHttpClient();
+
+		client.getState().setCredentials(
+				new AuthScope("localhost", getPort(m_primary),
+						AuthScope.ANY_REALM),
+				new UsernamePasswordCredentials("user", "secret"));
+
+		recordLatencies(hedger, 100, 1);
+		m_primaryHandler.m_delay = 500;
+
+		assertServer("alternate", hedger.execute(new GetMethod("/slow"),
+				connection, null));
+
+		Socket socket = m_socketFactory.getSocket(getPort(m_primary));
+
+		assertFalse(socket.isClosed());
+
+		for (int i = 0; (i < 100) && !socket.isClosed(); i++) {
+			Thread.sleep(50);
+		}
+
+		assertTrue(socket.isClosed());
+		assertNotNull(client.getState().getCredentials(
+				new AuthScope("localhost", getPort(m_alternate),
+						AuthScope.ANY_REALM)));
+	}
+
+	/**
+	 * Checks which server sent the response and releases its connection.
+	 *
+	 * @param server
+	 *            The name of the server.
+	 * @param response
+	 *            The method which received the response.
+	 */
+	private static void assertServer(String server, HttpMethod response) {
+		try {
+			assertEquals(200, response.getStatusCode());
+			assertEquals(server, response.getResponseHeader("X-Server")
+					.getValue());
+		} finally {
+			response.releaseConnection();
+		}
+	}
+
+	/**
+	 * Creates a connection to the primary server whose protocol uses the
+	 * recording socket factory.
+	 *
+	 * @return The connection.
+	 */
+	private IServerConnection createConnection() throws Exception {
+		URL url = new URL(getUrl(m_primary));
+		HttpClient client = new HttpClient(
+				new MultiThreadedHttpConnectionManager());
+		IServerConnection connection = mock(IServerConnection.class);
+
+		client.getHostConfiguration().setHost(url.getHost(), url.getPort(),
+				new Protocol("http", m_socketFactory, url.getPort()));
+
+		when(connection.getHttpClient()).thenReturn(client);
+		when(connection.getUrl()).thenReturn(url);
+		when(connection.getTransport()).thenReturn(new CommonsHttpTransport());
+
+		return connection;
+	}
+
+	/**
+	 * Records the same response time a number of times.
+	 *
+	 * @param hedger
+	 *            The hedger.
+	 * @param count
+	 *            The number of response times.
+	 * @param millis
+	 *            The response time in milliseconds.
+	 */
+	private static void recordLatencies(RequestHedger hedger, int count,
+			long millis) {
+		for (int i = 0; i < count; i++) {
+			hedger.recordLatency(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+	}
+
+	private static Server startServer(SlowHandler handler) throws Exception {
+		Server server = new Server(0);
+
+		server.setHandler(handler);
+		server.start();
+
+		return server;
+	}
+
+	private static int getPort(Server server) {
+		return EchoHandler.getPort(server);
+	}
+
+	private static String getUrl(Server server) {
+		return "http://localhost:" + getPort(server);
+	}
+
+	/**
+	 * Jetty handler which answers after a delay. The response has the name of
+	 * the server in the X-Server header.
+	 */
+	private static class SlowHandler extends AbstractHandler {
+		/**
+		 * Holds the name of the server.
+		 */
+		private final String m_name;
+		/**
+		 * Holds the number of received requests.
+		 */
+		private final AtomicInteger m_requests = new AtomicInteger();
+		/**
+		 * Holds the delay in milliseconds before the response is sent.
+		 */
+		private volatile long m_delay;
+
+		/**
+		 * Creates a new SlowHandler object.
+		 *
+		 * @param name
+		 *            The name of the server.
+		 */
+		SlowHandler(String name) {
+			m_name = name;
+		}
+
+		@Override
+		public void handle(String target, HttpServletRequest req,
+				HttpServletResponse res, int dispatch) throws IOException,
+				ServletException {
+			Request baseRequest = req instanceof Request ? (Request) req
+					: HttpConnection.getCurrentConnection().getRequest();
+
+			m_requests.incrementAndGet();
+
+			try {
+				Thread.sleep(m_delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			res.setStatus(200);
+			res.setHeader("X-Server", m_name);
+			res.setContentLength(0);
+			baseRequest.setHandled(true);
+		}
+	}
+
+	/**
+	 * Socket factory which remembers the sockets it created.
+	 */
+	private static class RecordingSocketFactory implements
+			ProtocolSocketFactory {
+		/**
+		 * Holds the factory which creates the sockets.
+		 */
+		private final ProtocolSocketFactory m_factory =
+				new DefaultProtocolSocketFactory();
+		/**
+		 * Holds the created sockets.
+		 */
+		private final List<Socket> m_sockets = new ArrayList<Socket>();
+
+		/**
+		 * Returns the last socket created for the given port.
+		 *
+		 * @param port
+		 *            The port.
+		 *
+		 * @return The socket, or null if none was created.
+		 */
+		synchronized Socket getSocket(int port) {
+			for (int i = m_sockets.size() - 1; i >= 0; i--) {
+				if (m_sockets.get(i).getPort() == port) {
+					return m_sockets.get(i);
+				}
+			}
+
+			return null;
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return add(m_factory.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port,
+				InetAddress localAddress, int localPort) throws IOException {
+			return add(m_factory.createSocket(host, port, localAddress,
+					localPort));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port,
+				InetAddress localAddress, int localPort,
+				HttpConnectionParams params) throws IOException {
+			return add(m_factory.createSocket(host, port, localAddress,
+					localPort, params));
+		}
+
+		private synchronized Socket add(Socket socket) {
+			m_sockets.add(socket);
+
+			return socket;
+		}
+	}
+}
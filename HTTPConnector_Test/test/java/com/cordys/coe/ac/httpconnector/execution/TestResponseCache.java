@@ -0,0 +1,264 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.util.DateUtil;
+import org.junit.Test;
+
+/**
+ * This class tests the freshness, eviction and revalidation of cached
+ * responses.
+ *
+ * @author agent
+ */
+public class TestResponseCache {
+	/**
+	 * Holds the converted response XML.
+	 */
+	private static final byte[] XML = { '<', 'a', '/', '>' };
+	/**
+	 * Holds the cache.
+	 */
+	private ResponseCache m_cache = new ResponseCache(2, 5000);
+
+	/**
+	 * Tests the time to live from the Cache-Control header.
+	 */
+	@Test
+	public void testCacheControl() throws Exception {
+		assertEquals(60000, m_cache.getTimeToLive(response("Cache-Control",
+				"max-age=60")));
+		assertEquals(60000, m_cache.getTimeToLive(response("Cache-Control",
+				"public, MAX-AGE=60")));
+		assertEquals(0, m_cache.getTimeToLive(response("Cache-Control",
+				"max-age=-5")));
+		assertEquals(0, m_cache.getTimeToLive(response("Cache-Control",
+				"max-age=soon")));
+		assertEquals(0, m_cache.getTimeToLive(response("Cache-Control",
+				"no-cache, max-age=60")));
+		assertEquals(-1, m_cache.getTimeToLive(response("Cache-Control",
+				"no-store")));
+		assertEquals(-1, m_cache.getTimeToLive(response("Cache-Control",
+				"max-age=60, private")));
+	}
+
+	/**
+	 * Tests the time to live from the Expires header, which max-age
+	 * overrides.
+	 */
+	@Test
+	public void testExpires() throws Exception {
+		Date date = new Date(1000000000000L);
+
+		assertEquals(30000, m_cache.getTimeToLive(response("Date", DateUtil
+				.formatDate(date), "Expires", DateUtil.formatDate(new Date(
+				date.getTime() + 30000)))));
+		assertEquals(0, m_cache.getTimeToLive(response("Date", DateUtil
+				.formatDate(date), "Expires", DateUtil.formatDate(new Date(
+				date.getTime() - 30000)))));
+		assertEquals(0, m_cache.getTimeToLive(response("Expires", "0")));
+		assertEquals(60000, m_cache.getTimeToLive(response("Cache-Control",
+				"max-age=60", "Expires", "0")));
+	}
+
+	/**
+	 * Tests the default time to live and the Pragma header.
+	 */
+	@Test
+	public void testDefaultTimeToLive() throws Exception {
+		assertEquals(5000, m_cache.getTimeToLive(response()));
+		assertEquals(0, m_cache.getTimeToLive(response("Pragma", "no-cache")));
+	}
+
+	/**
+	 * Tests which responses may be stored.
+	 */
+	@Test
+	public void testStorable() throws Exception {
+		assertEquals(5000, m_cache.getStoreTimeToLive(response()));
+		assertEquals(-1, m_cache.getStoreTimeToLive(response("Cache-Control",
+				"no-cache")));
+		assertEquals(0, m_cache.getStoreTimeToLive(response("Cache-Control",
+				"no-cache", "ETag", "\"1\"")));
+		assertEquals(0, m_cache.getStoreTimeToLive(response("Cache-Control",
+				"no-cache", "Last-Modified", "Sun, 09 Sep 2001 01:46:40 GMT")));
+		assertEquals(-1, m_cache.getStoreTimeToLive(response("Vary",
+				"Accept, *")));
+		assertEquals(5000, m_cache.getStoreTimeToLive(response("Vary",
+				"Accept")));
+	}
+
+	/**
+	 * Tests that responses to requests with credentials are only stored when
+	 * they are public.
+	 */
+	@Test
+	public void testRequestsWithCredentials() throws Exception {
+		assertEquals(-1, m_cache.getStoreTimeToLive(response(request(
+				"Authorization", "Basic dXNlcjpzZWNyZXQ="))));
+		assertEquals(-1, m_cache.getStoreTimeToLive(response(request(
+				"Cookie", "session=1"))));
+		assertEquals(60000, m_cache.getStoreTimeToLive(response(request(
+				"Authorization", "Basic dXNlcjpzZWNyZXQ="), "Cache-Control",
+				"public, max-age=60")));
+	}
+
+	/**
+	 * Tests that the least recently used response is dropped when the cache
+	 * is full.
+	 */
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		m_cache.store("a", response(), 5000, XML);
+		m_cache.store("b", response(), 5000, XML);
+
+		assertNotNull(m_cache.get("a", request()));
+
+		m_cache.store("c", response(), 5000, XML);
+
+		assertNotNull(m_cache.get("a", request()));
+		assertNull(m_cache.get("b", request()));
+		assertNotNull(m_cache.get("c", request()));
+	}
+
+	/**
+	 * Tests that a response is only used for requests with the same values
+	 * of the headers it varies on.
+	 */
+	@Test
+	public void testVaryHeadersAreInKey() throws Exception {
+		m_cache.store("a", response(request("Accept-Language", "en"), "Vary",
+				"Accept-Language"), 5000, XML);
+
+		assertNotNull(m_cache.get("a", request("accept-language", "en")));
+		assertNull(m_cache.get("a", request("Accept-Language", "de")));
+		assertNull(m_cache.get("a", request()));
+
+		m_cache.store("a", response(request("Accept-Language", "de"), "Vary",
+				"Accept-Language"), 5000, XML);
+
+		assertNotNull(m_cache.get("a", request("Accept-Language", "en")));
+		assertNotNull(m_cache.get("a", request("Accept-Language", "de")));
+	}
+
+	/**
+	 * Tests that a response which must not be stored removes the response
+	 * cached for the request.
+	 */
+	@Test
+	public void testUnstorableResponseRemovesEntry() throws Exception {
+		m_cache.store("a", response(), 5000, XML);
+		m_cache.store("b", response(), 5000, XML);
+
+		m_cache.put("a", response("Cache-Control", "no-store"), 0);
+		m_cache.put("b", response("Vary", "*"), 0);
+
+		assertNull(m_cache.get("a", request()));
+		assertNull(m_cache.get("b", request()));
+	}
+
+	/**
+	 * Tests that a stale response is revalidated with its validators and
+	 * renewed by a 304 response.
+	 */
+	@Test
+	public void testRevalidation() throws Exception {
+		m_cache.store("a", response("ETag", "\"1\"", "Last-Modified",
+				"Sun, 09 Sep 2001 01:46:40 GMT"), 0, XML);
+
+		ResponseCache.Entry entry = m_cache.get("a", request());
+
+		assertFalse(entry.isFresh());
+
+		GetMethod conditional = new GetMethod("/");
+
+		entry.addConditionalHeaders(conditional);
+
+		assertEquals("\"1\"", conditional.getRequestHeader("If-None-Match")
+				.getValue());
+		assertEquals("Sun, 09 Sep 2001 01:46:40 GMT", conditional
+				.getRequestHeader("If-Modified-Since").getValue());
+
+		ResponseCache.Entry renewed = m_cache.revalidated(entry, response(
+				"Cache-Control", "max-age=60", "ETag", "\"2\""));
+
+		assertTrue(renewed.isFresh());
+		assertArrayEquals(XML, renewed.getXml());
+		assertSame(renewed, m_cache.get("a", request()));
+
+		renewed.addConditionalHeaders(conditional);
+
+		assertEquals("\"2\"", conditional.getRequestHeader("If-None-Match")
+				.getValue());
+
+		m_cache.revalidated(renewed, response("Cache-Control", "no-store"));
+
+		assertNull(m_cache.get("a", request()));
+	}
+
+	/**
+	 * Creates a request with the given headers.
+	 *
+	 * @param headers
+	 *            The header names and values.
+	 *
+	 * @return The request.
+	 */
+	private static HttpMethod request(String... headers) {
+		HttpMethod method = new GetMethod("/");
+
+		for (int i = 0; i < headers.length; i += 2) {
+			method.addRequestHeader(headers[i], headers[i + 1]);
+		}
+
+		return method;
+	}
+
+	/**
+	 * Creates a response to a request without headers.
+	 *
+	 * @param headers
+	 *            The response header names and values.
+	 *
+	 * @return The executed method.
+	 */
+	private static HttpMethod response(String... headers) throws Exception {
+		return response(request(), headers);
+	}
+
+	/**
+	 * Creates a response to the given request.
+	 *
+	 * @param request
+	 *            The request.
+	 * @param headers
+	 *            The response header names and values.
+	 *
+	 * @return The executed method.
+	 */
+	private static HttpMethod response(HttpMethod request, String... headers)
+			throws Exception {
+		Map<String, List<String>> headerMap = new LinkedHashMap<String, List<String>>();
+
+		for (int i = 0; i < headers.length; i += 2) {
+			headerMap.put(headers[i], Arrays.asList(headers[i + 1]));
+		}
+
+		return new TransportMethod(request, new HttpResponse(200, "OK",
+				headerMap, null));
+	}
+}
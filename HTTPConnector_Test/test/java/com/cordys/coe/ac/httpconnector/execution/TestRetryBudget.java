@@ -0,0 +1,89 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class tests the retry budget.
+ * 
+ * @author agent
+ */
+public class TestRetryBudget {
+	/**
+	 * Tests that retries are earned by requests.
+	 */
+	@Test
+	public void testRetriesAreEarned() {
+		RetryBudget budget = new RetryBudget(50, 0);
+
+		assertFalse(budget.tryRetry());
+
+		budget.onRequest();
+		assertFalse(budget.tryRetry());
+
+		budget.onRequest();
+		assertTrue(budget.tryRetry());
+		assertFalse(budget.tryRetry());
+	}
+
+	/**
+	 * Tests that the balance is capped, so a long quiet period does not allow
+	 * a burst of retries.
+	 */
+	@Test
+	public void testBalanceIsCapped() {
+		RetryBudget budget = new RetryBudget(50, 0);
+
+		for (int i = 0; i < 10000; i++) {
+			budget.onRequest();
+		}
+
+		int retries = 0;
+
+		while (budget.tryRetry()) {
+			retries++;
+		}
+
+		assertEquals(500, retries);
+	}
+
+	/**
+	 * Tests that the minimum number of retries per second is allowed without
+	 * any requests.
+	 */
+	@Test
+	public void testMinimumRetriesPerSecond() {
+		// Repeat when the second changed during the test.
+		for (int attempt = 0; attempt < 10; attempt++) {
+			RetryBudget budget = new RetryBudget(0, 2);
+			long startSecond = System.nanoTime() / 1000000000L;
+			boolean firstRetry = budget.tryRetry();
+			boolean secondRetry = budget.tryRetry();
+			boolean thirdRetry = budget.tryRetry();
+
+			if (startSecond != System.nanoTime() / 1000000000L) {
+				continue;
+			}
+
+			assertTrue(firstRetry);
+			assertTrue(secondRetry);
+			assertFalse(thirdRetry);
+
+			return;
+		}
+	}
+
+	/**
+	 * Tests the comparison of the settings.
+	 */
+	@Test
+	public void testHasSameSettings() {
+		assertTrue(new RetryBudget(20, 3).hasSameSettings(new RetryBudget(20,
+				3)));
+		assertFalse(new RetryBudget(20, 3).hasSameSettings(new RetryBudget(
+				10, 3)));
+	}
+}
@@ -0,0 +1,64 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.apache.commons.httpclient.util.DateUtil;
+import org.junit.Test;
+
+/**
+ * This class tests the parsing of the Retry-After header.
+ * 
+ * @author agent
+ */
+public class TestRetryPolicy {
+	/**
+	 * Tests a number of seconds.
+	 */
+	@Test
+	public void testSeconds() {
+		assertEquals(120000, RetryPolicy.parseRetryAfter("120"));
+		assertEquals(5000, RetryPolicy.parseRetryAfter(" 5 "));
+		assertEquals(0, RetryPolicy.parseRetryAfter("0"));
+	}
+
+	/**
+	 * Tests that a negative number of seconds means no delay.
+	 */
+	@Test
+	public void testNegativeSeconds() {
+		assertEquals(0, RetryPolicy.parseRetryAfter("-3"));
+	}
+
+	/**
+	 * Tests an HTTP date in the future.
+	 */
+	@Test
+	public void testFutureDate() {
+		long delay = RetryPolicy.parseRetryAfter(DateUtil.formatDate(new Date(
+				System.currentTimeMillis() + 60000)));
+
+		// The date has a resolution of one second.
+		assertTrue("Delay " + delay, (delay > 58000) && (delay <= 60000));
+	}
+
+	/**
+	 * Tests that an HTTP date in the past means no delay.
+	 */
+	@Test
+	public void testPastDate() {
+		assertEquals(0, RetryPolicy
+				.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+	}
+
+	/**
+	 * Tests that an invalid value means no delay.
+	 */
+	@Test
+	public void testInvalidValue() {
+		assertEquals(0, RetryPolicy.parseRetryAfter("soon"));
+		assertEquals(0, RetryPolicy.parseRetryAfter(""));
+	}
+}
@@ -0,0 +1,220 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+
+/**
+ * This class tests the adapters which let the request and response handlers
+ * work with transports that do not use commons-httpclient methods.
+ *
+ * @author agent
+ */
+public class TestTransportMethod {
+	/**
+	 * Holds the tests which create connections to the echo server.
+	 */
+	private TestUrlConnectionTransport m_connections = new TestUrlConnectionTransport();
+
+	/**
+	 * Starts the echo server.
+	 */
+	@Before
+	public void prepare() throws Exception {
+		m_connections.prepare();
+	}
+
+	/**
+	 * Stops the echo server.
+	 */
+	@After
+	public void close() throws Exception {
+		m_connections.close();
+	}
+
+	/**
+	 * Tests that a relative URI is resolved against the connection URL and
+	 * that the headers, body and timeout are copied from the method.
+	 */
+	@Test
+	public void testRequestFromMethod() throws Exception {
+		PostMethod method = new PostMethod("/service/echo?a=1");
+
+		method.addRequestHeader("X-Test", "first");
+		method.addRequestHeader("X-Test", "second");
+		method.addRequestHeader("SOAPAction", "run");
+		method.setRequestEntity(new ByteArrayRequestEntity(new byte[] { 1, 2,
+				3 }, "application/octet-stream"));
+		method.getParams().setSoTimeout(1234);
+
+		HttpRequest request = HttpRequest.fromMethod(method, createConnection(
+				"https://example.com:8443/base"));
+
+		assertEquals("POST", request.getMethod());
+		assertEquals("https://example.com:8443/service/echo?a=1", request
+				.getUri());
+		assertEquals(Arrays.asList("first", "second"), request.getHeaders()
+				.get("X-Test"));
+		assertEquals(Arrays.asList("run"), request.getHeaders().get(
+				"SOAPAction"));
+		assertEquals(1234, request.getTimeout());
+		assertEquals(3, request.getBody().getContentLength());
+		assertEquals("application/octet-stream", request.getBody()
+				.getContentType());
+		assertTrue(request.getBody().isRepeatable());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		request.getBody().writeTo(out);
+
+		assertArrayEquals(new byte[] { 1, 2, 3 }, out.toByteArray());
+	}
+
+	/**
+	 * Tests that an absolute URI is kept and that a method without an entity
+	 * has no body.
+	 */
+	@Test
+	public void testAbsoluteRequestWithoutBody() throws Exception {
+		HttpRequest request = HttpRequest.fromMethod(new GetMethod(
+				"http://other.example.com/path?q=%20"),
+				createConnection("https://example.com/base"));
+
+		assertEquals("GET", request.getMethod());
+		assertEquals("http://other.example.com/path?q=%20", request.getUri());
+		assertNull(request.getBody());
+	}
+
+	/**
+	 * Tests that the response is exposed through the method interface.
+	 */
+	@Test
+	public void testResponseThroughMethod() throws Exception {
+		Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+		InputStream body = mock(InputStream.class);
+
+		headers.put("Content-Type", Arrays.asList("text/plain; charset=\"UTF-8\""));
+		headers.put("X-Test", Arrays.asList("first", "second"));
+
+		HttpResponse response = new HttpResponse(202, "Accepted", headers,
+				new ByteArrayInputStream("caf\u00e9".getBytes("UTF-8")));
+		TransportMethod method = new TransportMethod(new GetMethod("/"),
+				response);
+
+		assertEquals(202, method.getStatusCode());
+		assertEquals("Accepted", method.getStatusText());
+		assertEquals("first", method.getResponseHeader("x-test").getValue());
+		assertEquals(2, method.getResponseHeaders("X-TEST").length);
+		assertEquals("second", method.getResponseHeaders("X-Test")[1]
+				.getValue());
+		assertEquals(3, method.getResponseHeaders().length);
+		assertNull(method.getResponseHeader("X-Missing"));
+		assertEquals("caf\u00e9", method.getResponseBodyAsString());
+		assertEquals("caf\u00e9", IOUtils.toString(method
+				.getResponseBodyAsStream(), "UTF-8"));
+
+		method = new TransportMethod(new GetMethod("/"), new HttpResponse(200,
+				"OK", new LinkedHashMap<String, List<String>>(), body));
+		method.releaseConnection();
+
+		verify(body).close();
+	}
+
+	/**
+	 * Tests that the response body is read as ISO-8859-1 when the content
+	 * type has no charset.
+	 */
+	@Test
+	public void testDefaultCharset() throws Exception {
+		Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+
+		headers.put("Content-Type", Arrays.asList("text/plain"));
+
+		TransportMethod method = new TransportMethod(new GetMethod("/"),
+				new HttpResponse(200, "OK", headers, new ByteArrayInputStream(
+						new byte[] { 'a', (byte) 0xe9 })));
+
+		assertEquals("a\u00e9", method.getResponseBodyAsString());
+	}
+
+	/**
+	 * Tests that the commons-httpclient transport executes the method itself
+	 * and other transports get an adapter around their response.
+	 */
+	@Test
+	public void testExecute() throws Exception {
+		assertExecute(new CommonsHttpTransport(), true);
+		assertExecute(new UrlConnectionTransport(), false);
+	}
+
+	private void assertExecute(IHttpTransport transport, boolean same)
+			throws Exception {
+		PostMethod method = new PostMethod("/echo");
+
+		method.addRequestHeader("X-Test", "value");
+		method.setRequestEntity(new ByteArrayRequestEntity("<a/>"
+				.getBytes("UTF-8"), "text/xml; charset=UTF-8"));
+		method.getParams().setSoTimeout(5000);
+
+		HttpMethod response = TransportMethod.execute(method, m_connections
+				.createConnection(transport));
+
+		try {
+			if (same) {
+				assertSame(method, response);
+			} else {
+				assertTrue(response instanceof TransportMethod);
+			}
+			assertEquals(201, response.getStatusCode());
+			assertEquals("POST", response.getResponseHeader("X-Method")
+					.getValue());
+			assertEquals("value", response.getResponseHeader("x-test")
+					.getValue());
+			assertEquals("<a/>", response.getResponseBodyAsString());
+		} finally {
+			response.releaseConnection();
+		}
+	}
+
+	/**
+	 * Creates a connection with the given URL.
+	 *
+	 * @param url
+	 *            The URL.
+	 *
+	 * @return The connection.
+	 */
+	private static IServerConnection createConnection(String url)
+			throws Exception {
+		IServerConnection connection = mock(IServerConnection.class);
+
+		when(connection.getUrl()).thenReturn(new URL(url));
+
+		return connection;
+	}
+}
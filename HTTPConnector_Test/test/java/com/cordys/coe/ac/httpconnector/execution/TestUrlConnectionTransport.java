@@ -0,0 +1,241 @@
+package com.cordys.coe.ac.httpconnector.execution;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mortbay.jetty.Server;
+
+import com.cordys.coe.ac.httpconnector.config.IServerConnection;
+
+/**
+ * This class tests that requests and responses pass unchanged through the
+ * transports.
+ *
+ * @author agent
+ */
+public class TestUrlConnectionTransport {
+	/**
+	 * Holds the request body, which contains multi-byte characters.
+	 */
+	private static final byte[] BODY = { '<', 'a', '>', (byte) 0xc3,
+			(byte) 0xa9, (byte) 0xe2, (byte) 0x82, (byte) 0xac, '<', '/', 'a',
+			'>' };
+	/**
+	 * Holds the echo server.
+	 */
+	private Server m_server;
+	/**
+	 * Holds the base URL of the echo server.
+	 */
+	private String m_url;
+
+	/**
+	 * Starts the echo server.
+	 */
+	@Before
+	public void prepare() throws Exception {
+		m_server = EchoHandler.startServer();
+		m_url = "http://localhost:" + EchoHandler.getPort(m_server);
+	}
+
+	/**
+	 * Stops the echo server.
+	 */
+	@After
+	public void close() throws Exception {
+		m_server.stop();
+	}
+
+	/**
+	 * Tests that the method, query, headers and body of a request reach the
+	 * server and that the response comes back unchanged.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		assertRoundTrip(new UrlConnectionTransport());
+		assertRoundTrip(new CommonsHttpTransport());
+	}
+
+	/**
+	 * Tests a request without a body.
+	 */
+	@Test
+	public void testRequestWithoutBody() throws Exception {
+		assertWithoutBody(new UrlConnectionTransport());
+		assertWithoutBody(new CommonsHttpTransport());
+	}
+
+	/**
+	 * Tests that the body of an error response can be read.
+	 */
+	@Test
+	public void testErrorResponse() throws Exception {
+		assertErrorResponse(new UrlConnectionTransport());
+		assertErrorResponse(new CommonsHttpTransport());
+	}
+
+	/**
+	 * Tests that a body of unknown length is sent.
+	 */
+	@Test
+	public void testBodyOfUnknownLength() throws Exception {
+		HttpRequest request = new HttpRequest("PUT", m_url + "/echo",
+				new LinkedHashMap<String, List<String>>(), new HttpRequest.IBody() {
+					@Override
+					public long getContentLength() {
+						return -1;
+					}
+
+					@Override
+					public String getContentType() {
+						return "text/xml; charset=UTF-8";
+					}
+
+					@Override
+					public boolean isRepeatable() {
+						return false;
+					}
+
+					@Override
+					public void writeTo(OutputStream out) throws IOException {
+						out.write(BODY);
+					}
+				}, 5000);
+		HttpResponse response = new UrlConnectionTransport().execute(request,
+				createConnection(new UrlConnectionTransport()));
+
+		try {
+			assertEquals(201, response.getStatusCode());
+			assertEquals(Arrays.asList("PUT"), response.getHeaders().get(
+					"X-Method"));
+			assertArrayEquals(BODY, IOUtils.toByteArray(response.getBody()));
+		} finally {
+			response.close();
+		}
+	}
+
+	private void assertRoundTrip(IHttpTransport transport) throws Exception {
+		Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+
+		headers.put("X-Test", Arrays.asList("first", "second"));
+		headers.put("Content-Type", Arrays.asList("text/xml; charset=UTF-8"));
+
+		HttpRequest request = new HttpRequest("POST", m_url
+				+ "/echo?a=1&b=%20", headers, createBody(), 5000);
+		HttpResponse response = transport.execute(request,
+				createConnection(transport));
+
+		try {
+			assertEquals(201, response.getStatusCode());
+			assertEquals("Created", response.getReasonPhrase());
+			assertEquals(Arrays.asList("POST"), response.getHeaders().get(
+					"X-Method"));
+			assertEquals(Arrays.asList("a=1&b=%20"), response.getHeaders()
+					.get("X-Query"));
+			assertEquals(Arrays.asList("first", "second"), response
+					.getHeaders().get("X-Test"));
+			assertArrayEquals(BODY, IOUtils.toByteArray(response.getBody()));
+		} finally {
+			response.close();
+		}
+	}
+
+	private void assertWithoutBody(IHttpTransport transport) throws Exception {
+		HttpRequest request = new HttpRequest("GET", m_url + "/echo",
+				new LinkedHashMap<String, List<String>>(), null, 5000);
+		HttpResponse response = transport.execute(request,
+				createConnection(transport));
+
+		try {
+			assertEquals(201, response.getStatusCode());
+			assertEquals(Arrays.asList("GET"), response.getHeaders().get(
+					"X-Method"));
+			assertEquals(0, IOUtils.toByteArray(response.getBody()).length);
+		} finally {
+			response.close();
+		}
+	}
+
+	private void assertErrorResponse(IHttpTransport transport)
+			throws Exception {
+		HttpRequest request = new HttpRequest("POST", m_url + "/error",
+				new LinkedHashMap<String, List<String>>(), createBody(), 5000);
+		HttpResponse response = transport.execute(request,
+				createConnection(transport));
+
+		try {
+			assertEquals(500, response.getStatusCode());
+			assertArrayEquals(BODY, IOUtils.toByteArray(response.getBody()));
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Creates a connection to the echo server.
+	 *
+	 * @param transport
+	 *            The transport of the connection.
+	 *
+	 * @return The connection.
+	 */
+	IServerConnection createConnection(IHttpTransport transport)
+			throws Exception {
+		URL url = new URL(m_url);
+		HttpClient client = new HttpClient();
+		IServerConnection connection = mock(IServerConnection.class);
+
+		client.getHostConfiguration().setHost(url.getHost(), url.getPort());
+
+		when(connection.getHttpClient()).thenReturn(client);
+		when(connection.getUrl()).thenReturn(url);
+		when(connection.getTransport()).thenReturn(transport);
+		when(connection.isCheckServerCertificate()).thenReturn(true);
+
+		return connection;
+	}
+
+	/**
+	 * Creates a request body of known length.
+	 *
+	 * @return The body.
+	 */
+	private static HttpRequest.IBody createBody() {
+		return new HttpRequest.IBody() {
+			@Override
+			public long getContentLength() {
+				return BODY.length;
+			}
+
+			@Override
+			public String getContentType() {
+				return "text/xml; charset=UTF-8";
+			}
+
+			@Override
+			public boolean isRepeatable() {
+				return true;
+			}
+
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(BODY);
+			}
+		};
+	}
+}
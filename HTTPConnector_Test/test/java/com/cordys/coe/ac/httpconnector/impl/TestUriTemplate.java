@@ -0,0 +1,135 @@
+package com.cordys.coe.ac.httpconnector.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.cordys.coe.ac.httpconnector.exception.HandlerException;
+
+/**
+ * This class tests the parsing and formatting of URI templates.
+ * 
+ * @author agent
+ */
+public class TestUriTemplate {
+	/**
+	 * Holds the encode flags for two values which are both encoded.
+	 */
+	private static final boolean[] ENCODE_BOTH = { true, true };
+
+	/**
+	 * Tests that values in the path are encoded as a path segment and values
+	 * in the query as a query component.
+	 */
+	@Test
+	public void testEncodesPathAndQuery() throws Exception {
+		UriTemplate template = new UriTemplate("/users/{0}/items?id={1}");
+
+		assertEquals("/users/a%20b%2Fc/items?id=x%26y/z", template.format(
+				new String[] { "a b/c", "x&y/z" }, ENCODE_BOTH));
+	}
+
+	/**
+	 * Tests that values are copied as-is when they are not encoded.
+	 */
+	@Test
+	public void testCopiesValuesWhichAreNotEncoded() throws Exception {
+		UriTemplate template = new UriTemplate("/users/{0}?id={1}");
+
+		assertEquals("/users/a b?id=x&y", template.format(new String[] {
+				"a b", "x&y" }, new boolean[] { false, false }));
+	}
+
+	/**
+	 * Tests that non-ASCII characters are encoded as UTF-8 bytes.
+	 */
+	@Test
+	public void testEncodesUtf8() throws Exception {
+		UriTemplate template = new UriTemplate("/{0}");
+
+		assertEquals("/caf%C3%A9", template.format(
+				new String[] { "caf\u00e9" }, new boolean[] { true }));
+	}
+
+	/**
+	 * Tests that unreserved and allowed characters are not encoded.
+	 */
+	@Test
+	public void testKeepsAllowedCharacters() throws Exception {
+		UriTemplate template = new UriTemplate("/{0}?q={1}");
+
+		assertEquals("/a-b_c.d~e:f@g?q=h/i?j", template.format(new String[] {
+				"a-b_c.d~e:f@g", "h/i?j" }, ENCODE_BOTH));
+	}
+
+	/**
+	 * Tests that the same value can be used more than once and that the
+	 * values can be used in any order.
+	 */
+	@Test
+	public void testRepeatedAndReorderedSlots() throws Exception {
+		UriTemplate template = new UriTemplate("/{1}/{0}/{1}");
+
+		assertEquals("/b/a/b", template.format(new String[] { "a", "b" },
+				ENCODE_BOTH));
+	}
+
+	/**
+	 * Tests that a slot without a value is copied as-is, like MessageFormat
+	 * does.
+	 */
+	@Test
+	public void testKeepsSlotWithoutValue() throws Exception {
+		UriTemplate template = new UriTemplate("/a/{0}/{2}");
+
+		assertEquals("/a/x/{2}", template.format(new String[] { "x" },
+				new boolean[] { true }));
+	}
+
+	/**
+	 * Tests that text between single quotes is copied as-is and that two
+	 * single quotes result in one.
+	 */
+	@Test
+	public void testQuotedText() throws Exception {
+		UriTemplate template = new UriTemplate("/'{0}'/{0}/it''s");
+
+		assertEquals("/{0}/x/it's", template.format(new String[] { "x" },
+				new boolean[] { true }));
+	}
+
+	/**
+	 * Tests that a template without slots is returned unchanged.
+	 */
+	@Test
+	public void testTemplateWithoutSlots() throws Exception {
+		UriTemplate template = new UriTemplate("/plain/path?a=b");
+
+		assertEquals("/plain/path?a=b", template.format(new String[0],
+				new boolean[0]));
+	}
+
+	/**
+	 * Tests that a parameter which is not an index is rejected.
+	 */
+	@Test(expected = HandlerException.class)
+	public void testRejectsNamedParameter() throws Exception {
+		new UriTemplate("/users/{name}");
+	}
+
+	/**
+	 * Tests that an unmatched brace is rejected.
+	 */
+	@Test(expected = HandlerException.class)
+	public void testRejectsUnmatchedBrace() throws Exception {
+		new UriTemplate("/users/{0");
+	}
+
+	/**
+	 * Tests that a negative index is rejected.
+	 */
+	@Test(expected = HandlerException.class)
+	public void testRejectsNegativeIndex() throws HandlerException {
+		new UriTemplate("/users/{-1}");
+	}
+}
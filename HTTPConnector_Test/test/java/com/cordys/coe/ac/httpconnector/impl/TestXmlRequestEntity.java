@@ -0,0 +1,95 @@
+package com.cordys.coe.ac.httpconnector.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+/**
+ * This class tests the content length and the bytes of the XML request
+ * entity.
+ *
+ * @author agent
+ */
+public class TestXmlRequestEntity {
+	/**
+	 * Tests ASCII text.
+	 */
+	@Test
+	public void testAscii() throws Exception {
+		assertLength("", 0);
+		assertLength("<a>text</a>", 11);
+	}
+
+	/**
+	 * Tests characters which take two and three bytes.
+	 */
+	@Test
+	public void testMultiByteCharacters() throws Exception {
+		assertLength("caf\u00e9", 5);
+		assertLength("\u00ff\u0100\u07ff", 6);
+		assertLength("\u0800\u20ac\uffff", 9);
+	}
+
+	/**
+	 * Tests characters outside the basic multilingual plane, which Java
+	 * stores as surrogate pairs.
+	 */
+	@Test
+	public void testSurrogatePairs() throws Exception {
+		assertLength("\ud83d\ude00", 4);
+		assertLength("a\ud800\udc00b\udbff\udfff", 10);
+	}
+
+	/**
+	 * Tests unpaired surrogates, which the encoder replaces with a question
+	 * mark.
+	 */
+	@Test
+	public void testUnpairedSurrogates() throws Exception {
+		assertLength("\ud800", 1);
+		assertLength("\udc00", 1);
+		assertLength("a\ud800b", 3);
+		assertLength("\udc00\ud800", 2);
+		assertLength("\ud800\ud800\udc00", 5);
+		assertLength("x\ud83d", 2);
+	}
+
+	/**
+	 * Tests that a text larger than the encoding buffer is written
+	 * completely.
+	 */
+	@Test
+	public void testLargeText() throws Exception {
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < 5000; i++) {
+			text.append("<a>\u20ac\ud83d\ude00</a>");
+		}
+
+		assertLength(text.toString(), 5000 * 14);
+	}
+
+	/**
+	 * Asserts that the calculated length of the text is the given length and
+	 * matches the number of bytes the entity writes.
+	 *
+	 * @param text
+	 *            The text.
+	 * @param expected
+	 *            The expected length in bytes.
+	 */
+	private static void assertLength(String text, long expected)
+			throws Exception {
+		XmlRequestEntity entity = new XmlRequestEntity(text, "text/xml");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		entity.writeRequest(out);
+
+		assertEquals(expected, entity.getContentLength());
+		assertEquals(expected, out.size());
+		assertArrayEquals(text.getBytes("UTF-8"), out.toByteArray());
+	}
+}
@@ -0,0 +1,108 @@
+package com.cordys.coe.ac.httpconnector.impl;
+
+import java.text.MessageFormat;
+
+/**
+ * Compares building a REST URI with MessageFormat, as RestRequestHandler used
+ * to do, with the parsed UriTemplate. Run it as a Java application; JMH is not
+ * available in this project, so it does its own warm-up and timing.
+ *
+ * @author agent
+ */
+public class UriTemplateBenchmark {
+	/**
+	 * Holds the URI pattern used for both variants.
+	 */
+	private static final String PATTERN = "/rest/api/2/project/{0}/issue/{1}?expand={2}&fields={3}";
+	/**
+	 * Holds the parameter values.
+	 */
+	private static final String[] VALUES = { "COE", "COE-1234",
+			"changelog", "summary,status" };
+	/**
+	 * Holds which values are encoded.
+	 */
+	private static final boolean[] ENCODE = { true, true, true, true };
+	/**
+	 * Holds the number of URIs built per measured round.
+	 */
+	private static final int ITERATIONS = 1000000;
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            Not used.
+	 *
+	 * @throws Exception
+	 *             In case of any exceptions.
+	 */
+	public static void main(String[] args) throws Exception {
+		UriTemplate template = new UriTemplate(PATTERN);
+
+		for (int round = 0; round < 5; round++) {
+			long messageFormat = runMessageFormat();
+			long uriTemplate = runUriTemplate(template);
+
+			System.out.println("Round " + round + ": MessageFormat "
+					+ (messageFormat / ITERATIONS) + " ns/op, UriTemplate "
+					+ (uriTemplate / ITERATIONS) + " ns/op");
+		}
+	}
+
+	/**
+	 * Builds the URI with MessageFormat.
+	 *
+	 * @return The elapsed time in nanoseconds.
+	 */
+	private static long runMessageFormat() {
+		Object[] values = VALUES.clone();
+		int total = 0;
+		long start = System.nanoTime();
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			total += MessageFormat.format(PATTERN, values).length();
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		check(total);
+
+		return elapsed;
+	}
+
+	/**
+	 * Builds the URI with the parsed template.
+	 *
+	 * @param template
+	 *            The parsed template.
+	 *
+	 * @return The elapsed time in nanoseconds.
+	 */
+	private static long runUriTemplate(UriTemplate template) {
+		int total = 0;
+		long start = System.nanoTime();
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			total += template.format(VALUES, ENCODE).length();
+		}
+
+		long elapsed = System.nanoTime() - start;
+
+		check(total);
+
+		return elapsed;
+	}
+
+	/**
+	 * Uses the result, so the loops cannot be optimized away.
+	 *
+	 * @param total
+	 *            The total length of the built URIs.
+	 */
+	private static void check(int total) {
+		if (total == 0) {
+			throw new IllegalStateException("No URIs were built");
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.cordys.coe.ac.httpconnector.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class tests the bucket math and the percentiles of the latency
+ * histogram.
+ * 
+ * @author agent
+ */
+public class TestLatencyHistogram {
+	/**
+	 * Holds the largest value the histogram records.
+	 */
+	private static final long MAX_VALUE = (1L << 32) - 1;
+
+	/**
+	 * Tests that small values have their own bucket.
+	 */
+	@Test
+	public void testLinearBuckets() {
+		for (int value = 0; value < 32; value++) {
+			assertEquals(value, LatencyHistogram.getBucket(value));
+			assertEquals(value, LatencyHistogram.getHighestValue(value));
+		}
+	}
+
+	/**
+	 * Tests the first buckets above the linear ones, which hold two values.
+	 */
+	@Test
+	public void testFirstSharedBuckets() {
+		assertEquals(32, LatencyHistogram.getBucket(32));
+		assertEquals(32, LatencyHistogram.getBucket(33));
+		assertEquals(33, LatencyHistogram.getBucket(34));
+		assertEquals(33, LatencyHistogram.getHighestValue(32));
+		assertEquals(35, LatencyHistogram.getHighestValue(33));
+	}
+
+	/**
+	 * Tests that the buckets are contiguous, that every value is counted in a
+	 * bucket whose highest value is not below it, and that the bucket width
+	 * stays within about 6 percent of the value.
+	 */
+	@Test
+	public void testBucketsCoverAllValues() {
+		int previous = LatencyHistogram.getBucket(0);
+
+		for (long value = 1; value < 200000; value++) {
+			assertBucket(value);
+
+			int bucket = LatencyHistogram.getBucket(value);
+
+			assertTrue("Bucket of " + value + " goes back",
+					(bucket == previous) || (bucket == previous + 1));
+			previous = bucket;
+		}
+
+		for (long value = 200000; value <= MAX_VALUE; value = value * 3 + 7) {
+			assertBucket(value);
+		}
+
+		assertBucket(MAX_VALUE);
+		assertEquals(MAX_VALUE, LatencyHistogram.getHighestValue(LatencyHistogram
+				.getBucket(MAX_VALUE)));
+	}
+
+	/**
+	 * Tests the percentiles of evenly spread values.
+	 */
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+
+		assertEquals(100, histogram.getTotalCount());
+		assertEquals(100, histogram.getMaxValue());
+		assertEquals(1, histogram.getValueAtPercentile(1));
+		assertEquals(LatencyHistogram.getHighestValue(LatencyHistogram
+				.getBucket(50)), histogram.getValueAtPercentile(50));
+		assertEquals(LatencyHistogram.getHighestValue(LatencyHistogram
+				.getBucket(90)), histogram.getValueAtPercentile(90));
+		// The highest bucket is capped at the largest recorded value.
+		assertEquals(100, histogram.getValueAtPercentile(100));
+	}
+
+	/**
+	 * Tests that a single slow value shows up in the high percentiles only.
+	 */
+	@Test
+	public void testOutlier() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int i = 0; i < 999; i++) {
+			histogram.record(10);
+		}
+
+		histogram.record(1000000);
+
+		assertEquals(10, histogram.getValueAtPercentile(99));
+		assertEquals(1000000, histogram.getValueAtPercentile(100));
+	}
+
+	/**
+	 * Tests an empty histogram and reset().
+	 */
+	@Test
+	public void testEmptyAndReset() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getValueAtPercentile(99));
+
+		histogram.record(5000);
+		histogram.reset();
+
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMaxValue());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	/**
+	 * Tests that values outside the range are clamped.
+	 */
+	@Test
+	public void testClampsValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(-5);
+		assertEquals(0, histogram.getValueAtPercentile(100));
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(MAX_VALUE, histogram.getMaxValue());
+		assertEquals(MAX_VALUE, histogram.getValueAtPercentile(100));
+	}
+
+	/**
+	 * Checks the bucket of one value.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	private static void assertBucket(long value) {
+		int bucket = LatencyHistogram.getBucket(value);
+		long highest = LatencyHistogram.getHighestValue(bucket);
+		long lowest = (bucket == 0) ? 0 : LatencyHistogram
+				.getHighestValue(bucket - 1) + 1;
+
+		assertTrue("Value " + value + " above its bucket", value <= highest);
+		assertTrue("Value " + value + " below its bucket", value >= lowest);
+		assertTrue("Bucket of " + value + " too wide",
+				(highest - lowest) * 16 <= lowest);
+	}
+}
@@ -0,0 +1,189 @@
+package com.cordys.coe.ac.httpconnector.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.httpclient.ChunkedInputStream;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpContentTooLargeException;
+import org.apache.commons.httpclient.HttpMethod;
+import org.junit.Test;
+
+/**
+ * This class tests reading response bodies.
+ *
+ * @author agent
+ */
+public class TestUtils {
+	/**
+	 * Tests reading a chunked body, which has no content length, that is
+	 * larger than the initial buffer.
+	 */
+	@Test
+	public void testReadsChunkedBody() throws Exception {
+		byte[] body = createBody(10000);
+		HttpMethod method = createMethod(new ChunkedInputStream(
+				new ByteArrayInputStream(chunk(body, 3000))), null);
+
+		assertArrayEquals(body, Utils.readResponseBody(method, 0));
+	}
+
+	/**
+	 * Tests reading a body of exactly the announced content length.
+	 */
+	@Test
+	public void testReadsExactLengthBody() throws Exception {
+		byte[] body = createBody(10000);
+		HttpMethod method = createMethod(new ByteArrayInputStream(body),
+				"10000");
+
+		assertArrayEquals(body, Utils.readResponseBody(method, 10000));
+	}
+
+	/**
+	 * Tests reading an empty body and a response without a body.
+	 */
+	@Test
+	public void testReadsEmptyBody() throws Exception {
+		HttpMethod method = createMethod(new ByteArrayInputStream(
+				new byte[0]), "0");
+
+		assertEquals(0, Utils.readResponseBody(method, 0).length);
+		assertNull(Utils.readResponseBody(createMethod(null, null), 0));
+	}
+
+	/**
+	 * Tests that a huge announced content length is not allocated before the
+	 * bytes arrive.
+	 */
+	@Test
+	public void testDoesNotTrustContentLength() throws Exception {
+		byte[] body = createBody(100);
+
+		assertArrayEquals(body, Utils.readResponseBody(
+				createMethod(new ByteArrayInputStream(body), "2147483647"),
+				0));
+		assertArrayEquals(body, Utils.readResponseBody(
+				createMethod(new ByteArrayInputStream(body), "3000000000"),
+				0));
+	}
+
+	/**
+	 * Tests that a body announced to be larger than the maximum size is
+	 * rejected before it is read.
+	 */
+	@Test
+	public void testRejectsOverLimitContentLength() throws Exception {
+		HttpMethod method = createMethod(new ByteArrayInputStream(
+				createBody(100)), "3000000000");
+
+		try {
+			Utils.readResponseBody(method, 50);
+			fail("The body is larger than the maximum size.");
+		} catch (HttpContentTooLargeException e) {
+			assertEquals(50, e.getMaxLength());
+		}
+	}
+
+	/**
+	 * Tests that a body larger than the maximum size is rejected when it
+	 * arrives, whether or not the length was announced.
+	 */
+	@Test
+	public void testRejectsOverLimitBody() throws Exception {
+		byte[] body = createBody(10001);
+
+		assertTooLarge(createMethod(new ChunkedInputStream(
+				new ByteArrayInputStream(chunk(body, 3000))), null), 10000);
+		assertTooLarge(createMethod(new ByteArrayInputStream(body), "100"),
+				10000);
+		assertArrayEquals(createBody(10000), Utils.readResponseBody(
+				createMethod(new ByteArrayInputStream(createBody(10000)),
+						null), 10000));
+	}
+
+	private static void assertTooLarge(HttpMethod method, int maxSize)
+			throws IOException {
+		try {
+			Utils.readResponseBody(method, maxSize);
+			fail("The body is larger than the maximum size.");
+		} catch (HttpContentTooLargeException e) {
+			assertEquals(maxSize, e.getMaxLength());
+		}
+	}
+
+	/**
+	 * Creates a method with the given response.
+	 *
+	 * @param body
+	 *            The response body stream.
+	 * @param contentLength
+	 *            The value of the Content-Length header or null.
+	 *
+	 * @return The method.
+	 */
+	private static HttpMethod createMethod(InputStream body,
+			String contentLength) throws IOException {
+		HttpMethod method = mock(HttpMethod.class);
+
+		when(method.getResponseBodyAsStream()).thenReturn(body);
+
+		if (contentLength != null) {
+			when(method.getResponseHeader("Content-Length")).thenReturn(
+					new Header("Content-Length", contentLength));
+		}
+
+		return method;
+	}
+
+	private static byte[] createBody(int size) {
+		byte[] body = new byte[size];
+
+		for (int i = 0; i < size; i++) {
+			body[i] = (byte) i;
+		}
+
+		return body;
+	}
+
+	/**
+	 * Encodes the body with the chunked transfer encoding.
+	 *
+	 * @param body
+	 *            The body.
+	 * @param chunkSize
+	 *            The maximum size of a chunk.
+	 *
+	 * @return The encoded body.
+	 */
+	private static byte[] chunk(byte[] body, int chunkSize) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		for (int offset = 0; offset < body.length; offset += chunkSize) {
+			int size = Math.min(chunkSize, body.length - offset);
+			byte[] header = (Integer.toHexString(size) + "\r\n").getBytes();
+
+			out.write(header, 0, header.length);
+			out.write(body, offset, size);
+			out.write('\r');
+			out.write('\n');
+		}
+
+		out.write('0');
+		out.write('\r');
+		out.write('\n');
+		out.write('\r');
+		out.write('\n');
+
+		return out.toByteArray();
+	}
+}